@@ -17,13 +17,8 @@
  */
 package org.smartloli.kafka.eagle.api.im;
 
-import java.util.Date;
-
-import org.smartloli.kafka.eagle.api.im.queue.DingDingJob;
-import org.smartloli.kafka.eagle.api.im.queue.MailJob;
-import org.smartloli.kafka.eagle.api.im.queue.WeChatJob;
-import org.smartloli.kafka.eagle.common.protocol.alarm.queue.BaseJobContext;
-import org.smartloli.kafka.eagle.common.util.QuartzManagerUtils;
+import org.smartloli.kafka.eagle.api.im.dispatch.AlertChannel;
+import org.smartloli.kafka.eagle.api.im.dispatch.AlertDispatcher;
 
 /**
  * Implements IMService all method.
@@ -34,31 +29,20 @@ import org.smartloli.kafka.eagle.common.util.QuartzManagerUtils;
  */
 public class IMServiceImpl implements IMService {
 
-	private static final String KE_JOB_ID = "ke_job_id_";
-
 	/** Send Json msg by dingding. */
 	@Override
 	public void sendPostMsgByDingDing(String data, String url) {
-		BaseJobContext jobContext = new BaseJobContext();
-		jobContext.setData(data);
-		jobContext.setUrl(url);
-		QuartzManagerUtils.addJob(jobContext, KE_JOB_ID + new Date().getTime(), DingDingJob.class, QuartzManagerUtils.getCron(new Date(), 5));
+		AlertDispatcher.getInstance().offer(AlertChannel.DINGDING, data, url);
 	}
 
 	@Override
 	public void sendPostMsgByWeChat(String data, String url) {
-		BaseJobContext jobContext = new BaseJobContext();
-		jobContext.setData(data);
-		jobContext.setUrl(url);
-		QuartzManagerUtils.addJob(jobContext, KE_JOB_ID + new Date().getTime(), WeChatJob.class, QuartzManagerUtils.getCron(new Date(), 5));
+		AlertDispatcher.getInstance().offer(AlertChannel.WECHAT, data, url);
 	}
 
 	@Override
 	public void sendPostMsgByMail(String data, String url) {
-		BaseJobContext jobContext = new BaseJobContext();
-		jobContext.setData(data);
-		jobContext.setUrl(url);
-		QuartzManagerUtils.addJob(jobContext, KE_JOB_ID + new Date().getTime(), MailJob.class, QuartzManagerUtils.getCron(new Date(), 5));
+		AlertDispatcher.getInstance().offer(AlertChannel.MAIL, data, url);
 	}
 
 }
@@ -0,0 +1,131 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.api.im.dispatch;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import org.apache.http.message.BasicNameValuePair;
+import org.smartloli.kafka.eagle.api.im.queue.DingDingJob;
+import org.smartloli.kafka.eagle.api.im.queue.WeChatJob;
+import org.smartloli.kafka.eagle.api.util.MailFactoryUtils;
+import org.smartloli.kafka.eagle.common.protocol.alarm.AlarmEmailJsonInfo;
+import org.smartloli.kafka.eagle.common.util.JSONUtils;
+import org.smartloli.kafka.eagle.common.util.KConstants.IM;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Alarm channels served by the {@link AlertDispatcher}, each knows how to
+ * merge the messages of one alarm group into a single post and how to
+ * deliver it.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public enum AlertChannel {
+
+    DINGDING {
+        @Override
+        String merge(List<String> data, String url) {
+            return String.join(" \n\n --- \n\n ", data);
+        }
+
+        @Override
+        void deliver(AlertHttpClient client, String data, String url) throws IOException {
+            checkErrcode(client.postJson(url, JSONObject.toJSONString(DingDingJob.getDingDingMarkdownMessage(IM.TITLE, data, true))));
+        }
+    },
+
+    WECHAT {
+        @Override
+        String merge(List<String> data, String url) {
+            return String.join("\n\n", data);
+        }
+
+        @Override
+        void deliver(AlertHttpClient client, String data, String url) throws IOException {
+            checkErrcode(client.postJson(url, JSONObject.toJSONString(WeChatJob.getWeChatMarkdownMessage(data))));
+        }
+    },
+
+    MAIL {
+        @Override
+        String group(String data, String url) {
+            return url + "\u0000" + JSON.parseObject(data).getString("address");
+        }
+
+        @Override
+        String merge(List<String> data, String url) {
+            String separator = JSONUtils.isJsonObject(url) ? "<br/><br/>" : "\n\n";
+            JSONObject merged = JSON.parseObject(data.get(0));
+            StringBuilder msg = new StringBuilder(merged.getString("msg"));
+            for (int i = 1; i < data.size(); i++) {
+                msg.append(separator).append(JSON.parseObject(data.get(i)).getString("msg"));
+            }
+            merged.put("msg", msg.toString());
+            return merged.toJSONString();
+        }
+
+        @Override
+        void deliver(AlertHttpClient client, String data, String url) throws IOException {
+            if (JSONUtils.isJsonObject(url)) {
+                AlarmEmailJsonInfo email = JSON.parseObject(url, AlarmEmailJsonInfo.class);
+                if (!MailFactoryUtils.sendMail(email, data)) {
+                    throw new IOException("Mail server[" + email.getHost() + "] did not accept the alarm message.");
+                }
+            } else {
+                JSONObject object = JSON.parseObject(data);
+                BasicNameValuePair address = new BasicNameValuePair("address", object.getString("address"));
+                BasicNameValuePair msg = new BasicNameValuePair("msg", object.getString("msg"));
+                client.postForm(url, Arrays.asList(address, msg));
+            }
+        }
+    };
+
+    /**
+     * Key of the alarm group a message belongs to, messages of one group are
+     * posted to the same target and may be merged.
+     */
+    String group(String data, String url) {
+        return url;
+    }
+
+    /**
+     * Merge messages of one alarm group, oldest first, into one message.
+     */
+    abstract String merge(List<String> data, String url);
+
+    abstract void deliver(AlertHttpClient client, String data, String url) throws IOException;
+
+    /**
+     * DingDing and WeChat answer 200 with a non zero errcode when they refuse
+     * a message, for example when the robot is throttled.
+     */
+    private static void checkErrcode(String result) throws IOException {
+        if (JSONUtils.isJsonObject(result)) {
+            JSONObject object = JSON.parseObject(result);
+            if (object.containsKey("errcode") && object.getIntValue("errcode") != 0) {
+                throw new IOException("Webhook refused the alarm message, result is " + result);
+            }
+        }
+    }
+
+}
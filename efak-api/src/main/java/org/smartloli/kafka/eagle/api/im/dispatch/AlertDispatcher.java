@@ -0,0 +1,303 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.api.im.dispatch;
+
+import com.alibaba.fastjson.JSONObject;
+import org.smartloli.kafka.eagle.common.util.LoggerUtils;
+import org.smartloli.kafka.eagle.common.util.SystemConfigUtils;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends alarm messages off the caller thread.
+ * <p>
+ * Every channel has a bounded queue drained by one worker. The worker waits
+ * up to the coalesce window after the first message it takes, then merges the
+ * messages of each alarm group, the same webhook or mail address, into one
+ * post of at most the coalesce max messages. Posts are paced per alarm group
+ * by a token bucket, sent on a small scheduler through a pooled http client
+ * and retried with exponential backoff. Posts waiting for delivery hold a
+ * permit of the channel, so a slow webhook fills its queue and further
+ * messages of that channel are dropped instead of piling up in memory.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public final class AlertDispatcher {
+
+    private static final long MAX_BACKOFF = 5 * 60 * 1000L;
+
+    private final int capacity = Math.max(1, SystemConfigUtils.getIntProperty("efak.alert.queue.size", 1000));
+    private final long window = Math.max(0L, SystemConfigUtils.getLongProperty("efak.alert.coalesce.ms", 5000L));
+    private final int batch = Math.max(1, SystemConfigUtils.getIntProperty("efak.alert.coalesce.max", 20));
+    private final int rate = Math.max(1, SystemConfigUtils.getIntProperty("efak.alert.rate.per.minute", 20));
+    private final int retries = Math.max(0, SystemConfigUtils.getIntProperty("efak.alert.retries", 3));
+    private final long backoff = Math.max(1L, SystemConfigUtils.getLongProperty("efak.alert.retry.backoff.ms", 2000L));
+
+    private final Map<AlertChannel, Lane> lanes = new EnumMap<>(AlertChannel.class);
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService senders;
+    private final AlertHttpClient client;
+
+    private static class DispatcherHolder {
+        private static final AlertDispatcher INSTANCE = new AlertDispatcher();
+    }
+
+    public static AlertDispatcher getInstance() {
+        return DispatcherHolder.INSTANCE;
+    }
+
+    private AlertDispatcher() {
+        int connections = Math.max(1, SystemConfigUtils.getIntProperty("efak.alert.http.connections", 8));
+        this.client = new AlertHttpClient(connections, SystemConfigUtils.getIntProperty("efak.alert.http.timeout.ms", 10000));
+        this.senders = Executors.newScheduledThreadPool(connections, daemonFactory("efak-alert-sender"));
+        for (AlertChannel channel : AlertChannel.values()) {
+            Lane lane = new Lane(channel, capacity);
+            lanes.put(channel, lane);
+            Thread worker = new Thread(() -> drain(lane), "efak-alert-" + channel.name().toLowerCase());
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    /**
+     * Queue an alarm message for the channel, false when the queue of the
+     * channel is full and the message is dropped.
+     */
+    public boolean offer(AlertChannel channel, String data, String url) {
+        Lane lane = lanes.get(channel);
+        if (lane.queue.offer(new Message(data, url, System.currentTimeMillis()))) {
+            lane.enqueued.increment();
+            return true;
+        }
+        lane.dropped.increment();
+        LoggerUtils.print(this.getClass()).warn("Alarm queue of channel[" + channel + "] is full, drop message to [" + url + "].");
+        return false;
+    }
+
+    /**
+     * Queue depth, delivery counters and enqueue to delivery latency of every
+     * channel.
+     */
+    public JSONObject getMetrics() {
+        JSONObject metrics = new JSONObject();
+        for (Lane lane : lanes.values()) {
+            JSONObject object = new JSONObject();
+            object.put("depth", lane.queue.size());
+            object.put("capacity", capacity);
+            object.put("pending", lane.pending.get());
+            object.put("enqueued", lane.enqueued.sum());
+            object.put("dropped", lane.dropped.sum());
+            object.put("coalesced", lane.coalesced.sum());
+            object.put("posts", lane.posts.sum());
+            object.put("retried", lane.retried.sum());
+            object.put("delivered", lane.delivered.sum());
+            object.put("failed", lane.failed.sum());
+            long delivered = lane.latencyCount.sum();
+            object.put("latencyAvgMs", delivered == 0 ? 0L : lane.latencySum.sum() / delivered);
+            object.put("latencyMaxMs", lane.latencyMax.get());
+            object.put("latencyLastMs", lane.latencyLast.get());
+            metrics.put(lane.channel.name().toLowerCase(), object);
+        }
+        return metrics;
+    }
+
+    private void drain(Lane lane) {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Message first = lane.queue.take();
+                Map<String, List<Message>> groups = new LinkedHashMap<>();
+                collect(lane, groups, first);
+                long deadline = first.enqueued + window;
+                long wait;
+                Message next;
+                while ((wait = deadline - System.currentTimeMillis()) > 0 && (next = lane.queue.poll(wait, TimeUnit.MILLISECONDS)) != null) {
+                    collect(lane, groups, next);
+                }
+                for (Map.Entry<String, List<Message>> group : groups.entrySet()) {
+                    List<Message> messages = group.getValue();
+                    for (int from = 0; from < messages.size(); from += batch) {
+                        List<Message> chunk = messages.subList(from, Math.min(from + batch, messages.size()));
+                        lane.permits.acquire();
+                        lane.pending.incrementAndGet();
+                        lane.coalesced.add(chunk.size() - 1);
+                        schedule(new Post(lane, group.getKey(), new ArrayList<>(chunk)));
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                LoggerUtils.print(this.getClass()).error("Dispatch alarm messages of channel[" + lane.channel + "] has error, msg is ", e);
+            }
+        }
+    }
+
+    private void collect(Lane lane, Map<String, List<Message>> groups, Message message) {
+        try {
+            groups.computeIfAbsent(lane.channel.group(message.data, message.url), k -> new ArrayList<>()).add(message);
+        } catch (Exception e) {
+            lane.failed.increment();
+            LoggerUtils.print(this.getClass()).error("Skip malformed alarm message of channel[" + lane.channel + "], msg is ", e);
+        }
+    }
+
+    /**
+     * Send the post once the alarm group has a token.
+     */
+    private void schedule(Post post) {
+        TokenBucket bucket = buckets.computeIfAbsent(post.lane.channel + "\u0000" + post.group, k -> new TokenBucket(rate));
+        senders.schedule(() -> send(post), bucket.reserve(System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+    }
+
+    private void send(Post post) {
+        Lane lane = post.lane;
+        String url = post.messages.get(0).url;
+        try {
+            List<String> data = new ArrayList<>(post.messages.size());
+            for (Message message : post.messages) {
+                data.add(message.data);
+            }
+            lane.posts.increment();
+            lane.channel.deliver(client, data.size() == 1 ? data.get(0) : lane.channel.merge(data, url), url);
+            long now = System.currentTimeMillis();
+            for (Message message : post.messages) {
+                lane.record(now - message.enqueued);
+            }
+            lane.delivered.add(post.messages.size());
+            release(post);
+        } catch (Exception e) {
+            if (post.attempts < retries) {
+                long delay = Math.min(MAX_BACKOFF, backoff << Math.min(post.attempts, 20));
+                post.attempts++;
+                lane.retried.increment();
+                LoggerUtils.print(this.getClass()).warn("Send alarm message by " + lane.channel + " failed, retry " + post.attempts + " in " + delay + "ms, msg is " + e.getMessage());
+                senders.schedule(() -> schedule(post), delay, TimeUnit.MILLISECONDS);
+            } else {
+                lane.failed.add(post.messages.size());
+                release(post);
+                LoggerUtils.print(this.getClass()).error("Send alarm message has error by " + lane.channel + " after " + (post.attempts + 1) + " attempts, msg is ", e);
+            }
+        }
+    }
+
+    private static void release(Post post) {
+        post.lane.pending.decrementAndGet();
+        post.lane.permits.release();
+    }
+
+    private static ThreadFactory daemonFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static final class Message {
+        private final String data;
+        private final String url;
+        private final long enqueued;
+
+        private Message(String data, String url, long enqueued) {
+            this.data = data;
+            this.url = url;
+            this.enqueued = enqueued;
+        }
+    }
+
+    /**
+     * Merged messages of one alarm group sent as one request.
+     */
+    private static final class Post {
+        private final Lane lane;
+        private final String group;
+        private final List<Message> messages;
+        private int attempts = 0;
+
+        private Post(Lane lane, String group, List<Message> messages) {
+            this.lane = lane;
+            this.group = group;
+            this.messages = messages;
+        }
+    }
+
+    /**
+     * Queue and counters of one channel.
+     */
+    private static final class Lane {
+        private final AlertChannel channel;
+        private final BlockingQueue<Message> queue;
+        private final Semaphore permits;
+        private final AtomicInteger pending = new AtomicInteger();
+        private final LongAdder enqueued = new LongAdder();
+        private final LongAdder dropped = new LongAdder();
+        private final LongAdder coalesced = new LongAdder();
+        private final LongAdder posts = new LongAdder();
+        private final LongAdder retried = new LongAdder();
+        private final LongAdder delivered = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder latencySum = new LongAdder();
+        private final LongAdder latencyCount = new LongAdder();
+        private final AtomicLong latencyMax = new AtomicLong();
+        private final AtomicLong latencyLast = new AtomicLong();
+
+        private Lane(AlertChannel channel, int capacity) {
+            this.channel = channel;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.permits = new Semaphore(capacity);
+        }
+
+        private void record(long latency) {
+            latencySum.add(latency);
+            latencyCount.increment();
+            latencyMax.accumulateAndGet(latency, Math::max);
+            latencyLast.set(latency);
+        }
+    }
+
+    /**
+     * Paces the posts of one alarm group to the rate per minute, a post that
+     * finds no token is delayed until one is refilled.
+     */
+    private static final class TokenBucket {
+        private final double perMillis;
+        private double tokens = 1.0;
+        private long updated = System.currentTimeMillis();
+
+        private TokenBucket(int perMinute) {
+            this.perMillis = perMinute / 60000.0;
+        }
+
+        /**
+         * Take a token, returns the milliseconds to wait for it.
+         */
+        private synchronized long reserve(long now) {
+            tokens = Math.min(1.0, tokens + (now - updated) * perMillis);
+            updated = now;
+            tokens -= 1.0;
+            return tokens >= 0 ? 0L : (long) Math.ceil(-tokens / perMillis);
+        }
+    }
+
+}
@@ -0,0 +1,86 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.api.im.dispatch;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.util.EntityUtils;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Http client shared by the alarm senders, connections to the webhooks are
+ * pooled and kept alive instead of opening a client for every message, and
+ * a failed post is thrown so it can be retried.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+final class AlertHttpClient {
+
+    private static final String ENCODING = "UTF-8";
+
+    private final CloseableHttpClient client;
+
+    AlertHttpClient(int connections, int timeout) {
+        PoolingHttpClientConnectionManager manager = new PoolingHttpClientConnectionManager();
+        manager.setMaxTotal(connections);
+        manager.setDefaultMaxPerRoute(connections);
+        RequestConfig config = RequestConfig.custom().setConnectTimeout(timeout).setConnectionRequestTimeout(timeout).setSocketTimeout(timeout).build();
+        this.client = HttpClients.custom().setConnectionManager(manager).setDefaultRequestConfig(config).evictExpiredConnections().evictIdleConnections(60, TimeUnit.SECONDS).build();
+    }
+
+    String postJson(String uri, String data) throws IOException {
+        HttpPost httpPost = new HttpPost(uri);
+        httpPost.setHeader(HTTP.CONTENT_TYPE, "application/json");
+        httpPost.setEntity(new StringEntity(data, ContentType.create("text/json", ENCODING)));
+        return execute(httpPost);
+    }
+
+    String postForm(String uri, List<BasicNameValuePair> parames) throws IOException {
+        HttpPost httpPost = new HttpPost(uri);
+        httpPost.setEntity(new UrlEncodedFormEntity(parames, ENCODING));
+        return execute(httpPost);
+    }
+
+    private String execute(HttpPost httpPost) throws IOException {
+        try (CloseableHttpResponse response = client.execute(httpPost)) {
+            int status = response.getStatusLine().getStatusCode();
+            HttpEntity entity = response.getEntity();
+            String result = entity == null ? "" : EntityUtils.toString(entity, ENCODING);
+            if (status < 200 || status >= 300) {
+                throw new IOException("Post to [" + httpPost.getURI().getHost() + "] returned status[" + status + "], result is " + result);
+            }
+            return result;
+        }
+    }
+
+}
@@ -66,7 +66,7 @@ public class DingDingJob implements Job {
      * @param text
      * @param isAtAll
      */
-    private static Map<String, Object> getDingDingMarkdownMessage(String title, String text, boolean isAtAll) {
+    public static Map<String, Object> getDingDingMarkdownMessage(String title, String text, boolean isAtAll) {
         Map<String, Object> map = new HashMap<>();
         map.put("msgtype", "markdown");
 
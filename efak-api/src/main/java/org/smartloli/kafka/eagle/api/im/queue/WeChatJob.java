@@ -59,7 +59,7 @@ public class WeChatJob implements Job {
         return 1;
     }
 
-    private static Map<String, Object> getWeChatMarkdownMessage(String text) {
+    public static Map<String, Object> getWeChatMarkdownMessage(String text) {
         Map<String, Object> map = new HashMap<>();
         map.put("msgtype", "markdown");
 
@@ -67,6 +67,13 @@ public class MailUtils extends Thread {
         send(subject, address, content, mailServerInfo);
     }
 
+    /**
+     * Send the mail in the calling thread, false when it is not accepted.
+     */
+    public boolean sendMail() {
+        return send(subject, address, content, mailServerInfo);
+    }
+
     /**
      * @param subject mail theme
      * @param content mail content
@@ -36,6 +36,18 @@ public class MailFactoryUtils {
      * Send msg by mail address.
      */
     public static void send(AlarmEmailJsonInfo email, String data) {
+        create(email, data).start();
+    }
+
+    /**
+     * Send msg by mail address in the calling thread, false when the mail
+     * server does not accept it.
+     */
+    public static boolean sendMail(AlarmEmailJsonInfo email, String data) {
+        return create(email, data).sendMail();
+    }
+
+    private static MailUtils create(AlarmEmailJsonInfo email, String data) {
         JSONObject jsonData = JSON.parseObject(data);
         MailUtils mail = new MailUtils();
         mail.setAddress(jsonData.getString("address"));
@@ -49,7 +61,7 @@ public class MailFactoryUtils {
         mailServerInfo.setPassword(email.getPassword());
         mailServerInfo.setEnableSsl(email.isEnableSsl());
         mail.setMailServerInfo(mailServerInfo);
-        mail.start();
+        return mail;
     }
 
 }
@@ -36,7 +36,6 @@ public class ThreadConstants {
         {
             // key: thread class name, value: weight
             put("org.smartloli.kafka.eagle.web.quartz.shard.task.sub.AlertClusterSubTask", WEIGHT_VIP1);
-            put("org.smartloli.kafka.eagle.web.quartz.shard.task.sub.AlertConsumerSubTask", WEIGHT_VIP1);
             put("org.smartloli.kafka.eagle.web.quartz.shard.task.sub.CapacityStatsSubTask", WEIGHT_VIP2);
             put("org.smartloli.kafka.eagle.web.quartz.shard.task.sub.CleanTopicSubTask", WEIGHT_VIP2);
             put("org.smartloli.kafka.eagle.web.quartz.shard.task.sub.DetectConnectUriSubTask", WEIGHT_VIP1);
@@ -32,7 +32,7 @@ public class BrokersInfo extends BaseProtocol {
     private String created = "";
     private String modify = "";
     private int jmxPort = 0;
-    private boolean jmxPortStatus = false;
+    private volatile boolean jmxPortStatus = false;
     private String version = "";
     private String ids = "";
 
@@ -0,0 +1,282 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.common.protocol;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Output of the mntr command of one zookeeper server.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public class ZkMntrInfo extends BaseProtocol {
+
+    private String host = "";
+    private int port;
+    /** whether the server answered within the timeout. */
+    private boolean alive = false;
+    /** why the server gave no metrics, empty when it did. */
+    private String error = "";
+    private String version = "";
+    /** server mode, like standalone|leader|follower|observer. */
+    private String serverState = "";
+    private double avgLatency;
+    private long minLatency;
+    private long maxLatency;
+    /** read latency percentiles, -1 before zookeeper 3.6. */
+    private double p50Latency = -1;
+    private double p95Latency = -1;
+    private double p99Latency = -1;
+    private double p999Latency = -1;
+    private long packetsReceived;
+    private long packetsSent;
+    private long numAliveConnections;
+    private long outstandingRequests;
+    private long znodeCount;
+    private long watchCount;
+    private long ephemeralsCount;
+    private long approximateDataSize;
+    private long openFileDescriptorCount;
+    private long maxFileDescriptorCount;
+    /** reported by the leader only. */
+    private long followers;
+    private long syncedFollowers;
+    private long pendingSyncs;
+    /** every line of the output, key to raw value. */
+    private Map<String, String> metrics = new LinkedHashMap<>();
+
+    public String getHost() {
+        return host;
+    }
+
+    public void setHost(String host) {
+        this.host = host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public boolean isAlive() {
+        return alive;
+    }
+
+    public void setAlive(boolean alive) {
+        this.alive = alive;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
+    public String getServerState() {
+        return serverState;
+    }
+
+    public void setServerState(String serverState) {
+        this.serverState = serverState;
+    }
+
+    public double getAvgLatency() {
+        return avgLatency;
+    }
+
+    public void setAvgLatency(double avgLatency) {
+        this.avgLatency = avgLatency;
+    }
+
+    public long getMinLatency() {
+        return minLatency;
+    }
+
+    public void setMinLatency(long minLatency) {
+        this.minLatency = minLatency;
+    }
+
+    public long getMaxLatency() {
+        return maxLatency;
+    }
+
+    public void setMaxLatency(long maxLatency) {
+        this.maxLatency = maxLatency;
+    }
+
+    public double getP50Latency() {
+        return p50Latency;
+    }
+
+    public void setP50Latency(double p50Latency) {
+        this.p50Latency = p50Latency;
+    }
+
+    public double getP95Latency() {
+        return p95Latency;
+    }
+
+    public void setP95Latency(double p95Latency) {
+        this.p95Latency = p95Latency;
+    }
+
+    public double getP99Latency() {
+        return p99Latency;
+    }
+
+    public void setP99Latency(double p99Latency) {
+        this.p99Latency = p99Latency;
+    }
+
+    public double getP999Latency() {
+        return p999Latency;
+    }
+
+    public void setP999Latency(double p999Latency) {
+        this.p999Latency = p999Latency;
+    }
+
+    public long getPacketsReceived() {
+        return packetsReceived;
+    }
+
+    public void setPacketsReceived(long packetsReceived) {
+        this.packetsReceived = packetsReceived;
+    }
+
+    public long getPacketsSent() {
+        return packetsSent;
+    }
+
+    public void setPacketsSent(long packetsSent) {
+        this.packetsSent = packetsSent;
+    }
+
+    public long getNumAliveConnections() {
+        return numAliveConnections;
+    }
+
+    public void setNumAliveConnections(long numAliveConnections) {
+        this.numAliveConnections = numAliveConnections;
+    }
+
+    public long getOutstandingRequests() {
+        return outstandingRequests;
+    }
+
+    public void setOutstandingRequests(long outstandingRequests) {
+        this.outstandingRequests = outstandingRequests;
+    }
+
+    public long getZnodeCount() {
+        return znodeCount;
+    }
+
+    public void setZnodeCount(long znodeCount) {
+        this.znodeCount = znodeCount;
+    }
+
+    public long getWatchCount() {
+        return watchCount;
+    }
+
+    public void setWatchCount(long watchCount) {
+        this.watchCount = watchCount;
+    }
+
+    public long getEphemeralsCount() {
+        return ephemeralsCount;
+    }
+
+    public void setEphemeralsCount(long ephemeralsCount) {
+        this.ephemeralsCount = ephemeralsCount;
+    }
+
+    public long getApproximateDataSize() {
+        return approximateDataSize;
+    }
+
+    public void setApproximateDataSize(long approximateDataSize) {
+        this.approximateDataSize = approximateDataSize;
+    }
+
+    public long getOpenFileDescriptorCount() {
+        return openFileDescriptorCount;
+    }
+
+    public void setOpenFileDescriptorCount(long openFileDescriptorCount) {
+        this.openFileDescriptorCount = openFileDescriptorCount;
+    }
+
+    public long getMaxFileDescriptorCount() {
+        return maxFileDescriptorCount;
+    }
+
+    public void setMaxFileDescriptorCount(long maxFileDescriptorCount) {
+        this.maxFileDescriptorCount = maxFileDescriptorCount;
+    }
+
+    public long getFollowers() {
+        return followers;
+    }
+
+    public void setFollowers(long followers) {
+        this.followers = followers;
+    }
+
+    public long getSyncedFollowers() {
+        return syncedFollowers;
+    }
+
+    public void setSyncedFollowers(long syncedFollowers) {
+        this.syncedFollowers = syncedFollowers;
+    }
+
+    public long getPendingSyncs() {
+        return pendingSyncs;
+    }
+
+    public void setPendingSyncs(long pendingSyncs) {
+        this.pendingSyncs = pendingSyncs;
+    }
+
+    public Map<String, String> getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(Map<String, String> metrics) {
+        this.metrics = metrics;
+    }
+
+}
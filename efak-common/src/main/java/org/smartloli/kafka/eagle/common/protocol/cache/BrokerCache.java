@@ -18,17 +18,24 @@
 package org.smartloli.kafka.eagle.common.protocol.cache;
 
 import org.smartloli.kafka.eagle.common.protocol.BrokersInfo;
-import org.smartloli.kafka.eagle.common.util.LRUCacheUtils;
+import org.smartloli.kafka.eagle.common.util.RefreshAheadCache;
+import org.smartloli.kafka.eagle.common.util.SystemConfigUtils;
+import org.smartloli.kafka.eagle.common.util.ZKFactoryUtils;
 
 import java.util.List;
 
 /**
  * Initialize the Kafka metadata stored in zookeeper and cache it in memory.
+ * The brokers of a cluster are reloaded from zookeeper in the background
+ * before they expire, an unmodifiable list is cached per cluster.
  *
  * @author smartloli.
  * <p>
  * Created by Nov 03, 2021
  */
 public class BrokerCache {
-    public static LRUCacheUtils<String, List<BrokersInfo>> META_CACHE = new LRUCacheUtils();
+    public static final RefreshAheadCache<String, List<BrokersInfo>> META_CACHE = new RefreshAheadCache<>("broker", 1024,
+            SystemConfigUtils.getLongProperty("efak.broker.cache.ttl.ms", 60 * 1000L),
+            SystemConfigUtils.getLongProperty("efak.broker.cache.refresh.ahead.ms", 15 * 1000L),
+            ZKFactoryUtils::loadBrokers);
 }
@@ -0,0 +1,40 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.common.protocol.cache;
+
+import com.alibaba.fastjson.JSONObject;
+import org.smartloli.kafka.eagle.common.util.ConnectCollector;
+import org.smartloli.kafka.eagle.common.util.RefreshAheadCache;
+import org.smartloli.kafka.eagle.common.util.SystemConfigUtils;
+
+/**
+ * Connectors of every kafka connect cluster, keyed by the connect uri ending
+ * with a slash. The connect uri detector puts what it reads in parallel on
+ * each pass, and reads between passes reload a cluster in the background
+ * before it expires. Cached values are shared and must not be modified.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public class ConnectCache {
+    public static final RefreshAheadCache<String, JSONObject> CONNECTORS = new RefreshAheadCache<>("connect", 256,
+            SystemConfigUtils.getLongProperty("efak.connect.cache.ttl.ms", 60 * 1000L),
+            SystemConfigUtils.getLongProperty("efak.connect.cache.refresh.ahead.ms", 15 * 1000L),
+            ConnectCollector::collect);
+}
@@ -0,0 +1,115 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.common.protocol.consumer;
+
+import org.apache.kafka.common.TopicPartition;
+import org.smartloli.kafka.eagle.common.protocol.BaseProtocol;
+
+import java.util.*;
+
+/**
+ * Describe a consumer group: coordinator, active members and committed offsets,
+ * as collected by one consumer group snapshot.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public class ConsumerGroupMetaInfo extends BaseProtocol {
+    private String group;
+    private String node = "";
+    private List<ConsumerMemberInfo> members = new ArrayList<>();
+    private Map<TopicPartition, Long> offsets = new HashMap<>();
+
+    public String getGroup() {
+        return group;
+    }
+
+    public void setGroup(String group) {
+        this.group = group;
+    }
+
+    public String getNode() {
+        return node;
+    }
+
+    public void setNode(String node) {
+        this.node = node;
+    }
+
+    public List<ConsumerMemberInfo> getMembers() {
+        return members;
+    }
+
+    public void setMembers(List<ConsumerMemberInfo> members) {
+        this.members = members;
+    }
+
+    public Map<TopicPartition, Long> getOffsets() {
+        return offsets;
+    }
+
+    public void setOffsets(Map<TopicPartition, Long> offsets) {
+        this.offsets = offsets;
+    }
+
+    /**
+     * Number of members currently in the group.
+     */
+    public int getActiveSize() {
+        return members.size();
+    }
+
+    /**
+     * Topics assigned to at least one member.
+     */
+    public Set<String> getActiveTopics() {
+        Set<String> topics = new HashSet<>();
+        for (ConsumerMemberInfo member : members) {
+            for (TopicPartition tp : member.getPartitions()) {
+                topics.add(tp.topic());
+            }
+        }
+        return topics;
+    }
+
+    /**
+     * Topics either assigned to a member or holding a committed offset.
+     */
+    public Set<String> getTopics() {
+        Set<String> topics = getActiveTopics();
+        for (TopicPartition tp : offsets.keySet()) {
+            topics.add(tp.topic());
+        }
+        return topics;
+    }
+
+    /**
+     * Committed offsets of the given topic, keyed by partition id.
+     */
+    public Map<Integer, Long> getOffsets(String topic) {
+        Map<Integer, Long> partitionOffset = new HashMap<>();
+        for (Map.Entry<TopicPartition, Long> entry : offsets.entrySet()) {
+            if (topic.equals(entry.getKey().topic())) {
+                partitionOffset.put(entry.getKey().partition(), entry.getValue());
+            }
+        }
+        return partitionOffset;
+    }
+
+}
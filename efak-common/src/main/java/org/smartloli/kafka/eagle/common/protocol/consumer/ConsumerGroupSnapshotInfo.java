@@ -0,0 +1,99 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.common.protocol.consumer;
+
+import org.smartloli.kafka.eagle.common.protocol.BaseProtocol;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * All consumer groups of a kafka cluster, collected in one pass and shared by
+ * the consumer pages, alerts and metrics tasks until it expires.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public class ConsumerGroupSnapshotInfo extends BaseProtocol {
+    private String cluster;
+    private long timestamp;
+    private Map<String, ConsumerGroupMetaInfo> groups = new LinkedHashMap<>();
+
+    public ConsumerGroupSnapshotInfo() {
+    }
+
+    public ConsumerGroupSnapshotInfo(String cluster) {
+        this.cluster = cluster;
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    public String getCluster() {
+        return cluster;
+    }
+
+    public void setCluster(String cluster) {
+        this.cluster = cluster;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public void addGroup(ConsumerGroupMetaInfo group) {
+        this.groups.put(group.getGroup(), group);
+    }
+
+    /**
+     * Get group metadata, null if the group does not exist in this snapshot.
+     */
+    public ConsumerGroupMetaInfo getGroup(String group) {
+        return groups.get(group);
+    }
+
+    public boolean contains(String group) {
+        return groups.containsKey(group);
+    }
+
+    public List<ConsumerGroupMetaInfo> getGroups() {
+        return new ArrayList<>(groups.values());
+    }
+
+    public int size() {
+        return groups.size();
+    }
+
+    /**
+     * Whether the groups were collected from the cluster, false for the
+     * empty snapshot served when the cluster could not be read.
+     */
+    public boolean isCollected() {
+        return timestamp > 0;
+    }
+
+    public boolean isExpired(long ttl) {
+        return System.currentTimeMillis() - timestamp > ttl;
+    }
+
+}
@@ -0,0 +1,62 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.common.protocol.consumer;
+
+import org.apache.kafka.common.TopicPartition;
+import org.smartloli.kafka.eagle.common.protocol.BaseProtocol;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A consumer group member and the partitions assigned to it.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public class ConsumerMemberInfo extends BaseProtocol {
+    private String owner;
+    private String node;
+    private List<TopicPartition> partitions = new ArrayList<>();
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    public String getNode() {
+        return node;
+    }
+
+    public void setNode(String node) {
+        this.node = node;
+    }
+
+    public List<TopicPartition> getPartitions() {
+        return partitions;
+    }
+
+    public void setPartitions(List<TopicPartition> partitions) {
+        this.partitions = partitions;
+    }
+
+}
@@ -0,0 +1,91 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.common.tsdb;
+
+/**
+ * Largest-triangle-three-buckets downsampling of a chart line.
+ * <p>
+ * The first and last points are kept, the points between are split into
+ * buckets and the point of each bucket forming the largest triangle with the
+ * point kept before it and the average of the next bucket is kept, so peaks
+ * and drops survive the reduction.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public final class Downsampler {
+
+    private Downsampler() {
+    }
+
+    /**
+     * Indexes of the points to keep, in order, at most threshold of them. All
+     * indexes when the line already fits or the threshold is below 3.
+     */
+    public static int[] lttb(long[] x, double[] y, int threshold) {
+        int size = Math.min(x.length, y.length);
+        if (threshold >= size || threshold < 3) {
+            int[] all = new int[size];
+            for (int i = 0; i < size; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+        int[] sampled = new int[threshold];
+        int kept = 0;
+        sampled[kept++] = 0;
+        double every = (double) (size - 2) / (threshold - 2);
+        int a = 0;
+        for (int i = 0; i < threshold - 2; i++) {
+            int nextStart = (int) Math.floor((i + 1) * every) + 1;
+            int nextEnd = Math.min((int) Math.floor((i + 2) * every) + 1, size);
+            double avgX = 0.0;
+            double avgY = 0.0;
+            for (int j = nextStart; j < nextEnd; j++) {
+                avgX += x[j];
+                avgY += y[j];
+            }
+            int nextSize = nextEnd - nextStart;
+            if (nextSize > 0) {
+                avgX /= nextSize;
+                avgY /= nextSize;
+            } else {
+                avgX = x[size - 1];
+                avgY = y[size - 1];
+            }
+
+            int start = (int) Math.floor(i * every) + 1;
+            int end = (int) Math.floor((i + 1) * every) + 1;
+            double maxArea = -1.0;
+            int next = start;
+            for (int j = start; j < end; j++) {
+                double area = Math.abs((x[a] - avgX) * (y[j] - y[a]) - (x[a] - x[j]) * (avgY - y[a]));
+                if (area > maxArea) {
+                    maxArea = area;
+                    next = j;
+                }
+            }
+            sampled[kept++] = next;
+            a = next;
+        }
+        sampled[kept] = size - 1;
+        return sampled;
+    }
+
+}
@@ -0,0 +1,277 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.common.tsdb;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Compressed block of samples of one series, in the gorilla layout.
+ * <p>
+ * Timestamps are kept in whole seconds, rounded from the milliseconds they
+ * are given in, so the jitter of a collector sampling every minute stays in
+ * the smallest buckets. The first sample is written raw. Each next timestamp
+ * is written as the delta of its delta in a bucket of 1, 9, 12, 16 or 68
+ * bits, so samples at a steady interval cost one bit. Each next value is
+ * XORed with the previous one and only its meaningful bits are written,
+ * reusing the previous window of leading and trailing zeros when it fits.
+ * <p>
+ * Bytes already written never change except the last partial one, so the
+ * block can be appended to a file as it grows.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public final class GorillaBlock {
+
+    /** Milliseconds of the unit timestamps are kept in. */
+    public static final long SECOND = 1000L;
+
+    private final long unit;
+    private byte[] buffer = new byte[64];
+    private long bits = 0L;
+    private int count = 0;
+
+    private long prevTimestamp;
+    private long prevDelta;
+    private long prevValue;
+    private int prevLeading = -1;
+    private int prevTrailing = 0;
+
+    /**
+     * Samples consumed in order by {@link #decode}.
+     */
+    public interface SampleConsumer {
+        void accept(long timestamp, double value);
+    }
+
+    public GorillaBlock() {
+        this(SECOND);
+    }
+
+    GorillaBlock(long unit) {
+        this.unit = unit;
+    }
+
+    /**
+     * Append a sample, the timestamp in milliseconds is rounded to the unit
+     * of the block.
+     */
+    public void append(long timestamp, double value) {
+        timestamp = Math.floorDiv(timestamp + unit / 2, unit);
+        long valueBits = Double.doubleToRawLongBits(value);
+        if (count == 0) {
+            write(timestamp, 64);
+            write(valueBits, 64);
+            prevTimestamp = timestamp;
+            prevDelta = 0L;
+            prevValue = valueBits;
+            count++;
+            return;
+        }
+        long delta = timestamp - prevTimestamp;
+        long dod = delta - prevDelta;
+        if (dod == 0) {
+            write(0, 1);
+        } else if (fits(dod, 7)) {
+            write(0b10, 2);
+            write(dod, 7);
+        } else if (fits(dod, 9)) {
+            write(0b110, 3);
+            write(dod, 9);
+        } else if (fits(dod, 12)) {
+            write(0b1110, 4);
+            write(dod, 12);
+        } else {
+            write(0b1111, 4);
+            write(dod, 64);
+        }
+        prevTimestamp = timestamp;
+        prevDelta = delta;
+
+        long xor = valueBits ^ prevValue;
+        if (xor == 0) {
+            write(0, 1);
+        } else {
+            write(1, 1);
+            int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+            int trailing = Long.numberOfTrailingZeros(xor);
+            if (prevLeading >= 0 && leading >= prevLeading && trailing >= prevTrailing) {
+                write(0, 1);
+                write(xor >>> prevTrailing, 64 - prevLeading - prevTrailing);
+            } else {
+                int significant = 64 - leading - trailing;
+                write(1, 1);
+                write(leading, 5);
+                write(significant - 1, 6);
+                write(xor >>> trailing, significant);
+                prevLeading = leading;
+                prevTrailing = trailing;
+            }
+        }
+        prevValue = valueBits;
+        count++;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public long lastTimestamp() {
+        return prevTimestamp * unit;
+    }
+
+    public double lastValue() {
+        return Double.longBitsToDouble(prevValue);
+    }
+
+    /**
+     * Bits written so far.
+     */
+    public long bits() {
+        return bits;
+    }
+
+    /**
+     * Bytes holding the written bits, the last one may be partial.
+     */
+    public int length() {
+        return (int) ((bits + 7) >>> 3);
+    }
+
+    public byte[] bytes(int from) {
+        return Arrays.copyOfRange(buffer, from, length());
+    }
+
+    /**
+     * Decode the count samples of a block starting at the buffer position.
+     */
+    public static void decode(ByteBuffer data, int count, SampleConsumer consumer) {
+        decode(data, count, SECOND, consumer);
+    }
+
+    /**
+     * Decode the count samples of a block keeping its timestamps in the unit,
+     * the consumer gets them in milliseconds.
+     */
+    static void decode(ByteBuffer data, int count, long unit, SampleConsumer consumer) {
+        BitReader reader = new BitReader(data);
+        long timestamp = 0L;
+        long delta = 0L;
+        long value = 0L;
+        int leading = 0;
+        int trailing = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0) {
+                timestamp = reader.read(64);
+                value = reader.read(64);
+            } else {
+                long dod;
+                if (reader.read(1) == 0) {
+                    dod = 0;
+                } else if (reader.read(1) == 0) {
+                    dod = signed(reader.read(7), 7);
+                } else if (reader.read(1) == 0) {
+                    dod = signed(reader.read(9), 9);
+                } else if (reader.read(1) == 0) {
+                    dod = signed(reader.read(12), 12);
+                } else {
+                    dod = reader.read(64);
+                }
+                delta += dod;
+                timestamp += delta;
+                if (reader.read(1) == 1) {
+                    if (reader.read(1) == 1) {
+                        leading = (int) reader.read(5);
+                        int significant = (int) reader.read(6) + 1;
+                        trailing = 64 - leading - significant;
+                    }
+                    value ^= reader.read(64 - leading - trailing) << trailing;
+                }
+            }
+            consumer.accept(timestamp * unit, Double.longBitsToDouble(value));
+        }
+    }
+
+    /**
+     * Rebuild a block from its stored samples, so it can be appended to again.
+     */
+    public static GorillaBlock restore(ByteBuffer data, int count) {
+        return restore(data, count, SECOND);
+    }
+
+    /**
+     * Rebuild a block from samples stored with timestamps in the unit, the
+     * block keeps them in seconds.
+     */
+    static GorillaBlock restore(ByteBuffer data, int count, long unit) {
+        GorillaBlock block = new GorillaBlock();
+        decode(data, count, unit, block::append);
+        return block;
+    }
+
+    private static boolean fits(long value, int bits) {
+        long bound = 1L << (bits - 1);
+        return value >= -bound && value < bound;
+    }
+
+    private static long signed(long value, int bits) {
+        return (value << (64 - bits)) >> (64 - bits);
+    }
+
+    private void write(long value, int size) {
+        while (size > 0) {
+            int index = (int) (bits >>> 3);
+            if (index >= buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            int free = 8 - (int) (bits & 7);
+            int n = Math.min(free, size);
+            int chunk = (int) ((value >>> (size - n)) & ((1 << n) - 1));
+            buffer[index] |= (byte) (chunk << (free - n));
+            bits += n;
+            size -= n;
+        }
+    }
+
+    private static final class BitReader {
+        private final ByteBuffer data;
+        private final int offset;
+        private long position = 0L;
+
+        private BitReader(ByteBuffer data) {
+            this.data = data;
+            this.offset = data.position();
+        }
+
+        private long read(int size) {
+            long value = 0L;
+            while (size > 0) {
+                int available = 8 - (int) (position & 7);
+                int n = Math.min(available, size);
+                int current = data.get(offset + (int) (position >>> 3)) & 0xFF;
+                value = (value << n) | ((current >>> (available - n)) & ((1 << n) - 1));
+                position += n;
+                size -= n;
+            }
+            return value;
+        }
+    }
+
+}
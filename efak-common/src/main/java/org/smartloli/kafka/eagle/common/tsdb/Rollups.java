@@ -0,0 +1,296 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.common.tsdb;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pre-aggregated tiers of a series kept in a {@link TimeSeriesStore}.
+ * <p>
+ * The collectors sample every minute, so the raw series is the 1m tier. The
+ * 10m, 1h and 1d tiers are maintained as samples arrive: each series keeps
+ * the open bucket of every tier in memory and appends its min, max, avg and
+ * last of every field to the 'series@tier' block once a sample of the next
+ * bucket arrives. Buckets are aligned on the local day, so a bucket never
+ * spans two day blocks. The open buckets are lost on restart and can be
+ * refilled by replaying the raw samples after {@link #resume}.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public final class Rollups {
+
+    public static final int MIN = 0;
+    public static final int MAX = 1;
+    public static final int AVG = 2;
+    public static final int LAST = 3;
+    public static final int AGGREGATES = 4;
+
+    private static final String SEPARATOR = "@";
+    private static final long RAW_INTERVAL = 60 * 1000L;
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    /**
+     * A tier is picked when the range holds at most this many of its buckets
+     * per requested point, leaving the downsampler room to keep the shape.
+     */
+    private static final int OVERSAMPLE = 4;
+
+    public static final Tier[] TIERS = {new Tier("10m", 10 * 60 * 1000L), new Tier("1h", 60 * 60 * 1000L), new Tier("1d", DAY)};
+
+    private final TimeSeriesStore store;
+    private final Map<String, OpenSeries> open = new ConcurrentHashMap<>();
+
+    /**
+     * Buckets consumed in order by {@link #scan}, aggregates holds
+     * {@link #AGGREGATES} values per field, indexed by field * AGGREGATES +
+     * aggregate.
+     */
+    public interface BucketConsumer {
+        void accept(long timestamp, double[] aggregates);
+    }
+
+    public Rollups(TimeSeriesStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Whether samples were added to the series since start.
+     */
+    public boolean isOpen(String series) {
+        return open.containsKey(series);
+    }
+
+    /**
+     * Skip in every tier the samples of buckets already flushed, so the raw
+     * samples of a series can be replayed after a restart.
+     */
+    public void resume(String series) throws IOException {
+        OpenSeries resumed = new OpenSeries();
+        for (int i = 0; i < TIERS.length; i++) {
+            Tier tier = TIERS[i];
+            int index = i;
+            store.last(series(series, tier), (timestamp, value) -> resumed.floors[index] = timestamp + tier.width);
+        }
+        open.putIfAbsent(series, resumed);
+    }
+
+    /**
+     * Add a sample of every field of the series, samples older than the open
+     * bucket of a tier are ignored by that tier.
+     */
+    public void add(String series, String day, long timestamp, double... values) throws IOException {
+        OpenSeries state = open.computeIfAbsent(series, k -> new OpenSeries());
+        synchronized (state) {
+            Bucket[] buckets = state.buckets;
+            for (int i = 0; i < TIERS.length; i++) {
+                long start = TIERS[i].start(timestamp);
+                Bucket bucket = buckets[i];
+                if (bucket != null ? start < bucket.start : start < state.floors[i]) {
+                    continue;
+                }
+                if (bucket == null || start > bucket.start) {
+                    if (bucket != null) {
+                        flush(series, TIERS[i], bucket);
+                    }
+                    bucket = new Bucket(start, day, values.length);
+                    buckets[i] = bucket;
+                }
+                bucket.add(values);
+            }
+        }
+    }
+
+    /**
+     * Read the buckets of a tier between the days, both inclusive, the open
+     * bucket included.
+     */
+    public void scan(String series, Tier tier, String fromDay, String toDay, int fields, BucketConsumer consumer) throws IOException {
+        int width = fields * AGGREGATES;
+        double[] aggregates = new double[width];
+        int[] filled = new int[1];
+        long[] group = new long[1];
+        store.scan(series(series, tier), fromDay, toDay, (timestamp, value) -> {
+            if (filled[0] > 0 && timestamp != group[0]) {
+                // a bucket cut short by a crash while it was flushed
+                filled[0] = 0;
+            }
+            group[0] = timestamp;
+            aggregates[filled[0]++] = value;
+            if (filled[0] == width) {
+                consumer.accept(timestamp, aggregates.clone());
+                filled[0] = 0;
+            }
+        });
+        OpenSeries state = open.get(series);
+        if (state == null) {
+            return;
+        }
+        long start;
+        double[] current = null;
+        synchronized (state) {
+            Bucket bucket = state.buckets[index(tier)];
+            start = bucket == null ? 0L : bucket.start;
+            if (bucket != null && bucket.count > 0 && bucket.fields == fields && bucket.day.compareTo(fromDay) >= 0 && bucket.day.compareTo(toDay) <= 0) {
+                current = bucket.aggregates();
+            }
+        }
+        if (current != null) {
+            consumer.accept(start, current);
+        }
+    }
+
+    /**
+     * Tier to read for a range of days drawn with the points, null when the
+     * raw samples fit.
+     */
+    public static Tier tier(String fromDay, String toDay, int points) {
+        long range;
+        try {
+            SimpleDateFormat format = new SimpleDateFormat("yyyyMMdd");
+            range = format.parse(toDay).getTime() - format.parse(fromDay).getTime() + DAY;
+        } catch (ParseException e) {
+            return null;
+        }
+        long budget = (long) Math.max(1, points) * OVERSAMPLE;
+        if (range / RAW_INTERVAL <= budget) {
+            return null;
+        }
+        for (Tier tier : TIERS) {
+            if (range / tier.width <= budget) {
+                return tier;
+            }
+        }
+        return TIERS[TIERS.length - 1];
+    }
+
+    public static String series(String series, Tier tier) {
+        return series + SEPARATOR + tier.name;
+    }
+
+    /**
+     * Whether a stored series name is a tier of another series.
+     */
+    public static boolean isRollup(String name) {
+        return name.contains(SEPARATOR);
+    }
+
+    private void flush(String series, Tier tier, Bucket bucket) throws IOException {
+        if (bucket.count == 0) {
+            return;
+        }
+        String name = series(series, tier);
+        for (double aggregate : bucket.aggregates()) {
+            store.append(name, bucket.day, bucket.start, aggregate);
+        }
+    }
+
+    private static int index(Tier tier) {
+        for (int i = 0; i < TIERS.length; i++) {
+            if (TIERS[i] == tier) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown rollup tier[" + tier.name + "].");
+    }
+
+    public static final class Tier {
+        private final String name;
+        private final long width;
+
+        private Tier(String name, long width) {
+            this.name = name;
+            this.width = width;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getWidth() {
+            return width;
+        }
+
+        /**
+         * Start of the bucket holding the timestamp, in local time.
+         */
+        public long start(long timestamp) {
+            long offset = TimeZone.getDefault().getOffset(timestamp);
+            return timestamp - Math.floorMod(timestamp + offset, width);
+        }
+    }
+
+    private static final class OpenSeries {
+        private final Bucket[] buckets = new Bucket[TIERS.length];
+        private final long[] floors = new long[TIERS.length];
+
+        private OpenSeries() {
+            Arrays.fill(floors, Long.MIN_VALUE);
+        }
+    }
+
+    private static final class Bucket {
+        private final long start;
+        private final String day;
+        private final int fields;
+        private final double[] min;
+        private final double[] max;
+        private final double[] sum;
+        private final double[] last;
+        private int count = 0;
+
+        private Bucket(long start, String day, int fields) {
+            this.start = start;
+            this.day = day;
+            this.fields = fields;
+            this.min = new double[fields];
+            this.max = new double[fields];
+            this.sum = new double[fields];
+            this.last = new double[fields];
+        }
+
+        private void add(double[] values) {
+            for (int i = 0; i < fields && i < values.length; i++) {
+                min[i] = count == 0 ? values[i] : Math.min(min[i], values[i]);
+                max[i] = count == 0 ? values[i] : Math.max(max[i], values[i]);
+                sum[i] += values[i];
+                last[i] = values[i];
+            }
+            count++;
+        }
+
+        private double[] aggregates() {
+            double[] aggregates = new double[fields * AGGREGATES];
+            for (int i = 0; i < fields; i++) {
+                aggregates[i * AGGREGATES + MIN] = min[i];
+                aggregates[i * AGGREGATES + MAX] = max[i];
+                aggregates[i * AGGREGATES + AVG] = sum[i] / count;
+                aggregates[i * AGGREGATES + LAST] = last[i];
+            }
+            return aggregates;
+        }
+    }
+
+}
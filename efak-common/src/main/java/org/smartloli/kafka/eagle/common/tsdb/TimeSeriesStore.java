@@ -0,0 +1,382 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.common.tsdb;
+
+import org.smartloli.kafka.eagle.common.tsdb.GorillaBlock.SampleConsumer;
+import org.smartloli.kafka.eagle.common.util.LoggerUtils;
+import org.smartloli.kafka.eagle.common.util.SystemConfigUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Embedded file-backed store of metric series.
+ * <p>
+ * Every series holds one {@link GorillaBlock} per day in
+ * '[dir]/[yyyyMMdd]/[series].blk', a 16 bytes header of magic, sample count
+ * and bit length followed by the compressed samples. Blocks written with
+ * millisecond timestamps before they were kept in seconds are still read,
+ * and rewritten in seconds when appended to. The block of the day
+ * being written stays in memory and only its new bytes are written on each
+ * append, blocks of past days are read through a read only mapping. Retention
+ * deletes whole day directories.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public final class TimeSeriesStore {
+
+    private static final int MAGIC = 0x45545353;
+    private static final int MAGIC_MILLIS = 0x45545344;
+    private static final int HEADER = 16;
+    private static final String SUFFIX = ".blk";
+    private static final String ENCODING = "UTF-8";
+
+    private final File root;
+    private final Map<String, Head> heads = new ConcurrentHashMap<>();
+
+    private static class StoreHolder {
+        private static final TimeSeriesStore INSTANCE = new TimeSeriesStore(new File(SystemConfigUtils.getProperty("efak.metrics.tsdb.dir", System.getProperty("user.dir") + "/data/tsdb")));
+    }
+
+    public static TimeSeriesStore getInstance() {
+        return StoreHolder.INSTANCE;
+    }
+
+    TimeSeriesStore(File root) {
+        this.root = root;
+    }
+
+    /**
+     * Whether the store directory exists or can be created and written.
+     */
+    public boolean open() {
+        return (root.isDirectory() || root.mkdirs()) && root.canWrite();
+    }
+
+    public File getRoot() {
+        return root;
+    }
+
+    /**
+     * Append a sample to the block of the series for the day.
+     */
+    public void append(String series, String day, long timestamp, double value) throws IOException {
+        Head head = head(series, day);
+        synchronized (head) {
+            if (head.channel == null) {
+                // dropped or rolled over while waiting, take the current one
+                append(series, day, timestamp, value);
+                return;
+            }
+            head.block.append(timestamp, value);
+            write(head.channel, ByteBuffer.wrap(head.block.bytes(head.durable)), HEADER + head.durable);
+            write(head.channel, header(head.block.count(), head.block.bits()), 0);
+            head.durable = (int) (head.block.bits() >>> 3);
+        }
+    }
+
+    /**
+     * Read the samples of the series from the first day to the last one, both
+     * inclusive, in day order.
+     */
+    public void scan(String series, String fromDay, String toDay, SampleConsumer consumer) throws IOException {
+        for (String day : days()) {
+            if (day.compareTo(fromDay) >= 0 && day.compareTo(toDay) <= 0) {
+                read(series, day, consumer);
+            }
+        }
+    }
+
+    /**
+     * Read the latest sample of the series, false when it has none.
+     */
+    public boolean last(String series, SampleConsumer consumer) throws IOException {
+        List<String> days = days();
+        for (int i = days.size() - 1; i >= 0; i--) {
+            Head head = heads.get(series);
+            if (head != null && head.day.equals(days.get(i))) {
+                long timestamp;
+                double value;
+                synchronized (head) {
+                    if (head.block.count() == 0) {
+                        continue;
+                    }
+                    timestamp = head.block.lastTimestamp();
+                    value = head.block.lastValue();
+                }
+                consumer.accept(timestamp, value);
+                return true;
+            }
+            long[] last = new long[3];
+            read(series, days.get(i), (timestamp, value) -> {
+                last[0] = 1L;
+                last[1] = timestamp;
+                last[2] = Double.doubleToRawLongBits(value);
+            });
+            if (last[0] == 1L) {
+                consumer.accept(last[1], Double.longBitsToDouble(last[2]));
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Names of the series starting with the prefix stored between the days,
+     * both inclusive.
+     */
+    public Set<String> series(String prefix, String fromDay, String toDay) {
+        Set<String> series = new TreeSet<>();
+        for (String day : days()) {
+            if (day.compareTo(fromDay) < 0 || day.compareTo(toDay) > 0) {
+                continue;
+            }
+            String[] files = new File(root, day).list();
+            if (files == null) {
+                continue;
+            }
+            for (String file : files) {
+                if (file.endsWith(SUFFIX)) {
+                    String name = decode(file.substring(0, file.length() - SUFFIX.length()));
+                    if (name.startsWith(prefix)) {
+                        series.add(name);
+                    }
+                }
+            }
+        }
+        return series;
+    }
+
+    /**
+     * Days holding blocks, in order.
+     */
+    public List<String> days() {
+        List<String> days = new ArrayList<>();
+        String[] names = root.list();
+        if (names != null) {
+            for (String name : names) {
+                if (name.length() == 8 && name.chars().allMatch(Character::isDigit)) {
+                    days.add(name);
+                }
+            }
+        }
+        Collections.sort(days);
+        return days;
+    }
+
+    /**
+     * Delete the blocks of every day up to the given one inclusive, returns the
+     * number of days dropped.
+     */
+    public synchronized int dropThrough(String day) {
+        int dropped = 0;
+        for (String name : days()) {
+            if (name.compareTo(day) > 0) {
+                continue;
+            }
+            for (Iterator<Head> it = heads.values().iterator(); it.hasNext(); ) {
+                Head head = it.next();
+                if (head.day.equals(name)) {
+                    it.remove();
+                    head.close();
+                }
+            }
+            File dir = new File(root, name);
+            File[] files = dir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    if (!file.delete()) {
+                        LoggerUtils.print(this.getClass()).warn("Drop tsdb block[" + file + "] failed.");
+                    }
+                }
+            }
+            if (dir.delete()) {
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+
+    private void read(String series, String day, SampleConsumer consumer) throws IOException {
+        Head head = heads.get(series);
+        if (head != null && head.day.equals(day)) {
+            byte[] bytes;
+            int count;
+            synchronized (head) {
+                bytes = head.block.bytes(0);
+                count = head.block.count();
+            }
+            GorillaBlock.decode(ByteBuffer.wrap(bytes), count, consumer);
+            return;
+        }
+        File file = file(series, day);
+        if (!file.isFile()) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER) {
+                return;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            long unit = unit(buffer.getInt(0));
+            if (unit <= 0) {
+                LoggerUtils.print(this.getClass()).warn("Skip tsdb block[" + file + "] with a bad magic.");
+                return;
+            }
+            int count = buffer.getInt(4);
+            buffer.position(HEADER);
+            GorillaBlock.decode(buffer, count, unit, consumer);
+        }
+    }
+
+    private Head head(String series, String day) throws IOException {
+        Head head = heads.get(series);
+        if (head != null && head.day.equals(day)) {
+            return head;
+        }
+        synchronized (this) {
+            head = heads.get(series);
+            if (head != null && head.day.equals(day)) {
+                return head;
+            }
+            Head opened = openHead(series, day);
+            heads.put(series, opened);
+            if (head != null) {
+                head.close();
+            }
+            return opened;
+        }
+    }
+
+    private Head openHead(String series, String day) throws IOException {
+        File dir = new File(root, day);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Create tsdb directory[" + dir + "] failed.");
+        }
+        File file = file(series, day);
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        GorillaBlock block = new GorillaBlock();
+        try {
+            if (channel.size() >= HEADER) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                long unit = unit(buffer.getInt(0));
+                if (unit == GorillaBlock.SECOND) {
+                    int count = buffer.getInt(4);
+                    buffer.position(HEADER);
+                    block = GorillaBlock.restore(buffer, count);
+                } else if (unit > 0) {
+                    int count = buffer.getInt(4);
+                    buffer.position(HEADER);
+                    block = GorillaBlock.restore(buffer, count, unit);
+                    LoggerUtils.print(this.getClass()).info("Rewrite tsdb block[" + file + "] in seconds.");
+                    channel.truncate(0);
+                    write(channel, ByteBuffer.wrap(block.bytes(0)), HEADER);
+                } else {
+                    LoggerUtils.print(this.getClass()).warn("Reset tsdb block[" + file + "] with a bad magic.");
+                    channel.truncate(0);
+                }
+            }
+            // bytes past the restored bits are leftovers of an interrupted append
+            channel.truncate(HEADER + block.length());
+            write(channel, header(block.count(), block.bits()), 0);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return new Head(day, block, channel);
+    }
+
+    private File file(String series, String day) {
+        try {
+            return new File(new File(root, day), URLEncoder.encode(series, ENCODING) + SUFFIX);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String decode(String name) {
+        try {
+            return URLDecoder.decode(name, ENCODING);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Unit of the timestamps of a block with the magic, 0 for a bad magic.
+     */
+    private static long unit(int magic) {
+        if (magic == MAGIC) {
+            return GorillaBlock.SECOND;
+        }
+        return magic == MAGIC_MILLIS ? 1L : 0L;
+    }
+
+    private static ByteBuffer header(int count, long bits) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        header.putInt(MAGIC).putInt(count).putLong(bits);
+        header.flip();
+        return header;
+    }
+
+    private static void write(FileChannel channel, ByteBuffer data, long position) throws IOException {
+        while (data.hasRemaining()) {
+            position += channel.write(data, position);
+        }
+    }
+
+    /**
+     * Block of the day being written for one series.
+     */
+    private static final class Head {
+        private final String day;
+        private final GorillaBlock block;
+        private FileChannel channel;
+        private int durable;
+
+        private Head(String day, GorillaBlock block, FileChannel channel) {
+            this.day = day;
+            this.block = block;
+            this.channel = channel;
+            this.durable = (int) (block.bits() >>> 3);
+        }
+
+        private synchronized void close() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    LoggerUtils.print(TimeSeriesStore.class).warn("Close tsdb block of day[" + day + "] has error, msg is " + e.getMessage());
+                }
+                channel = null;
+            }
+        }
+    }
+
+}
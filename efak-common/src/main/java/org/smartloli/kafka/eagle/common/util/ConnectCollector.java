@@ -0,0 +1,117 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.common.util;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Reads every connector of a kafka connect cluster with its status and info
+ * in one request to '/connectors?expand=status&amp;expand=info', the result
+ * is keyed by connector name as the rest api returns it. Workers older than
+ * the expand parameter list names only, their connectors are then read with
+ * one status and one config request each, all in flight at once on the
+ * {@link PooledHttpClient}.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public final class ConnectCollector {
+
+    private ConnectCollector() {
+    }
+
+    /**
+     * The connect uri ending with a slash.
+     */
+    public static String base(String uri) {
+        return uri.endsWith("/") ? uri : uri + "/";
+    }
+
+    /**
+     * Uri of a connector of the connect cluster.
+     */
+    public static String connector(String uri, String connector) {
+        try {
+            return base(uri) + "connectors/" + URLEncoder.encode(connector, "UTF-8").replace("+", "%20");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Read the connectors and wait for them, as the connect cache loads them.
+     */
+    public static JSONObject collect(String uri) throws Exception {
+        try {
+            return collectAsync(uri).get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    /**
+     * Read the connectors in the background, the future fails when the
+     * connect cluster can not be read.
+     */
+    public static CompletableFuture<JSONObject> collectAsync(String uri) {
+        String base = base(uri);
+        return PooledHttpClient.getInstance().getAsync(base + "connectors?expand=status&expand=info").thenCompose(body -> {
+            Object connectors = JSON.parse(body);
+            if (connectors instanceof JSONObject) {
+                return CompletableFuture.completedFuture((JSONObject) connectors);
+            }
+            return expand(base, connectors instanceof JSONArray ? (JSONArray) connectors : new JSONArray());
+        });
+    }
+
+    private static CompletableFuture<JSONObject> expand(String base, JSONArray names) {
+        PooledHttpClient client = PooledHttpClient.getInstance();
+        JSONObject connectors = new JSONObject();
+        List<CompletableFuture<Void>> requests = new ArrayList<>();
+        for (Object name : names) {
+            String connector = String.valueOf(name);
+            String path = connector(base, connector);
+            // a connector removed or failing meanwhile keeps a null status or config
+            CompletableFuture<Object> status = client.getAsync(path + "/status").thenApply(body -> JSON.parse(body)).exceptionally(e -> null);
+            CompletableFuture<Object> config = client.getAsync(path + "/config").thenApply(body -> JSON.parse(body)).exceptionally(e -> null);
+            requests.add(status.thenAcceptBoth(config, (statusJson, configJson) -> {
+                JSONObject info = new JSONObject();
+                info.put("name", connector);
+                info.put("config", configJson);
+                JSONObject expanded = new JSONObject();
+                expanded.put("status", statusJson);
+                expanded.put("info", info);
+                synchronized (connectors) {
+                    connectors.put(connector, expanded);
+                }
+            }));
+        }
+        return CompletableFuture.allOf(requests.toArray(new CompletableFuture[0])).thenApply(done -> connectors);
+    }
+
+}
@@ -17,23 +17,19 @@
  */
 package org.smartloli.kafka.eagle.common.util;
 
-import org.apache.http.HttpEntity;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
-import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
 import org.apache.http.message.BasicNameValuePair;
 import org.apache.http.protocol.HTTP;
-import org.apache.http.util.EntityUtils;
 
 import java.util.List;
 
 /**
- * Request http client,such as get or post etc.
+ * Request http client,such as get or post etc. Requests share the pooled
+ * connections of {@link PooledHttpClient}.
  *
  * @author smartloli.
  * <p>
@@ -52,27 +48,11 @@ public class HttpClientUtils {
      */
     public static String doGet(String uri) {
         String result = "";
-        CloseableHttpClient client = null;
-        CloseableHttpResponse response = null;
         try {
             HttpGet httpGet = new HttpGet(uri);
-            client = HttpClients.createDefault();
-            response = client.execute(httpGet);
-            HttpEntity entity = response.getEntity();
-            result = EntityUtils.toString(entity);
+            result = PooledHttpClient.getInstance().execute(httpGet);
         } catch (Exception e) {
             LoggerUtils.print(HttpClientUtils.class).error("Do get request has error, msg is ", e);
-        } finally {
-            try {
-                if (response != null) {
-                    response.close();
-                }
-                if (client != null) {
-                    client.close();
-                }
-            } catch (Exception e) {
-                LoggerUtils.print(HttpClientUtils.class).error("Release get httpclient request has error, msg is ", e);
-            }
         }
         return result;
     }
@@ -87,28 +67,12 @@ public class HttpClientUtils {
      */
     public static String doPostForm(String uri, List<BasicNameValuePair> parames) {
         String result = "";
-        CloseableHttpClient client = null;
-        CloseableHttpResponse response = null;
         try {
             HttpPost httpPost = new HttpPost(uri);
             httpPost.setEntity(new UrlEncodedFormEntity(parames, "UTF-8"));
-            client = HttpClients.createDefault();
-            response = client.execute(httpPost);
-            HttpEntity entity = response.getEntity();
-            result = EntityUtils.toString(entity);
+            result = PooledHttpClient.getInstance().execute(httpPost);
         } catch (Exception e) {
             LoggerUtils.print(HttpClientUtils.class).error("Do post form request has error, msg is ", e);
-        } finally {
-            try {
-                if (response != null) {
-                    response.close();
-                }
-                if (client != null) {
-                    client.close();
-                }
-            } catch (Exception e) {
-                LoggerUtils.print(HttpClientUtils.class).error("Release post httpclient request has error, msg is ", e);
-            }
         }
         return result;
     }
@@ -120,29 +84,13 @@ public class HttpClientUtils {
      */
     public static String doPostJson(String uri, String data) {
         String result = "";
-        CloseableHttpClient client = null;
-        CloseableHttpResponse response = null;
         try {
             HttpPost httpPost = new HttpPost(uri);
             httpPost.setHeader(HTTP.CONTENT_TYPE, "application/json");
             httpPost.setEntity(new StringEntity(data, ContentType.create("text/json", "UTF-8")));
-            client = HttpClients.createDefault();
-            response = client.execute(httpPost);
-            HttpEntity entity = response.getEntity();
-            result = EntityUtils.toString(entity);
+            result = PooledHttpClient.getInstance().execute(httpPost);
         } catch (Exception e) {
             LoggerUtils.print(HttpClientUtils.class).error("Do post json request has error, msg is ", e);
-        } finally {
-            try {
-                if (response != null) {
-                    response.close();
-                }
-                if (client != null) {
-                    client.close();
-                }
-            } catch (Exception e) {
-                LoggerUtils.print(HttpClientUtils.class).error("Release post json request has error, msg is ", e);
-            }
         }
         return result;
     }
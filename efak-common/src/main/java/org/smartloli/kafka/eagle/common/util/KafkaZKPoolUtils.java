@@ -17,20 +17,29 @@
  */
 package org.smartloli.kafka.eagle.common.util;
 
+import com.alibaba.fastjson.JSONObject;
 import kafka.zk.KafkaZkClient;
 import org.apache.kafka.common.security.JaasUtils;
 import org.apache.kafka.common.utils.Time;
-import org.smartloli.kafka.eagle.common.util.KConstants.OperateSystem;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * KafkaZkClient pool utils.
  * <p>
+ * Every cluster has its own pool: idle clients wait in a concurrent deque and
+ * a semaphore bounds the clients in use to 'kafka.zk.limit.size', so clusters
+ * never wait on each other and borrowing takes no monitor. Clients are
+ * created on first demand, an unreachable ensemble no longer delays the
+ * startup. A borrow waits at most 'efak.zk.pool.borrow.timeout.ms' and fails
+ * then, a client kept longer than 'efak.zk.pool.leak.ms' is reported, with the
+ * stack of its borrower when 'efak.zk.pool.leak.trace' is enabled, and a leak
+ * threshold of 0 turns the detection off. Prefer {@link #lease} in a try-with-resources block
+ * over {@link #getZkClient} and {@link #release}.
+ * <p>
  * Settings prefixed with 'kafka.eagle.' will be deprecated, use 'efak.' instead.
  *
  * @author smartloli.
@@ -43,64 +52,28 @@ public final class KafkaZKPoolUtils {
     /**
      * Zookeeper client connection pool.
      */
-    private static Map<String, List<KafkaZkClient>> zkCliPools = new HashMap<>();
+    private static final Map<String, ClusterPool> zkCliPools = new ConcurrentHashMap<>();
     /**
      * Set pool max size.
      */
-    private static int zkCliPoolSize = SystemConfigUtils.getIntProperty("kafka.zk.limit.size");
-
-    private static Map<String, String> clusterAliass = new HashMap<>();
+    private static final int zkCliPoolSize = Math.max(1, SystemConfigUtils.getIntProperty("kafka.zk.limit.size"));
+    private static final long borrowTimeout = SystemConfigUtils.getLongProperty("efak.zk.pool.borrow.timeout.ms", 10000L);
+    private static final long leakThreshold = SystemConfigUtils.getLongProperty("efak.zk.pool.leak.ms", 120000L);
+    /**
+     * Capture the borrower stack on every borrow, only for hunting a leak.
+     */
+    private static final boolean leakTrace = leakThreshold > 0 && SystemConfigUtils.getBooleanProperty("efak.zk.pool.leak.trace");
 
     public static final int ZK_CONNECTION_TIMEOUT_MS = 30_000;
     public static final int ZK_SESSION_TIMEOUT_MS = 30_000;
     private static final String METRIC_GROUP_NAME = "topic-management-service";
 
-    private static String errorMessageByZookeeper = "Get pool,and available size [{}]";
-    private static String releaseMessageByZookeeper = "Release pool,and available size [{}]";
-
-    /** Init ZkClient pool numbers. */
-    static {
-        for (String clusterAlias : SystemConfigUtils.getPropertyArray("efak.zk.cluster.alias", ",")) {
-            clusterAliass.put(clusterAlias, SystemConfigUtils.getProperty(clusterAlias + ".zk.list"));
-        }
-        for (Entry<String, String> entry : clusterAliass.entrySet()) {
-            List<KafkaZkClient> zkCliPool = new ArrayList<>(zkCliPoolSize);
-            KafkaZkClient zkc = null;
-            for (int i = 0; i < zkCliPoolSize; i++) {
-                try {
-                    zkc = KafkaZkClient.apply(entry.getValue(), JaasUtils.isZkSecurityEnabled(), ZK_SESSION_TIMEOUT_MS, ZK_CONNECTION_TIMEOUT_MS, Integer.MAX_VALUE, Time.SYSTEM, METRIC_GROUP_NAME, "SessionExpireListener");
-                    if (zkc != null) {
-                        if (SystemConfigUtils.getBooleanProperty(entry.getKey() + ".zk.acl.enable")) {
-                            String schema = SystemConfigUtils.getProperty(entry.getKey() + ".zk.acl.schema");
-                            String username = SystemConfigUtils.getProperty(entry.getKey() + ".zk.acl.username");
-                            String password = SystemConfigUtils.getProperty(entry.getKey() + ".zk.acl.password");
-                            try {
-                                zkc.currentZooKeeper().addAuthInfo(schema, (username + ":" + password).getBytes());
-                            } catch (Exception e) {
-                                LoggerUtils.print(KafkaZKPoolUtils.class).error("ClusterAlias[" + entry.getKey() + "] add acl has error, msg is ", e);
-                            }
-                        }
-                        zkCliPool.add(zkc);
-                    }
-                } catch (Exception e) {
-                    LoggerUtils.print(KafkaZKPoolUtils.class).error("Error initializing zookeeper, msg is ", e);
-                }
-            }
-            zkCliPools.put(entry.getKey(), zkCliPool);
-        }
-
-        LoggerUtils.print(KafkaZKPoolUtils.class).info("Init ZkClient object.");
-
-    }
-
     /**
      * Get current unused zkclient object.
      */
     public static int getZkCliPoolSize(String cluster) {
-        if (zkCliPools.containsKey(cluster)) {
-            return zkCliPools.get(cluster).size();
-        }
-        return 0;
+        ClusterPool pool = zkCliPools.get(cluster);
+        return pool == null ? zkCliPoolSize : pool.permits.availablePermits();
     }
 
     /**
@@ -114,59 +87,129 @@ public final class KafkaZKPoolUtils {
     }
 
     /**
-     * Reback pool one of ZkClient object.
+     * Borrow a client of the cluster, released when the lease is closed.
      */
-    public synchronized KafkaZkClient getZkClient(String clusterAlias) {
-        List<KafkaZkClient> zkCliPool = zkCliPools.get(clusterAlias);
-        KafkaZkClient zkc = null;
-        try {
-            if (!zkCliPool.isEmpty()) {
-                zkc = zkCliPool.get(0);
-                zkCliPool.remove(0);
-                String osName = System.getProperties().getProperty(OperateSystem.OS_NAME.getValue());
-                if (osName.contains(OperateSystem.LINUX.getValue())) {
-                    LoggerUtils.print(KafkaZKPoolUtils.class).debug(errorMessageByZookeeper, zkCliPool.size());
-                } else {
-                    // LoggerUtils.print(KafkaZKPoolUtils.class).info(errorMessageByZookeeper, zkCliPool.size());
-                }
-            } else {
-                LoggerUtils.print(KafkaZKPoolUtils.class).info("ZkClient is empty.");
-                for (int i = 0; i < zkCliPoolSize; i++) {
-                    zkc = KafkaZkClient.apply(clusterAliass.get(clusterAlias), JaasUtils.isZkSecurityEnabled(), ZK_SESSION_TIMEOUT_MS, ZK_CONNECTION_TIMEOUT_MS, Integer.MAX_VALUE, Time.SYSTEM, METRIC_GROUP_NAME, "SessionExpireListener");
-                    if (zkc != null) {
-                        zkCliPool.add(zkc);
-                    }
-                }
+    public ZkLease lease(String clusterAlias) {
+        return new ZkLease(pool(clusterAlias), borrow(clusterAlias));
+    }
 
-                zkc = zkCliPool.get(0);
-                zkCliPool.remove(0);
-                String osName = System.getProperties().getProperty(OperateSystem.OS_NAME.getValue());
-                if (osName.contains(OperateSystem.LINUX.getValue())) {
-                    LoggerUtils.print(KafkaZKPoolUtils.class).debug(errorMessageByZookeeper, zkCliPool.size());
-                } else {
-                    LoggerUtils.print(KafkaZKPoolUtils.class).warn(errorMessageByZookeeper, zkCliPool.size());
-                }
-            }
+    /**
+     * Reback pool one of ZkClient object, null when none is available within
+     * the borrow timeout.
+     */
+    public KafkaZkClient getZkClient(String clusterAlias) {
+        try {
+            return borrow(clusterAlias);
         } catch (Exception e) {
-            LoggerUtils.print(KafkaZKPoolUtils.class).error("Error initializing zookeeper, msg is ", e);
-            LoggerUtils.print(KafkaZKPoolUtils.class).error("Kafka cluster[" + clusterAlias + ".zk.list] address has null.");
+            LoggerUtils.print(KafkaZKPoolUtils.class).error("Get zkclient of cluster[" + clusterAlias + "] has error, msg is ", e);
+            return null;
         }
-        return zkc;
     }
 
     /**
      * Release ZkClient object.
      */
-    public synchronized void release(String clusterAlias, KafkaZkClient zkc) {
-        List<KafkaZkClient> zkCliPool = zkCliPools.get(clusterAlias);
-        if (zkCliPool != null && zkCliPool.size() < zkCliPoolSize) {
-            zkCliPool.add(zkc);
+    public void release(String clusterAlias, KafkaZkClient zkc) {
+        ClusterPool pool = zkCliPools.get(clusterAlias);
+        if (pool != null && zkc != null) {
+            pool.release(zkc);
+        }
+    }
+
+    /**
+     * Borrow and leak counters of every cluster pool.
+     */
+    public JSONObject getMetrics() {
+        JSONObject metrics = new JSONObject();
+        for (Map.Entry<String, ClusterPool> entry : zkCliPools.entrySet()) {
+            ClusterPool pool = entry.getValue();
+            JSONObject object = new JSONObject();
+            object.put("limit", zkCliPoolSize);
+            object.put("active", pool.borrowed.size());
+            object.put("idle", pool.idle.size());
+            object.put("created", pool.created.sum());
+            object.put("borrows", pool.borrows.sum());
+            object.put("borrowTimeouts", pool.timeouts.sum());
+            long borrows = pool.borrows.sum();
+            object.put("borrowWaitAvgMs", borrows == 0 ? 0L : TimeUnit.NANOSECONDS.toMillis(pool.waited.sum() / borrows));
+            object.put("borrowWaitMaxMs", TimeUnit.NANOSECONDS.toMillis(pool.maxWait.get()));
+            object.put("leaks", pool.leaks.sum());
+            metrics.put(entry.getKey(), object);
+        }
+        return metrics;
+    }
+
+    private KafkaZkClient borrow(String clusterAlias) {
+        ClusterPool pool = pool(clusterAlias);
+        long start = System.nanoTime();
+        try {
+            if (!pool.permits.tryAcquire(borrowTimeout, TimeUnit.MILLISECONDS)) {
+                pool.timeouts.increment();
+                throw new IllegalStateException("No zkclient of cluster[" + clusterAlias + "] released within " + borrowTimeout + "ms, " + pool.borrowed.size() + " in use.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting a zkclient of cluster[" + clusterAlias + "].", e);
+        }
+        long waited = System.nanoTime() - start;
+        pool.borrows.increment();
+        pool.waited.add(waited);
+        pool.maxWait.accumulateAndGet(waited, Math::max);
+        KafkaZkClient zkc = pool.idle.pollFirst();
+        if (zkc == null) {
+            try {
+                zkc = create(clusterAlias);
+                pool.created.increment();
+            } catch (RuntimeException e) {
+                pool.permits.release();
+                throw e;
+            }
+        }
+        pool.borrowed.put(zkc, new Borrow());
+        return zkc;
+    }
+
+    private static ClusterPool pool(String clusterAlias) {
+        return zkCliPools.computeIfAbsent(clusterAlias, k -> new ClusterPool());
+    }
+
+    private static KafkaZkClient create(String clusterAlias) {
+        String zkList = SystemConfigUtils.getProperty(clusterAlias + ".zk.list");
+        if (StrUtils.isNull(zkList)) {
+            throw new IllegalArgumentException("Kafka cluster[" + clusterAlias + ".zk.list] address has null.");
         }
-        String osName = System.getProperties().getProperty(OperateSystem.OS_NAME.getValue());
-        if (osName.contains(OperateSystem.LINUX.getValue())) {
-            LoggerUtils.print(KafkaZKPoolUtils.class).debug(releaseMessageByZookeeper, (zkCliPool == null ? 0 : zkCliPool.size()));
-        } else {
-//            LoggerUtils.print(KafkaZKPoolUtils.class).info(releaseMessageByZookeeper, (zkCliPool == null ? 0 : zkCliPool.size()));
+        KafkaZkClient zkc = KafkaZkClient.apply(zkList, JaasUtils.isZkSecurityEnabled(), ZK_SESSION_TIMEOUT_MS, ZK_CONNECTION_TIMEOUT_MS, Integer.MAX_VALUE, Time.SYSTEM, METRIC_GROUP_NAME, "SessionExpireListener");
+        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".zk.acl.enable")) {
+            String schema = SystemConfigUtils.getProperty(clusterAlias + ".zk.acl.schema");
+            String username = SystemConfigUtils.getProperty(clusterAlias + ".zk.acl.username");
+            String password = SystemConfigUtils.getProperty(clusterAlias + ".zk.acl.password");
+            try {
+                zkc.currentZooKeeper().addAuthInfo(schema, (username + ":" + password).getBytes());
+            } catch (Exception e) {
+                LoggerUtils.print(KafkaZKPoolUtils.class).error("ClusterAlias[" + clusterAlias + "] add acl has error, msg is ", e);
+            }
+        }
+        return zkc;
+    }
+
+    /**
+     * Report the clients kept longer than the leak threshold, once each.
+     */
+    private static void detectLeaks() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, ClusterPool> pool : zkCliPools.entrySet()) {
+            for (Borrow borrow : pool.getValue().borrowed.values()) {
+                if (!borrow.reported && now - borrow.time > leakThreshold) {
+                    borrow.reported = true;
+                    pool.getValue().leaks.increment();
+                    String msg = "Zkclient of cluster[" + pool.getKey() + "] borrowed by thread[" + borrow.thread + "] is not released after " + (now - borrow.time) + "ms.";
+                    if (borrow.site != null) {
+                        LoggerUtils.print(KafkaZKPoolUtils.class).warn(msg, borrow.site);
+                    } else {
+                        LoggerUtils.print(KafkaZKPoolUtils.class).warn(msg + " Set efak.zk.pool.leak.trace=true to log the borrower stack.");
+                    }
+                }
+            }
         }
     }
 
@@ -174,6 +217,72 @@ public final class KafkaZKPoolUtils {
      * Construction method.
      */
     private KafkaZKPoolUtils() {
+        if (leakThreshold <= 0) {
+            return;
+        }
+        ScheduledExecutorService detector = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "efak-zkclient-leak-detector");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000L, leakThreshold / 2);
+        detector.scheduleWithFixedDelay(KafkaZKPoolUtils::detectLeaks, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * A borrowed client of a cluster, returned to the pool on close.
+     */
+    public static final class ZkLease implements AutoCloseable {
+        private final ClusterPool pool;
+        private KafkaZkClient zkc;
+
+        private ZkLease(ClusterPool pool, KafkaZkClient zkc) {
+            this.pool = pool;
+            this.zkc = zkc;
+        }
+
+        public KafkaZkClient client() {
+            if (zkc == null) {
+                throw new IllegalStateException("Zkclient lease is already closed.");
+            }
+            return zkc;
+        }
+
+        @Override
+        public void close() {
+            if (zkc != null) {
+                pool.release(zkc);
+                zkc = null;
+            }
+        }
+    }
+
+    private static final class ClusterPool {
+        private final ConcurrentLinkedDeque<KafkaZkClient> idle = new ConcurrentLinkedDeque<>();
+        private final Semaphore permits = new Semaphore(zkCliPoolSize, true);
+        private final Map<KafkaZkClient, Borrow> borrowed = new ConcurrentHashMap<>();
+        private final LongAdder created = new LongAdder();
+        private final LongAdder borrows = new LongAdder();
+        private final LongAdder timeouts = new LongAdder();
+        private final LongAdder waited = new LongAdder();
+        private final AtomicLong maxWait = new AtomicLong();
+        private final LongAdder leaks = new LongAdder();
+
+        private void release(KafkaZkClient zkc) {
+            if (borrowed.remove(zkc) == null) {
+                LoggerUtils.print(KafkaZKPoolUtils.class).warn("Skip releasing a zkclient which is not borrowed.");
+                return;
+            }
+            idle.offerFirst(zkc);
+            permits.release();
+        }
+    }
+
+    private static final class Borrow {
+        private final long time = System.currentTimeMillis();
+        private final String thread = Thread.currentThread().getName();
+        private final Throwable site = leakTrace ? new Throwable("Zkclient borrowed here") : null;
+        private volatile boolean reported = false;
     }
 
 }
@@ -0,0 +1,138 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.common.util;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Http client shared by the requests of the web console and the collectors.
+ * <p>
+ * Connections are pooled and kept alive for at most 'efak.http.keepalive.ms',
+ * or less when the server says so, with 'efak.http.max.per.route'
+ * connections per host and 'efak.http.max.total' in all. Asynchronous
+ * requests run on 'efak.http.threads' daemon threads, so many hosts and
+ * paths are read at once while each host still gets a bounded number of
+ * connections. Every request is bounded by 'efak.http.connect.timeout.ms' to
+ * connect or lease a connection and 'efak.http.socket.timeout.ms' between
+ * two reads.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public final class PooledHttpClient {
+
+    private static final String ENCODING = "UTF-8";
+
+    private final CloseableHttpClient client;
+    private final ExecutorService executor;
+
+    private static class ClientHolder {
+        private static final PooledHttpClient INSTANCE = new PooledHttpClient();
+    }
+
+    public static PooledHttpClient getInstance() {
+        return ClientHolder.INSTANCE;
+    }
+
+    private PooledHttpClient() {
+        long keepAlive = SystemConfigUtils.getLongProperty("efak.http.keepalive.ms", 30 * 1000L);
+        int connectTimeout = SystemConfigUtils.getIntProperty("efak.http.connect.timeout.ms", 3000);
+        int socketTimeout = SystemConfigUtils.getIntProperty("efak.http.socket.timeout.ms", 10000);
+        PoolingHttpClientConnectionManager manager = new PoolingHttpClientConnectionManager();
+        manager.setMaxTotal(Math.max(1, SystemConfigUtils.getIntProperty("efak.http.max.total", 200)));
+        manager.setDefaultMaxPerRoute(Math.max(1, SystemConfigUtils.getIntProperty("efak.http.max.per.route", 20)));
+        RequestConfig config = RequestConfig.custom().setConnectTimeout(connectTimeout).setConnectionRequestTimeout(connectTimeout).setSocketTimeout(socketTimeout).build();
+        this.client = HttpClients.custom().setConnectionManager(manager).setDefaultRequestConfig(config).setKeepAliveStrategy((response, context) -> {
+            long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return duration > 0 ? Math.min(duration, keepAlive) : keepAlive;
+        }).evictExpiredConnections().evictIdleConnections(keepAlive, TimeUnit.MILLISECONDS).build();
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, SystemConfigUtils.getIntProperty("efak.http.threads", 32)), runnable -> {
+            Thread thread = new Thread(runnable, "efak-http-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Body of the response whatever its status.
+     */
+    public String execute(HttpUriRequest request) throws IOException {
+        try (CloseableHttpResponse response = client.execute(request)) {
+            HttpEntity entity = response.getEntity();
+            return entity == null ? "" : EntityUtils.toString(entity, ENCODING);
+        }
+    }
+
+    /**
+     * Body of a get, thrown when the status is not 2xx.
+     */
+    public String get(String uri) throws IOException {
+        HttpGet httpGet = new HttpGet(uri);
+        try (CloseableHttpResponse response = client.execute(httpGet)) {
+            int status = response.getStatusLine().getStatusCode();
+            HttpEntity entity = response.getEntity();
+            String result = entity == null ? "" : EntityUtils.toString(entity, ENCODING);
+            if (status < 200 || status >= 300) {
+                throw new IOException("Get [" + uri + "] returned status[" + status + "], result is " + result);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Get in the background, the future fails when {@link #get} throws.
+     */
+    public CompletableFuture<String> getAsync(String uri) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return get(uri);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Run a blocking call of the collectors, such as a probe of the host, on
+     * the threads of the asynchronous requests.
+     */
+    public <T> CompletableFuture<T> supplyAsync(Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, executor);
+    }
+
+}
@@ -0,0 +1,276 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.common.util;
+
+import com.alibaba.fastjson.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+
+/**
+ * Thread safe cache with per entry time to live and refresh ahead loading.
+ * <p>
+ * Entries live in a ConcurrentHashMap, so reads never lock or reorder the
+ * map. With a loader, a miss or an expired entry is loaded once however many
+ * threads ask for it at the same time, and an entry read within the refresh
+ * ahead window before its expiry is reloaded in the background while the
+ * current value is served. When a load fails the expired value is served, if
+ * any. Beyond the max size the entries loaded first are evicted.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public final class RefreshAheadCache<K, V> {
+
+    private static final ExecutorService REFRESHER = Executors.newFixedThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "efak-cache-refresher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String name;
+    private final int maxSize;
+    private final long ttl;
+    private final long refreshAhead;
+    private final Loader<K, V> loader;
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final Map<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Loads the value of a key, may return null when it has none.
+     */
+    public interface Loader<K, V> {
+        V load(K key) throws Exception;
+    }
+
+    /**
+     * Cache without loader, values are only put.
+     */
+    public RefreshAheadCache(String name, int maxSize, long ttl) {
+        this(name, maxSize, ttl, 0L, null);
+    }
+
+    /**
+     * @param ttl          milliseconds an entry lives, 0 or less to keep it
+     *                     until evicted
+     * @param refreshAhead milliseconds before the expiry an entry read is
+     *                     reloaded in the background, 0 to load on expiry
+     */
+    public RefreshAheadCache(String name, int maxSize, long ttl, long refreshAhead, Loader<K, V> loader) {
+        this.name = name;
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+        this.refreshAhead = Math.max(0L, Math.min(refreshAhead, ttl));
+        this.loader = loader;
+    }
+
+    /**
+     * Value of the key, loaded when it is missing or expired and the cache has
+     * a loader, otherwise null.
+     */
+    public V get(K key) {
+        long now = System.currentTimeMillis();
+        Entry<V> entry = entries.get(key);
+        if (entry != null && !entry.isExpired(now)) {
+            hits.increment();
+            if (loader != null && entry.needsRefresh(now, refreshAhead) && entry.refreshing.compareAndSet(false, true)) {
+                refreshes.increment();
+                REFRESHER.execute(() -> load(key, entry));
+            }
+            return entry.value;
+        }
+        misses.increment();
+        if (loader == null) {
+            if (entry != null) {
+                entries.remove(key, entry);
+            }
+            return null;
+        }
+        V loaded = load(key, entry);
+        return loaded != null || entry == null ? loaded : entry.value;
+    }
+
+    /**
+     * Value of the key without loading it, null when missing or expired.
+     */
+    public V getIfPresent(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry != null && !entry.isExpired(System.currentTimeMillis())) {
+            hits.increment();
+            return entry.value;
+        }
+        misses.increment();
+        return null;
+    }
+
+    public boolean containsKey(K key) {
+        Entry<V> entry = entries.get(key);
+        return entry != null && !entry.isExpired(System.currentTimeMillis());
+    }
+
+    public void put(K key, V value) {
+        put(key, value, ttl);
+    }
+
+    /**
+     * Put a value which lives for its own ttl.
+     */
+    public void put(K key, V value, long ttl) {
+        if (value == null) {
+            entries.remove(key);
+            return;
+        }
+        entries.put(key, new Entry<>(value, ttl));
+        evict();
+    }
+
+    /**
+     * Atomically combine the value with the current one of the key, an expired
+     * value counts as missing.
+     */
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> function) {
+        long now = System.currentTimeMillis();
+        Entry<V> merged = entries.compute(key, (k, entry) -> {
+            if (entry == null || entry.isExpired(now)) {
+                return new Entry<>(value, ttl);
+            }
+            V combined = function.apply(entry.value, value);
+            return combined == null ? null : new Entry<>(combined, ttl);
+        });
+        evict();
+        return merged == null ? null : merged.value;
+    }
+
+    public void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Hit, miss, load and eviction counters.
+     */
+    public JSONObject getStats() {
+        JSONObject stats = new JSONObject();
+        stats.put("name", name);
+        stats.put("size", entries.size());
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        long requests = hits.sum() + misses.sum();
+        stats.put("hitRate", requests == 0 ? 0.0 : hits.sum() * 1.0 / requests);
+        stats.put("loads", loads.sum());
+        stats.put("loadFailures", loadFailures.sum());
+        stats.put("loadAvgMs", loads.sum() == 0 ? 0L : TimeUnit.NANOSECONDS.toMillis(loadNanos.sum() / loads.sum()));
+        stats.put("refreshes", refreshes.sum());
+        stats.put("evictions", evictions.sum());
+        return stats;
+    }
+
+    /**
+     * Load the key once for every caller arriving while it loads.
+     */
+    private V load(K key, Entry<V> previous) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> running = loading.putIfAbsent(key, future);
+        if (running != null) {
+            if (previous != null) {
+                previous.refreshing.set(false);
+            }
+            try {
+                return running.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException e) {
+                return null;
+            }
+        }
+        long start = System.nanoTime();
+        try {
+            V value = loader.load(key);
+            loads.increment();
+            loadNanos.add(System.nanoTime() - start);
+            put(key, value);
+            future.complete(value);
+            return value;
+        } catch (Exception e) {
+            loadFailures.increment();
+            LoggerUtils.print(RefreshAheadCache.class).error("Load key[" + key + "] of cache[" + name + "] has error, msg is ", e);
+            future.completeExceptionally(e);
+            if (previous != null) {
+                previous.refreshing.set(false);
+            }
+            return null;
+        } finally {
+            loading.remove(key, future);
+        }
+    }
+
+    private void evict() {
+        int overflow = entries.size() - maxSize;
+        if (overflow <= 0) {
+            return;
+        }
+        // drop a tenth more than needed, so the scan is not repeated on every put
+        List<Map.Entry<K, Entry<V>>> oldest = new ArrayList<>(entries.entrySet());
+        oldest.sort((a, b) -> Long.compare(a.getValue().loaded, b.getValue().loaded));
+        int drop = Math.min(oldest.size(), overflow + maxSize / 10);
+        for (int i = 0; i < drop; i++) {
+            if (entries.remove(oldest.get(i).getKey(), oldest.get(i).getValue())) {
+                evictions.increment();
+            }
+        }
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long loaded = System.currentTimeMillis();
+        private final long expires;
+        private final AtomicBoolean refreshing = new AtomicBoolean(false);
+
+        private Entry(V value, long ttl) {
+            this.value = value;
+            this.expires = ttl > 0 ? loaded + ttl : Long.MAX_VALUE;
+        }
+
+        private boolean isExpired(long now) {
+            return now >= expires;
+        }
+
+        private boolean needsRefresh(long now, long refreshAhead) {
+            return refreshAhead > 0 && expires != Long.MAX_VALUE && now >= expires - refreshAhead;
+        }
+    }
+
+}
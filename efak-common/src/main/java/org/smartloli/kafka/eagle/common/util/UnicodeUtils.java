@@ -30,17 +30,21 @@ public class UnicodeUtils {
      * zh_CN characters to unicode.
      */
     public static String encodeForUnicode(String str) {
-        String result = "";
+        StringBuilder result = null;
         for (int i = 0; i < str.length(); i++) {
             int chr1 = (char) str.charAt(i);
             // zh_CN range between \u4e00 and \u9fa5
             if (chr1 >= 19968 && chr1 <= 171941) {
-                result += "\\u" + Integer.toHexString(chr1);
-            } else {
-                result += str.charAt(i);
+                if (result == null) {
+                    result = new StringBuilder(str.length() + 16).append(str, 0, i);
+                }
+                result.append("\\u").append(Integer.toHexString(chr1));
+            } else if (result != null) {
+                result.append(str.charAt(i));
             }
         }
-        return result;
+        // most texts have no zh_CN characters and are returned as they are
+        return result == null ? str : result.toString();
     }
 
     /**
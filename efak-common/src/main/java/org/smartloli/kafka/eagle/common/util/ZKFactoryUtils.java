@@ -18,19 +18,32 @@
 package org.smartloli.kafka.eagle.common.util;
 
 import com.alibaba.fastjson.JSON;
-import org.I0Itec.zkclient.IZkDataListener;
-import org.I0Itec.zkclient.ZkClient;
+import kafka.zk.KafkaZkClient;
 import org.apache.zookeeper.data.Stat;
 import org.smartloli.kafka.eagle.common.protocol.BrokersInfo;
 import org.smartloli.kafka.eagle.common.protocol.cache.BrokerCache;
-import org.smartloli.kafka.eagle.common.serializer.EFAKZkSerializer;
+import org.smartloli.kafka.eagle.common.util.KafkaZKPoolUtils.ZkLease;
+import scala.Option;
+import scala.Tuple2;
+import scala.collection.JavaConversions;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.stream.IntStream;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
- * // NOTE
+ * Read the kafka metadata stored in zookeeper.
+ * <p>
+ * Brokers are read through the pooled zookeeper clients. Whether the jmx
+ * port of a broker answers is probed on a background thread after each
+ * load, a loaded broker carries the status of the last probe.
  *
  * @author smartloli.
  * <p>
@@ -38,81 +51,81 @@ import java.util.stream.IntStream;
  */
 public class ZKFactoryUtils {
 
+    /**
+     * Last probed jmx status by 'host:jmxPort'.
+     */
+    private static final Map<String, Boolean> JMX_STATUS = new ConcurrentHashMap<>();
+    private static final Set<String> PROBING = ConcurrentHashMap.newKeySet();
+    private static final ExecutorService JMX_PROBER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "efak-broker-jmx-probe");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Warm up the broker cache of every cluster, later reads are refreshed by
+     * the cache itself.
+     */
     public static void initKafkaMetaData() {
-        List<BrokersInfo> targets = new ArrayList<BrokersInfo>();
         try {
             for (String clusterAlias : SystemConfigUtils.getPropertyArray("efak.zk.cluster.alias", ",")) {
-                String zkServers = SystemConfigUtils.getProperty(clusterAlias + ".zk.list");
-                ZkClient zkClient = null;
-                try {
-                    zkClient = new ZkClient(zkServers);
-                    zkClient.setZkSerializer(new EFAKZkSerializer());
-                    if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".zk.acl.enable")) {
-                        String schema = SystemConfigUtils.getProperty(clusterAlias + ".zk.acl.schema");
-                        String username = SystemConfigUtils.getProperty(clusterAlias + ".zk.acl.username");
-                        String password = SystemConfigUtils.getProperty(clusterAlias + ".zk.acl.password");
-                        zkClient.addAuthInfo(schema, (username + ":" + password).getBytes());
-                    }
-                    // load broker cache
-                    List<String> brokerIdss = zkClient.getChildren(KConstants.Kafka.BROKER_IDS_PATH);
-                    for (String ids : brokerIdss) {
-                        String path = KConstants.Kafka.BROKER_IDS_PATH + "/" + ids;
-                        if (zkClient.exists(path)) {
-                            Stat stat = new Stat();
-                            String result = zkClient.readData(path, stat);
-                            // load
-                            refreshKafkaMetaData(targets, stat, clusterAlias, result, ids);
-                            // listen broker status
-                            zkClient.subscribeDataChanges(path, new IZkDataListener() {
-                                @Override
-                                public void handleDataChange(String dataPath, Object data) throws Exception {
-                                    // refresh
-                                    refreshKafkaMetaData(targets, stat, clusterAlias, data.toString(), ids);
-                                }
+                BrokerCache.META_CACHE.get(clusterAlias);
+            }
+        } catch (Exception e) {
+            LoggerUtils.print(ZKFactoryUtils.class).error("Load kafka metadata into cache has error, msg is ", e);
+        }
+    }
 
-                                @Override
-                                public void handleDataDeleted(String path) throws Exception {
-                                    // delete data
-                                    String[] tmpZnode = path.split("/");
-                                    String ids = tmpZnode[tmpZnode.length - 1];
-                                    // remove offline broker
-                                    removeOfflineBrokerMetaData(clusterAlias, ids);
+    /**
+     * Read the online brokers of the cluster from zookeeper.
+     */
+    public static List<BrokersInfo> loadBrokers(String clusterAlias) {
+        List<BrokersInfo> targets = new ArrayList<BrokersInfo>();
+        try (ZkLease lease = KafkaZKSingletonUtils.create().lease(clusterAlias)) {
+            KafkaZkClient zkc = lease.client();
+            List<String> brokerIdss = JavaConversions.seqAsJavaList(zkc.getChildren(KConstants.Kafka.BROKER_IDS_PATH));
+            for (String ids : brokerIdss) {
+                Tuple2<Option<byte[]>, Stat> tuple = zkc.getDataAndStat(KConstants.Kafka.BROKER_IDS_PATH + "/" + ids);
+                if (tuple._1.isDefined()) {
+                    targets.add(parseBroker(tuple._2, clusterAlias, new String(tuple._1.get(), StandardCharsets.UTF_8), ids));
+                }
+            }
+        }
+        probeJmx(clusterAlias, targets);
+        return Collections.unmodifiableList(targets);
+    }
 
-                                }
-                            });
-//                            synchronized (ZKFactoryUtils.class) {
-//                                while (true) {
-//                                    try {
-//                                        ZKFactoryUtils.class.wait();
-//                                    } catch (Exception e) {
-//                                        LoggerUtils.print(ZKFactoryUtils.class).error("Subscribe znode data has error, msg is ", e);
-//                                    }
-//                                }
-//                            }
+    /**
+     * Telnet the jmx port of every broker in the background and update the
+     * loaded brokers, one probe of a cluster at a time.
+     */
+    private static void probeJmx(String clusterAlias, List<BrokersInfo> brokers) {
+        if (!PROBING.add(clusterAlias)) {
+            return;
+        }
+        try {
+            JMX_PROBER.execute(() -> {
+                try {
+                    for (BrokersInfo broker : brokers) {
+                        boolean status = false;
+                        try {
+                            status = NetUtils.telnet(broker.getHost(), broker.getJmxPort());
+                        } catch (Exception e) {
+                            LoggerUtils.print(ZKFactoryUtils.class).error("Telnet [" + broker.getHost() + ":" + broker.getJmxPort() + "] has error, msg is ", e);
                         }
+                        JMX_STATUS.put(broker.getHost() + ":" + broker.getJmxPort(), status);
+                        broker.setJmxPortStatus(status);
                     }
-
-                } catch (Exception ex) {
-                    LoggerUtils.print(ZKFactoryUtils.class).error("Get broker info for zookeeper has error, msg is ", ex);
                 } finally {
-                    if (zkClient != null) {
-                        zkClient.close();
-                    }
+                    PROBING.remove(clusterAlias);
                 }
-            }
-        } catch (Exception e) {
-            LoggerUtils.print(ZKFactoryUtils.class).error("Load kafka metadata into cache has error, msg is ", e);
+            });
+        } catch (RejectedExecutionException e) {
+            PROBING.remove(clusterAlias);
         }
     }
 
-    private static void removeOfflineBrokerMetaData(String clusterAlias, String ids) {
-        List<BrokersInfo> brokersInfos = BrokerCache.META_CACHE.get(clusterAlias);
-        IntStream.range(0, brokersInfos.size()).filter(i ->
-                brokersInfos.get(i).getIds().equals(ids)).
-                boxed().findFirst().map(i -> brokersInfos.remove((int) i));
-    }
-
-    private static void refreshKafkaMetaData(List<BrokersInfo> targets, Stat stat, String clusterAlias, String data, String ids) {
+    private static BrokersInfo parseBroker(Stat stat, String clusterAlias, String data, String ids) {
         BrokersInfo broker = new BrokersInfo();
         broker.setCreated(CalendarUtils.convertUnixTime2Date(stat.getCtime()));
         broker.setModify(CalendarUtils.convertUnixTime2Date(stat.getMtime()));
@@ -154,15 +167,8 @@ public class ZKFactoryUtils {
         }
         broker.setJmxPort(JSON.parseObject(data).getInteger("jmx_port"));
         broker.setIds(ids);
-        try {
-            broker.setJmxPortStatus(NetUtils.telnet(broker.getHost(), broker.getJmxPort()));
-        } catch (Exception e) {
-            LoggerUtils.print(ZKFactoryUtils.class).error("Telnet [" + broker.getHost() + ":" + broker.getJmxPort() + "] has error, msg is ", e);
-        }
-
-        // lrucache key: clusterAlias
-        targets.add(broker);
-        BrokerCache.META_CACHE.put(clusterAlias, targets);
+        broker.setJmxPortStatus(JMX_STATUS.getOrDefault(broker.getHost() + ":" + broker.getJmxPort(), false));
+        return broker;
     }
 
 }
@@ -17,14 +17,10 @@
  */
 package org.smartloli.kafka.eagle.common.util;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.Socket;
+import java.util.Collections;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.smartloli.kafka.eagle.common.protocol.ZkClusterInfo;
+import org.smartloli.kafka.eagle.common.protocol.ZkMntrInfo;
 
 /**
  * Get zookeeper cluster metrics data.
@@ -35,83 +31,23 @@ import org.smartloli.kafka.eagle.common.protocol.ZkClusterInfo;
  */
 public class ZKMetricsUtils {
 
-	private static Logger LOG = LoggerFactory.getLogger(ZKMetricsUtils.class);
-
-	private static final String zk_avg_latency = "zk_avg_latency";
-	private static final String zk_packets_received = "zk_packets_received";
-	private static final String zk_packets_sent = "zk_packets_sent";
-	private static final String zk_num_alive_connections = "zk_num_alive_connections";
-	private static final String zk_outstanding_requests = "zk_outstanding_requests";
-	private static final String zk_open_file_descriptor_count = "zk_open_file_descriptor_count";
-	private static final String zk_max_file_descriptor_count = "zk_max_file_descriptor_count";
+	private static final long MNTR_TIMEOUT = 5000L;
 
+	/** Get the mntr metrics of one zookeeper server, see {@link ZkMntrCollector} to poll several. */
 	public static ZkClusterInfo zkClusterMntrInfo(String ip, int port) {
 		ZkClusterInfo zk = new ZkClusterInfo();
-		Socket sock = null;
-		try {
-			sock = new Socket(ip, port);
-		} catch (Exception e) {
-			LOG.error("Socket[" + ip + ":" + port + "] connect refused");
-			return zk;
-		}
-		BufferedReader reader = null;
-		OutputStream outstream = null;
-		try {
-			outstream = sock.getOutputStream();
-			outstream.write("mntr".getBytes());
-			outstream.flush();
-			sock.shutdownOutput();
-
-			reader = new BufferedReader(new InputStreamReader(sock.getInputStream()));
-			String line;
-			while ((line = reader.readLine()) != null) {
-				String[] rs = line.split("\\s+");
-				try {
-					switch (rs[0]) {
-					case zk_avg_latency:
-						zk.setZkAvgLatency(rs[1]);
-						break;
-					case zk_packets_received:
-						zk.setZkPacketsReceived(rs[1]);
-						break;
-					case zk_packets_sent:
-						zk.setZkPacketsSent(rs[1]);
-						break;
-					case zk_num_alive_connections:
-						zk.setZkNumAliveConnections(rs[1]);
-						break;
-					case zk_outstanding_requests:
-						zk.setZkOutstandingRequests(rs[1]);
-						break;
-					case zk_open_file_descriptor_count:
-						zk.setZkOpenFileDescriptorCount(rs[1]);
-						break;
-					case zk_max_file_descriptor_count:
-						zk.setZkMaxFileDescriptorCount(rs[1]);
-						break;
-					default:
-						break;
-					}
-				} catch (Exception ex) {
-					LOG.error("Split zookeeper metrics data has error, msg is " + ex.getMessage());
-				}
-			}
-		} catch (Exception ex) {
-			LOG.error("Read ZK buffer has error,msg is " + ex.getMessage());
+		String server = ip + ":" + port;
+		ZkMntrInfo mntr = ZkMntrCollector.collect(Collections.singletonList(server), MNTR_TIMEOUT).get(server);
+		if (mntr == null || !mntr.isAlive()) {
 			return zk;
-		} finally {
-			try {
-				sock.close();
-				if (reader != null) {
-					reader.close();
-				}
-				if (outstream != null) {
-					outstream.close();
-				}
-			} catch (Exception ex) {
-				LOG.error("Close read has error,msg is " + ex.getMessage());
-			}
 		}
+		zk.setZkAvgLatency(mntr.getMetrics().get("zk_avg_latency"));
+		zk.setZkPacketsReceived(mntr.getMetrics().get("zk_packets_received"));
+		zk.setZkPacketsSent(mntr.getMetrics().get("zk_packets_sent"));
+		zk.setZkNumAliveConnections(mntr.getMetrics().get("zk_num_alive_connections"));
+		zk.setZkOutstandingRequests(StrUtils.convertNull(mntr.getMetrics().get("zk_outstanding_requests")));
+		zk.setZkOpenFileDescriptorCount(mntr.getMetrics().get("zk_open_file_descriptor_count"));
+		zk.setZkMaxFileDescriptorCount(mntr.getMetrics().get("zk_max_file_descriptor_count"));
 		return zk;
 	}
 
@@ -0,0 +1,265 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.common.util;
+
+import org.smartloli.kafka.eagle.common.protocol.ZkMntrInfo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Polls zookeeper servers with the mntr four letter word concurrently.
+ * <p>
+ * All servers are connected without blocking and served by one selector, so
+ * a pass costs the time of the slowest answer bounded by the timeout instead
+ * of the sum of them. Zookeeper closes the connection after answering a four
+ * letter word, so every pass opens a fresh connection per server.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public final class ZkMntrCollector {
+
+    private static final byte[] MNTR = "mntr".getBytes(StandardCharsets.US_ASCII);
+    private static final int MAX_RESPONSE = 1024 * 1024;
+
+    private ZkMntrCollector() {
+    }
+
+    /**
+     * Collect the mntr output of every server, given as host:port with an
+     * optional chroot, keyed by the given server. Servers which do not answer
+     * within the timeout are returned not alive with the reason.
+     */
+    public static Map<String, ZkMntrInfo> collect(Collection<String> servers, long timeout) {
+        Map<String, ZkMntrInfo> results = new LinkedHashMap<>();
+        Selector selector;
+        try {
+            selector = Selector.open();
+        } catch (IOException e) {
+            LoggerUtils.print(ZkMntrCollector.class).error("Open zookeeper mntr selector has error, msg is ", e);
+            for (String server : servers) {
+                results.put(server, failed(server, e.getMessage()));
+            }
+            return results;
+        }
+        try {
+            for (String server : servers) {
+                if (!results.containsKey(server)) {
+                    results.put(server, connect(selector, server));
+                }
+            }
+            int pending = selector.keys().size();
+            long deadline = System.currentTimeMillis() + timeout;
+            long remaining;
+            while (pending > 0 && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                selector.select(remaining);
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    Probe probe = (Probe) key.attachment();
+                    try {
+                        if (probe.handle(key)) {
+                            parse(probe.info, probe.response.toString("UTF-8"));
+                            finish(key);
+                            pending--;
+                        }
+                    } catch (IOException e) {
+                        probe.info.setError(e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage());
+                        finish(key);
+                        pending--;
+                    }
+                }
+            }
+            for (SelectionKey key : selector.keys()) {
+                if (!key.isValid()) {
+                    continue;
+                }
+                Probe probe = (Probe) key.attachment();
+                probe.info.setError("No answer within " + timeout + "ms");
+                finish(key);
+            }
+        } catch (IOException e) {
+            LoggerUtils.print(ZkMntrCollector.class).error("Collect zookeeper mntr has error, msg is ", e);
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                close(key.channel());
+            }
+            close(selector);
+        }
+        for (ZkMntrInfo info : results.values()) {
+            if (!info.isAlive()) {
+                LoggerUtils.print(ZkMntrCollector.class).warn("Zookeeper[" + info.getHost() + ":" + info.getPort() + "] mntr failed, msg is " + info.getError());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Fill the metrics of a mntr output, one 'key value' pair per line.
+     */
+    public static ZkMntrInfo parse(ZkMntrInfo info, String output) {
+        for (String line : output.split("\n")) {
+            String[] kv = line.trim().split("\\s+", 2);
+            if (kv.length == 2 && kv[0].startsWith("zk_")) {
+                info.getMetrics().put(kv[0], kv[1].trim());
+            }
+        }
+        Map<String, String> metrics = info.getMetrics();
+        if (metrics.isEmpty()) {
+            // a server not allowing mntr answers with a plain sentence
+            info.setAlive(false);
+            info.setError(output.trim().isEmpty() ? "Empty mntr answer" : output.trim());
+            return info;
+        }
+        info.setAlive(true);
+        info.setVersion(StrUtils.convertNull(metrics.get("zk_version")));
+        info.setServerState(StrUtils.convertNull(metrics.get("zk_server_state")));
+        info.setAvgLatency(number(metrics, "zk_avg_latency", 0));
+        info.setMinLatency((long) number(metrics, "zk_min_latency", 0));
+        info.setMaxLatency((long) number(metrics, "zk_max_latency", 0));
+        info.setP50Latency(number(metrics, "zk_p50_readlatency", -1));
+        info.setP95Latency(number(metrics, "zk_p95_readlatency", -1));
+        info.setP99Latency(number(metrics, "zk_p99_readlatency", -1));
+        info.setP999Latency(number(metrics, "zk_p999_readlatency", -1));
+        info.setPacketsReceived((long) number(metrics, "zk_packets_received", 0));
+        info.setPacketsSent((long) number(metrics, "zk_packets_sent", 0));
+        info.setNumAliveConnections((long) number(metrics, "zk_num_alive_connections", 0));
+        info.setOutstandingRequests((long) number(metrics, "zk_outstanding_requests", 0));
+        info.setZnodeCount((long) number(metrics, "zk_znode_count", 0));
+        info.setWatchCount((long) number(metrics, "zk_watch_count", 0));
+        info.setEphemeralsCount((long) number(metrics, "zk_ephemerals_count", 0));
+        info.setApproximateDataSize((long) number(metrics, "zk_approximate_data_size", 0));
+        info.setOpenFileDescriptorCount((long) number(metrics, "zk_open_file_descriptor_count", 0));
+        info.setMaxFileDescriptorCount((long) number(metrics, "zk_max_file_descriptor_count", 0));
+        info.setFollowers((long) number(metrics, "zk_followers", 0));
+        info.setSyncedFollowers((long) number(metrics, "zk_synced_followers", 0));
+        info.setPendingSyncs((long) number(metrics, "zk_pending_syncs", 0));
+        return info;
+    }
+
+    private static double number(Map<String, String> metrics, String key, double defaultValue) {
+        String value = metrics.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static ZkMntrInfo connect(Selector selector, String server) {
+        ZkMntrInfo info = new ZkMntrInfo();
+        SocketChannel channel = null;
+        try {
+            String[] hostAndPort = server.trim().split(":");
+            info.setHost(hostAndPort[0]);
+            info.setPort(Integer.parseInt(hostAndPort[1].split("/")[0]));
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            Probe probe = new Probe(info);
+            if (channel.connect(new InetSocketAddress(info.getHost(), info.getPort()))) {
+                channel.register(selector, SelectionKey.OP_WRITE, probe);
+            } else {
+                channel.register(selector, SelectionKey.OP_CONNECT, probe);
+            }
+        } catch (Exception e) {
+            close(channel);
+            info.setError("Connect refused, msg is " + e.getMessage());
+        }
+        return info;
+    }
+
+    private static ZkMntrInfo failed(String server, String error) {
+        ZkMntrInfo info = new ZkMntrInfo();
+        info.setHost(server);
+        info.setError(error);
+        return info;
+    }
+
+    private static void finish(SelectionKey key) {
+        key.cancel();
+        close(key.channel());
+    }
+
+    private static void close(AutoCloseable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            LoggerUtils.print(ZkMntrCollector.class).warn("Close zookeeper mntr channel has error, msg is " + e.getMessage());
+        }
+    }
+
+    /**
+     * State of the exchange with one server.
+     */
+    private static final class Probe {
+        private final ZkMntrInfo info;
+        private final ByteBuffer request = ByteBuffer.wrap(MNTR);
+        private final ByteBuffer buffer = ByteBuffer.allocate(8192);
+        private final ByteArrayOutputStream response = new ByteArrayOutputStream();
+
+        private Probe(ZkMntrInfo info) {
+            this.info = info;
+        }
+
+        /**
+         * Move the exchange on, true once the server closed the answer.
+         */
+        private boolean handle(SelectionKey key) throws IOException {
+            SocketChannel channel = (SocketChannel) key.channel();
+            if (key.isConnectable() && channel.finishConnect()) {
+                key.interestOps(SelectionKey.OP_WRITE);
+            }
+            if (key.isValid() && key.isWritable()) {
+                channel.write(request);
+                if (!request.hasRemaining()) {
+                    channel.shutdownOutput();
+                    key.interestOps(SelectionKey.OP_READ);
+                }
+            }
+            if (key.isValid() && key.isReadable()) {
+                int read;
+                while ((read = channel.read(buffer)) > 0) {
+                    response.write(buffer.array(), 0, read);
+                    buffer.clear();
+                    if (response.size() > MAX_RESPONSE) {
+                        throw new IOException("Mntr answer larger than " + MAX_RESPONSE + " bytes");
+                    }
+                }
+                return read < 0;
+            }
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,176 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.common.tsdb;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * Fold minutes into the rollup tiers across a restart replaying the day and
+ * cut long lines with the lttb downsampler, failing on the first bucket or
+ * kept point that differs.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public class TestRollups {
+
+    private static final long MINUTE = 60 * 1000L;
+    private static final String DAY = "20261018";
+    private static final String SERIES = "cluster1/kafka/message_in";
+
+    public static void main(String[] args) throws IOException {
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+        File root = Files.createTempDirectory("efak-rollups").toFile();
+        try {
+            rollups(root);
+        } finally {
+            delete(root);
+        }
+        downsampler();
+        System.out.println("Rollup and downsampler checks passed.");
+    }
+
+    /**
+     * Three hours of jittered minutes fold into 10m and 1h buckets, and a
+     * restart replaying the day neither loses nor repeats a bucket.
+     */
+    private static void rollups(File dir) throws IOException {
+        TimeSeriesStore store = new TimeSeriesStore(dir);
+        Rollups rollups = new Rollups(store);
+        String day = DAY;
+        Random random = new Random(13);
+        List<long[]> raw = new ArrayList<>();
+        for (int i = 0; i < 180; i++) {
+            long timestamp = start(day) + i * MINUTE + random.nextInt(3000);
+            raw.add(new long[]{timestamp, i});
+            rollups.add(SERIES, day, timestamp, i, 2 * i);
+        }
+        expectBuckets("rollup 10m", rollups, Rollups.TIERS[0], 18, 10, 180);
+        expectBuckets("rollup 1h", rollups, Rollups.TIERS[1], 3, 60, 180);
+
+        Rollups resumed = new Rollups(store);
+        resumed.resume(SERIES);
+        for (long[] sample : raw) {
+            resumed.add(SERIES, day, sample[0], sample[1], 2 * sample[1]);
+        }
+        for (int i = 180; i < 190; i++) {
+            resumed.add(SERIES, day, start(day) + i * MINUTE, i, 2 * i);
+        }
+        expectBuckets("rollup 10m resumed", resumed, Rollups.TIERS[0], 19, 10, 190);
+        expectBuckets("rollup 1h resumed", resumed, Rollups.TIERS[1], 4, 60, 190);
+
+        if (Rollups.tier(day, day, 1000) != null) {
+            throw new IllegalStateException("A day of minutes must be drawn from the raw samples.");
+        }
+        if (Rollups.tier("20261012", day, 1000) != Rollups.TIERS[0] || Rollups.tier("20260919", day, 1000) != Rollups.TIERS[1]) {
+            throw new IllegalStateException("A week must be drawn from 10m buckets and a month from 1h buckets.");
+        }
+        if (!Rollups.isRollup(Rollups.series(SERIES, Rollups.TIERS[2])) || Rollups.isRollup(SERIES)) {
+            throw new IllegalStateException("Rollup series names are not told apart from raw ones.");
+        }
+    }
+
+    /**
+     * The endpoints, a spike and a drop survive a line cut from 10000 points
+     * to 500, and short lines are kept whole.
+     */
+    private static void downsampler() {
+        int size = 10000;
+        long[] x = new long[size];
+        double[] y = new double[size];
+        for (int i = 0; i < size; i++) {
+            x[i] = start(DAY) + i * MINUTE;
+            y[i] = Math.sin(i / 100.0) * 10;
+        }
+        y[5000] = 1000;
+        y[7777] = -1000;
+        int[] kept = Downsampler.lttb(x, y, 500);
+        if (kept.length != 500 || kept[0] != 0 || kept[kept.length - 1] != size - 1) {
+            throw new IllegalStateException("Lttb kept [" + kept.length + "] points without both endpoints.");
+        }
+        for (int i = 1; i < kept.length; i++) {
+            if (kept[i] <= kept[i - 1]) {
+                throw new IllegalStateException("Lttb indexes are not increasing at [" + i + "].");
+            }
+        }
+        if (Arrays.binarySearch(kept, 5000) < 0 || Arrays.binarySearch(kept, 7777) < 0) {
+            throw new IllegalStateException("Lttb dropped the spike or the drop of the line.");
+        }
+        if (Downsampler.lttb(x, y, size).length != size || Downsampler.lttb(x, y, 2).length != size) {
+            throw new IllegalStateException("Lttb must keep every point of a line that fits or below 3 points.");
+        }
+    }
+
+    /**
+     * Buckets of a tier hold width of the minutes added each, the open one
+     * the rest, field 0 the minute and field 1 twice it.
+     */
+    private static void expectBuckets(String name, Rollups rollups, Rollups.Tier tier, int buckets, int width, int minutes) throws IOException {
+        List<double[]> read = new ArrayList<>();
+        List<Long> starts = new ArrayList<>();
+        rollups.scan(SERIES, tier, DAY, DAY, 2, (timestamp, aggregates) -> {
+            starts.add(timestamp);
+            read.add(aggregates);
+        });
+        if (read.size() != buckets) {
+            throw new IllegalStateException(name + " read [" + read.size() + "] buckets, expected [" + buckets + "].");
+        }
+        for (int k = 0; k < buckets; k++) {
+            if (starts.get(k) != start(DAY) + k * width * MINUTE) {
+                throw new IllegalStateException(name + " bucket [" + k + "] starts at [" + starts.get(k) + "].");
+            }
+            for (int field = 0; field < 2; field++) {
+                double first = (field + 1) * k * width;
+                double lastMinute = (field + 1) * Math.min(k * width + width - 1, minutes - 1);
+                double[] expected = {first, lastMinute, (first + lastMinute) / 2, lastMinute};
+                for (int aggregate = 0; aggregate < Rollups.AGGREGATES; aggregate++) {
+                    double actual = read.get(k)[field * Rollups.AGGREGATES + aggregate];
+                    if (Math.abs(actual - expected[aggregate]) > 1e-9) {
+                        throw new IllegalStateException(name + " bucket [" + k + "] field [" + field + "] aggregate [" + aggregate + "] is [" + actual + "], expected [" + expected[aggregate] + "].");
+                    }
+                }
+            }
+        }
+    }
+
+    private static long start(String day) {
+        return LocalDate.parse(day, DateTimeFormatter.BASIC_ISO_DATE).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+}
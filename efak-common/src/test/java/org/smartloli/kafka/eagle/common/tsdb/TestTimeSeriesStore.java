@@ -0,0 +1,249 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.common.tsdb;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * Round trip the gorilla blocks and the day blocks of the store across a
+ * restart, a torn append, a block written in milliseconds and retention,
+ * failing on the first sample read back differently.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public class TestTimeSeriesStore {
+
+    private static final long MINUTE = 60 * 1000L;
+    private static final String[] DAYS = {"20261016", "20261017", "20261018"};
+    private static final String SERIES = "cluster1/kafka/message_in";
+
+    public static void main(String[] args) throws IOException {
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+        gorilla();
+        File root = Files.createTempDirectory("efak-tsdb").toFile();
+        try {
+            store(new File(root, "store"));
+        } finally {
+            delete(root);
+        }
+        System.out.println("Time series store checks passed.");
+    }
+
+    /**
+     * Samples a minute apart with up to 3 seconds of jitter must read back
+     * exactly, at one second resolution, and cost a handful of bits each.
+     */
+    private static void gorilla() {
+        Random random = new Random(7);
+        long[] timestamps = new long[1440];
+        double[] values = new double[timestamps.length];
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamps[i] = start(DAYS[0]) + i * MINUTE + random.nextInt(6000) - 3000;
+            values[i] = i % 10 == 0 ? random.nextDouble() * 1e6 : (i % 3 == 0 ? values[Math.max(0, i - 1)] : i * 1024.0);
+        }
+        values[7] = Double.NaN;
+        values[8] = -0.0;
+
+        GorillaBlock block = new GorillaBlock();
+        GorillaBlock constant = new GorillaBlock();
+        GorillaBlock millis = new GorillaBlock(1L);
+        for (int i = 0; i < timestamps.length; i++) {
+            block.append(timestamps[i], values[i]);
+            constant.append(timestamps[i], 42.0);
+            millis.append(timestamps[i], 42.0);
+        }
+        check("gorilla", decode(block.bytes(0), block.count(), GorillaBlock.SECOND), timestamps, values, GorillaBlock.SECOND);
+        if (block.lastTimestamp() != second(timestamps[timestamps.length - 1]) || Double.doubleToRawLongBits(block.lastValue()) != Double.doubleToRawLongBits(values[values.length - 1])) {
+            throw new IllegalStateException("Gorilla last sample is not the one appended.");
+        }
+        // one bit of delta of delta is 2 + 7 bits of jitter and one bit of value
+        if (constant.bits() > 128 + 10L * (timestamps.length - 1)) {
+            throw new IllegalStateException("Gorilla block of jittered minutes costs [" + constant.bits() + "] bits.");
+        }
+        if (millis.bits() < 3 * constant.bits()) {
+            throw new IllegalStateException("Gorilla block in milliseconds costs [" + millis.bits() + "] bits, expected the jitter to overflow.");
+        }
+        check("gorilla millis", decode(millis.bytes(0), millis.count(), 1L), timestamps, fill(timestamps.length, 42.0), 1L);
+
+        GorillaBlock restored = GorillaBlock.restore(ByteBuffer.wrap(block.bytes(0)), block.count());
+        if (restored.bits() != block.bits() || !Arrays.equals(restored.bytes(0), block.bytes(0))) {
+            throw new IllegalStateException("Gorilla block restored differs from the one written.");
+        }
+        long next = timestamps[timestamps.length - 1] + MINUTE;
+        restored.append(next, 1.5);
+        long[] moreTimestamps = Arrays.copyOf(timestamps, timestamps.length + 1);
+        double[] moreValues = Arrays.copyOf(values, values.length + 1);
+        moreTimestamps[timestamps.length] = next;
+        moreValues[values.length] = 1.5;
+        check("gorilla restored", decode(restored.bytes(0), restored.count(), GorillaBlock.SECOND), moreTimestamps, moreValues, GorillaBlock.SECOND);
+
+        GorillaBlock migrated = GorillaBlock.restore(ByteBuffer.wrap(millis.bytes(0)), millis.count(), 1L);
+        check("gorilla migrated", decode(migrated.bytes(0), migrated.count(), GorillaBlock.SECOND), timestamps, fill(timestamps.length, 42.0), GorillaBlock.SECOND);
+    }
+
+    /**
+     * Write three days, read them back across a restart, a torn append and a
+     * legacy block, then drop the first day.
+     */
+    private static void store(File dir) throws IOException {
+        TimeSeriesStore store = new TimeSeriesStore(dir);
+        if (!store.open()) {
+            throw new IllegalStateException("Store directory[" + dir + "] is not writable.");
+        }
+        List<long[]> written = new ArrayList<>();
+        Random random = new Random(11);
+        for (int d = 0; d < DAYS.length; d++) {
+            for (int i = 0; i < 100; i++) {
+                long timestamp = start(DAYS[d]) + i * MINUTE + random.nextInt(2000);
+                double value = d * 1000 + i + 0.25;
+                store.append(SERIES, DAYS[d], timestamp, value);
+                written.add(new long[]{timestamp, Double.doubleToRawLongBits(value)});
+            }
+        }
+        check("store", scan(store, SERIES, DAYS[0], DAYS[2]), written, GorillaBlock.SECOND);
+        check("store day", scan(store, SERIES, DAYS[1], DAYS[1]), written.subList(100, 200), GorillaBlock.SECOND);
+        long[] last = written.get(written.size() - 1);
+        store.last(SERIES, (timestamp, value) -> {
+            if (timestamp != second(last[0]) || Double.doubleToRawLongBits(value) != last[1]) {
+                throw new IllegalStateException("Store last sample [" + timestamp + "] is not the one appended.");
+            }
+        });
+        if (!store.series("cluster1/", DAYS[0], DAYS[2]).contains(SERIES) || !store.series("cluster2/", DAYS[0], DAYS[2]).isEmpty()) {
+            throw new IllegalStateException("Store series listing does not match the prefix.");
+        }
+
+        // restart with bytes of an interrupted append left past the block
+        File file = new File(new File(dir, DAYS[2]), URLEncoder.encode(SERIES, "UTF-8") + ".blk");
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(raf.length());
+            raf.write(new byte[]{(byte) 0xff, (byte) 0xff, (byte) 0xff});
+        }
+        TimeSeriesStore restarted = new TimeSeriesStore(dir);
+        long timestamp = start(DAYS[2]) + 100 * MINUTE;
+        restarted.append(SERIES, DAYS[2], timestamp, -1.0);
+        written.add(new long[]{timestamp, Double.doubleToRawLongBits(-1.0)});
+        check("store restarted", scan(new TimeSeriesStore(dir), SERIES, DAYS[0], DAYS[2]), written, GorillaBlock.SECOND);
+
+        // a block written with millisecond timestamps is read as is and rewritten in seconds on append
+        List<long[]> legacy = new ArrayList<>();
+        GorillaBlock millis = new GorillaBlock(1L);
+        for (int i = 0; i < 50; i++) {
+            long time = start(DAYS[1]) + i * MINUTE + random.nextInt(3000);
+            millis.append(time, i);
+            legacy.add(new long[]{time, Double.doubleToRawLongBits(i)});
+        }
+        File legacyFile = new File(new File(dir, DAYS[1]), "legacy.blk");
+        ByteBuffer header = ByteBuffer.allocate(16).putInt(0x45545344).putInt(millis.count()).putLong(millis.bits());
+        Files.write(legacyFile.toPath(), concat(header.array(), millis.bytes(0)));
+        check("store millis", scan(restarted, "legacy", DAYS[1], DAYS[1]), legacy, 1L);
+        long time = start(DAYS[1]) + 50 * MINUTE;
+        restarted.append("legacy", DAYS[1], time, 50.0);
+        legacy.add(new long[]{time, Double.doubleToRawLongBits(50.0)});
+        check("store migrated", scan(new TimeSeriesStore(dir), "legacy", DAYS[1], DAYS[1]), legacy, GorillaBlock.SECOND);
+        if (ByteBuffer.wrap(Files.readAllBytes(legacyFile.toPath())).getInt(0) != 0x45545353) {
+            throw new IllegalStateException("Block written in milliseconds was not rewritten in seconds.");
+        }
+
+        if (restarted.dropThrough(DAYS[0]) != 1 || !restarted.days().equals(Arrays.asList(DAYS[1], DAYS[2]))) {
+            throw new IllegalStateException("Store kept days " + restarted.days() + " after dropping [" + DAYS[0] + "].");
+        }
+        check("store dropped", scan(restarted, SERIES, DAYS[0], DAYS[2]), written.subList(100, written.size()), GorillaBlock.SECOND);
+    }
+
+    private static void check(String name, List<long[]> read, long[] timestamps, double[] values, long unit) {
+        List<long[]> written = new ArrayList<>();
+        for (int i = 0; i < timestamps.length; i++) {
+            written.add(new long[]{timestamps[i], Double.doubleToRawLongBits(values[i])});
+        }
+        check(name, read, written, unit);
+    }
+
+    /**
+     * Timestamps read back are the written ones rounded to the unit and
+     * values are bit for bit the written ones.
+     */
+    private static void check(String name, List<long[]> read, List<long[]> written, long unit) {
+        if (read.size() != written.size()) {
+            throw new IllegalStateException(name + " read [" + read.size() + "] samples, expected [" + written.size() + "].");
+        }
+        for (int i = 0; i < read.size(); i++) {
+            long timestamp = unit == 1L ? written.get(i)[0] : second(written.get(i)[0]);
+            if (read.get(i)[0] != timestamp || read.get(i)[1] != written.get(i)[1]) {
+                throw new IllegalStateException(name + " sample [" + i + "] is [" + read.get(i)[0] + ", " + Double.longBitsToDouble(read.get(i)[1]) + "], expected [" + timestamp + ", " + Double.longBitsToDouble(written.get(i)[1]) + "].");
+            }
+        }
+    }
+
+    private static List<long[]> decode(byte[] bytes, int count, long unit) {
+        List<long[]> samples = new ArrayList<>();
+        GorillaBlock.decode(ByteBuffer.wrap(bytes), count, unit, (timestamp, value) -> samples.add(new long[]{timestamp, Double.doubleToRawLongBits(value)}));
+        return samples;
+    }
+
+    private static List<long[]> scan(TimeSeriesStore store, String series, String fromDay, String toDay) throws IOException {
+        List<long[]> samples = new ArrayList<>();
+        store.scan(series, fromDay, toDay, (timestamp, value) -> samples.add(new long[]{timestamp, Double.doubleToRawLongBits(value)}));
+        return samples;
+    }
+
+    private static long second(long timestamp) {
+        return Math.floorDiv(timestamp + 500, 1000L) * 1000L;
+    }
+
+    private static long start(String day) {
+        return LocalDate.parse(day, DateTimeFormatter.BASIC_ISO_DATE).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+    }
+
+    private static double[] fill(int size, double value) {
+        double[] values = new double[size];
+        Arrays.fill(values, value);
+        return values;
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] both = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, both, a.length, b.length);
+        return both;
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+}
@@ -0,0 +1,208 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.common.util;
+
+import com.alibaba.fastjson.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Expire, load, refresh ahead, merge and evict the entries of the cache from
+ * many threads at once, failing on the first value or counter that differs.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public class TestRefreshAheadCache {
+
+    private static final int THREADS = 16;
+
+    public static void main(String[] args) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            expiry();
+            loadOnce(pool);
+            refreshAhead(pool);
+            loadFailure();
+            merge(pool);
+            evict();
+        } finally {
+            pool.shutdownNow();
+        }
+        System.out.println("Refresh ahead cache checks passed.");
+    }
+
+    /**
+     * Without a loader an expired value reads as missing and is dropped, a
+     * value put with its own ttl outlives the default one.
+     */
+    private static void expiry() throws InterruptedException {
+        RefreshAheadCache<String, String> cache = new RefreshAheadCache<>("expiry", 100, 50L);
+        cache.put("short", "a");
+        cache.put("long", "b", 10 * 1000L);
+        expect("Fresh value", "a", cache.get("short"));
+        Thread.sleep(80L);
+        if (cache.containsKey("short") || cache.getIfPresent("short") != null || cache.get("short") != null) {
+            throw new IllegalStateException("Expired value is still served.");
+        }
+        expect("Value with its own ttl", "b", cache.get("long"));
+        expect("Size after an expired get", 1, cache.size());
+        cache.put("long", null);
+        expect("Size after a null put", 0, cache.size());
+    }
+
+    /**
+     * Threads missing the same key together wait for one load and all read
+     * its value.
+     */
+    private static void loadOnce(ExecutorService pool) throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        RefreshAheadCache<String, Integer> cache = new RefreshAheadCache<>("load", 100, 10 * 1000L, 0L, key -> {
+            release.await();
+            return calls.incrementAndGet();
+        });
+        List<Future<Integer>> reads = submit(pool, () -> cache.get("key"));
+        Thread.sleep(100L);
+        release.countDown();
+        for (Future<Integer> read : reads) {
+            expect("Value read by a waiting thread", 1, read.get(5, TimeUnit.SECONDS));
+        }
+        expect("Loads of a key missed together", 1, calls.get());
+        expect("Loads counted", 1L, cache.getStats().getLongValue("loads"));
+    }
+
+    /**
+     * Reads within the refresh ahead window serve the current value and start
+     * a single background reload, whose value replaces it.
+     */
+    private static void refreshAhead(ExecutorService pool) throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        RefreshAheadCache<String, Integer> cache = new RefreshAheadCache<>("refresh", 100, 400L, 300L, key -> {
+            if (calls.get() > 0) {
+                release.await();
+            }
+            return calls.incrementAndGet();
+        });
+        expect("First load", 1, cache.get("key"));
+        Thread.sleep(150L);
+        for (Future<Integer> read : submit(pool, () -> cache.get("key"))) {
+            expect("Value served while refreshing", 1, read.get(5, TimeUnit.SECONDS));
+        }
+        JSONObject stats = cache.getStats();
+        expect("Refreshes started by reads in the window", 1L, stats.getLongValue("refreshes"));
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (!Integer.valueOf(2).equals(cache.getIfPresent("key")) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+        expect("Value after the refresh", 2, cache.getIfPresent("key"));
+        expect("Loads of the key", 2, calls.get());
+    }
+
+    /**
+     * A failing reload keeps serving the expired value and is retried on the
+     * next read.
+     */
+    private static void loadFailure() throws InterruptedException {
+        AtomicInteger calls = new AtomicInteger();
+        RefreshAheadCache<String, String> cache = new RefreshAheadCache<>("failure", 100, 50L, 0L, key -> {
+            if (calls.incrementAndGet() == 2) {
+                throw new IllegalStateException("Connection refused.");
+            }
+            return key + calls.get();
+        });
+        expect("First load", "key1", cache.get("key"));
+        Thread.sleep(80L);
+        expect("Expired value served on a failure", "key1", cache.get("key"));
+        expect("Load failures", 1L, cache.getStats().getLongValue("loadFailures"));
+        expect("Retried load", "key3", cache.get("key"));
+    }
+
+    /**
+     * Merges from many threads are not lost and an expired value starts over.
+     */
+    private static void merge(ExecutorService pool) throws Exception {
+        RefreshAheadCache<String, Integer> cache = new RefreshAheadCache<>("merge", 100, 10 * 1000L);
+        for (Future<Integer> merged : submit(pool, () -> {
+            for (int i = 0; i < 1000; i++) {
+                cache.merge("sum", 1, Integer::sum);
+            }
+            return 0;
+        })) {
+            merged.get(5, TimeUnit.SECONDS);
+        }
+        expect("Merged sum", THREADS * 1000, cache.get("sum"));
+
+        RefreshAheadCache<String, String> logs = new RefreshAheadCache<>("logs", 100, 50L);
+        logs.merge("job", "a", (a, b) -> a + b);
+        expect("Merged log", "ab", logs.merge("job", "b", (a, b) -> a + b));
+        Thread.sleep(80L);
+        expect("Merged into an expired log", "c", logs.merge("job", "c", (a, b) -> a + b));
+        if (logs.merge("job", "d", (a, b) -> null) != null || logs.containsKey("job")) {
+            throw new IllegalStateException("Merge to null must remove the key.");
+        }
+    }
+
+    /**
+     * Beyond the max size the entries put first go, a tenth more than the
+     * overflow.
+     */
+    private static void evict() throws InterruptedException {
+        RefreshAheadCache<Integer, Integer> cache = new RefreshAheadCache<>("evict", 10, 0L);
+        for (int i = 0; i < 11; i++) {
+            cache.put(i, i);
+            Thread.sleep(2L);
+        }
+        expect("Size after the overflow", 9, cache.size());
+        if (cache.containsKey(0) || cache.containsKey(1) || !cache.containsKey(2) || !cache.containsKey(10)) {
+            throw new IllegalStateException("Eviction did not drop the oldest entries.");
+        }
+        expect("Evictions", 2L, cache.getStats().getLongValue("evictions"));
+    }
+
+    private static <T> List<Future<T>> submit(ExecutorService pool, Callable<T> task) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<T>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                return task.call();
+            }));
+        }
+        start.countDown();
+        return futures;
+    }
+
+    private static void expect(String name, Object expected, Object actual) {
+        if (expected == null ? actual != null : !expected.equals(actual)) {
+            throw new IllegalStateException(name + " is [" + actual + "], expected [" + expected + "].");
+        }
+    }
+
+}
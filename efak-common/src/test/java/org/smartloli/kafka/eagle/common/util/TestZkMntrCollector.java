@@ -0,0 +1,187 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.common.util;
+
+import org.smartloli.kafka.eagle.common.protocol.ZkMntrInfo;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Poll fake zookeeper servers answering late, refusing mntr, never answering
+ * or not listening at all in one pass, failing when a pass takes the sum of
+ * the answers instead of the slowest one or a server gets another's state.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public class TestZkMntrCollector {
+
+    private static final long DELAY = 400L;
+    private static final long TIMEOUT = 1000L;
+
+    private static final String LEADER = "zk_version\t3.6.3--6401e4ad2087061bc6b9f80dec2d69f2e3c8660a, built on 04/08/2021 16:35 GMT\n"
+            + "zk_server_state\tleader\n"
+            + "zk_avg_latency\t0.5\n"
+            + "zk_min_latency\t0\n"
+            + "zk_max_latency\t27\n"
+            + "zk_p99_readlatency\t3.0\n"
+            + "zk_packets_received\t123456\n"
+            + "zk_znode_count\t4321\n"
+            + "zk_followers\t2\n"
+            + "zk_synced_followers\t2\n"
+            + "zk_pending_syncs\tbad\n";
+    private static final String FOLLOWER = "zk_version  3.4.14\nzk_server_state  follower\nzk_num_alive_connections  12\n";
+    private static final String WHITELIST = "mntr is not executed because it is not in the whitelist.\n";
+
+    public static void main(String[] args) throws Exception {
+        parse();
+        List<Closeable> servers = new ArrayList<>();
+        try {
+            int leader = serve(servers, LEADER, DELAY);
+            int follower = serve(servers, FOLLOWER, DELAY);
+            int observer = serve(servers, FOLLOWER.replace("follower", "observer"), DELAY);
+            int whitelist = serve(servers, WHITELIST, 0L);
+            int silent = serve(servers, null, 0L);
+            int refused = refused();
+
+            List<String> ensemble = Arrays.asList("127.0.0.1:" + leader, "127.0.0.1:" + follower + "/kafka", "127.0.0.1:" + observer,
+                    "127.0.0.1:" + whitelist, "127.0.0.1:" + silent, "127.0.0.1:" + refused, "localhost", "127.0.0.1:" + leader);
+            long start = System.currentTimeMillis();
+            Map<String, ZkMntrInfo> results = ZkMntrCollector.collect(ensemble, TIMEOUT);
+            long elapsed = System.currentTimeMillis() - start;
+
+            // three answers late by the delay arrive in one delay, alone they would miss the timeout
+            if (elapsed < TIMEOUT || elapsed > TIMEOUT + 500L) {
+                throw new IllegalStateException("Pass took [" + elapsed + "]ms, expected the timeout of the silent server.");
+            }
+            expect("Servers polled once each", 7, results.size());
+            ZkMntrInfo info = results.get("127.0.0.1:" + leader);
+            expect("Leader alive", true, info.isAlive());
+            expect("Leader state", "leader", info.getServerState());
+            expect("Leader followers", 2L, info.getFollowers());
+            expect("Leader max latency", 27L, info.getMaxLatency());
+            expect("Leader p99", 3.0, info.getP99Latency());
+            expect("Leader p50 not reported", -1.0, info.getP50Latency());
+            expect("Leader pending syncs not a number", 0L, info.getPendingSyncs());
+            info = results.get("127.0.0.1:" + follower + "/kafka");
+            expect("Follower alive", true, info.isAlive());
+            expect("Follower port without the chroot", follower, info.getPort());
+            expect("Follower state", "follower", info.getServerState());
+            expect("Follower connections", 12L, info.getNumAliveConnections());
+            expect("Observer state", "observer", results.get("127.0.0.1:" + observer).getServerState());
+            info = results.get("127.0.0.1:" + whitelist);
+            expect("Whitelist refusal alive", false, info.isAlive());
+            expect("Whitelist refusal error", WHITELIST.trim(), info.getError());
+            info = results.get("127.0.0.1:" + silent);
+            expect("Silent server alive", false, info.isAlive());
+            expect("Silent server error", "No answer within " + TIMEOUT + "ms", info.getError());
+            expect("Refused server alive", false, results.get("127.0.0.1:" + refused).isAlive());
+            if (results.get("localhost").isAlive() || results.get("localhost").getError().isEmpty()) {
+                throw new IllegalStateException("Server without a port must fail with a reason.");
+            }
+        } finally {
+            for (Closeable server : servers) {
+                server.close();
+            }
+        }
+        System.out.println("Zookeeper mntr collector checks passed.");
+    }
+
+    /**
+     * Pairs split on tabs or spaces, lines not of zookeeper ignored.
+     */
+    private static void parse() {
+        ZkMntrInfo info = ZkMntrCollector.parse(new ZkMntrInfo(), "zk_version\t3.8.0\n\nzk_avg_latency   1.25\r\nnot_zk 1\nzk_server_state standalone\n");
+        expect("Parsed alive", true, info.isAlive());
+        expect("Parsed version", "3.8.0", info.getVersion());
+        expect("Parsed latency", 1.25, info.getAvgLatency());
+        expect("Parsed state", "standalone", info.getServerState());
+        expect("Parsed metrics", 3, info.getMetrics().size());
+        info = ZkMntrCollector.parse(new ZkMntrInfo(), "  ");
+        expect("Empty answer alive", false, info.isAlive());
+        expect("Empty answer error", "Empty mntr answer", info.getError());
+    }
+
+    /**
+     * Fake server answering every connection after the delay and closing it,
+     * or holding it open without an answer when there is none.
+     */
+    private static int serve(List<Closeable> servers, String answer, long delay) throws IOException {
+        ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        List<Socket> accepted = new ArrayList<>();
+        servers.add(() -> {
+            server.close();
+            synchronized (accepted) {
+                for (Socket socket : accepted) {
+                    socket.close();
+                }
+            }
+        });
+        Thread thread = new Thread(() -> {
+            while (!server.isClosed()) {
+                try {
+                    Socket socket = server.accept();
+                    synchronized (accepted) {
+                        accepted.add(socket);
+                    }
+                    if (answer == null) {
+                        continue;
+                    }
+                    // the collector shuts its output down after the command
+                    InputStream in = socket.getInputStream();
+                    while (in.read() >= 0) {
+                    }
+                    Thread.sleep(delay);
+                    OutputStream out = socket.getOutputStream();
+                    out.write(answer.getBytes(StandardCharsets.UTF_8));
+                    socket.close();
+                } catch (Exception e) {
+                    return;
+                }
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return server.getLocalPort();
+    }
+
+    private static int refused() throws IOException {
+        try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            return server.getLocalPort();
+        }
+    }
+
+    private static void expect(String name, Object expected, Object actual) {
+        if (!expected.equals(actual)) {
+            throw new IllegalStateException(name + " is [" + actual + "], expected [" + expected + "].");
+        }
+    }
+
+}
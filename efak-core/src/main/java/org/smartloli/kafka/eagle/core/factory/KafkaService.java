@@ -20,6 +20,7 @@ package org.smartloli.kafka.eagle.core.factory;
 import com.alibaba.fastjson.JSONObject;
 import org.apache.kafka.common.TopicPartition;
 import org.smartloli.kafka.eagle.common.protocol.*;
+import org.smartloli.kafka.eagle.common.protocol.consumer.ConsumerGroupSnapshotInfo;
 
 import java.util.List;
 import java.util.Map;
@@ -117,6 +118,11 @@ public interface KafkaService {
      */
     public String getKafkaConsumer(String clusterAlias, DisplayInfo page);
 
+    /**
+     * Get kafka consumer groups, coordinators, members and committed offsets.
+     */
+    public ConsumerGroupSnapshotInfo getKafkaConsumerSnapshot(String clusterAlias);
+
     @Deprecated
     /** Get kafka consumer information pages. */
     public String getKafkaActiverSize(String clusterAlias, String group);
@@ -23,47 +23,51 @@ import com.alibaba.fastjson.JSONObject;
 import kafka.zk.KafkaZkClient;
 import org.apache.kafka.clients.CommonClientConfigs;
 import org.apache.kafka.clients.admin.*;
-import org.apache.kafka.clients.consumer.ConsumerConfig;
-import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.apache.kafka.clients.consumer.OffsetAndMetadata;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.KafkaFuture;
 import org.apache.kafka.common.Node;
 import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.config.SaslConfigs;
 import org.apache.kafka.common.config.SslConfigs;
-import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.apache.zookeeper.data.Stat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.smartloli.kafka.eagle.common.constant.JmxConstants.BrokerServer;
 import org.smartloli.kafka.eagle.common.constant.JmxConstants.KafkaServer8;
-import org.smartloli.kafka.eagle.common.constant.KSqlParser;
 import org.smartloli.kafka.eagle.common.protocol.*;
 import org.smartloli.kafka.eagle.common.protocol.cache.BrokerCache;
-import org.smartloli.kafka.eagle.common.protocol.topic.TopicPartitionSchema;
+import org.smartloli.kafka.eagle.common.protocol.consumer.ConsumerGroupMetaInfo;
+import org.smartloli.kafka.eagle.common.protocol.consumer.ConsumerGroupSnapshotInfo;
+import org.smartloli.kafka.eagle.common.protocol.consumer.ConsumerMemberInfo;
 import org.smartloli.kafka.eagle.common.util.*;
 import org.smartloli.kafka.eagle.common.util.KConstants.BrokerSever;
 import org.smartloli.kafka.eagle.common.util.KConstants.CollectorType;
 import org.smartloli.kafka.eagle.common.util.KConstants.Kafka;
+import org.smartloli.kafka.eagle.common.util.KafkaZKPoolUtils.ZkLease;
+import org.smartloli.kafka.eagle.core.factory.client.JMXConnectionPool;
+import org.smartloli.kafka.eagle.core.factory.client.KafkaClientRegistry;
+import org.smartloli.kafka.eagle.core.factory.offset.KafkaOffsetSnapshotService;
+import org.smartloli.kafka.eagle.core.factory.offset.TopicOffsetSnapshot;
 import org.smartloli.kafka.eagle.core.sql.execute.KafkaConsumerAdapter;
+import org.smartloli.kafka.eagle.core.task.parser.KSqlParser;
+import org.smartloli.kafka.eagle.core.task.parser.KSqlPlan;
 import scala.Option;
 import scala.Tuple2;
 import scala.collection.JavaConversions;
 import scala.collection.Seq;
 
-import javax.management.MBeanServerConnection;
 import javax.management.ObjectName;
-import javax.management.remote.JMXConnector;
-import javax.management.remote.JMXServiceURL;
-import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
 import java.util.*;
 import java.util.Map.Entry;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Implements KafkaService all method.
@@ -98,6 +102,29 @@ public class KafkaServiceImpl implements KafkaService {
      */
     private ZkService zkService = new ZkFactory().create();
 
+    /**
+     * Pooled kafka admin and offset lookup clients.
+     */
+    private KafkaClientRegistry clientRegistry = KafkaClientRegistry.getInstance();
+
+    /**
+     * Pooled broker jmx connections.
+     */
+    private JMXConnectionPool jmxPool = JMXConnectionPool.getInstance();
+
+    /**
+     * Cluster wide beginning and end offsets shared by collectors and pages.
+     */
+    private KafkaOffsetSnapshotService offsetSnapshotService = KafkaOffsetSnapshotService.getInstance();
+
+    /**
+     * Consumer group snapshots shared by pages and collectors, keyed by cluster.
+     */
+    private static final Map<String, ConsumerGroupSnapshotInfo> CONSUMER_SNAPSHOTS = new ConcurrentHashMap<>();
+    private static final Map<String, CompletableFuture<ConsumerGroupSnapshotInfo>> CONSUMER_SNAPSHOT_LOADS = new ConcurrentHashMap<>();
+    private static final long CONSUMER_SNAPSHOT_TTL_MS = SystemConfigUtils.getLongProperty("efak.kafka.consumer.snapshot.ms", 30 * 1000L);
+    private static final int CONSUMER_OFFSETS_PARALLEL = Math.max(1, SystemConfigUtils.getIntProperty("efak.kafka.consumer.offsets.parallel", 64));
+
     /**
      * Find topic and group exist in zookeeper.
      *
@@ -106,18 +133,13 @@ public class KafkaServiceImpl implements KafkaService {
      * @return Boolean.
      */
     public boolean findTopicAndGroupExist(String clusterAlias, String topic, String group) {
-        KafkaZkClient zkc = kafkaZKPool.getZkClient(clusterAlias);
         String ownersPath = CONSUMERS_PATH + "/" + group + "/owners/" + topic;
         boolean status = false;
-        try {
+        try (ZkLease lease = kafkaZKPool.lease(clusterAlias)) {
+            KafkaZkClient zkc = lease.client();
             status = zkc.pathExists(ownersPath);
         } catch (Exception e) {
             LoggerUtils.print(this.getClass()).error("Find topic and group exist has error, msg is ", e);
-        } finally {
-            if (zkc != null) {
-                kafkaZKPool.release(clusterAlias, zkc);
-                zkc = null;
-            }
         }
         return status;
     }
@@ -129,20 +151,14 @@ public class KafkaServiceImpl implements KafkaService {
      * @return List.
      */
     public List<String> findTopicPartition(String clusterAlias, String topic) {
-        KafkaZkClient zkc = kafkaZKPool.getZkClient(clusterAlias);
         List<String> topicAndPartitions = null;
         Seq<String> brokerTopicsPaths = null;
-        try {
+        try (ZkLease lease = kafkaZKPool.lease(clusterAlias)) {
+            KafkaZkClient zkc = lease.client();
             brokerTopicsPaths = zkc.getChildren(BROKER_TOPICS_PATH + "/" + topic + "/partitions");
             topicAndPartitions = JavaConversions.seqAsJavaList(brokerTopicsPaths);
         } catch (Exception e) {
             LoggerUtils.print(this.getClass()).error("Find topic partition has error, msg is ", e);
-        } finally {
-            if (zkc != null) {
-                kafkaZKPool.release(clusterAlias, zkc);
-                zkc = null;
-                brokerTopicsPaths = null;
-            }
         }
         return topicAndPartitions;
     }
@@ -151,7 +167,6 @@ public class KafkaServiceImpl implements KafkaService {
      * Get kafka active consumer topic.
      */
     public Map<String, List<String>> getActiveTopic(String clusterAlias) {
-        KafkaZkClient zkc = kafkaZKPool.getZkClient(clusterAlias);
         // k : v = group_topic : List<Topic>
         // [
         //    g1_t1 : {t1},
@@ -162,7 +177,8 @@ public class KafkaServiceImpl implements KafkaService {
         //    g2_t7 : {t7},
         // ]
         Map<String, List<String>> actvTopics = new HashMap<String, List<String>>();
-        try {
+        try (ZkLease lease = kafkaZKPool.lease(clusterAlias)) {
+            KafkaZkClient zkc = lease.client();
             Seq<String> subConsumerPaths = zkc.getChildren(CONSUMERS_PATH);
             List<String> groups = JavaConversions.seqAsJavaList(subConsumerPaths);
             // groupsAndTopics :
@@ -201,11 +217,6 @@ public class KafkaServiceImpl implements KafkaService {
             }
         } catch (Exception e) {
             LoggerUtils.print(this.getClass()).error("Get active topic has error, msg is ", e);
-        } finally {
-            if (zkc != null) {
-                kafkaZKPool.release(clusterAlias, zkc);
-                zkc = null;
-            }
         }
         return actvTopics;
     }
@@ -214,20 +225,15 @@ public class KafkaServiceImpl implements KafkaService {
      * Get kafka active consumer topic.
      */
     public Set<String> getActiveTopic(String clusterAlias, String group) {
-        KafkaZkClient zkc = kafkaZKPool.getZkClient(clusterAlias);
         Set<String> activeTopics = new HashSet<>();
-        try {
+        try (ZkLease lease = kafkaZKPool.lease(clusterAlias)) {
+            KafkaZkClient zkc = lease.client();
             Seq<String> topics = zkc.getChildren(CONSUMERS_PATH + "/" + group + OWNERS);
             for (String topic : JavaConversions.seqAsJavaList(topics)) {
                 activeTopics.add(topic);
             }
         } catch (Exception e) {
             LOG.error("Get kafka active topic has error, msg is ", e);
-        } finally {
-            if (zkc != null) {
-                kafkaZKPool.release(clusterAlias, zkc);
-                zkc = null;
-            }
         }
         return activeTopics;
     }
@@ -236,9 +242,9 @@ public class KafkaServiceImpl implements KafkaService {
      * Get all broker list from zookeeper.
      */
     public List<BrokersInfo> getAllBrokersInfo(String clusterAlias) {
-        KafkaZkClient zkc = kafkaZKPool.getZkClient(clusterAlias);
         List<BrokersInfo> targets = new ArrayList<BrokersInfo>();
-        try {
+        try (ZkLease lease = kafkaZKPool.lease(clusterAlias)) {
+            KafkaZkClient zkc = lease.client();
             if (zkc.pathExists(BROKER_IDS_PATH)) {
                 Seq<String> subBrokerIdsPaths = zkc.getChildren(BROKER_IDS_PATH);
                 List<String> brokerIdss = JavaConversions.seqAsJavaList(subBrokerIdsPaths);
@@ -302,11 +308,6 @@ public class KafkaServiceImpl implements KafkaService {
             }
         } catch (Exception e) {
             LoggerUtils.print(this.getClass()).error("Get all brokers info has error,msg is ", e);
-        } finally {
-            if (zkc != null) {
-                kafkaZKPool.release(clusterAlias, zkc);
-                zkc = null;
-            }
         }
         return targets;
     }
@@ -315,9 +316,9 @@ public class KafkaServiceImpl implements KafkaService {
      * Obtaining kafka consumer information from zookeeper.
      */
     public Map<String, List<String>> getConsumers(String clusterAlias) {
-        KafkaZkClient zkc = kafkaZKPool.getZkClient(clusterAlias);
         Map<String, List<String>> consumers = new HashMap<String, List<String>>();
-        try {
+        try (ZkLease lease = kafkaZKPool.lease(clusterAlias)) {
+            KafkaZkClient zkc = lease.client();
             Seq<String> subConsumerPaths = zkc.getChildren(CONSUMERS_PATH);
             List<String> groups = JavaConversions.seqAsJavaList(subConsumerPaths);
             for (String group : groups) {
@@ -332,11 +333,6 @@ public class KafkaServiceImpl implements KafkaService {
             }
         } catch (Exception ex) {
             LOG.error(ex.getMessage());
-        } finally {
-            if (zkc != null) {
-                kafkaZKPool.release(clusterAlias, zkc);
-                zkc = null;
-            }
         }
         return consumers;
     }
@@ -345,19 +341,14 @@ public class KafkaServiceImpl implements KafkaService {
      * According to topic and partition to obtain Replicas & Isr.
      */
     public String getReplicasIsr(String clusterAlias, String topic, int partitionid) {
-        KafkaZkClient zkc = kafkaZKPool.getZkClient(clusterAlias);
         TopicPartition tp = new TopicPartition(topic, partitionid);
         List<Object> targets = null;
-        try {
+        try (ZkLease lease = kafkaZKPool.lease(clusterAlias)) {
+            KafkaZkClient zkc = lease.client();
             Seq<Object> replis = zkc.getReplicasForPartition(tp);
             targets = JavaConversions.seqAsJavaList(replis);
         } catch (Exception e) {
             LoggerUtils.print(this.getClass()).error("Get topic replicas isr has error, msg is ", e);
-        } finally {
-            if (zkc != null) {
-                kafkaZKPool.release(clusterAlias, zkc);
-                zkc = null;
-            }
         }
         return targets.toString();
     }
@@ -385,22 +376,12 @@ public class KafkaServiceImpl implements KafkaService {
      */
     public JSONObject zkCliStatus(String clusterAlias) {
         JSONObject target = new JSONObject();
-        KafkaZkClient zkc = kafkaZKPool.getZkClient(clusterAlias);
-        try {
-            if (zkc != null) {
-                target.put("live", true);
-                target.put("list", SystemConfigUtils.getProperty(clusterAlias + ".zk.list"));
-            } else {
-                target.put("live", false);
-                target.put("list", SystemConfigUtils.getProperty(clusterAlias + ".zk.list"));
-            }
+        target.put("list", SystemConfigUtils.getProperty(clusterAlias + ".zk.list"));
+        try (ZkLease lease = kafkaZKPool.lease(clusterAlias)) {
+            target.put("live", lease.client() != null);
         } catch (Exception e) {
+            target.put("live", false);
             LoggerUtils.print(this.getClass()).error("Get zookeeper client status has error,msg is ", e);
-        } finally {
-            if (zkc != null) {
-                kafkaZKPool.release(clusterAlias, zkc);
-                zkc = null;
-            }
         }
         return target;
     }
@@ -426,25 +407,12 @@ public class KafkaServiceImpl implements KafkaService {
             targets.put("info", "replication factor: " + replic + " larger than available brokers: " + brokers);
             return targets;
         }
-        Properties prop = new Properties();
-        prop.put(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, parseBrokerServer(clusterAlias));
-
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.sasl.enable")) {
-            sasl(prop, clusterAlias);
-        }
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.ssl.enable")) {
-            ssl(prop, clusterAlias);
-        }
-
-        AdminClient adminClient = null;
-        try {
-            adminClient = AdminClient.create(prop);
+        try (KafkaClientRegistry.AdminLease lease = clientRegistry.borrowAdminClient(clusterAlias)) {
+            AdminClient adminClient = lease.client();
             NewTopic newTopic = new NewTopic(topicName, Integer.valueOf(partitions), Short.valueOf(replic));
             adminClient.createTopics(Collections.singleton(newTopic)).all().get();
         } catch (Exception e) {
             LoggerUtils.print(this.getClass()).error("Create kafka topic has error, msg is ", e);
-        } finally {
-            adminClient.close();
         }
 
         targets.put("status", "success");
@@ -457,27 +425,15 @@ public class KafkaServiceImpl implements KafkaService {
      */
     public Map<String, Object> delete(String clusterAlias, String topicName) {
         Map<String, Object> targets = new HashMap<String, Object>();
-        Properties prop = new Properties();
-        prop.put(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, parseBrokerServer(clusterAlias));
-
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.sasl.enable")) {
-            sasl(prop, clusterAlias);
-        }
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.ssl.enable")) {
-            ssl(prop, clusterAlias);
-        }
-
-        AdminClient adminClient = null;
-        try {
-            adminClient = AdminClient.create(prop);
+        try (KafkaClientRegistry.AdminLease lease = clientRegistry.borrowAdminClient(clusterAlias)) {
+            AdminClient adminClient = lease.client();
             adminClient.deleteTopics(Collections.singleton(topicName)).all().get();
+            offsetSnapshotService.invalidate(clusterAlias);
             targets.put("status", "success");
         } catch (Exception e) {
             LOG.info("Delete kafka topic has error, msg is " + e.getMessage());
             e.printStackTrace();
             targets.put("status", "failed");
-        } finally {
-            adminClient.close();
         }
         return targets;
     }
@@ -580,13 +536,14 @@ public class KafkaServiceImpl implements KafkaService {
             kafkaSql.setStatus(false);
             return kafkaSql;
         } else {
-            TopicPartitionSchema tps = KSqlParser.parserTopic(sql);
-            if (tps != null && !"".equals(tps.getTopic())) {
+            // the same plan the distributed query and the scan read
+            KSqlPlan plan = KSqlParser.plan(sql);
+            if (plan != null && !"".equals(plan.getTopic())) {
                 kafkaSql.setStatus(true);
-                kafkaSql.setTableName(tps.getTopic());
+                kafkaSql.setTableName(plan.getTopic());
                 kafkaSql.setSeeds(getBrokers(clusterAlias));
-                kafkaSql.setPartition(tps.getPartitions());
-                kafkaSql.setLimit(tps.getLimit());
+                kafkaSql.setPartition(plan.getPartitions().isEmpty() ? Arrays.asList(Kafka.ALL_PARTITION) : new ArrayList<>(plan.getPartitions()));
+                kafkaSql.setLimit(plan.getLimit());
             }
         }
         return kafkaSql;
@@ -596,184 +553,201 @@ public class KafkaServiceImpl implements KafkaService {
      * Get kafka 0.10.x after activer topics.
      */
     public Set<String> getKafkaActiverTopics(String clusterAlias, String group) {
-        JSONArray consumerGroups = getKafkaMetadata(parseBrokerServer(clusterAlias), group, clusterAlias);
-        Set<String> topics = new HashSet<>();
-        for (Object object : consumerGroups) {
-            JSONObject consumerGroup = (JSONObject) object;
-            for (Object topicObject : consumerGroup.getJSONArray("topicSub")) {
-                JSONObject topic = (JSONObject) topicObject;
-                if (!"".equals(consumerGroup.getString("owner")) && consumerGroup.getString("owner") != null) {
-                    topics.add(topic.getString("topic"));
-                }
-            }
-        }
-        return topics;
+        return getKafkaGroupMeta(clusterAlias, group).getActiveTopics();
     }
 
     public Set<String> getKafkaConsumerTopics(String clusterAlias, String group) {
-        JSONArray consumerGroups = getKafkaMetadata(parseBrokerServer(clusterAlias), group, clusterAlias);
-        Set<String> topics = new HashSet<>();
-        for (Object object : consumerGroups) {
-            JSONObject consumerGroup = (JSONObject) object;
-            for (Object topicObject : consumerGroup.getJSONArray("topicSub")) {
-                JSONObject topic = (JSONObject) topicObject;
-                topics.add(topic.getString("topic"));
-            }
-        }
-        return topics;
+        return getKafkaGroupMeta(clusterAlias, group).getTopics();
     }
 
     /**
-     * Get kafka 0.10.x, 1.x, 2.x consumer metadata.
+     * Get all consumer groups of the cluster, a snapshot younger than
+     * 'efak.kafka.consumer.snapshot.ms' is shared instead of re-querying.
+     * Concurrent callers wait for one collect of the cluster. When it fails
+     * the previous snapshot is served, or an empty one that is not collected
+     * and not cached.
      */
-    public String getKafkaConsumer(String clusterAlias) {
-        Properties prop = new Properties();
-        JSONArray consumerGroups = new JSONArray();
-        prop.put(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, parseBrokerServer(clusterAlias));
-
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.sasl.enable")) {
-            sasl(prop, clusterAlias);
+    public ConsumerGroupSnapshotInfo getKafkaConsumerSnapshot(String clusterAlias) {
+        ConsumerGroupSnapshotInfo snapshot = CONSUMER_SNAPSHOTS.get(clusterAlias);
+        if (snapshot != null && !snapshot.isExpired(CONSUMER_SNAPSHOT_TTL_MS)) {
+            return snapshot;
+        }
+        CompletableFuture<ConsumerGroupSnapshotInfo> load = new CompletableFuture<>();
+        CompletableFuture<ConsumerGroupSnapshotInfo> inFlight = CONSUMER_SNAPSHOT_LOADS.putIfAbsent(clusterAlias, load);
+        if (inFlight == null) {
+            inFlight = load;
+            try {
+                ConsumerGroupSnapshotInfo created = createKafkaConsumerSnapshot(clusterAlias);
+                if (created != null) {
+                    CONSUMER_SNAPSHOTS.put(clusterAlias, created);
+                }
+                load.complete(created);
+            } catch (RuntimeException e) {
+                LOG.error("Get cluster[" + clusterAlias + "] kafka consumer snapshot has error, msg is " + e.getMessage());
+            } finally {
+                CONSUMER_SNAPSHOT_LOADS.remove(clusterAlias, load);
+                load.complete(null);
+            }
         }
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.ssl.enable")) {
-            ssl(prop, clusterAlias);
+        ConsumerGroupSnapshotInfo created = inFlight.join();
+        if (created != null) {
+            return created;
+        }
+        if (snapshot != null) {
+            return snapshot;
         }
+        ConsumerGroupSnapshotInfo unavailable = new ConsumerGroupSnapshotInfo();
+        unavailable.setCluster(clusterAlias);
+        return unavailable;
+    }
 
-        AdminClient adminClient = null;
-        try {
-            adminClient = AdminClient.create(prop);
-            ListConsumerGroupsResult cgrs = adminClient.listConsumerGroups();
-            java.util.Iterator<ConsumerGroupListing> itor = cgrs.all().get().iterator();
-            while (itor.hasNext()) {
-                ConsumerGroupListing gs = itor.next();
-                JSONObject consumerGroup = new JSONObject();
-                String groupId = gs.groupId();
-                DescribeConsumerGroupsResult descConsumerGroup = adminClient.describeConsumerGroups(Arrays.asList(groupId));
-                if (!groupId.contains("efak")) {
-                    consumerGroup.put("group", groupId);
-                    try {
-                        Node node = descConsumerGroup.all().get().get(groupId).coordinator();
-                        consumerGroup.put("node", node.host() + ":" + node.port());
-                    } catch (Exception e) {
-                        LOG.error("Get coordinator node has error, msg is " + e.getMessage());
-                        e.printStackTrace();
-                    }
-                    consumerGroup.put("meta", getKafkaMetadata(parseBrokerServer(clusterAlias), groupId, clusterAlias));
-                    consumerGroups.add(consumerGroup);
+    /**
+     * Collect consumer groups with one batched describe and a bounded
+     * concurrent fan-out of committed offsets, null when the groups can not
+     * be listed.
+     */
+    private ConsumerGroupSnapshotInfo createKafkaConsumerSnapshot(String clusterAlias) {
+        ConsumerGroupSnapshotInfo snapshot = new ConsumerGroupSnapshotInfo(clusterAlias);
+        try (KafkaClientRegistry.AdminLease lease = clientRegistry.borrowAdminClient(clusterAlias)) {
+            AdminClient adminClient = lease.client();
+            List<String> groupIds = new ArrayList<>();
+            for (ConsumerGroupListing listing : adminClient.listConsumerGroups().all().get()) {
+                if (!listing.groupId().contains("efak")) {
+                    groupIds.add(listing.groupId());
                 }
             }
+            for (ConsumerGroupMetaInfo group : describeKafkaGroups(clusterAlias, adminClient, groupIds)) {
+                snapshot.addGroup(group);
+            }
+            // every committed offset was read by now, end offsets read later are never older
+            snapshot.setTimestamp(System.currentTimeMillis());
         } catch (Exception e) {
-            LOG.error("Get kafka consumer has error,msg is " + e.getMessage());
+            LOG.error("Get cluster[" + clusterAlias + "] kafka consumer snapshot has error, msg is " + e.getMessage());
             e.printStackTrace();
-        } finally {
-            adminClient.close();
+            return null;
         }
-        return consumerGroups.toJSONString();
+        return snapshot;
     }
 
     /**
-     * Get kafka 0.10.x consumer group & topic information used for page.
+     * Describe consumer groups, a failed group keeps its name with empty metadata.
      */
-    public String getKafkaConsumer(String clusterAlias, DisplayInfo page) {
-        Properties prop = new Properties();
-        JSONArray consumerGroups = new JSONArray();
-        prop.put(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, parseBrokerServer(clusterAlias));
-
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.sasl.enable")) {
-            sasl(prop, clusterAlias);
-        }
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.ssl.enable")) {
-            ssl(prop, clusterAlias);
-        }
-
-        AdminClient adminClient = null;
-        try {
-            adminClient = AdminClient.create(prop);
-            ListConsumerGroupsResult cgrs = adminClient.listConsumerGroups();
-            java.util.Iterator<ConsumerGroupListing> itor = cgrs.all().get().iterator();
-            if (page.getSearch().length() > 0) {
-                int offset = 0;
-                boolean flag = itor.hasNext();
-                while (flag) {
-                    ConsumerGroupListing gs = itor.next();
-                    JSONObject consumerGroup = new JSONObject();
-                    String groupId = gs.groupId();
-                    DescribeConsumerGroupsResult descConsumerGroup = adminClient.describeConsumerGroups(Arrays.asList(groupId));
-                    if (!groupId.contains("efak") && groupId.contains(page.getSearch())) {
-                        if (offset < (page.getiDisplayLength() + page.getiDisplayStart()) && offset >= page.getiDisplayStart()) {
-                            consumerGroup.put("group", groupId);
-                            try {
-                                Node node = descConsumerGroup.all().get().get(groupId).coordinator();
-                                consumerGroup.put("node", node.host() + ":" + node.port());
-                            } catch (Exception e) {
-                                LOG.error("Get coordinator node has error, msg is " + e.getMessage());
-                                e.printStackTrace();
-                            }
-                            consumerGroup.put("meta", getKafkaMetadata(parseBrokerServer(clusterAlias), groupId, clusterAlias));
-                            consumerGroups.add(consumerGroup);
-                        }
-                        offset++;
+    private List<ConsumerGroupMetaInfo> describeKafkaGroups(String clusterAlias, AdminClient adminClient, List<String> groupIds) {
+        List<ConsumerGroupMetaInfo> groups = new ArrayList<>();
+        if (groupIds.isEmpty()) {
+            return groups;
+        }
+        Map<String, KafkaFuture<ConsumerGroupDescription>> describes = adminClient.describeConsumerGroups(groupIds).describedGroups();
+        for (int start = 0; start < groupIds.size(); start += CONSUMER_OFFSETS_PARALLEL) {
+            List<String> batch = groupIds.subList(start, Math.min(start + CONSUMER_OFFSETS_PARALLEL, groupIds.size()));
+            Map<String, KafkaFuture<Map<TopicPartition, OffsetAndMetadata>>> offsets = new HashMap<>();
+            for (String groupId : batch) {
+                offsets.put(groupId, adminClient.listConsumerGroupOffsets(groupId).partitionsToOffsetAndMetadata());
+            }
+            for (String groupId : batch) {
+                ConsumerGroupMetaInfo group = new ConsumerGroupMetaInfo();
+                group.setGroup(groupId);
+                try {
+                    ConsumerGroupDescription description = describes.get(groupId).get();
+                    Node node = description.coordinator();
+                    if (node != null) {
+                        group.setNode(node.host() + ":" + node.port());
                     }
-                    flag = itor.hasNext();
-                    if (offset >= page.getiDisplayLength() + page.getiDisplayStart()) {
-                        flag = false;
+                    for (MemberDescription memberDescription : description.members()) {
+                        ConsumerMemberInfo member = new ConsumerMemberInfo();
+                        member.setOwner(memberDescription.consumerId());
+                        member.setNode(memberDescription.host().replaceAll("/", ""));
+                        member.setPartitions(new ArrayList<>(memberDescription.assignment().topicPartitions()));
+                        group.getMembers().add(member);
                     }
+                } catch (Exception e) {
+                    LOG.error("Describe cluster[" + clusterAlias + "] group[" + groupId + "] has error, msg is " + e.getMessage());
                 }
-            } else {
-                int offset = 0;
-                boolean flag = itor.hasNext();
-                while (flag) {
-                    ConsumerGroupListing gs = itor.next();
-                    JSONObject consumerGroup = new JSONObject();
-                    String groupId = gs.groupId();
-                    DescribeConsumerGroupsResult descConsumerGroup = adminClient.describeConsumerGroups(Arrays.asList(groupId));
-                    if (!groupId.contains("efak")) {
-                        if (offset < (page.getiDisplayLength() + page.getiDisplayStart()) && offset >= page.getiDisplayStart()) {
-                            consumerGroup.put("group", groupId);
-                            try {
-                                Node node = descConsumerGroup.all().get().get(groupId).coordinator();
-                                consumerGroup.put("node", node.host() + ":" + node.port());
-                            } catch (Exception e) {
-                                LOG.error("Get coordinator node has error, msg is " + e.getMessage());
-                                e.printStackTrace();
-                            }
-                            consumerGroup.put("meta", getKafkaMetadata(parseBrokerServer(clusterAlias), groupId, clusterAlias));
-                            consumerGroups.add(consumerGroup);
+                try {
+                    for (Entry<TopicPartition, OffsetAndMetadata> entry : offsets.get(groupId).get().entrySet()) {
+                        if (entry.getValue() != null) {
+                            group.getOffsets().put(entry.getKey(), entry.getValue().offset());
                         }
-                        offset++;
-                    }
-                    flag = itor.hasNext();
-                    if (offset >= page.getiDisplayLength() + page.getiDisplayStart()) {
-                        flag = false;
                     }
+                } catch (Exception e) {
+                    LOG.error("Get cluster[" + clusterAlias + "] group[" + groupId + "] offsets has error, msg is " + e.getMessage());
                 }
+                groups.add(group);
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * Get one consumer group, served from a fresh snapshot when possible.
+     */
+    private ConsumerGroupMetaInfo getKafkaGroupMeta(String clusterAlias, String group) {
+        ConsumerGroupSnapshotInfo snapshot = CONSUMER_SNAPSHOTS.get(clusterAlias);
+        if (snapshot != null && !snapshot.isExpired(CONSUMER_SNAPSHOT_TTL_MS) && snapshot.contains(group)) {
+            return snapshot.getGroup(group);
+        }
+        try (KafkaClientRegistry.AdminLease lease = clientRegistry.borrowAdminClient(clusterAlias)) {
+            List<ConsumerGroupMetaInfo> groups = describeKafkaGroups(clusterAlias, lease.client(), Arrays.asList(group));
+            if (groups.size() > 0) {
+                return groups.get(0);
             }
         } catch (Exception e) {
-            LOG.error("Get kafka consumer has error,msg is " + e.getMessage());
+            LOG.error("Get kafka consumer metadata has error, msg is " + e.getMessage());
             e.printStackTrace();
-        } finally {
-            adminClient.close();
+        }
+        ConsumerGroupMetaInfo empty = new ConsumerGroupMetaInfo();
+        empty.setGroup(group);
+        return empty;
+    }
+
+    /**
+     * Get kafka 0.10.x, 1.x, 2.x consumer metadata.
+     */
+    public String getKafkaConsumer(String clusterAlias) {
+        JSONArray consumerGroups = new JSONArray();
+        for (ConsumerGroupMetaInfo group : getKafkaConsumerSnapshot(clusterAlias).getGroups()) {
+            consumerGroups.add(toKafkaConsumer(group));
+        }
+        return consumerGroups.toJSONString();
+    }
+
+    /**
+     * Get kafka 0.10.x consumer group & topic information used for page.
+     */
+    public String getKafkaConsumer(String clusterAlias, DisplayInfo page) {
+        JSONArray consumerGroups = new JSONArray();
+        int offset = 0;
+        for (ConsumerGroupMetaInfo group : getKafkaConsumerSnapshot(clusterAlias).getGroups()) {
+            if (page.getSearch().length() > 0 && !group.getGroup().contains(page.getSearch())) {
+                continue;
+            }
+            if (offset >= page.getiDisplayStart()) {
+                consumerGroups.add(toKafkaConsumer(group));
+            }
+            offset++;
+            if (offset >= page.getiDisplayLength() + page.getiDisplayStart()) {
+                break;
+            }
         }
         return consumerGroups.toJSONString();
     }
 
+    private JSONObject toKafkaConsumer(ConsumerGroupMetaInfo group) {
+        JSONObject consumerGroup = new JSONObject();
+        consumerGroup.put("group", group.getGroup());
+        consumerGroup.put("node", group.getNode());
+        consumerGroup.put("meta", toKafkaMetadata(group));
+        return consumerGroup;
+    }
+
     /**
      * Get kafka group consumer all topics lags.
      */
     public long getKafkaLag(String clusterAlias, String group, String ketopic) {
         long lag = 0L;
 
-        Properties prop = new Properties();
-        prop.put(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, parseBrokerServer(clusterAlias));
-
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.sasl.enable")) {
-            sasl(prop, clusterAlias);
-        }
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.ssl.enable")) {
-            ssl(prop, clusterAlias);
-        }
-        AdminClient adminClient = null;
-        try {
-            adminClient = AdminClient.create(prop);
+        try (KafkaClientRegistry.AdminLease lease = clientRegistry.borrowAdminClient(clusterAlias)) {
+            AdminClient adminClient = lease.client();
             ListConsumerGroupOffsetsResult offsets = adminClient.listConsumerGroupOffsets(group);
             for (Entry<TopicPartition, OffsetAndMetadata> entry : offsets.partitionsToOffsetAndMetadata().get().entrySet()) {
                 if (ketopic.equals(entry.getKey().topic())) {
@@ -784,72 +758,45 @@ public class KafkaServiceImpl implements KafkaService {
         } catch (Exception e) {
             LOG.error("Get cluster[" + clusterAlias + "] group[" + group + "] topic[" + ketopic + "] consumer lag has error, msg is " + e.getMessage());
             e.printStackTrace();
-        } finally {
-            adminClient.close();
         }
         return lag;
     }
 
     /**
-     * Get kafka 0.10.x consumer metadata.
+     * Convert consumer group metadata to the 0.10.x owner & topicSub layout.
      */
-    private JSONArray getKafkaMetadata(String bootstrapServers, String group, String clusterAlias) {
-        Properties prop = new Properties();
-        prop.put(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
-
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.sasl.enable")) {
-            sasl(prop, clusterAlias);
-        }
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.ssl.enable")) {
-            ssl(prop, clusterAlias);
-        }
-
+    private JSONArray toKafkaMetadata(ConsumerGroupMetaInfo group) {
         JSONArray consumerGroups = new JSONArray();
-        AdminClient adminClient = null;
-        try {
-            adminClient = AdminClient.create(prop);
-            DescribeConsumerGroupsResult descConsumerGroup = adminClient.describeConsumerGroups(Arrays.asList(group));
-            Collection<MemberDescription> consumerMetaInfos = descConsumerGroup.describedGroups().get(group).get().members();
-            Set<String> hasOwnerTopics = new HashSet<>();
-            if (consumerMetaInfos.size() > 0) {
-                for (MemberDescription consumerMetaInfo : consumerMetaInfos) {
-                    JSONObject topicSub = new JSONObject();
-                    JSONArray topicSubs = new JSONArray();
-                    for (TopicPartition topic : consumerMetaInfo.assignment().topicPartitions()) {
-                        JSONObject object = new JSONObject();
-                        object.put("topic", topic.topic());
-                        object.put("partition", topic.partition());
-                        topicSubs.add(object);
-                        hasOwnerTopics.add(topic.topic());
-                    }
-                    topicSub.put("owner", consumerMetaInfo.consumerId());
-                    topicSub.put("node", consumerMetaInfo.host().replaceAll("/", ""));
-                    topicSub.put("topicSub", topicSubs);
-                    consumerGroups.add(topicSub);
-                }
-            }
-
-            ListConsumerGroupOffsetsResult noActiveTopic = adminClient.listConsumerGroupOffsets(group);
+        Set<String> hasOwnerTopics = group.getActiveTopics();
+        for (ConsumerMemberInfo member : group.getMembers()) {
             JSONObject topicSub = new JSONObject();
             JSONArray topicSubs = new JSONArray();
-            for (Entry<TopicPartition, OffsetAndMetadata> entry : noActiveTopic.partitionsToOffsetAndMetadata().get().entrySet()) {
+            for (TopicPartition topic : member.getPartitions()) {
                 JSONObject object = new JSONObject();
-                object.put("topic", entry.getKey().topic());
-                object.put("partition", entry.getKey().partition());
-                if (!hasOwnerTopics.contains(entry.getKey().topic())) {
-                    topicSubs.add(object);
-                }
+                object.put("topic", topic.topic());
+                object.put("partition", topic.partition());
+                topicSubs.add(object);
             }
-            topicSub.put("owner", "");
-            topicSub.put("node", "-");
+            topicSub.put("owner", member.getOwner());
+            topicSub.put("node", member.getNode());
             topicSub.put("topicSub", topicSubs);
             consumerGroups.add(topicSub);
-        } catch (Exception e) {
-            LOG.error("Get kafka consumer metadata has error, msg is " + e.getMessage());
-            e.printStackTrace();
-        } finally {
-            adminClient.close();
         }
+
+        JSONObject topicSub = new JSONObject();
+        JSONArray topicSubs = new JSONArray();
+        for (TopicPartition tp : group.getOffsets().keySet()) {
+            if (!hasOwnerTopics.contains(tp.topic())) {
+                JSONObject object = new JSONObject();
+                object.put("topic", tp.topic());
+                object.put("partition", tp.partition());
+                topicSubs.add(object);
+            }
+        }
+        topicSub.put("owner", "");
+        topicSub.put("node", "-");
+        topicSub.put("topicSub", topicSubs);
+        consumerGroups.add(topicSub);
         return consumerGroups;
     }
 
@@ -857,22 +804,10 @@ public class KafkaServiceImpl implements KafkaService {
      * Get kafka 0.10.x consumer pages.
      */
     public String getKafkaActiverSize(String clusterAlias, String group) {
-        JSONArray consumerGroups = getKafkaMetadata(parseBrokerServer(clusterAlias), group, clusterAlias);
-        int activerCounter = 0;
-        Set<String> topics = new HashSet<>();
-        for (Object object : consumerGroups) {
-            JSONObject consumerGroup = (JSONObject) object;
-            if (!"".equals(consumerGroup.getString("owner")) && consumerGroup.getString("owner") != null) {
-                activerCounter++;
-            }
-            for (Object topicObject : consumerGroup.getJSONArray("topicSub")) {
-                JSONObject topic = (JSONObject) topicObject;
-                topics.add(topic.getString("topic"));
-            }
-        }
+        ConsumerGroupMetaInfo groupMeta = getKafkaGroupMeta(clusterAlias, group);
         JSONObject activerAndTopics = new JSONObject();
-        activerAndTopics.put("activers", activerCounter);
-        activerAndTopics.put("topics", topics.size());
+        activerAndTopics.put("activers", groupMeta.getActiveSize());
+        activerAndTopics.put("topics", groupMeta.getTopics().size());
         return activerAndTopics.toJSONString();
     }
 
@@ -880,22 +815,10 @@ public class KafkaServiceImpl implements KafkaService {
      * Get kafka consumer information pages not owners.
      */
     public OwnerInfo getKafkaActiverNotOwners(String clusterAlias, String group) {
+        ConsumerGroupMetaInfo groupMeta = getKafkaGroupMeta(clusterAlias, group);
         OwnerInfo ownerInfo = new OwnerInfo();
-        JSONArray consumerGroups = getKafkaMetadata(parseBrokerServer(clusterAlias), group, clusterAlias);
-        int activerCounter = 0;
-        Set<String> topics = new HashSet<>();
-        for (Object object : consumerGroups) {
-            JSONObject consumerGroup = (JSONObject) object;
-            if (!"".equals(consumerGroup.getString("owner")) && consumerGroup.getString("owner") != null) {
-                activerCounter++;
-            }
-            for (Object topicObject : consumerGroup.getJSONArray("topicSub")) {
-                JSONObject topic = (JSONObject) topicObject;
-                topics.add(topic.getString("topic"));
-            }
-        }
-        ownerInfo.setActiveSize(activerCounter);
-        ownerInfo.setTopicSets(topics);
+        ownerInfo.setActiveSize(groupMeta.getActiveSize());
+        ownerInfo.setTopicSets(groupMeta.getTopics());
         return ownerInfo;
     }
 
@@ -903,20 +826,9 @@ public class KafkaServiceImpl implements KafkaService {
      * Get kafka 0.10.x, 1.x, 2.x consumer groups.
      */
     public int getKafkaConsumerGroups(String clusterAlias) {
-        Properties prop = new Properties();
         int counter = 0;
-        prop.put(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, parseBrokerServer(clusterAlias));
-
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.sasl.enable")) {
-            sasl(prop, clusterAlias);
-        }
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.ssl.enable")) {
-            ssl(prop, clusterAlias);
-        }
-
-        AdminClient adminClient = null;
-        try {
-            adminClient = AdminClient.create(prop);
+        try (KafkaClientRegistry.AdminLease lease = clientRegistry.borrowAdminClient(clusterAlias)) {
+            AdminClient adminClient = lease.client();
             ListConsumerGroupsResult consumerGroups = adminClient.listConsumerGroups();
             java.util.Iterator<ConsumerGroupListing> groups = consumerGroups.all().get().iterator();
             while (groups.hasNext()) {
@@ -928,8 +840,6 @@ public class KafkaServiceImpl implements KafkaService {
         } catch (Exception e) {
             LOG.info("Get kafka consumer group has error, msg is " + e.getMessage());
             e.printStackTrace();
-        } finally {
-            adminClient.close();
         }
         return counter;
     }
@@ -938,64 +848,31 @@ public class KafkaServiceImpl implements KafkaService {
      * Get kafka 0.10.x, 1.x, 2.x consumer topic information.
      */
     public Set<String> getKafkaConsumerTopic(String clusterAlias, String group) {
-        JSONArray consumerGroups = getKafkaMetadata(parseBrokerServer(clusterAlias), group, clusterAlias);
-        Set<String> topics = new HashSet<>();
-        for (Object object : consumerGroups) {
-            JSONObject consumerGroup = (JSONObject) object;
-            for (Object topicObject : consumerGroup.getJSONArray("topicSub")) {
-                JSONObject topic = (JSONObject) topicObject;
-                topics.add(topic.getString("topic"));
-            }
-        }
-        return topics;
+        return getKafkaGroupMeta(clusterAlias, group).getTopics();
     }
 
     /**
      * Get kafka 0.10.x consumer group and topic.
      */
     public String getKafkaConsumerGroupTopic(String clusterAlias, String group) {
-        return getKafkaMetadata(parseBrokerServer(clusterAlias), group, clusterAlias).toJSONString();
+        return toKafkaMetadata(getKafkaGroupMeta(clusterAlias, group)).toJSONString();
     }
 
     /**
      * Get kafka 0.10.x, 1.x, 2.x offset from topic.
      */
     public String getKafkaOffset(String clusterAlias) {
-        Properties prop = new Properties();
-        prop.put(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, parseBrokerServer(clusterAlias));
-
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.sasl.enable")) {
-            sasl(prop, clusterAlias);
-        }
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.ssl.enable")) {
-            ssl(prop, clusterAlias);
-        }
         JSONArray targets = new JSONArray();
-        AdminClient adminClient = null;
-        try {
-            adminClient = AdminClient.create(prop);
-            ListConsumerGroupsResult consumerGroups = adminClient.listConsumerGroups();
-            java.util.Iterator<ConsumerGroupListing> groups = consumerGroups.all().get().iterator();
-            while (groups.hasNext()) {
-                String groupId = groups.next().groupId();
-                if (!groupId.contains("efak")) {
-                    ListConsumerGroupOffsetsResult offsets = adminClient.listConsumerGroupOffsets(groupId);
-                    for (Entry<TopicPartition, OffsetAndMetadata> entry : offsets.partitionsToOffsetAndMetadata().get().entrySet()) {
-                        JSONObject object = new JSONObject();
-                        object.put("group", groupId);
-                        object.put("topic", entry.getKey().topic());
-                        object.put("partition", entry.getKey().partition());
-                        object.put("offset", entry.getValue().offset());
-                        object.put("timestamp", CalendarUtils.getDate());
-                        targets.add(object);
-                    }
-                }
+        for (ConsumerGroupMetaInfo group : getKafkaConsumerSnapshot(clusterAlias).getGroups()) {
+            for (Entry<TopicPartition, Long> entry : group.getOffsets().entrySet()) {
+                JSONObject object = new JSONObject();
+                object.put("group", group.getGroup());
+                object.put("topic", entry.getKey().topic());
+                object.put("partition", entry.getKey().partition());
+                object.put("offset", entry.getValue());
+                object.put("timestamp", CalendarUtils.getDate());
+                targets.add(object);
             }
-        } catch (Exception e) {
-            LOG.error("Get consumer offset has error, msg is " + e.getMessage());
-            e.printStackTrace();
-        } finally {
-            adminClient.close();
         }
         return targets.toJSONString();
     }
@@ -1005,18 +882,8 @@ public class KafkaServiceImpl implements KafkaService {
      */
     public Map<Integer, Long> getKafkaOffset(String clusterAlias, String group, String topic, Set<Integer> partitionids) {
         Map<Integer, Long> partitionOffset = new HashMap<>();
-        Properties prop = new Properties();
-        prop.put(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, parseBrokerServer(clusterAlias));
-
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.sasl.enable")) {
-            sasl(prop, clusterAlias);
-        }
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.ssl.enable")) {
-            ssl(prop, clusterAlias);
-        }
-        AdminClient adminClient = null;
-        try {
-            adminClient = AdminClient.create(prop);
+        try (KafkaClientRegistry.AdminLease lease = clientRegistry.borrowAdminClient(clusterAlias)) {
+            AdminClient adminClient = lease.client();
             List<TopicPartition> tps = new ArrayList<>();
             for (int partitionid : partitionids) {
                 TopicPartition tp = new TopicPartition(topic, partitionid);
@@ -1035,8 +902,6 @@ public class KafkaServiceImpl implements KafkaService {
         } catch (Exception e) {
             LOG.error("Get consumer offset has error, msg is " + e.getMessage());
             e.printStackTrace();
-        } finally {
-            adminClient.close();
         }
         return partitionOffset;
     }
@@ -1052,30 +917,19 @@ public class KafkaServiceImpl implements KafkaService {
      * Get kafka 0.10.x topic history logsize.
      */
     public long getKafkaLogSize(String clusterAlias, String topic, int partitionid) {
-        long histyLogSize = 0L;
-        Properties props = new Properties();
-        props.put(ConsumerConfig.GROUP_ID_CONFIG, Kafka.EFAK_SYSTEM_GROUP);
-        props.put(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, getKafkaBrokerServer(clusterAlias));
-        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getCanonicalName());
-        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getCanonicalName());
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.sasl.enable")) {
-            sasl(props, clusterAlias);
-        }
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.ssl.enable")) {
-            ssl(props, clusterAlias);
+        TopicOffsetSnapshot snapshot = getOffsetSnapshot(clusterAlias, topic, Collections.singleton(partitionid));
+        if (snapshot != null) {
+            return snapshot.endOffset(topic, partitionid);
         }
-        KafkaConsumer<String, String> consumer = new KafkaConsumer<>(props);
+        long histyLogSize = 0L;
         TopicPartition tp = new TopicPartition(topic, partitionid);
-        consumer.assign(Collections.singleton(tp));
-        java.util.Map<TopicPartition, Long> logsize = consumer.endOffsets(Collections.singleton(tp));
-        try {
-            histyLogSize = logsize.get(tp).longValue();
-        } catch (Exception e) {
-            LOG.error("Get history topic logsize has error, msg is " + e.getMessage());
-            e.printStackTrace();
-        } finally {
-            if (consumer != null) {
-                consumer.close();
+        try (KafkaClientRegistry.ConsumerLease lease = clientRegistry.borrowConsumer(clusterAlias)) {
+            try {
+                histyLogSize = lease.consumer().endOffsets(Collections.singleton(tp)).get(tp).longValue();
+            } catch (Exception e) {
+                lease.invalidate();
+                LOG.error("Get history topic logsize has error, msg is " + e.getMessage());
+                e.printStackTrace();
             }
         }
         return histyLogSize;
@@ -1085,61 +939,44 @@ public class KafkaServiceImpl implements KafkaService {
      * Get kafka 0.10.x topic history logsize.
      */
     public Map<TopicPartition, Long> getKafkaLogSize(String clusterAlias, String topic, Set<Integer> partitionids) {
-        Properties props = new Properties();
-        props.put(ConsumerConfig.GROUP_ID_CONFIG, Kafka.EFAK_SYSTEM_GROUP);
-        props.put(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, getKafkaBrokerServer(clusterAlias));
-        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getCanonicalName());
-        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getCanonicalName());
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.sasl.enable")) {
-            sasl(props, clusterAlias);
+        TopicOffsetSnapshot snapshot = getOffsetSnapshot(clusterAlias, topic, partitionids);
+        if (snapshot != null) {
+            return snapshot.endOffsets(topic, partitionids);
         }
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.ssl.enable")) {
-            ssl(props, clusterAlias);
-        }
-        KafkaConsumer<String, String> consumer = new KafkaConsumer<>(props);
         Set<TopicPartition> tps = new HashSet<>();
         for (int partitionid : partitionids) {
             TopicPartition tp = new TopicPartition(topic, partitionid);
             tps.add(tp);
         }
-
-        consumer.assign(tps);
-        java.util.Map<TopicPartition, Long> endLogSize = consumer.endOffsets(tps);
-        if (consumer != null) {
-            consumer.close();
+        try (KafkaClientRegistry.ConsumerLease lease = clientRegistry.borrowConsumer(clusterAlias)) {
+            try {
+                return lease.consumer().endOffsets(tps);
+            } catch (RuntimeException e) {
+                lease.invalidate();
+                throw e;
+            }
         }
-        return endLogSize;
     }
 
     /**
      * Get kafka 0.10.x topic real logsize by partitionid.
      */
     public long getKafkaRealLogSize(String clusterAlias, String topic, int partitionid) {
-        long realLogSize = 0L;
-        Properties props = new Properties();
-        props.put(ConsumerConfig.GROUP_ID_CONFIG, Kafka.EFAK_SYSTEM_GROUP);
-        props.put(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, getKafkaBrokerServer(clusterAlias));
-        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getCanonicalName());
-        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getCanonicalName());
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.sasl.enable")) {
-            sasl(props, clusterAlias);
+        TopicOffsetSnapshot snapshot = getOffsetSnapshot(clusterAlias, topic, Collections.singleton(partitionid));
+        if (snapshot != null) {
+            return snapshot.sumRealLogSize(topic, Collections.singleton(partitionid));
         }
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.ssl.enable")) {
-            ssl(props, clusterAlias);
-        }
-        KafkaConsumer<String, String> consumer = new KafkaConsumer<>(props);
+        long realLogSize = 0L;
         TopicPartition tp = new TopicPartition(topic, partitionid);
-        consumer.assign(Collections.singleton(tp));
-        java.util.Map<TopicPartition, Long> endLogSize = consumer.endOffsets(Collections.singleton(tp));
-        java.util.Map<TopicPartition, Long> startLogSize = consumer.beginningOffsets(Collections.singleton(tp));
-        try {
-            realLogSize = endLogSize.get(tp).longValue() - startLogSize.get(tp).longValue();
-        } catch (Exception e) {
-            LOG.error("Get real topic logsize by partition list has error, msg is " + e.getMessage());
-            e.printStackTrace();
-        } finally {
-            if (consumer != null) {
-                consumer.close();
+        try (KafkaClientRegistry.ConsumerLease lease = clientRegistry.borrowConsumer(clusterAlias)) {
+            try {
+                java.util.Map<TopicPartition, Long> endLogSize = lease.consumer().endOffsets(Collections.singleton(tp));
+                java.util.Map<TopicPartition, Long> startLogSize = lease.consumer().beginningOffsets(Collections.singleton(tp));
+                realLogSize = endLogSize.get(tp).longValue() - startLogSize.get(tp).longValue();
+            } catch (Exception e) {
+                lease.invalidate();
+                LOG.error("Get real topic logsize by partition list has error, msg is " + e.getMessage());
+                e.printStackTrace();
             }
         }
         return realLogSize;
@@ -1149,43 +986,33 @@ public class KafkaServiceImpl implements KafkaService {
      * Get kafka 0.10.x topic real logsize by partitionid set.
      */
     public long getKafkaRealLogSize(String clusterAlias, String topic, Set<Integer> partitionids) {
-        long realLogSize = 0L;
-        Properties props = new Properties();
-        props.put(ConsumerConfig.GROUP_ID_CONFIG, Kafka.EFAK_SYSTEM_GROUP);
-        props.put(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, getKafkaBrokerServer(clusterAlias));
-        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getCanonicalName());
-        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getCanonicalName());
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.sasl.enable")) {
-            sasl(props, clusterAlias);
+        TopicOffsetSnapshot snapshot = getOffsetSnapshot(clusterAlias, topic, partitionids);
+        if (snapshot != null) {
+            return snapshot.sumRealLogSize(topic, partitionids);
         }
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.ssl.enable")) {
-            ssl(props, clusterAlias);
-        }
-        KafkaConsumer<String, String> consumer = new KafkaConsumer<>(props);
+        long realLogSize = 0L;
         Set<TopicPartition> tps = new HashSet<>();
         for (int partitionid : partitionids) {
             TopicPartition tp = new TopicPartition(topic, partitionid);
             tps.add(tp);
         }
-        consumer.assign(tps);
-        java.util.Map<TopicPartition, Long> endLogSize = consumer.endOffsets(tps);
-        java.util.Map<TopicPartition, Long> startLogSize = consumer.beginningOffsets(tps);
-        try {
-            long endSumLogSize = 0L;
-            long startSumLogSize = 0L;
-            for (Entry<TopicPartition, Long> entry : endLogSize.entrySet()) {
-                endSumLogSize += entry.getValue();
-            }
-            for (Entry<TopicPartition, Long> entry : startLogSize.entrySet()) {
-                startSumLogSize += entry.getValue();
-            }
-            realLogSize = endSumLogSize - startSumLogSize;
-        } catch (Exception e) {
-            LOG.error("Get real topic logsize has error, msg is " + e.getMessage());
-            e.printStackTrace();
-        } finally {
-            if (consumer != null) {
-                consumer.close();
+        try (KafkaClientRegistry.ConsumerLease lease = clientRegistry.borrowConsumer(clusterAlias)) {
+            try {
+                java.util.Map<TopicPartition, Long> endLogSize = lease.consumer().endOffsets(tps);
+                java.util.Map<TopicPartition, Long> startLogSize = lease.consumer().beginningOffsets(tps);
+                long endSumLogSize = 0L;
+                long startSumLogSize = 0L;
+                for (Entry<TopicPartition, Long> entry : endLogSize.entrySet()) {
+                    endSumLogSize += entry.getValue();
+                }
+                for (Entry<TopicPartition, Long> entry : startLogSize.entrySet()) {
+                    startSumLogSize += entry.getValue();
+                }
+                realLogSize = endSumLogSize - startSumLogSize;
+            } catch (Exception e) {
+                lease.invalidate();
+                LOG.error("Get real topic logsize has error, msg is " + e.getMessage());
+                e.printStackTrace();
             }
         }
         return realLogSize;
@@ -1195,67 +1022,58 @@ public class KafkaServiceImpl implements KafkaService {
      * Get topic producer send logsize records.
      */
     public long getKafkaProducerLogSize(String clusterAlias, String topic, Set<Integer> partitionids) {
-        long producerLogSize = 0L;
-        Properties props = new Properties();
-        props.put(ConsumerConfig.GROUP_ID_CONFIG, Kafka.EFAK_SYSTEM_GROUP);
-        props.put(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, getKafkaBrokerServer(clusterAlias));
-        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getCanonicalName());
-        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getCanonicalName());
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.sasl.enable")) {
-            sasl(props, clusterAlias);
-        }
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.ssl.enable")) {
-            ssl(props, clusterAlias);
+        TopicOffsetSnapshot snapshot = getOffsetSnapshot(clusterAlias, topic, partitionids);
+        if (snapshot != null) {
+            return snapshot.sumEndOffsets(topic, partitionids);
         }
-        KafkaConsumer<String, String> consumer = new KafkaConsumer<>(props);
+        long producerLogSize = 0L;
         Set<TopicPartition> tps = new HashSet<>();
         for (int partitionid : partitionids) {
             TopicPartition tp = new TopicPartition(topic, partitionid);
             tps.add(tp);
         }
-        consumer.assign(tps);
-        java.util.Map<TopicPartition, Long> endLogSize = consumer.endOffsets(tps);
-        try {
-            for (Entry<TopicPartition, Long> entry : endLogSize.entrySet()) {
-                producerLogSize += entry.getValue();
-            }
-        } catch (Exception e) {
-            LOG.error("Get producer topic logsize has error, msg is " + e.getMessage());
-            e.printStackTrace();
-        } finally {
-            if (consumer != null) {
-                consumer.close();
+        try (KafkaClientRegistry.ConsumerLease lease = clientRegistry.borrowConsumer(clusterAlias)) {
+            try {
+                java.util.Map<TopicPartition, Long> endLogSize = lease.consumer().endOffsets(tps);
+                for (Entry<TopicPartition, Long> entry : endLogSize.entrySet()) {
+                    producerLogSize += entry.getValue();
+                }
+            } catch (Exception e) {
+                lease.invalidate();
+                LOG.error("Get producer topic logsize has error, msg is " + e.getMessage());
+                e.printStackTrace();
             }
         }
         return producerLogSize;
     }
 
+    /**
+     * Get the shared offset snapshot when it covers the requested partitions,
+     * otherwise null and the caller asks the brokers directly.
+     */
+    private TopicOffsetSnapshot getOffsetSnapshot(String clusterAlias, String topic, Collection<Integer> partitionids) {
+        TopicOffsetSnapshot snapshot = offsetSnapshotService.getSnapshot(clusterAlias);
+        if (snapshot != null && snapshot.contains(topic, partitionids)) {
+            return snapshot;
+        }
+        return null;
+    }
+
     /**
      * Get kafka version.
      */
     public String getKafkaVersion(String host, int port, String ids, String clusterAlias) {
-        JMXConnector connector = null;
         String version = "-";
-        String JMX = SystemConfigUtils.getProperty(clusterAlias + ".efak.jmx.uri");
         try {
-            JMXServiceURL jmxSeriverUrl = new JMXServiceURL(String.format(JMX, host + ":" + port));
-            connector = JMXFactoryUtils.connectWithTimeout(clusterAlias, jmxSeriverUrl, 30, TimeUnit.SECONDS);
-            MBeanServerConnection mbeanConnection = connector.getMBeanServerConnection();
-            if (CollectorType.KAFKA.equals(SystemConfigUtils.getProperty(clusterAlias + ".efak.offset.storage"))) {
-                version = mbeanConnection.getAttribute(new ObjectName(String.format(BrokerServer.BROKER_VERSION.getValue(), ids)), BrokerServer.BROKER_VERSION_VALUE.getValue()).toString();
-            } else {
-                version = mbeanConnection.getAttribute(new ObjectName(KafkaServer8.VERSION.getValue()), KafkaServer8.VALUE.getValue()).toString();
-            }
+            version = jmxPool.execute(clusterAlias, host + ":" + port, mbeanConnection -> {
+                if (CollectorType.KAFKA.equals(SystemConfigUtils.getProperty(clusterAlias + ".efak.offset.storage"))) {
+                    return mbeanConnection.getAttribute(new ObjectName(String.format(BrokerServer.BROKER_VERSION.getValue(), ids)), BrokerServer.BROKER_VERSION_VALUE.getValue()).toString();
+                } else {
+                    return mbeanConnection.getAttribute(new ObjectName(KafkaServer8.VERSION.getValue()), KafkaServer8.VALUE.getValue()).toString();
+                }
+            });
         } catch (Exception ex) {
             LOG.error("Get kafka version from jmx has error, msg is " + ex.getMessage());
-        } finally {
-            if (connector != null) {
-                try {
-                    connector.close();
-                } catch (IOException e) {
-                    LOG.error("Close jmx connector has error, msg is " + e.getMessage());
-                }
-            }
         }
         return version;
     }
@@ -1265,8 +1083,8 @@ public class KafkaServiceImpl implements KafkaService {
      */
     public List<MetadataInfo> findKafkaLeader(String clusterAlias, String topic) {
         List<MetadataInfo> targets = new ArrayList<>();
-        KafkaZkClient zkc = kafkaZKPool.getZkClient(clusterAlias);
-        try {
+        try (ZkLease lease = kafkaZKPool.lease(clusterAlias)) {
+            KafkaZkClient zkc = lease.client();
             if (zkc.pathExists(BROKER_TOPICS_PATH + "/" + topic)) {
                 Tuple2<Option<byte[]>, Stat> tuple = zkc.getDataAndStat(BROKER_TOPICS_PATH + "/" + topic);
                 String tupleString = new String(tuple._1.get());
@@ -1289,11 +1107,6 @@ public class KafkaServiceImpl implements KafkaService {
             }
         } catch (Exception e) {
             LoggerUtils.print(this.getClass()).error("Find kafka partition leader has error, msg is ", e);
-        } finally {
-            if (zkc != null) {
-                kafkaZKPool.release(clusterAlias, zkc);
-                zkc = null;
-            }
         }
         return targets;
     }
@@ -1326,8 +1139,8 @@ public class KafkaServiceImpl implements KafkaService {
      */
     public String getBrokerJMXFromIds(String clusterAlias, int ids) {
         String jni = "";
-        KafkaZkClient zkc = kafkaZKPool.getZkClient(clusterAlias);
-        try {
+        try (ZkLease lease = kafkaZKPool.lease(clusterAlias)) {
+            KafkaZkClient zkc = lease.client();
             if (zkc.pathExists(BROKER_IDS_PATH)) {
                 try {
                     Tuple2<Option<byte[]>, Stat> tuple = zkc.getDataAndStat(BROKER_IDS_PATH + "/" + ids);
@@ -1349,11 +1162,6 @@ public class KafkaServiceImpl implements KafkaService {
             }
         } catch (Exception e) {
             LoggerUtils.print(this.getClass()).error("Get broker jmx info from ids has error,msg is ", e);
-        } finally {
-            if (zkc != null) {
-                kafkaZKPool.release(clusterAlias, zkc);
-                zkc = null;
-            }
         }
         return jni;
     }
@@ -1362,16 +1170,11 @@ public class KafkaServiceImpl implements KafkaService {
      * Get kafka os memory.
      */
     public long getOSMemory(String clusterAlias, String host, int port, String property) {
-        JMXConnector connector = null;
         long memory = 0L;
-        String JMX = SystemConfigUtils.getProperty(clusterAlias + ".efak.jmx.uri");
         try {
-            JMXServiceURL jmxSeriverUrl = new JMXServiceURL(String.format(JMX, host + ":" + port));
-            connector = JMXFactoryUtils.connectWithTimeout(clusterAlias, jmxSeriverUrl, 30, TimeUnit.SECONDS);
-            MBeanServerConnection mbeanConnection = connector.getMBeanServerConnection();
-            MemoryMXBean memBean = ManagementFactory.newPlatformMXBeanProxy(mbeanConnection, ManagementFactory.MEMORY_MXBEAN_NAME, MemoryMXBean.class);
-            long max = memBean.getHeapMemoryUsage().getMax();
-            long used = memBean.getHeapMemoryUsage().getUsed();
+            MemoryUsage heap = jmxPool.execute(clusterAlias, host + ":" + port, mbeanConnection -> ManagementFactory.newPlatformMXBeanProxy(mbeanConnection, ManagementFactory.MEMORY_MXBEAN_NAME, MemoryMXBean.class).getHeapMemoryUsage());
+            long max = heap.getMax();
+            long used = heap.getUsed();
             if (BrokerServer.TOTAL_PHYSICAL_MEMORY_SIZE.getValue().equals(property)) {
                 memory = max;
             } else if (BrokerServer.FREE_PHYSICAL_MEMORY_SIZE.getValue().equals(property)) {
@@ -1379,14 +1182,6 @@ public class KafkaServiceImpl implements KafkaService {
             }
         } catch (Exception ex) {
             LOG.error("Get kafka os memory from jmx has error, msg is " + ex.getMessage());
-        } finally {
-            if (connector != null) {
-                try {
-                    connector.close();
-                } catch (IOException e) {
-                    LOG.error("Close kafka os memory jmx connector has error, msg is " + e.getMessage());
-                }
-            }
         }
         return memory;
     }
@@ -1395,14 +1190,9 @@ public class KafkaServiceImpl implements KafkaService {
      * Get kafka cpu.
      */
     public String getUsedCpu(String clusterAlias, String host, int port) {
-        JMXConnector connector = null;
-        String JMX = SystemConfigUtils.getProperty(clusterAlias + ".efak.jmx.uri");
         String cpu = "<span class='badge badge-danger'>NULL</span>";
         try {
-            JMXServiceURL jmxSeriverUrl = new JMXServiceURL(String.format(JMX, host + ":" + port));
-            connector = JMXFactoryUtils.connectWithTimeout(clusterAlias, jmxSeriverUrl, 30, TimeUnit.SECONDS);
-            MBeanServerConnection mbeanConnection = connector.getMBeanServerConnection();
-            String value = mbeanConnection.getAttribute(new ObjectName(BrokerServer.JMX_PERFORMANCE_TYPE.getValue()), BrokerServer.PROCESS_CPU_LOAD.getValue()).toString();
+            String value = jmxPool.execute(clusterAlias, host + ":" + port, mbeanConnection -> mbeanConnection.getAttribute(new ObjectName(BrokerServer.JMX_PERFORMANCE_TYPE.getValue()), BrokerServer.PROCESS_CPU_LOAD.getValue()).toString());
             double cpuValue = Double.parseDouble(value);
             String percent = StrUtils.numberic((cpuValue * 100.0) + "") + "%";
             if ((cpuValue * 100.0) < BrokerSever.CPU_NORMAL) {
@@ -1413,16 +1203,7 @@ public class KafkaServiceImpl implements KafkaService {
                 cpu = "<span class='badge badge-danger'>" + percent + "</span>";
             }
         } catch (Exception e) {
-            e.printStackTrace();
             LOG.error("Get kafka broker used cpu has error, msg is ", e);
-        } finally {
-            if (connector != null) {
-                try {
-                    connector.close();
-                } catch (IOException e) {
-                    LOG.error("Close kafka broker cpu jmx connector has error, msg is " + e.getMessage());
-                }
-            }
         }
         return cpu;
     }
@@ -1431,27 +1212,13 @@ public class KafkaServiceImpl implements KafkaService {
      * Get kafka cpu value.
      */
     public double getUsedCpuValue(String clusterAlias, String host, int port) {
-        JMXConnector connector = null;
-        String JMX = SystemConfigUtils.getProperty(clusterAlias + ".efak.jmx.uri");
         double cpu = 0.00;
         try {
-            JMXServiceURL jmxSeriverUrl = new JMXServiceURL(String.format(JMX, host + ":" + port));
-            connector = JMXFactoryUtils.connectWithTimeout(clusterAlias, jmxSeriverUrl, 30, TimeUnit.SECONDS);
-            MBeanServerConnection mbeanConnection = connector.getMBeanServerConnection();
-            String value = mbeanConnection.getAttribute(new ObjectName(BrokerServer.JMX_PERFORMANCE_TYPE.getValue()), BrokerServer.PROCESS_CPU_LOAD.getValue()).toString();
+            String value = jmxPool.execute(clusterAlias, host + ":" + port, mbeanConnection -> mbeanConnection.getAttribute(new ObjectName(BrokerServer.JMX_PERFORMANCE_TYPE.getValue()), BrokerServer.PROCESS_CPU_LOAD.getValue()).toString());
             double cpuValue = Double.parseDouble(value);
             cpu = StrUtils.numberic(String.valueOf(cpuValue * 100.0));
         } catch (Exception e) {
-            e.printStackTrace();
             LOG.error("Get kafka broker used cpu value has error, msg is ", e);
-        } finally {
-            if (connector != null) {
-                try {
-                    connector.close();
-                } catch (IOException e) {
-                    LOG.error("Close kafka used cpu value jmx connector has error, msg is " + e.getMessage());
-                }
-            }
         }
         return cpu;
     }
@@ -1460,16 +1227,11 @@ public class KafkaServiceImpl implements KafkaService {
      * Get kafka used memory.
      */
     public String getUsedMemory(String clusterAlias, String host, int port) {
-        JMXConnector connector = null;
-        String JMX = SystemConfigUtils.getProperty(clusterAlias + ".efak.jmx.uri");
         String memory = "<span class='badge badge-danger'>NULL</span>";
         try {
-            JMXServiceURL jmxSeriverUrl = new JMXServiceURL(String.format(JMX, host + ":" + port));
-            connector = JMXFactoryUtils.connectWithTimeout(clusterAlias, jmxSeriverUrl, 30, TimeUnit.SECONDS);
-            MBeanServerConnection mbeanConnection = connector.getMBeanServerConnection();
-            MemoryMXBean memBean = ManagementFactory.newPlatformMXBeanProxy(mbeanConnection, ManagementFactory.MEMORY_MXBEAN_NAME, MemoryMXBean.class);
-            long used = memBean.getHeapMemoryUsage().getUsed();
-            long max = memBean.getHeapMemoryUsage().getMax();
+            MemoryUsage heap = jmxPool.execute(clusterAlias, host + ":" + port, mbeanConnection -> ManagementFactory.newPlatformMXBeanProxy(mbeanConnection, ManagementFactory.MEMORY_MXBEAN_NAME, MemoryMXBean.class).getHeapMemoryUsage());
+            long used = heap.getUsed();
+            long max = heap.getMax();
             String percent = StrUtils.stringify(used) + " (" + StrUtils.numberic((used * 100.0 / max) + "") + "%)";
             if ((used * 100.0) / max < BrokerSever.MEM_NORMAL) {
                 memory = "<span class='badge badge-success'>" + percent + "</span>";
@@ -1479,16 +1241,7 @@ public class KafkaServiceImpl implements KafkaService {
                 memory = "<span class='badge badge-danger'>" + percent + "</span>";
             }
         } catch (Exception e) {
-            e.printStackTrace();
             LOG.error("Get kafka broker used memroy has error, msg is ", e);
-        } finally {
-            if (connector != null) {
-                try {
-                    connector.close();
-                } catch (IOException e) {
-                    LOG.error("Close kafka used memory jmx connector has error, msg is " + e.getMessage());
-                }
-            }
         }
         return memory;
     }
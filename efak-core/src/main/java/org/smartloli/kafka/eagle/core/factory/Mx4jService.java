@@ -22,6 +22,7 @@ package org.smartloli.kafka.eagle.core.factory;
 
 import org.smartloli.kafka.eagle.common.protocol.MBeanInfo;
 
+import java.util.Collection;
 import java.util.Map;
 
 /**
@@ -91,4 +92,10 @@ public interface Mx4jService {
     public MBeanInfo replicationBytesOutPerSec(String clusterAlias, String uri);
 
     public MBeanInfo replicationBytesOutPerSec(String clusterAlias, String uri, String topic);
+
+    /** Get meter rates of many mbeans from one broker with a single connection, missing mbeans read 0.0. */
+    public Map<String, MBeanInfo> meterRates(String clusterAlias, String uri, Collection<String> mbeans);
+
+    /** Get attributes of many mbeans or mbean patterns from one broker, keyed by matched object name. */
+    public Map<String, Map<String, Object>> attributes(String clusterAlias, String uri, Map<String, String[]> mbeans);
 }
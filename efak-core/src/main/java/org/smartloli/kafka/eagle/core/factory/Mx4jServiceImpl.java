@@ -24,18 +24,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.smartloli.kafka.eagle.common.constant.JmxConstants.BrokerServer;
 import org.smartloli.kafka.eagle.common.protocol.MBeanInfo;
-import org.smartloli.kafka.eagle.common.util.JMXFactoryUtils;
 import org.smartloli.kafka.eagle.common.util.KConstants.MBean;
-import org.smartloli.kafka.eagle.common.util.SystemConfigUtils;
+import org.smartloli.kafka.eagle.core.factory.client.JMXConnectionPool;
 
-import javax.management.MBeanServerConnection;
+import javax.management.Attribute;
+import javax.management.InstanceNotFoundException;
 import javax.management.ObjectName;
-import javax.management.remote.JMXConnector;
-import javax.management.remote.JMXServiceURL;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.TimeUnit;
+import java.util.*;
+import java.util.Map.Entry;
 
 /**
  * Implements Mx4jService all method.
@@ -52,6 +48,10 @@ public class Mx4jServiceImpl implements Mx4jService {
     private Logger LOG = LoggerFactory.getLogger(Mx4jServiceImpl.class);
     // private static final String JMX = "service:jmx:rmi:///jndi/rmi://%s/jmxrmi";
     private static final String TOPIC_CONCAT_CHARACTER = ",topic=";
+    private static final String[] METER_RATES = new String[]{MBean.FIFTEEN_MINUTE_RATE, MBean.FIVE_MINUTE_RATE, MBean.MEAN_RATE, MBean.ONE_MINUTE_RATE};
+
+    /** Pooled broker JMX connections. */
+    private JMXConnectionPool jmxPool = JMXConnectionPool.getInstance();
 
     /** Get brokers all topics bytes in per sec. */
     @Override
@@ -122,28 +122,17 @@ public class Mx4jServiceImpl implements Mx4jService {
     @Override
     public Map<Integer, Long> logEndOffset(String clusterAlias, String uri, String topic) {
         String mbean = "kafka.log:type=Log,name=LogEndOffset,topic=" + topic + ",partition=*";
-        JMXConnector connector = null;
         Map<Integer, Long> endOffsets = new HashMap<>();
-        try {
-            JMXServiceURL jmxSeriverUrl = new JMXServiceURL(String.format(SystemConfigUtils.getProperty(clusterAlias + ".efak.jmx.uri"), uri));
-            connector = JMXFactoryUtils.connectWithTimeout(clusterAlias, jmxSeriverUrl, 30, TimeUnit.SECONDS);
-            MBeanServerConnection mbeanConnection = connector.getMBeanServerConnection();
-            Set<ObjectName> objectNames = mbeanConnection.queryNames(new ObjectName(mbean), null);
-            for (ObjectName objectName : objectNames) {
-                int partition = Integer.valueOf(objectName.getKeyProperty("partition"));
-                Object value = mbeanConnection.getAttribute(new ObjectName(mbean), MBean.VALUE);
-                if (value != null) {
-                    endOffsets.put(partition, Long.valueOf(value.toString()));
-                }
-            }
-        } catch (Exception e) {
-            LOG.error("JMX service url[" + uri + "] create has error,msg is ", e);
-        } finally {
-            if (connector != null) {
+        Map<String, String[]> requests = new HashMap<>();
+        requests.put(mbean, new String[]{MBean.VALUE});
+        for (Entry<String, Map<String, Object>> entry : attributes(clusterAlias, uri, requests).entrySet()) {
+            Object value = entry.getValue().get(MBean.VALUE);
+            if (value != null) {
                 try {
-                    connector.close();
+                    int partition = Integer.valueOf(new ObjectName(entry.getKey()).getKeyProperty("partition"));
+                    endOffsets.put(partition, Long.valueOf(value.toString()));
                 } catch (Exception e) {
-                    LOG.error("Close JMXConnector[" + uri + "] has error,msg is ", e);
+                    LOG.error("Parse log end offset mbean[" + entry.getKey() + "] has error,msg is ", e);
                 }
             }
         }
@@ -218,49 +207,79 @@ public class Mx4jServiceImpl implements Mx4jService {
         return common(clusterAlias, uri, mbean);
     }
 
+    /** Get meter rates of many mbeans from one broker with a single connection. */
+    @Override
+    public Map<String, MBeanInfo> meterRates(String clusterAlias, String uri, Collection<String> mbeans) {
+        Map<String, String[]> requests = new HashMap<>();
+        for (String mbean : mbeans) {
+            requests.put(mbean, METER_RATES);
+        }
+        Map<String, Map<String, Object>> values = attributes(clusterAlias, uri, requests);
+        Map<String, MBeanInfo> mbeanInfos = new HashMap<>();
+        for (String mbean : mbeans) {
+            MBeanInfo mbeanInfo = new MBeanInfo();
+            Map<String, Object> value = values.get(canonical(mbean));
+            mbeanInfo.setFifteenMinute(rate(value, MBean.FIFTEEN_MINUTE_RATE));
+            mbeanInfo.setFiveMinute(rate(value, MBean.FIVE_MINUTE_RATE));
+            mbeanInfo.setMeanRate(rate(value, MBean.MEAN_RATE));
+            mbeanInfo.setOneMinute(rate(value, MBean.ONE_MINUTE_RATE));
+            mbeanInfos.put(mbean, mbeanInfo);
+        }
+        return mbeanInfos;
+    }
+
     /**
-     * Before Kafka 0.11.x, some exceptions are thrown, such as
-     * <p>ReplicationBytesOutPerSec</p> Exception.
+     * Read every requested mbean through the pooled connection of the broker,
+     * a pattern is expanded with one queryNames and each match is read with
+     * one getAttributes. Unregistered mbeans are left out.
+     *
      * @param uri ip:jmx_port
      */
-    private MBeanInfo common(String clusterAlias, String uri, String mbean) {
-        JMXConnector connector = null;
-        MBeanInfo mbeanInfo = new MBeanInfo();
+    @Override
+    public Map<String, Map<String, Object>> attributes(String clusterAlias, String uri, Map<String, String[]> mbeans) {
+        Map<String, Map<String, Object>> values = new HashMap<>();
         try {
-            JMXServiceURL jmxSeriverUrl = new JMXServiceURL(String.format(SystemConfigUtils.getProperty(clusterAlias + ".efak.jmx.uri"), uri));
-            connector = JMXFactoryUtils.connectWithTimeout(clusterAlias, jmxSeriverUrl, 30, TimeUnit.SECONDS);
-            MBeanServerConnection mbeanConnection = connector.getMBeanServerConnection();
-            if (mbeanConnection.isRegistered(new ObjectName(mbean))) {
-                Object fifteenMinuteRate = mbeanConnection.getAttribute(new ObjectName(mbean), MBean.FIFTEEN_MINUTE_RATE);
-                Object fiveMinuteRate = mbeanConnection.getAttribute(new ObjectName(mbean), MBean.FIVE_MINUTE_RATE);
-                Object meanRate = mbeanConnection.getAttribute(new ObjectName(mbean), MBean.MEAN_RATE);
-                Object oneMinuteRate = mbeanConnection.getAttribute(new ObjectName(mbean), MBean.ONE_MINUTE_RATE);
-                mbeanInfo.setFifteenMinute(fifteenMinuteRate.toString());
-                mbeanInfo.setFiveMinute(fiveMinuteRate.toString());
-                mbeanInfo.setMeanRate(meanRate.toString());
-                mbeanInfo.setOneMinute(oneMinuteRate.toString());
-            } else {
-                mbeanInfo.setFifteenMinute("0.0");
-                mbeanInfo.setFiveMinute("0.0");
-                mbeanInfo.setMeanRate("0.0");
-                mbeanInfo.setOneMinute("0.0");
-            }
-        } catch (Exception e) {
-            LOG.error("JMX service url[" + uri + "] create has error,msg is ", e);
-            mbeanInfo.setFifteenMinute("0.0");
-            mbeanInfo.setFiveMinute("0.0");
-            mbeanInfo.setMeanRate("0.0");
-            mbeanInfo.setOneMinute("0.0");
-        } finally {
-            if (connector != null) {
-                try {
-                    connector.close();
-                } catch (Exception e) {
-                    LOG.error("Close JMXConnector[" + uri + "] has error,msg is ", e);
+            jmxPool.execute(clusterAlias, uri, connection -> {
+                for (Entry<String, String[]> request : mbeans.entrySet()) {
+                    ObjectName objectName = new ObjectName(request.getKey());
+                    Set<ObjectName> objectNames = objectName.isPattern() ? connection.queryNames(objectName, null) : Collections.singleton(objectName);
+                    for (ObjectName name : objectNames) {
+                        try {
+                            Map<String, Object> value = new HashMap<>();
+                            for (Attribute attribute : connection.getAttributes(name, request.getValue()).asList()) {
+                                value.put(attribute.getName(), attribute.getValue());
+                            }
+                            values.put(name.getCanonicalName(), value);
+                        } catch (InstanceNotFoundException e) {
+                            // Before Kafka 0.11.x, some mbeans such as ReplicationBytesOutPerSec do not exist.
+                        }
+                    }
                 }
-            }
+                return null;
+            });
+        } catch (Exception e) {
+            LOG.error("JMX service url[" + uri + "] read mbeans has error,msg is ", e);
         }
-        return mbeanInfo;
+        return values;
+    }
+
+    private static String canonical(String mbean) {
+        try {
+            return new ObjectName(mbean).getCanonicalName();
+        } catch (Exception e) {
+            return mbean;
+        }
+    }
+
+    private static String rate(Map<String, Object> value, String attribute) {
+        if (value == null || value.get(attribute) == null) {
+            return "0.0";
+        }
+        return value.get(attribute).toString();
+    }
+
+    private MBeanInfo common(String clusterAlias, String uri, String mbean) {
+        return meterRates(clusterAlias, uri, Collections.singletonList(mbean)).get(mbean);
     }
 
 }
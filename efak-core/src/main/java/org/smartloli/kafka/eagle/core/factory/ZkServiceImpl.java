@@ -25,6 +25,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.smartloli.kafka.eagle.common.util.KConstants.Zookeeper;
 import org.smartloli.kafka.eagle.common.util.KafkaZKPoolUtils;
+import org.smartloli.kafka.eagle.common.util.KafkaZKPoolUtils.ZkLease;
 import org.smartloli.kafka.eagle.common.util.KafkaZKSingletonUtils;
 import org.smartloli.kafka.eagle.common.util.LoggerUtils;
 import org.smartloli.kafka.eagle.common.util.SystemConfigUtils;
@@ -63,9 +64,9 @@ public class ZkServiceImpl implements ZkService {
      */
     public String delete(String clusterAlias, String cmd) {
         String ret = "";
-        KafkaZkClient zkc = kafkaZKPool.getZkClient(clusterAlias);
         boolean status = false;
-        try {
+        try (ZkLease lease = kafkaZKPool.lease(clusterAlias)) {
+            KafkaZkClient zkc = lease.client();
             status = zkc.pathExists(cmd);
             if (status) {
                 if (zkc.deleteRecursive(cmd)) {
@@ -76,11 +77,6 @@ public class ZkServiceImpl implements ZkService {
             }
         } catch (Exception e) {
             LoggerUtils.print(this.getClass()).error("Delete znode data has error, msg is ", e);
-        } finally {
-            if (zkc != null) {
-                kafkaZKPool.release(clusterAlias, zkc);
-                zkc = null;
-            }
         }
         return ret;
     }
@@ -90,8 +86,8 @@ public class ZkServiceImpl implements ZkService {
      */
     public String get(String clusterAlias, String cmd) {
         String ret = "";
-        KafkaZkClient zkc = kafkaZKPool.getZkClient(clusterAlias);
-        try {
+        try (ZkLease lease = kafkaZKPool.lease(clusterAlias)) {
+            KafkaZkClient zkc = lease.client();
             if (zkc.pathExists(cmd)) {
                 Tuple2<Option<byte[]>, Stat> tuple2 = zkc.getDataAndStat(cmd);
                 ret += new String(tuple2._1.get()) + "\n";
@@ -109,11 +105,6 @@ public class ZkServiceImpl implements ZkService {
             }
         } catch (Exception e) {
             LoggerUtils.print(this.getClass()).error("Get znode data has error, msg is ", e);
-        } finally {
-            if (zkc != null) {
-                kafkaZKPool.release(clusterAlias, zkc);
-                zkc = null;
-            }
         }
         return ret;
     }
@@ -123,9 +114,9 @@ public class ZkServiceImpl implements ZkService {
      */
     public String ls(String clusterAlias, String cmd) {
         String target = "";
-        KafkaZkClient zkc = kafkaZKPool.getZkClient(clusterAlias);
         boolean status = false;
-        try {
+        try (ZkLease lease = kafkaZKPool.lease(clusterAlias)) {
+            KafkaZkClient zkc = lease.client();
             status = zkc.pathExists(cmd);
             if (status) {
                 Seq<String> seq = zkc.getChildren(cmd);
@@ -133,11 +124,6 @@ public class ZkServiceImpl implements ZkService {
             }
         } catch (Exception e) {
             LoggerUtils.print(this.getClass()).error("List znode data has error, msg is ", e);
-        } finally {
-            if (zkc != null) {
-                kafkaZKPool.release(clusterAlias, zkc);
-                zkc = null;
-            }
         }
         return target;
     }
@@ -277,23 +263,12 @@ public class ZkServiceImpl implements ZkService {
      */
     public JSONObject zkCliStatus(String clusterAlias) {
         JSONObject target = new JSONObject();
-        KafkaZkClient zkc = null;
-        try {
-            zkc = kafkaZKPool.getZkClient(clusterAlias);
-            if (zkc != null) {
-                target.put("live", true);
-                target.put("list", SystemConfigUtils.getProperty(clusterAlias + ".zk.list"));
-            } else {
-                target.put("live", false);
-                target.put("list", SystemConfigUtils.getProperty(clusterAlias + ".zk.list"));
-            }
+        target.put("list", SystemConfigUtils.getProperty(clusterAlias + ".zk.list"));
+        try (ZkLease lease = kafkaZKPool.lease(clusterAlias)) {
+            target.put("live", lease.client() != null);
         } catch (Exception e) {
+            target.put("live", false);
             LoggerUtils.print(this.getClass()).error("Get zkcli status has error, msg is ", e);
-        } finally {
-            if (zkc != null) {
-                kafkaZKPool.release(clusterAlias, zkc);
-                zkc = null;
-            }
         }
         return target;
     }
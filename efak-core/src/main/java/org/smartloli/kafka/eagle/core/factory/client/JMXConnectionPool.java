@@ -0,0 +1,208 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.core.factory.client;
+
+import com.alibaba.fastjson.JSONObject;
+import org.smartloli.kafka.eagle.common.util.JMXFactoryUtils;
+import org.smartloli.kafka.eagle.common.util.LoggerUtils;
+import org.smartloli.kafka.eagle.common.util.SystemConfigUtils;
+
+import javax.management.MBeanServerConnection;
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXServiceURL;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps one open JMX connection per broker JMX service url, so reading an
+ * MBean no longer pays an RMI handshake.
+ * <p>
+ * Connections are probed in the background and closed after being idle for
+ * too long. A broker that can not be reached is retried with an exponential
+ * backoff instead of on every call.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public final class JMXConnectionPool {
+
+    private static final long CONNECT_TIMEOUT_S = SystemConfigUtils.getLongProperty("efak.jmx.connect.timeout.s", 30L);
+    private static final long IDLE_TIMEOUT_MS = SystemConfigUtils.getLongProperty("efak.jmx.idle.ms", 10 * 60 * 1000L);
+    private static final long HEALTH_CHECK_MS = SystemConfigUtils.getLongProperty("efak.jmx.health.ms", 60 * 1000L);
+    private static final long BACKOFF_MAX_MS = SystemConfigUtils.getLongProperty("efak.jmx.backoff.max.ms", 60 * 1000L);
+    private static final long BACKOFF_MIN_MS = 1000L;
+
+    private final Map<String, PooledConnection> connections = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService maintainer;
+
+    /**
+     * Work done with a pooled connection, never close the connection.
+     */
+    public interface JMXCallback<T> {
+        T doInConnection(MBeanServerConnection connection) throws Exception;
+    }
+
+    private static class PoolHolder {
+        private static final JMXConnectionPool INSTANCE = new JMXConnectionPool();
+    }
+
+    public static JMXConnectionPool getInstance() {
+        return PoolHolder.INSTANCE;
+    }
+
+    private JMXConnectionPool() {
+        this.maintainer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "efak-jmx-connection-pool");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.maintainer.scheduleWithFixedDelay(this::maintain, HEALTH_CHECK_MS, HEALTH_CHECK_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Run the callback with the pooled connection of the broker.
+     *
+     * @param uri ip:jmx_port
+     */
+    public <T> T execute(String clusterAlias, String uri, JMXCallback<T> callback) throws Exception {
+        String url = String.format(SystemConfigUtils.getProperty(clusterAlias + ".efak.jmx.uri"), uri);
+        PooledConnection pooled = connections.computeIfAbsent(clusterAlias + "@" + url, k -> new PooledConnection(clusterAlias, url));
+        JMXConnector connector = pooled.connect();
+        try {
+            return callback.doInConnection(connector.getMBeanServerConnection());
+        } catch (IOException e) {
+            pooled.invalidate(connector);
+            throw e;
+        }
+    }
+
+    /**
+     * Connections, hits, connects, failures and backoff of each broker.
+     */
+    public JSONObject getMetrics() {
+        JSONObject metrics = new JSONObject();
+        for (Entry<String, PooledConnection> entry : connections.entrySet()) {
+            PooledConnection pooled = entry.getValue();
+            JSONObject object = new JSONObject();
+            object.put("connected", pooled.connector != null);
+            object.put("hits", pooled.hits.get());
+            object.put("connects", pooled.connects.get());
+            object.put("failures", pooled.failures.get());
+            object.put("backoff_ms", pooled.backoffMs);
+            metrics.put(entry.getKey(), object);
+        }
+        return metrics;
+    }
+
+    /**
+     * Close idle connections and probe the live ones.
+     */
+    private void maintain() {
+        long now = System.currentTimeMillis();
+        for (Entry<String, PooledConnection> entry : connections.entrySet()) {
+            PooledConnection pooled = entry.getValue();
+            JMXConnector connector = pooled.connector;
+            if (connector == null) {
+                if (now - pooled.lastAccess > IDLE_TIMEOUT_MS) {
+                    connections.remove(entry.getKey(), pooled);
+                }
+                continue;
+            }
+            if (now - pooled.lastAccess > IDLE_TIMEOUT_MS) {
+                pooled.invalidate(connector);
+                connections.remove(entry.getKey(), pooled);
+                continue;
+            }
+            try {
+                connector.getMBeanServerConnection().getMBeanCount();
+            } catch (Exception e) {
+                LoggerUtils.print(this.getClass()).warn("JMX connection[" + entry.getKey() + "] health check failed, reconnect it, msg is " + e.getMessage());
+                pooled.invalidate(connector);
+            }
+        }
+        LoggerUtils.print(this.getClass()).debug("JMX connection pool metrics: {}", getMetrics());
+    }
+
+    private static final class PooledConnection {
+        private final String clusterAlias;
+        private final String url;
+        private volatile JMXConnector connector;
+        private volatile long lastAccess = System.currentTimeMillis();
+        private volatile long backoffMs = 0L;
+        private volatile long retryAt = 0L;
+
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong connects = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+
+        private PooledConnection(String clusterAlias, String url) {
+            this.clusterAlias = clusterAlias;
+            this.url = url;
+        }
+
+        private synchronized JMXConnector connect() throws IOException {
+            lastAccess = System.currentTimeMillis();
+            if (connector != null) {
+                hits.incrementAndGet();
+                return connector;
+            }
+            if (lastAccess < retryAt) {
+                throw new IOException("JMX service url[" + url + "] is unreachable, retry after " + (retryAt - lastAccess) + " ms.");
+            }
+            JMXConnector created = null;
+            try {
+                created = JMXFactoryUtils.connectWithTimeout(clusterAlias, new JMXServiceURL(url), CONNECT_TIMEOUT_S, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                LoggerUtils.print(JMXConnectionPool.class).error("Connect JMX service url[" + url + "] has error, msg is " + e.getMessage());
+            }
+            if (created == null) {
+                failures.incrementAndGet();
+                backoffMs = backoffMs == 0L ? BACKOFF_MIN_MS : Math.min(backoffMs * 2, BACKOFF_MAX_MS);
+                retryAt = System.currentTimeMillis() + backoffMs;
+                throw new IOException("Connect JMX service url[" + url + "] failed, retry after " + backoffMs + " ms.");
+            }
+            connects.incrementAndGet();
+            backoffMs = 0L;
+            retryAt = 0L;
+            connector = created;
+            return connector;
+        }
+
+        /**
+         * Drop the connector if it is still the pooled one.
+         */
+        private void invalidate(JMXConnector broken) {
+            synchronized (this) {
+                if (connector != broken) {
+                    return;
+                }
+                connector = null;
+            }
+            try {
+                broken.close();
+            } catch (Exception e) {
+                LoggerUtils.print(JMXConnectionPool.class).debug("Close JMX connector[" + url + "] has error, msg is " + e.getMessage());
+            }
+        }
+    }
+
+}
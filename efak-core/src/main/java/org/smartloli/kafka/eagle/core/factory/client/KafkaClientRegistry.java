@@ -0,0 +1,443 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.core.factory.client;
+
+import com.alibaba.fastjson.JSONObject;
+import org.apache.kafka.clients.CommonClientConfigs;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.config.SaslConfigs;
+import org.apache.kafka.common.config.SslConfigs;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.smartloli.kafka.eagle.common.protocol.BrokersInfo;
+import org.smartloli.kafka.eagle.common.protocol.cache.BrokerCache;
+import org.smartloli.kafka.eagle.common.util.KConstants.Kafka;
+import org.smartloli.kafka.eagle.common.util.LoggerUtils;
+import org.smartloli.kafka.eagle.common.util.StrUtils;
+import org.smartloli.kafka.eagle.common.util.SystemConfigUtils;
+import org.smartloli.kafka.eagle.common.util.kraft.KafkaAsyncCloser;
+
+import java.util.*;
+import java.util.Map.Entry;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps warm AdminClient and KafkaConsumer instances per kafka cluster, so
+ * services no longer pay a TLS handshake and a metadata bootstrap on every
+ * call.
+ * <p>
+ * The AdminClient is thread safe and shared by its leases, a replaced client
+ * is closed once its last lease is returned. KafkaConsumer is not thread safe,
+ * so consumers are leased one at a time, they read raw bytes for the offset
+ * lookups and the shard scans alike and are unassigned when returned. Both leases must be
+ * returned with try-with-resources. Clients are rebuilt when the bootstrap
+ * servers or the security settings of the cluster change, closed after being
+ * idle for too long, and the AdminClient is probed in the background.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public final class KafkaClientRegistry {
+
+    private static final long IDLE_TIMEOUT_MS = SystemConfigUtils.getLongProperty("efak.kafka.client.idle.ms", 10 * 60 * 1000L);
+    private static final long HEALTH_CHECK_MS = SystemConfigUtils.getLongProperty("efak.kafka.client.health.ms", 60 * 1000L);
+    private static final int MAX_IDLE_CONSUMERS = SystemConfigUtils.getIntProperty("efak.kafka.client.consumer.size", 4);
+
+    private final Map<String, ClusterClients> clusters = new ConcurrentHashMap<>();
+    private final KafkaAsyncCloser closer = new KafkaAsyncCloser();
+    private final ScheduledExecutorService maintainer;
+
+    private static class RegistryHolder {
+        private static final KafkaClientRegistry INSTANCE = new KafkaClientRegistry();
+    }
+
+    public static KafkaClientRegistry getInstance() {
+        return RegistryHolder.INSTANCE;
+    }
+
+    private KafkaClientRegistry() {
+        this.maintainer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "efak-kafka-client-registry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.maintainer.scheduleWithFixedDelay(this::maintain, HEALTH_CHECK_MS, HEALTH_CHECK_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Lease the shared AdminClient of the cluster, the lease returns it on
+     * close and never closes the client itself.
+     */
+    public AdminLease borrowAdminClient(String clusterAlias) {
+        ClusterClients clients = cluster(clusterAlias);
+        synchronized (clients) {
+            clients.refreshConfig(clusterAlias, closer);
+            if (clients.admin == null) {
+                Properties props = adminProps(clusterAlias);
+                clients.admin = new SharedAdmin(AdminClient.create(props));
+                clients.adminCreations.incrementAndGet();
+            } else {
+                clients.adminHits.incrementAndGet();
+            }
+            return new AdminLease(clients.admin.acquire());
+        }
+    }
+
+    /**
+     * Lease a consumer, the lease returns it to the pool on close.
+     */
+    public ConsumerLease borrowConsumer(String clusterAlias) {
+        ClusterClients clients = cluster(clusterAlias);
+        String fingerprint;
+        synchronized (clients) {
+            clients.refreshConfig(clusterAlias, closer);
+            fingerprint = clients.fingerprint;
+        }
+        IdleConsumer idle;
+        while ((idle = clients.idleConsumers.pollFirst()) != null) {
+            if (fingerprint.equals(idle.fingerprint)) {
+                clients.consumerHits.incrementAndGet();
+                return new ConsumerLease(clusterAlias, clients, idle.consumer, idle.fingerprint);
+            }
+            closer.close(idle.consumer);
+        }
+        KafkaConsumer<byte[], byte[]> consumer = new KafkaConsumer<>(consumerProps(clusterAlias));
+        clients.consumerCreations.incrementAndGet();
+        return new ConsumerLease(clusterAlias, clients, consumer, fingerprint);
+    }
+
+    /**
+     * Drop every cached client of the cluster, the next call rebuilds them.
+     */
+    public void invalidate(String clusterAlias) {
+        ClusterClients clients = clusters.get(clusterAlias);
+        if (clients != null) {
+            synchronized (clients) {
+                clients.closeAll(closer);
+            }
+        }
+    }
+
+    /**
+     * Pool hits, creations, evictions and health failures for each cluster.
+     */
+    public JSONObject getMetrics() {
+        JSONObject metrics = new JSONObject();
+        for (Entry<String, ClusterClients> entry : clusters.entrySet()) {
+            ClusterClients clients = entry.getValue();
+            JSONObject object = new JSONObject();
+            object.put("admin_hits", clients.adminHits.get());
+            object.put("admin_creations", clients.adminCreations.get());
+            object.put("consumer_hits", clients.consumerHits.get());
+            object.put("consumer_creations", clients.consumerCreations.get());
+            object.put("consumer_idle", clients.idleConsumers.size());
+            object.put("evictions", clients.evictions.get());
+            object.put("rebuilds", clients.rebuilds.get());
+            object.put("health_failures", clients.healthFailures.get());
+            metrics.put(entry.getKey(), object);
+        }
+        return metrics;
+    }
+
+    private ClusterClients cluster(String clusterAlias) {
+        ClusterClients clients = clusters.computeIfAbsent(clusterAlias, k -> new ClusterClients());
+        clients.lastAccess = System.currentTimeMillis();
+        return clients;
+    }
+
+    /**
+     * Evict idle clients and probe the AdminClient of each active cluster.
+     */
+    private void maintain() {
+        long now = System.currentTimeMillis();
+        for (Entry<String, ClusterClients> entry : clusters.entrySet()) {
+            ClusterClients clients = entry.getValue();
+            try {
+                for (Iterator<IdleConsumer> it = clients.idleConsumers.iterator(); it.hasNext(); ) {
+                    IdleConsumer idle = it.next();
+                    if (now - idle.releasedAt > IDLE_TIMEOUT_MS && clients.idleConsumers.remove(idle)) {
+                        closer.close(idle.consumer);
+                        clients.evictions.incrementAndGet();
+                    }
+                }
+                SharedAdmin admin;
+                synchronized (clients) {
+                    if (clients.admin != null && now - clients.lastAccess > IDLE_TIMEOUT_MS) {
+                        clients.admin.retire(closer);
+                        clients.admin = null;
+                        clients.evictions.incrementAndGet();
+                    }
+                    admin = clients.admin == null ? null : clients.admin.acquire();
+                }
+                if (admin != null) {
+                    try (AdminLease lease = new AdminLease(admin)) {
+                        lease.client().describeCluster().nodes().get(HEALTH_CHECK_MS / 2, TimeUnit.MILLISECONDS);
+                    } catch (Exception e) {
+                        clients.healthFailures.incrementAndGet();
+                        LoggerUtils.print(this.getClass()).warn("Cluster[" + entry.getKey() + "] admin client health check failed, rebuild it, msg is " + e.getMessage());
+                        synchronized (clients) {
+                            // leases still held keep the client open until they are returned
+                            if (clients.admin == admin) {
+                                admin.retire(closer);
+                                clients.admin = null;
+                            }
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                LoggerUtils.print(this.getClass()).error("Maintain cluster[" + entry.getKey() + "] kafka clients has error, msg is ", e);
+            }
+        }
+        LoggerUtils.print(this.getClass()).debug("Kafka client registry metrics: {}", getMetrics());
+    }
+
+    private Properties adminProps(String clusterAlias) {
+        Properties props = new Properties();
+        props.put(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers(clusterAlias));
+        props.putAll(securityProps(clusterAlias));
+        return props;
+    }
+
+    private Properties consumerProps(String clusterAlias) {
+        Properties props = adminProps(clusterAlias);
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, Kafka.EFAK_SYSTEM_GROUP);
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, Kafka.EARLIEST);
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getCanonicalName());
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getCanonicalName());
+        return props;
+    }
+
+    private static String bootstrapServers(String clusterAlias) {
+        String brokers = SystemConfigUtils.getProperty(clusterAlias + ".efak.bootstrap.servers");
+        if (!StrUtils.isNull(brokers)) {
+            return brokers;
+        }
+        StringBuilder brokerServer = new StringBuilder();
+        List<BrokersInfo> brokersInfos = BrokerCache.META_CACHE.get(clusterAlias);
+        if (brokersInfos != null) {
+            for (BrokersInfo broker : brokersInfos) {
+                if (brokerServer.length() > 0) {
+                    brokerServer.append(",");
+                }
+                brokerServer.append(broker.getHost()).append(":").append(broker.getPort());
+            }
+        }
+        return brokerServer.toString();
+    }
+
+    /**
+     * Sasl and ssl settings of the cluster, also used to detect config changes.
+     */
+    private static Map<String, String> securityProps(String clusterAlias) {
+        Map<String, String> props = new TreeMap<>();
+        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.sasl.enable")) {
+            putIfPresent(props, CommonClientConfigs.SECURITY_PROTOCOL_CONFIG, clusterAlias + ".efak.sasl.protocol");
+            if (!"".equals(SystemConfigUtils.getProperty(clusterAlias + ".efak.sasl.client.id"))) {
+                putIfPresent(props, CommonClientConfigs.CLIENT_ID_CONFIG, clusterAlias + ".efak.sasl.client.id");
+            }
+            putIfPresent(props, SaslConfigs.SASL_MECHANISM, clusterAlias + ".efak.sasl.mechanism");
+            putIfPresent(props, SaslConfigs.SASL_JAAS_CONFIG, clusterAlias + ".efak.sasl.jaas.config");
+        }
+        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.ssl.enable")) {
+            putIfPresent(props, CommonClientConfigs.SECURITY_PROTOCOL_CONFIG, clusterAlias + ".efak.ssl.protocol");
+            putIfPresent(props, SslConfigs.SSL_TRUSTSTORE_LOCATION_CONFIG, clusterAlias + ".efak.ssl.truststore.location");
+            putIfPresent(props, SslConfigs.SSL_TRUSTSTORE_PASSWORD_CONFIG, clusterAlias + ".efak.ssl.truststore.password");
+            putIfPresent(props, SslConfigs.SSL_KEYSTORE_LOCATION_CONFIG, clusterAlias + ".efak.ssl.keystore.location");
+            putIfPresent(props, SslConfigs.SSL_KEYSTORE_PASSWORD_CONFIG, clusterAlias + ".efak.ssl.keystore.password");
+            putIfPresent(props, SslConfigs.SSL_KEY_PASSWORD_CONFIG, clusterAlias + ".efak.ssl.key.password");
+            putIfPresent(props, SslConfigs.SSL_ENDPOINT_IDENTIFICATION_ALGORITHM_CONFIG, clusterAlias + ".efak.ssl.endpoint.identification.algorithm");
+        }
+        return props;
+    }
+
+    private static void putIfPresent(Map<String, String> props, String key, String property) {
+        String value = SystemConfigUtils.getProperty(property);
+        if (value != null) {
+            props.put(key, value);
+        }
+    }
+
+    /**
+     * Lease of the shared AdminClient.
+     */
+    public final class AdminLease implements AutoCloseable {
+        private final SharedAdmin admin;
+        private boolean returned = false;
+
+        private AdminLease(SharedAdmin admin) {
+            this.admin = admin;
+        }
+
+        public AdminClient client() {
+            return admin.client;
+        }
+
+        @Override
+        public void close() {
+            if (!returned) {
+                returned = true;
+                admin.release(closer);
+            }
+        }
+    }
+
+    /**
+     * Lease of a pooled consumer.
+     */
+    public final class ConsumerLease implements AutoCloseable {
+        private final String clusterAlias;
+        private final ClusterClients clients;
+        private final KafkaConsumer<byte[], byte[]> consumer;
+        private final String fingerprint;
+        private boolean broken = false;
+
+        private ConsumerLease(String clusterAlias, ClusterClients clients, KafkaConsumer<byte[], byte[]> consumer, String fingerprint) {
+            this.clusterAlias = clusterAlias;
+            this.clients = clients;
+            this.consumer = consumer;
+            this.fingerprint = fingerprint;
+        }
+
+        public KafkaConsumer<byte[], byte[]> consumer() {
+            return consumer;
+        }
+
+        /**
+         * Mark the consumer as unusable, it is closed instead of being pooled.
+         */
+        public void invalidate() {
+            this.broken = true;
+        }
+
+        @Override
+        public void close() {
+            if (!broken) {
+                try {
+                    // a scan leaves its partition assigned, the next lease starts clean
+                    consumer.unsubscribe();
+                } catch (Exception e) {
+                    broken = true;
+                }
+            }
+            if (broken || clients.idleConsumers.size() >= MAX_IDLE_CONSUMERS || !fingerprint.equals(clients.fingerprint)) {
+                closer.close(consumer);
+                LoggerUtils.print(KafkaClientRegistry.class).debug("Close offset consumer of cluster[{}], broken[{}]", clusterAlias, broken);
+            } else {
+                clients.idleConsumers.offerFirst(new IdleConsumer(consumer, fingerprint));
+            }
+        }
+    }
+
+    /**
+     * AdminClient with the number of leases holding it, a retired client is
+     * closed by whoever drops the last hold on it.
+     */
+    private static final class SharedAdmin {
+        private final AdminClient client;
+        private int holders = 0;
+        private boolean retired = false;
+
+        private SharedAdmin(AdminClient client) {
+            this.client = client;
+        }
+
+        private synchronized SharedAdmin acquire() {
+            holders++;
+            return this;
+        }
+
+        private synchronized void release(KafkaAsyncCloser closer) {
+            if (--holders == 0 && retired) {
+                closer.close(client);
+            }
+        }
+
+        private synchronized void retire(KafkaAsyncCloser closer) {
+            if (!retired) {
+                retired = true;
+                if (holders == 0) {
+                    closer.close(client);
+                }
+            }
+        }
+    }
+
+    private static final class IdleConsumer {
+        private final KafkaConsumer<byte[], byte[]> consumer;
+        private final String fingerprint;
+        private final long releasedAt = System.currentTimeMillis();
+
+        private IdleConsumer(KafkaConsumer<byte[], byte[]> consumer, String fingerprint) {
+            this.consumer = consumer;
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    private static final class ClusterClients {
+        private volatile SharedAdmin admin;
+        private volatile String fingerprint;
+        private volatile long lastAccess = System.currentTimeMillis();
+        private final ConcurrentLinkedDeque<IdleConsumer> idleConsumers = new ConcurrentLinkedDeque<>();
+
+        private final AtomicLong adminHits = new AtomicLong();
+        private final AtomicLong adminCreations = new AtomicLong();
+        private final AtomicLong consumerHits = new AtomicLong();
+        private final AtomicLong consumerCreations = new AtomicLong();
+        private final AtomicLong evictions = new AtomicLong();
+        private final AtomicLong rebuilds = new AtomicLong();
+        private final AtomicLong healthFailures = new AtomicLong();
+
+        /**
+         * Rebuild the clients when the bootstrap servers or the security
+         * settings differ from the ones they were created with. An empty
+         * server list, the broker cache failing to load, keeps the clients.
+         * Callers hold the monitor of this object.
+         */
+        private void refreshConfig(String clusterAlias, KafkaAsyncCloser closer) {
+            String servers = bootstrapServers(clusterAlias);
+            if (servers.isEmpty() && fingerprint != null) {
+                return;
+            }
+            String current = servers + securityProps(clusterAlias);
+            if (fingerprint == null) {
+                fingerprint = current;
+            } else if (!fingerprint.equals(current)) {
+                LoggerUtils.print(KafkaClientRegistry.class).info("Cluster[" + clusterAlias + "] bootstrap servers or security config changed, rebuild kafka clients.");
+                closeAll(closer);
+                fingerprint = current;
+                rebuilds.incrementAndGet();
+            }
+        }
+
+        private void closeAll(KafkaAsyncCloser closer) {
+            if (admin != null) {
+                admin.retire(closer);
+                admin = null;
+            }
+            IdleConsumer idle;
+            while ((idle = idleConsumers.pollFirst()) != null) {
+                closer.close(idle.consumer);
+            }
+        }
+    }
+
+}
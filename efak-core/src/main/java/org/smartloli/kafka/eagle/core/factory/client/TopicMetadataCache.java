@@ -0,0 +1,571 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.core.factory.client;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import kafka.zk.KafkaZkClient;
+import kafka.zookeeper.StateChangeHandler;
+import kafka.zookeeper.ZNodeChangeHandler;
+import kafka.zookeeper.ZNodeChildChangeHandler;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.ListTopicsOptions;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.TopicPartitionInfo;
+import org.apache.kafka.common.security.JaasUtils;
+import org.apache.kafka.common.utils.Time;
+import org.apache.zookeeper.data.Stat;
+import org.smartloli.kafka.eagle.common.util.KafkaZKPoolUtils;
+import org.smartloli.kafka.eagle.common.util.LoggerUtils;
+import org.smartloli.kafka.eagle.common.util.StrUtils;
+import org.smartloli.kafka.eagle.common.util.SystemConfigUtils;
+import scala.Option;
+import scala.Tuple2;
+import scala.collection.JavaConversions;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Topic metadata of each cluster kept in memory, so the topic pages and the
+ * quartz tasks no longer read the topic znodes on every call.
+ * <p>
+ * A cluster is loaded on first use through its own zookeeper client, then kept
+ * current by a child watch on '/brokers/topics' and a data watch on every
+ * topic znode. Leaders and isr change much more often and are only watched for
+ * the topics they were asked for. A cluster without 'zk.list' (KRaft) is
+ * polled through the admin client every 'efak.topic.metadata.poll.ms', the
+ * admin client knows no topic times so they are {@link TopicMetadata#UNKNOWN_TIME}.
+ * A zookeeper that can not be reached is tried again after
+ * 'efak.topic.metadata.connect.backoff.ms', the calls in between find the
+ * cluster empty instead of waiting for the connect timeout.
+ * <p>
+ * Every topic is an immutable {@link TopicMetadata}, replaced as a whole when
+ * it changes.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public final class TopicMetadataCache {
+
+    private static final String BROKER_TOPICS_PATH = "/brokers/topics";
+    private static final String TOPIC_STATE = "/brokers/topics/%s/partitions/%s/state";
+    private static final String METRIC_GROUP_NAME = "topic-metadata-cache";
+
+    private static final long RESYNC_MS = SystemConfigUtils.getLongProperty("efak.topic.metadata.resync.ms", 30 * 60 * 1000L);
+    private static final long POLL_MS = SystemConfigUtils.getLongProperty("efak.topic.metadata.poll.ms", 60 * 1000L);
+    private static final long CONNECT_BACKOFF_MS = SystemConfigUtils.getLongProperty("efak.topic.metadata.connect.backoff.ms", 30 * 1000L);
+
+    private final Map<String, ClusterMetadata> clusters = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService refresher;
+
+    private static class CacheHolder {
+        private static final TopicMetadataCache INSTANCE = new TopicMetadataCache();
+    }
+
+    public static TopicMetadataCache getInstance() {
+        return CacheHolder.INSTANCE;
+    }
+
+    private TopicMetadataCache() {
+        // watches fire on the zookeeper event thread, which must not wait for zookeeper itself
+        this.refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "efak-topic-metadata-cache");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Sorted names of every topic of the cluster, internal topics included.
+     */
+    public List<String> getTopicNames(String clusterAlias) {
+        return cluster(clusterAlias).names;
+    }
+
+    /**
+     * Bumped whenever a topic is created, deleted or reassigned, leader and
+     * isr changes excluded.
+     */
+    public long getVersion(String clusterAlias) {
+        return cluster(clusterAlias).version.get();
+    }
+
+    /**
+     * Topic assignment and znode times, null if the topic does not exist.
+     * Leaders and isr may not be loaded.
+     */
+    public TopicMetadata getTopic(String clusterAlias, String topic) {
+        return cluster(clusterAlias).topics.get(topic);
+    }
+
+    /**
+     * Read only view of every topic of the cluster by name.
+     */
+    public Map<String, TopicMetadata> getTopics(String clusterAlias) {
+        return Collections.unmodifiableMap(cluster(clusterAlias).topics);
+    }
+
+    /**
+     * Topic with leaders and isr loaded, null if the topic does not exist.
+     */
+    public TopicMetadata getTopicWithStates(String clusterAlias, String topic) {
+        ClusterMetadata cluster = cluster(clusterAlias);
+        TopicMetadata metadata = cluster.topics.get(topic);
+        if (metadata != null && !metadata.hasStates()) {
+            cluster.watchStates(topic);
+            metadata = cluster.topics.get(topic);
+        }
+        return metadata;
+    }
+
+    private ClusterMetadata cluster(String clusterAlias) {
+        ClusterMetadata cluster = clusters.computeIfAbsent(clusterAlias, ClusterMetadata::new);
+        cluster.ensureLoaded();
+        return cluster;
+    }
+
+    /**
+     * Immutable metadata of one topic, partitions sorted by id.
+     */
+    public static final class TopicMetadata {
+        /**
+         * Creation or modification time the cluster does not report.
+         */
+        public static final long UNKNOWN_TIME = -1L;
+
+        private final String name;
+        private final long ctime;
+        private final long mtime;
+        private final int[] partitions;
+        private final int[][] replicas;
+        private final int[] leaders;
+        private final int[][] isr;
+
+        private TopicMetadata(String name, long ctime, long mtime, int[] partitions, int[][] replicas, int[] leaders, int[][] isr) {
+            this.name = name;
+            this.ctime = ctime;
+            this.mtime = mtime;
+            this.partitions = partitions;
+            this.replicas = replicas;
+            this.leaders = leaders;
+            this.isr = isr;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Creation time of the topic znode, {@link #UNKNOWN_TIME} on KRaft.
+         */
+        public long getCtime() {
+            return ctime;
+        }
+
+        /**
+         * Modification time of the topic znode, {@link #UNKNOWN_TIME} on KRaft.
+         */
+        public long getMtime() {
+            return mtime;
+        }
+
+        public int size() {
+            return partitions.length;
+        }
+
+        /**
+         * Partition id at the index.
+         */
+        public int partition(int index) {
+            return partitions[index];
+        }
+
+        public Set<Integer> getPartitionIds() {
+            Set<Integer> ids = new LinkedHashSet<>(partitions.length);
+            for (int partition : partitions) {
+                ids.add(partition);
+            }
+            return ids;
+        }
+
+        public Set<String> getPartitionNames() {
+            Set<String> names = new LinkedHashSet<>(partitions.length);
+            for (int partition : partitions) {
+                names.add(String.valueOf(partition));
+            }
+            return names;
+        }
+
+        public int[] replicas(int index) {
+            return replicas[index].clone();
+        }
+
+        public boolean hasStates() {
+            return leaders != null;
+        }
+
+        /**
+         * Leader of the partition at the index, -1 when unknown.
+         */
+        public int leader(int index) {
+            return leaders == null ? -1 : leaders[index];
+        }
+
+        public int[] isr(int index) {
+            return isr == null || isr[index] == null ? new int[0] : isr[index].clone();
+        }
+
+        private int indexOf(int partition) {
+            return Arrays.binarySearch(partitions, partition);
+        }
+
+        private TopicMetadata withStates(int[] leaders, int[][] isr) {
+            return new TopicMetadata(name, ctime, mtime, partitions, replicas, leaders, isr);
+        }
+    }
+
+    private final class ClusterMetadata {
+        private final String clusterAlias;
+        private final Map<String, TopicMetadata> topics = new ConcurrentHashMap<>();
+        private final Set<String> stateWatched = ConcurrentHashMap.newKeySet();
+        private final AtomicLong version = new AtomicLong();
+        private volatile List<String> names = Collections.emptyList();
+        private volatile boolean loaded = false;
+        private volatile long connectFailedAt = 0L;
+        private KafkaZkClient zkc;
+
+        private ClusterMetadata(String clusterAlias) {
+            this.clusterAlias = clusterAlias;
+        }
+
+        private void ensureLoaded() {
+            if (loaded || backingOff()) {
+                return;
+            }
+            synchronized (this) {
+                if (loaded || backingOff()) {
+                    return;
+                }
+                String zkList = SystemConfigUtils.getProperty(clusterAlias + ".zk.list");
+                if (StrUtils.isNull(zkList)) {
+                    poll();
+                    refresher.scheduleWithFixedDelay(this::poll, POLL_MS, POLL_MS, TimeUnit.MILLISECONDS);
+                } else {
+                    try {
+                        connect(zkList);
+                    } catch (Exception e) {
+                        // retried by the first call after the back-off
+                        connectFailedAt = System.currentTimeMillis();
+                        LoggerUtils.print(TopicMetadataCache.class).error("Connect cluster[" + clusterAlias + "] zookeeper has error, retry after " + CONNECT_BACKOFF_MS + " ms, msg is ", e);
+                        if (zkc != null) {
+                            zkc.close();
+                            zkc = null;
+                        }
+                        return;
+                    }
+                    loadTopicNames(true);
+                    refresher.scheduleWithFixedDelay(this::resync, RESYNC_MS, RESYNC_MS, TimeUnit.MILLISECONDS);
+                }
+                connectFailedAt = 0L;
+                loaded = true;
+            }
+        }
+
+        private boolean backingOff() {
+            return connectFailedAt > 0 && System.currentTimeMillis() - connectFailedAt < CONNECT_BACKOFF_MS;
+        }
+
+        private void connect(String zkList) {
+            zkc = KafkaZkClient.apply(zkList, JaasUtils.isZkSecurityEnabled(), KafkaZKPoolUtils.ZK_SESSION_TIMEOUT_MS, KafkaZKPoolUtils.ZK_CONNECTION_TIMEOUT_MS, Integer.MAX_VALUE, Time.SYSTEM, METRIC_GROUP_NAME, "SessionExpireListener");
+            if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".zk.acl.enable")) {
+                String schema = SystemConfigUtils.getProperty(clusterAlias + ".zk.acl.schema");
+                String username = SystemConfigUtils.getProperty(clusterAlias + ".zk.acl.username");
+                String password = SystemConfigUtils.getProperty(clusterAlias + ".zk.acl.password");
+                zkc.currentZooKeeper().addAuthInfo(schema, (username + ":" + password).getBytes());
+            }
+            zkc.registerStateChangeHandler(new StateChangeHandler() {
+                @Override
+                public String name() {
+                    return METRIC_GROUP_NAME + "-" + clusterAlias;
+                }
+
+                @Override
+                public void afterInitializingSession() {
+                    // watches of the expired session are gone
+                    refresher.execute(ClusterMetadata.this::resync);
+                }
+            });
+            zkc.registerZNodeChildChangeHandler(new ZNodeChildChangeHandler() {
+                @Override
+                public String path() {
+                    return BROKER_TOPICS_PATH;
+                }
+
+                @Override
+                public void handleChildChange() {
+                    refresher.execute(ClusterMetadata.this::loadTopicNames);
+                }
+            });
+        }
+
+        /**
+         * Read every topic znode again and re-arm all watches.
+         */
+        private void resync() {
+            loadTopicNames(true);
+        }
+
+        private void loadTopicNames() {
+            loadTopicNames(false);
+        }
+
+        /**
+         * Read the topic names, load the new topics, or all of them, and drop
+         * the deleted ones.
+         */
+        private void loadTopicNames(boolean all) {
+            try {
+                List<String> children = new ArrayList<>(JavaConversions.seqAsJavaList(zkc.getChildren(BROKER_TOPICS_PATH)));
+                Collections.sort(children);
+                Set<String> current = new HashSet<>(children);
+                for (String topic : children) {
+                    if (all || !topics.containsKey(topic)) {
+                        loadTopic(topic);
+                    }
+                }
+                for (String topic : new ArrayList<>(topics.keySet())) {
+                    if (!current.contains(topic)) {
+                        removeTopic(topic);
+                    }
+                }
+                if (!children.equals(names)) {
+                    names = Collections.unmodifiableList(children);
+                    version.incrementAndGet();
+                }
+            } catch (Exception e) {
+                LoggerUtils.print(TopicMetadataCache.class).error("Load cluster[" + clusterAlias + "] topic names has error, msg is ", e);
+            }
+        }
+
+        private void loadTopic(String topic) {
+            String path = BROKER_TOPICS_PATH + "/" + topic;
+            try {
+                zkc.registerZNodeChangeHandler(new ZNodeChangeHandler() {
+                    @Override
+                    public String path() {
+                        return path;
+                    }
+
+                    @Override
+                    public void handleCreation() {
+                    }
+
+                    @Override
+                    public void handleDeletion() {
+                        refresher.execute(() -> removeTopic(topic));
+                    }
+
+                    @Override
+                    public void handleDataChange() {
+                        refresher.execute(() -> loadTopic(topic));
+                    }
+                });
+                Tuple2<Option<byte[]>, Stat> tuple = zkc.getDataAndStat(path);
+                if (tuple._1.isEmpty()) {
+                    removeTopic(topic);
+                    return;
+                }
+                JSONObject partitionObject = JSON.parseObject(new String(tuple._1.get())).getJSONObject("partitions");
+                int[] partitions = new int[partitionObject.size()];
+                int index = 0;
+                for (String partition : partitionObject.keySet()) {
+                    partitions[index++] = Integer.parseInt(partition);
+                }
+                Arrays.sort(partitions);
+                int[][] replicas = new int[partitions.length][];
+                for (int i = 0; i < partitions.length; i++) {
+                    replicas[i] = toArray(partitionObject.getJSONArray(String.valueOf(partitions[i])));
+                }
+                TopicMetadata previous = topics.put(topic, new TopicMetadata(topic, tuple._2.getCtime(), tuple._2.getMtime(), partitions, replicas, null, null));
+                if (previous == null || previous.mtime != tuple._2.getMtime()) {
+                    version.incrementAndGet();
+                }
+                if (stateWatched.contains(topic)) {
+                    loadStates(topic);
+                }
+            } catch (Exception e) {
+                LoggerUtils.print(TopicMetadataCache.class).error("Load cluster[" + clusterAlias + "] topic[" + topic + "] metadata has error, msg is ", e);
+            }
+        }
+
+        private void removeTopic(String topic) {
+            TopicMetadata metadata = topics.remove(topic);
+            stateWatched.remove(topic);
+            if (metadata != null) {
+                version.incrementAndGet();
+            }
+            if (zkc == null) {
+                return;
+            }
+            zkc.unregisterZNodeChangeHandler(BROKER_TOPICS_PATH + "/" + topic);
+            if (metadata != null) {
+                for (int partition : metadata.partitions) {
+                    zkc.unregisterZNodeChangeHandler(String.format(TOPIC_STATE, topic, partition));
+                }
+            }
+        }
+
+        private void watchStates(String topic) {
+            if (zkc == null || !stateWatched.add(topic)) {
+                return;
+            }
+            loadStates(topic);
+        }
+
+        private void loadStates(String topic) {
+            TopicMetadata metadata = topics.get(topic);
+            if (metadata == null) {
+                return;
+            }
+            int[] leaders = new int[metadata.size()];
+            int[][] isr = new int[metadata.size()][];
+            for (int i = 0; i < metadata.size(); i++) {
+                int[] state = loadState(topic, metadata.partition(i));
+                leaders[i] = state[0];
+                isr[i] = Arrays.copyOfRange(state, 1, state.length);
+            }
+            topics.replace(topic, metadata, metadata.withStates(leaders, isr));
+        }
+
+        private void reloadState(String topic, int partition) {
+            TopicMetadata metadata = topics.get(topic);
+            int index = metadata == null ? -1 : metadata.indexOf(partition);
+            if (index < 0 || !metadata.hasStates()) {
+                return;
+            }
+            int[] state = loadState(topic, partition);
+            int[] leaders = metadata.leaders.clone();
+            int[][] isr = metadata.isr.clone();
+            leaders[index] = state[0];
+            isr[index] = Arrays.copyOfRange(state, 1, state.length);
+            topics.replace(topic, metadata, metadata.withStates(leaders, isr));
+        }
+
+        /**
+         * Leader followed by the isr of the partition, re-arming its watch.
+         */
+        private int[] loadState(String topic, int partition) {
+            String path = String.format(TOPIC_STATE, topic, partition);
+            try {
+                zkc.registerZNodeChangeHandler(new ZNodeChangeHandler() {
+                    @Override
+                    public String path() {
+                        return path;
+                    }
+
+                    @Override
+                    public void handleCreation() {
+                        refresher.execute(() -> reloadState(topic, partition));
+                    }
+
+                    @Override
+                    public void handleDeletion() {
+                    }
+
+                    @Override
+                    public void handleDataChange() {
+                        refresher.execute(() -> reloadState(topic, partition));
+                    }
+                });
+                Tuple2<Option<byte[]>, Stat> tuple = zkc.getDataAndStat(path);
+                if (tuple._1.isDefined()) {
+                    JSONObject state = JSON.parseObject(new String(tuple._1.get()));
+                    int[] isr = toArray(state.getJSONArray("isr"));
+                    int[] target = new int[isr.length + 1];
+                    target[0] = state.getIntValue("leader");
+                    System.arraycopy(isr, 0, target, 1, isr.length);
+                    return target;
+                }
+            } catch (Exception e) {
+                LoggerUtils.print(TopicMetadataCache.class).error("Load cluster[" + clusterAlias + "] topic[" + topic + "] partition[" + partition + "] state has error, msg is ", e);
+            }
+            return new int[]{-1};
+        }
+
+        /**
+         * Reload every topic through the admin client, for clusters without zookeeper.
+         */
+        private void poll() {
+            try (KafkaClientRegistry.AdminLease lease = KafkaClientRegistry.getInstance().borrowAdminClient(clusterAlias)) {
+                AdminClient adminClient = lease.client();
+                List<String> children = new ArrayList<>(adminClient.listTopics(new ListTopicsOptions().listInternal(true)).names().get());
+                Collections.sort(children);
+                Map<String, TopicDescription> descriptions = adminClient.describeTopics(children).all().get();
+                for (TopicDescription description : descriptions.values()) {
+                    List<TopicPartitionInfo> infos = new ArrayList<>(description.partitions());
+                    infos.sort(Comparator.comparingInt(TopicPartitionInfo::partition));
+                    int[] partitions = new int[infos.size()];
+                    int[][] replicas = new int[infos.size()][];
+                    int[] leaders = new int[infos.size()];
+                    int[][] isr = new int[infos.size()][];
+                    for (int i = 0; i < infos.size(); i++) {
+                        TopicPartitionInfo info = infos.get(i);
+                        partitions[i] = info.partition();
+                        replicas[i] = toArray(info.replicas());
+                        leaders[i] = info.leader() == null ? -1 : info.leader().id();
+                        isr[i] = toArray(info.isr());
+                    }
+                    topics.put(description.name(), new TopicMetadata(description.name(), TopicMetadata.UNKNOWN_TIME, TopicMetadata.UNKNOWN_TIME, partitions, replicas, leaders, isr));
+                }
+                topics.keySet().retainAll(descriptions.keySet());
+                names = Collections.unmodifiableList(children);
+                version.incrementAndGet();
+            } catch (Exception e) {
+                LoggerUtils.print(TopicMetadataCache.class).error("Poll cluster[" + clusterAlias + "] topic metadata has error, msg is ", e);
+            }
+        }
+    }
+
+    private static int[] toArray(JSONArray array) {
+        if (array == null) {
+            return new int[0];
+        }
+        int[] target = new int[array.size()];
+        for (int i = 0; i < target.length; i++) {
+            target[i] = array.getIntValue(i);
+        }
+        return target;
+    }
+
+    private static int[] toArray(List<Node> nodes) {
+        int[] target = new int[nodes.size()];
+        for (int i = 0; i < target.length; i++) {
+            target[i] = nodes.get(i).id();
+        }
+        return target;
+    }
+
+}
@@ -0,0 +1,288 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.core.factory.offset;
+
+import org.apache.kafka.common.TopicPartition;
+import org.smartloli.kafka.eagle.common.protocol.consumer.ConsumerGroupMetaInfo;
+import org.smartloli.kafka.eagle.common.protocol.consumer.ConsumerGroupSnapshotInfo;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Computes consumer lag incrementally from successive offset snapshots.
+ * <p>
+ * For every group and topic the committed and log end offsets of the last
+ * snapshot are kept in long arrays indexed by partition, so each pass derives
+ * lag, produced and consumed records, their rates and the time to drain the
+ * lag from two array walks instead of reading the previous sample back from
+ * the database. Pairs missing from a snapshot are forgotten.
+ * <p>
+ * End offsets read before the committed offsets under count the lag, the lag
+ * of such a pass is marked {@link ConsumerLag#isApproximate() approximate}.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public final class ConsumerLagEngine {
+
+    private static final long UNKNOWN = -1L;
+
+    private final Map<String, ClusterState> clusters = new ConcurrentHashMap<>();
+
+    private static class EngineHolder {
+        private static final ConsumerLagEngine INSTANCE = new ConsumerLagEngine();
+    }
+
+    public static ConsumerLagEngine getInstance() {
+        return EngineHolder.INSTANCE;
+    }
+
+    private ConsumerLagEngine() {
+    }
+
+    /**
+     * Fold the committed offsets of every group and the log end offsets of
+     * the cluster into the lag of every group and topic.
+     */
+    public List<ConsumerLag> update(String clusterAlias, ConsumerGroupSnapshotInfo groups, TopicOffsetSnapshot offsets) {
+        ClusterState cluster = clusters.computeIfAbsent(clusterAlias, k -> new ClusterState());
+        long now = System.currentTimeMillis();
+        boolean approximate = offsets.getTimestamp() < groups.getTimestamp();
+        List<ConsumerLag> lags = new ArrayList<>();
+        synchronized (cluster) {
+            Map<String, PairState> pairs = new HashMap<>();
+            for (ConsumerGroupMetaInfo group : groups.getGroups()) {
+                Map<String, long[]> committed = committed(group, offsets);
+                for (String topic : group.getTopics()) {
+                    int partitions = offsets.partitions(topic);
+                    long[] ends = new long[partitions];
+                    for (int p = 0; p < partitions; p++) {
+                        ends[p] = offsets.endOffset(topic, p);
+                    }
+                    long[] commits = committed.get(topic);
+                    if (commits == null) {
+                        commits = unknown(partitions);
+                    }
+                    String key = key(group.getGroup(), topic);
+                    PairState previous = cluster.pairs.get(key);
+                    PairState current = new PairState(commits, ends, now);
+                    current.lag = lag(clusterAlias, group.getGroup(), topic, previous, current, approximate);
+                    pairs.put(key, current);
+                    lags.add(current.lag);
+                }
+            }
+            cluster.pairs = pairs;
+        }
+        return lags;
+    }
+
+    /**
+     * Lag of the last pass, null when the pair was not in it.
+     */
+    public ConsumerLag getLag(String clusterAlias, String group, String topic) {
+        ClusterState cluster = clusters.get(clusterAlias);
+        if (cluster == null) {
+            return null;
+        }
+        synchronized (cluster) {
+            PairState pair = cluster.pairs.get(key(group, topic));
+            return pair == null ? null : pair.lag;
+        }
+    }
+
+    private static Map<String, long[]> committed(ConsumerGroupMetaInfo group, TopicOffsetSnapshot offsets) {
+        Map<String, long[]> committed = new HashMap<>();
+        for (Map.Entry<TopicPartition, Long> entry : group.getOffsets().entrySet()) {
+            String topic = entry.getKey().topic();
+            int partition = entry.getKey().partition();
+            long[] commits = committed.computeIfAbsent(topic, t -> unknown(offsets.partitions(t)));
+            if (entry.getValue() != null && partition >= 0 && partition < commits.length) {
+                commits[partition] = entry.getValue();
+            }
+        }
+        return committed;
+    }
+
+    private static ConsumerLag lag(String cluster, String group, String topic, PairState previous, PairState current, boolean approximate) {
+        ConsumerLag lag = new ConsumerLag(cluster, group, topic, previous == null, approximate);
+        for (int p = 0; p < current.ends.length; p++) {
+            long end = current.ends[p];
+            long commit = current.commits[p];
+            if (end != UNKNOWN) {
+                lag.logsize += end;
+                // an uncommitted partition lags by its whole log, as before
+                lag.lag += Math.max(0L, end - Math.max(commit, 0L));
+            }
+            if (commit != UNKNOWN) {
+                lag.offsets += commit;
+            }
+            if (previous != null && p < previous.ends.length) {
+                if (end != UNKNOWN && previous.ends[p] != UNKNOWN) {
+                    lag.produced += Math.max(0L, end - previous.ends[p]);
+                }
+                if (commit != UNKNOWN && previous.commits[p] != UNKNOWN) {
+                    lag.consumed += Math.max(0L, commit - previous.commits[p]);
+                }
+            }
+        }
+        if (previous != null && current.timestamp > previous.timestamp) {
+            double seconds = (current.timestamp - previous.timestamp) / 1000.0;
+            lag.produceRate = lag.produced / seconds;
+            lag.consumeRate = lag.consumed / seconds;
+        }
+        if (lag.lag == 0) {
+            lag.timeToDrain = 0L;
+        } else if (lag.consumeRate > lag.produceRate) {
+            lag.timeToDrain = (long) Math.ceil(lag.lag / (lag.consumeRate - lag.produceRate));
+        }
+        return lag;
+    }
+
+    private static long[] unknown(int partitions) {
+        long[] offsets = new long[partitions];
+        Arrays.fill(offsets, UNKNOWN);
+        return offsets;
+    }
+
+    private static String key(String group, String topic) {
+        return group + "\u0000" + topic;
+    }
+
+    private static final class ClusterState {
+        private Map<String, PairState> pairs = new HashMap<>();
+    }
+
+    private static final class PairState {
+        private final long[] commits;
+        private final long[] ends;
+        private final long timestamp;
+        private ConsumerLag lag;
+
+        private PairState(long[] commits, long[] ends, long timestamp) {
+            this.commits = commits;
+            this.ends = ends;
+            this.timestamp = timestamp;
+        }
+    }
+
+    /**
+     * Lag of a group on a topic in one pass.
+     */
+    public static final class ConsumerLag {
+        private final String cluster;
+        private final String group;
+        private final String topic;
+        private final boolean first;
+        private final boolean approximate;
+        private long logsize = 0L;
+        private long offsets = 0L;
+        private long lag = 0L;
+        private long produced = 0L;
+        private long consumed = 0L;
+        private double produceRate = 0.0;
+        private double consumeRate = 0.0;
+        private long timeToDrain = UNKNOWN;
+
+        private ConsumerLag(String cluster, String group, String topic, boolean first, boolean approximate) {
+            this.cluster = cluster;
+            this.group = group;
+            this.topic = topic;
+            this.first = first;
+            this.approximate = approximate;
+        }
+
+        public String getCluster() {
+            return cluster;
+        }
+
+        public String getGroup() {
+            return group;
+        }
+
+        public String getTopic() {
+            return topic;
+        }
+
+        /**
+         * Whether this is the first pass holding the pair, produced and
+         * consumed are 0 then.
+         */
+        public boolean isFirst() {
+            return first;
+        }
+
+        /**
+         * Whether the end offsets were read before the committed offsets, the
+         * lag may then be lower than it is.
+         */
+        public boolean isApproximate() {
+            return approximate;
+        }
+
+        public long getLogsize() {
+            return logsize;
+        }
+
+        public long getOffsets() {
+            return offsets;
+        }
+
+        public long getLag() {
+            return lag;
+        }
+
+        /**
+         * Records appended to the topic since the previous pass.
+         */
+        public long getProduced() {
+            return produced;
+        }
+
+        /**
+         * Records committed by the group since the previous pass.
+         */
+        public long getConsumed() {
+            return consumed;
+        }
+
+        /**
+         * Records produced per second since the previous pass.
+         */
+        public double getProduceRate() {
+            return produceRate;
+        }
+
+        /**
+         * Records consumed per second since the previous pass.
+         */
+        public double getConsumeRate() {
+            return consumeRate;
+        }
+
+        /**
+         * Seconds until the lag is consumed at the current rates, -1 when it
+         * does not shrink.
+         */
+        public long getTimeToDrain() {
+            return timeToDrain;
+        }
+    }
+
+}
@@ -0,0 +1,230 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.core.factory.offset;
+
+import com.alibaba.fastjson.JSONObject;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.smartloli.kafka.eagle.common.util.LoggerUtils;
+import org.smartloli.kafka.eagle.common.util.SystemConfigUtils;
+import org.smartloli.kafka.eagle.core.factory.client.KafkaClientRegistry;
+
+import java.util.*;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shares one cluster wide offset snapshot between the collectors and pages.
+ * <p>
+ * A refresh lists every topic once, then asks for beginning and end offsets
+ * of all partitions in a single call each, which the consumer groups into one
+ * ListOffsets request per partition leader. Readers get the cached snapshot
+ * while it is younger than 'efak.kafka.offset.snapshot.ms'. An expired
+ * snapshot is refreshed on a single background thread while readers keep
+ * getting the last good one, up to 'efak.kafka.offset.snapshot.max.stale.ms'.
+ * A failed refresh is not retried for 'efak.kafka.offset.snapshot.backoff.ms'.
+ * The lag collector asks for a snapshot taken after its committed offsets
+ * were read and waits for that refresh.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public final class KafkaOffsetSnapshotService {
+
+    private static final long STALENESS_MS = SystemConfigUtils.getLongProperty("efak.kafka.offset.snapshot.ms", 30 * 1000L);
+    private static final long MAX_STALENESS_MS = SystemConfigUtils.getLongProperty("efak.kafka.offset.snapshot.max.stale.ms", 5 * 60 * 1000L);
+    private static final long BACKOFF_MS = SystemConfigUtils.getLongProperty("efak.kafka.offset.snapshot.backoff.ms", 10 * 1000L);
+
+    private final Map<String, TopicOffsetSnapshot> snapshots = new ConcurrentHashMap<>();
+    private final Map<String, Long> failedAt = new ConcurrentHashMap<>();
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    private final KafkaClientRegistry clientRegistry = KafkaClientRegistry.getInstance();
+    private final ExecutorService refresher;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong staleHits = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    private static class ServiceHolder {
+        private static final KafkaOffsetSnapshotService INSTANCE = new KafkaOffsetSnapshotService();
+    }
+
+    public static KafkaOffsetSnapshotService getInstance() {
+        return ServiceHolder.INSTANCE;
+    }
+
+    private KafkaOffsetSnapshotService() {
+        this.refresher = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "efak-offset-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Get the offset snapshot of the cluster within the configured staleness.
+     */
+    public TopicOffsetSnapshot getSnapshot(String clusterAlias) {
+        return getSnapshot(clusterAlias, STALENESS_MS);
+    }
+
+    /**
+     * Get the offset snapshot of the cluster, a background refresh is started
+     * when it is older than the given staleness. Never waits for the refresh,
+     * returns null when no snapshot recent enough has been taken yet and the
+     * caller asks the brokers directly.
+     */
+    public TopicOffsetSnapshot getSnapshot(String clusterAlias, long staleness) {
+        TopicOffsetSnapshot snapshot = snapshots.get(clusterAlias);
+        if (snapshot != null && !snapshot.isExpired(staleness)) {
+            hits.incrementAndGet();
+            return snapshot;
+        }
+        scheduleRefresh(clusterAlias);
+        if (snapshot != null && !snapshot.isExpired(Math.max(staleness, MAX_STALENESS_MS))) {
+            staleHits.incrementAndGet();
+            return snapshot;
+        }
+        return null;
+    }
+
+    /**
+     * Get an offset snapshot taken after the timestamp, refreshed on the
+     * calling thread when the cached one is older, so committed offsets read
+     * at the timestamp are never subtracted from older end offsets. Returns
+     * null when the refresh fails or backs off.
+     */
+    public TopicOffsetSnapshot getSnapshotAfter(String clusterAlias, long timestamp) {
+        TopicOffsetSnapshot snapshot = snapshots.get(clusterAlias);
+        if (snapshot != null && snapshot.getTimestamp() >= timestamp) {
+            hits.incrementAndGet();
+            return snapshot;
+        }
+        Long failed = failedAt.get(clusterAlias);
+        if (failed != null && System.currentTimeMillis() - failed < BACKOFF_MS) {
+            return null;
+        }
+        snapshot = refresh(clusterAlias);
+        if (snapshot == null) {
+            failedAt.put(clusterAlias, System.currentTimeMillis());
+            return null;
+        }
+        // a background refresh may have stored a newer one meanwhile
+        snapshots.merge(clusterAlias, snapshot, (cached, fresh) -> cached.getTimestamp() >= fresh.getTimestamp() ? cached : fresh);
+        failedAt.remove(clusterAlias);
+        return snapshot;
+    }
+
+    /**
+     * Drop the cached snapshot, e.g. after a topic has been created or deleted.
+     */
+    public void invalidate(String clusterAlias) {
+        snapshots.remove(clusterAlias);
+    }
+
+    /**
+     * Snapshot hits, refreshes, failures and partitions held per cluster.
+     */
+    public JSONObject getMetrics() {
+        JSONObject metrics = new JSONObject();
+        metrics.put("hits", hits.get());
+        metrics.put("stale_hits", staleHits.get());
+        metrics.put("refreshes", refreshes.get());
+        metrics.put("failures", failures.get());
+        for (Entry<String, TopicOffsetSnapshot> entry : snapshots.entrySet()) {
+            JSONObject object = new JSONObject();
+            object.put("partitions", entry.getValue().size());
+            object.put("timestamp", entry.getValue().getTimestamp());
+            metrics.put(entry.getKey(), object);
+        }
+        return metrics;
+    }
+
+    /**
+     * Queue one refresh of the cluster unless one is queued or running, or
+     * the last one failed within the back-off.
+     */
+    private void scheduleRefresh(String clusterAlias) {
+        Long failed = failedAt.get(clusterAlias);
+        if (failed != null && System.currentTimeMillis() - failed < BACKOFF_MS) {
+            return;
+        }
+        if (!refreshing.add(clusterAlias)) {
+            return;
+        }
+        try {
+            refresher.execute(() -> {
+                try {
+                    TopicOffsetSnapshot snapshot = null;
+                    try {
+                        snapshot = refresh(clusterAlias);
+                    } catch (RuntimeException e) {
+                        failures.incrementAndGet();
+                        LoggerUtils.print(this.getClass()).error("Refresh cluster[" + clusterAlias + "] offset snapshot has error, msg is ", e);
+                    }
+                    if (snapshot != null) {
+                        snapshots.put(clusterAlias, snapshot);
+                        failedAt.remove(clusterAlias);
+                    } else {
+                        failedAt.put(clusterAlias, System.currentTimeMillis());
+                    }
+                } finally {
+                    refreshing.remove(clusterAlias);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(clusterAlias);
+            LoggerUtils.print(this.getClass()).warn("Schedule cluster[" + clusterAlias + "] offset snapshot refresh has error, msg is " + e.getMessage());
+        }
+    }
+
+    private TopicOffsetSnapshot refresh(String clusterAlias) {
+        try (KafkaClientRegistry.ConsumerLease lease = clientRegistry.borrowConsumer(clusterAlias)) {
+            try {
+                KafkaConsumer<byte[], byte[]> consumer = lease.consumer();
+                Map<String, Integer> partitionCounts = new HashMap<>();
+                List<TopicPartition> tps = new ArrayList<>();
+                for (Entry<String, List<PartitionInfo>> entry : consumer.listTopics().entrySet()) {
+                    int count = 0;
+                    for (PartitionInfo partitionInfo : entry.getValue()) {
+                        tps.add(new TopicPartition(partitionInfo.topic(), partitionInfo.partition()));
+                        count = Math.max(count, partitionInfo.partition() + 1);
+                    }
+                    partitionCounts.put(entry.getKey(), count);
+                }
+                Map<TopicPartition, Long> beginningOffsets = consumer.beginningOffsets(tps);
+                Map<TopicPartition, Long> endOffsets = consumer.endOffsets(tps);
+                refreshes.incrementAndGet();
+                return TopicOffsetSnapshot.of(clusterAlias, partitionCounts, beginningOffsets, endOffsets);
+            } catch (Exception e) {
+                lease.invalidate();
+                failures.incrementAndGet();
+                LoggerUtils.print(this.getClass()).error("Refresh cluster[" + clusterAlias + "] offset snapshot has error, msg is ", e);
+                return null;
+            }
+        }
+    }
+
+}
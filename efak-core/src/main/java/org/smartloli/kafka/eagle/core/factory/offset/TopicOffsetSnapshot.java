@@ -0,0 +1,207 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.core.factory.offset;
+
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.*;
+
+/**
+ * Beginning and end offsets of every partition of a cluster, stored in flat
+ * long arrays. Topic i owns the slots [starts[i], starts[i] + sizes[i]) and
+ * partition p lives at starts[i] + p. Unknown partitions hold -1.
+ * <p>
+ * A snapshot is immutable once built, readers never need to synchronize.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public final class TopicOffsetSnapshot {
+
+    private static final long UNKNOWN = -1L;
+
+    private final String cluster;
+    private final long timestamp;
+    private final Map<String, Integer> topicIndex;
+    private final int[] starts;
+    private final int[] sizes;
+    private final long[] beginnings;
+    private final long[] ends;
+
+    private TopicOffsetSnapshot(String cluster, long timestamp, Map<String, Integer> topicIndex, int[] starts, int[] sizes, long[] beginnings, long[] ends) {
+        this.cluster = cluster;
+        this.timestamp = timestamp;
+        this.topicIndex = topicIndex;
+        this.starts = starts;
+        this.sizes = sizes;
+        this.beginnings = beginnings;
+        this.ends = ends;
+    }
+
+    /**
+     * Build a snapshot from the offsets returned by beginningOffsets and endOffsets.
+     */
+    public static TopicOffsetSnapshot of(String cluster, Map<String, Integer> partitionCounts, Map<TopicPartition, Long> beginningOffsets, Map<TopicPartition, Long> endOffsets) {
+        Map<String, Integer> topicIndex = new HashMap<>(partitionCounts.size() * 2);
+        int[] starts = new int[partitionCounts.size()];
+        int[] sizes = new int[partitionCounts.size()];
+        int index = 0;
+        int slots = 0;
+        for (Map.Entry<String, Integer> entry : partitionCounts.entrySet()) {
+            topicIndex.put(entry.getKey(), index);
+            starts[index] = slots;
+            sizes[index] = entry.getValue();
+            slots += entry.getValue();
+            index++;
+        }
+        long[] beginnings = new long[slots];
+        long[] ends = new long[slots];
+        Arrays.fill(beginnings, UNKNOWN);
+        Arrays.fill(ends, UNKNOWN);
+        fill(topicIndex, starts, sizes, beginnings, beginningOffsets);
+        fill(topicIndex, starts, sizes, ends, endOffsets);
+        return new TopicOffsetSnapshot(cluster, System.currentTimeMillis(), topicIndex, starts, sizes, beginnings, ends);
+    }
+
+    private static void fill(Map<String, Integer> topicIndex, int[] starts, int[] sizes, long[] target, Map<TopicPartition, Long> offsets) {
+        for (Map.Entry<TopicPartition, Long> entry : offsets.entrySet()) {
+            Integer index = topicIndex.get(entry.getKey().topic());
+            int partition = entry.getKey().partition();
+            if (index != null && entry.getValue() != null && partition >= 0 && partition < sizes[index]) {
+                target[starts[index] + partition] = entry.getValue();
+            }
+        }
+    }
+
+    public String getCluster() {
+        return cluster;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public boolean isExpired(long staleness) {
+        return System.currentTimeMillis() - timestamp > staleness;
+    }
+
+    public Set<String> topics() {
+        return Collections.unmodifiableSet(topicIndex.keySet());
+    }
+
+    /**
+     * Whether every requested partition of the topic has both offsets.
+     */
+    public boolean contains(String topic, Collection<Integer> partitionids) {
+        Integer index = topicIndex.get(topic);
+        if (index == null) {
+            return false;
+        }
+        for (int partitionid : partitionids) {
+            int slot = slot(index, partitionid);
+            if (slot < 0 || ends[slot] == UNKNOWN || beginnings[slot] == UNKNOWN) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Partition slots of the topic, 0 when the topic is unknown.
+     */
+    public int partitions(String topic) {
+        Integer index = topicIndex.get(topic);
+        return index == null ? 0 : sizes[index];
+    }
+
+    /**
+     * End offset of the partition, -1 when unknown.
+     */
+    public long endOffset(String topic, int partitionid) {
+        int slot = slot(topic, partitionid);
+        return slot < 0 ? UNKNOWN : ends[slot];
+    }
+
+    /**
+     * Beginning offset of the partition, -1 when unknown.
+     */
+    public long beginningOffset(String topic, int partitionid) {
+        int slot = slot(topic, partitionid);
+        return slot < 0 ? UNKNOWN : beginnings[slot];
+    }
+
+    /**
+     * End offsets of the requested partitions, unknown partitions are skipped.
+     */
+    public Map<TopicPartition, Long> endOffsets(String topic, Collection<Integer> partitionids) {
+        Map<TopicPartition, Long> offsets = new HashMap<>();
+        for (int partitionid : partitionids) {
+            long offset = endOffset(topic, partitionid);
+            if (offset != UNKNOWN) {
+                offsets.put(new TopicPartition(topic, partitionid), offset);
+            }
+        }
+        return offsets;
+    }
+
+    /**
+     * Sum of end offsets of the requested partitions.
+     */
+    public long sumEndOffsets(String topic, Collection<Integer> partitionids) {
+        long sum = 0L;
+        for (int partitionid : partitionids) {
+            long offset = endOffset(topic, partitionid);
+            if (offset != UNKNOWN) {
+                sum += offset;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Sum of end minus beginning offsets, the records still on disk.
+     */
+    public long sumRealLogSize(String topic, Collection<Integer> partitionids) {
+        long sum = 0L;
+        for (int partitionid : partitionids) {
+            int slot = slot(topic, partitionid);
+            if (slot >= 0 && ends[slot] != UNKNOWN && beginnings[slot] != UNKNOWN) {
+                sum += ends[slot] - beginnings[slot];
+            }
+        }
+        return sum;
+    }
+
+    public int size() {
+        return ends.length;
+    }
+
+    private int slot(String topic, int partitionid) {
+        Integer index = topicIndex.get(topic);
+        return index == null ? -1 : slot(index, partitionid);
+    }
+
+    private int slot(int index, int partitionid) {
+        if (partitionid < 0 || partitionid >= sizes[index]) {
+            return -1;
+        }
+        return starts[index] + partitionid;
+    }
+
+}
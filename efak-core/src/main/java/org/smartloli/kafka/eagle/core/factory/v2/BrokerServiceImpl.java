@@ -20,13 +20,10 @@ package org.smartloli.kafka.eagle.core.factory.v2;
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
-import com.alibaba.fastjson.TypeReference;
 import com.google.common.base.Strings;
 import kafka.zk.KafkaZkClient;
-import org.apache.kafka.clients.CommonClientConfigs;
 import org.apache.kafka.clients.admin.AdminClient;
 import org.apache.kafka.clients.admin.NewPartitions;
-import org.apache.zookeeper.data.Stat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.smartloli.kafka.eagle.common.protocol.BrokersInfo;
@@ -35,17 +32,18 @@ import org.smartloli.kafka.eagle.common.protocol.PartitionsInfo;
 import org.smartloli.kafka.eagle.common.protocol.cache.BrokerCache;
 import org.smartloli.kafka.eagle.common.util.*;
 import org.smartloli.kafka.eagle.common.util.KConstants.Kafka;
-import org.smartloli.kafka.eagle.common.util.kraft.KafkaSchemaFactory;
-import org.smartloli.kafka.eagle.common.util.kraft.KafkaStoragePlugin;
+import org.smartloli.kafka.eagle.common.util.KafkaZKPoolUtils.ZkLease;
 import org.smartloli.kafka.eagle.core.factory.KafkaFactory;
 import org.smartloli.kafka.eagle.core.factory.KafkaService;
-import scala.Option;
-import scala.Tuple2;
+import org.smartloli.kafka.eagle.core.factory.client.KafkaClientRegistry;
+import org.smartloli.kafka.eagle.core.factory.client.TopicMetadataCache;
+import org.smartloli.kafka.eagle.core.factory.client.TopicMetadataCache.TopicMetadata;
 import scala.collection.JavaConversions;
 import scala.collection.Seq;
 
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Implements {@link BrokerService} all method.
@@ -60,8 +58,6 @@ import java.util.Map.Entry;
 public class BrokerServiceImpl implements BrokerService {
 
     private final String BROKER_IDS_PATH = "/brokers/ids";
-    private final String BROKER_TOPICS_PATH = "/brokers/topics";
-    private final String TOPIC_ISR = "/brokers/topics/%s/partitions/%s/state";
     private final Logger LOG = LoggerFactory.getLogger(BrokerServiceImpl.class);
 
     /**
@@ -70,16 +66,36 @@ public class BrokerServiceImpl implements BrokerService {
     // private KafkaZKPoolUtils kafkaZKPool = KafkaZKPoolUtils.getInstance();
     private KafkaZKPoolUtils kafkaZKPool = KafkaZKSingletonUtils.create();
 
+    /**
+     * Topic metadata kept current by zookeeper watches.
+     */
+    private TopicMetadataCache topicMetadataCache = TopicMetadataCache.getInstance();
+
     /**
      * Kafka service interface.
      */
     private KafkaService kafkaService = new KafkaFactory().create();
 
+    /**
+     * Topic list page index of each cluster, rebuilt when the metadata changes.
+     */
+    private static final Map<String, TopicIndex> TOPIC_INDEXES = new ConcurrentHashMap<>();
+
     /**
      * Statistics topic total used as page.
      */
     public long topicNumbers(String clusterAlias) {
-        return topicList(clusterAlias).size();
+        return topicIndex(clusterAlias).size();
+    }
+
+    private TopicIndex topicIndex(String clusterAlias) {
+        long version = topicMetadataCache.getVersion(clusterAlias);
+        TopicIndex index = TOPIC_INDEXES.get(clusterAlias);
+        if (index == null || index.version() != version) {
+            index = TopicIndex.build(version, topicList(clusterAlias), topicMetadataCache.getTopics(clusterAlias));
+            TOPIC_INDEXES.put(clusterAlias, index);
+        }
+        return index;
     }
 
     /**
@@ -103,14 +119,10 @@ public class BrokerServiceImpl implements BrokerService {
      * Get search topic list numbers.
      */
     public long topicNumbers(String clusterAlias, String topic) {
-        long count = 0L;
-        List<String> topics = topicList(clusterAlias);
-        for (String name : topics) {
-            if (topic != null && name.contains(topic)) {
-                count++;
-            }
+        if (topic == null) {
+            return 0L;
         }
-        return count;
+        return topicIndex(clusterAlias).search(topic).length;
     }
 
     /**
@@ -121,19 +133,9 @@ public class BrokerServiceImpl implements BrokerService {
         if (Kafka.CONSUMER_OFFSET_TOPIC.equals(topic)) {
             return count;
         }
-        KafkaZkClient zkc = kafkaZKPool.getZkClient(clusterAlias);
-        try {
-            if (zkc.pathExists(BROKER_TOPICS_PATH + "/" + topic + "/partitions")) {
-                Seq<String> subBrokerTopicsPaths = zkc.getChildren(BROKER_TOPICS_PATH + "/" + topic + "/partitions");
-                count = JavaConversions.seqAsJavaList(subBrokerTopicsPaths).size();
-            }
-        } catch (Exception e) {
-            LOG.error("Get topic partition numbers has error, msg is " + e.getCause().getMessage());
-            e.printStackTrace();
-        }
-        if (zkc != null) {
-            kafkaZKPool.release(clusterAlias, zkc);
-            zkc = null;
+        TopicMetadata metadata = topicMetadataCache.getTopic(clusterAlias, topic);
+        if (metadata != null) {
+            count = metadata.size();
         }
         return count;
     }
@@ -143,102 +145,67 @@ public class BrokerServiceImpl implements BrokerService {
      */
     public List<PartitionsInfo> topicRecords(String clusterAlias, Map<String, Object> params) {
         List<PartitionsInfo> targets = new ArrayList<PartitionsInfo>();
-        List<String> topics = topicList(clusterAlias);
-        KafkaZkClient zkc = kafkaZKPool.getZkClient(clusterAlias);
         try {
+            TopicIndex index = topicIndex(clusterAlias);
             int start = Integer.parseInt(params.get("start").toString());
             int length = Integer.parseInt(params.get("length").toString());
+            String search = null;
             if (params.containsKey("search") && params.get("search").toString().length() > 0) {
-                String search = params.get("search").toString();
-                int offset = 0;
-                int id = start + 1;
-                for (String topic : topics) {
-                    if (search != null && topic.contains(search)) {
-                        if (offset < (start + length) && offset >= start) {
-                            try {
-                                if (zkc.pathExists(BROKER_TOPICS_PATH + "/" + topic)) {
-                                    Tuple2<Option<byte[]>, Stat> tuple = zkc.getDataAndStat(BROKER_TOPICS_PATH + "/" + topic);
-                                    PartitionsInfo partition = new PartitionsInfo();
-                                    partition.setId(id++);
-                                    partition.setCreated(CalendarUtils.convertUnixTime2Date(tuple._2.getCtime()));
-                                    partition.setModify(CalendarUtils.convertUnixTime2Date(tuple._2.getMtime()));
-                                    partition.setTopic(topic);
-                                    String tupleString = new String(tuple._1.get());
-                                    JSONObject partitionObject = JSON.parseObject(tupleString).getJSONObject("partitions");
-                                    partition.setPartitionNumbers(partitionObject.size());
-                                    partition.setPartitions(partitionObject.keySet());
-                                    targets.add(partition);
-                                }
-                            } catch (Exception ex) {
-                                ex.printStackTrace();
-                                LOG.error("Scan topic search from zookeeper has error, msg is " + ex.getMessage());
-                            }
-                        }
-                        offset++;
-                    }
-                }
-            } else {
-                int offset = 0;
-                int id = start + 1;
-                for (String topic : topics) {
-                    if (offset < (start + length) && offset >= start) {
-                        try {
-                            if (zkc.pathExists(BROKER_TOPICS_PATH + "/" + topic)) {
-                                Tuple2<Option<byte[]>, Stat> tuple = zkc.getDataAndStat(BROKER_TOPICS_PATH + "/" + topic);
-                                PartitionsInfo partition = new PartitionsInfo();
-                                partition.setId(id++);
-                                partition.setCreated(CalendarUtils.convertUnixTime2Date(tuple._2.getCtime()));
-                                partition.setModify(CalendarUtils.convertUnixTime2Date(tuple._2.getMtime()));
-                                partition.setTopic(topic);
-                                String tupleString = new String(tuple._1.get());
-                                JSONObject partitionObject = JSON.parseObject(tupleString).getJSONObject("partitions");
-                                partition.setPartitionNumbers(partitionObject.size());
-                                partition.setPartitions(partitionObject.keySet());
-                                targets.add(partition);
-                            }
-                        } catch (Exception ex) {
-                            ex.printStackTrace();
-                            LOG.error("Scan topic page from zookeeper has error, msg is " + ex.getMessage());
-                        }
-                    }
-                    offset++;
+                search = params.get("search").toString();
+            }
+            int[] positions = index.search(search);
+            long brokerSize = brokerNumbers(clusterAlias);
+            if (brokerSize == 0) {
+                brokerSize = kafkaService.getAllBrokersInfo(clusterAlias).size();
+            }
+            int id = start + 1;
+            for (int offset = start; offset < Math.min(start + length, positions.length); offset++) {
+                TopicMetadata metadata = index.metadata(positions[offset]);
+                if (metadata != null) {
+                    PartitionsInfo partition = new PartitionsInfo();
+                    partition.setId(id++);
+                    partition.setCreated(topicTime(metadata.getCtime()));
+                    partition.setModify(topicTime(metadata.getMtime()));
+                    partition.setTopic(metadata.getName());
+                    partition.setPartitionNumbers(metadata.size());
+                    partition.setPartitions(metadata.getPartitionNames());
+                    partition.setBrokersSpread(brokerSize == 0 ? 0 : index.replicaBrokers(positions[offset]) * 100 / brokerSize);
+                    partition.setBrokersSkewed(index.skewed(positions[offset]));
+                    targets.add(partition);
                 }
             }
         } catch (Exception e) {
-            LOG.error("Get topic records has error, msg is " + e.getCause().getMessage());
-            e.printStackTrace();
-        } finally {
-            if (zkc != null) {
-                kafkaZKPool.release(clusterAlias, zkc);
-                zkc = null;
-            }
+            LOG.error("Get topic records has error, msg is ", e);
         }
         return targets;
     }
 
+    /**
+     * Formatted topic time, '-' when the cluster does not report it.
+     */
+    private static String topicTime(long time) {
+        return time == TopicMetadata.UNKNOWN_TIME ? "-" : CalendarUtils.convertUnixTime2Date(time);
+    }
+
     /**
      * Get broker spread by topic.
      */
     public int getBrokerSpreadByTopic(String clusterAlias, String topic) {
         int spread = 0;
         try {
-            List<MetadataInfo> topicMetas = topicMetadata(clusterAlias, topic);
+            TopicMetadata metadata = topicMetadataCache.getTopic(clusterAlias, topic);
+            if (metadata == null) {
+                return spread;
+            }
             Set<Integer> brokerSizes = new HashSet<>();
-            for (MetadataInfo meta : topicMetas) {
-                List<Integer> replicasIntegers = new ArrayList<>();
-                try {
-                    replicasIntegers = JSON.parseObject(meta.getReplicas(), new TypeReference<ArrayList<Integer>>() {
-                    });
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    LOG.error("Parse string to int list has error, msg is " + e.getCause().getMessage());
+            for (int i = 0; i < metadata.size(); i++) {
+                for (int brokerId : metadata.replicas(i)) {
+                    brokerSizes.add(brokerId);
                 }
-                brokerSizes.addAll(replicasIntegers);
             }
             int brokerSize = kafkaService.getAllBrokersInfo(clusterAlias).size();
             spread = brokerSizes.size() * 100 / brokerSize;
         } catch (Exception e) {
-            e.printStackTrace();
             LOG.error("Get topic skewed info has error, msg is ", e);
         }
         return spread;
@@ -250,31 +217,20 @@ public class BrokerServiceImpl implements BrokerService {
     public int getBrokerSkewedByTopic(String clusterAlias, String topic) {
         int skewed = 0;
         try {
-            List<MetadataInfo> topicMetas = topicMetadata(clusterAlias, topic);
+            TopicMetadata metadata = topicMetadataCache.getTopic(clusterAlias, topic);
+            if (metadata == null) {
+                return skewed;
+            }
             int partitionAndReplicaTopics = 0;
-            Set<Integer> brokerSizes = new HashSet<>();
             Map<Integer, Integer> brokers = new HashMap<>();
-            for (MetadataInfo meta : topicMetas) {
-                List<Integer> replicasIntegers = new ArrayList<>();
-                try {
-                    replicasIntegers = JSON.parseObject(meta.getReplicas(), new TypeReference<ArrayList<Integer>>() {
-                    });
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    LOG.error("Parse string to int list has error, msg is " + e.getCause().getMessage());
-                }
-                brokerSizes.addAll(replicasIntegers);
-                partitionAndReplicaTopics += replicasIntegers.size();
-                for (Integer brokerId : replicasIntegers) {
-                    if (brokers.containsKey(brokerId)) {
-                        int value = brokers.get(brokerId);
-                        brokers.put(brokerId, value + 1);
-                    } else {
-                        brokers.put(brokerId, 1);
-                    }
+            for (int i = 0; i < metadata.size(); i++) {
+                int[] replicas = metadata.replicas(i);
+                partitionAndReplicaTopics += replicas.length;
+                for (int brokerId : replicas) {
+                    brokers.merge(brokerId, 1, Integer::sum);
                 }
             }
-            int brokerSize = brokerSizes.size();
+            int brokerSize = brokers.size();
             int normalSkewedValue = MathUtils.ceil(brokerSize, partitionAndReplicaTopics);
             int brokerSkewSize = 0;
             for (Entry<Integer, Integer> entry : brokers.entrySet()) {
@@ -284,7 +240,6 @@ public class BrokerServiceImpl implements BrokerService {
             }
             skewed = brokerSkewSize * 100 / brokerSize;
         } catch (Exception e) {
-            e.printStackTrace();
             LOG.error("Get topic skewed info has error, msg is ", e);
         }
         return skewed;
@@ -296,28 +251,20 @@ public class BrokerServiceImpl implements BrokerService {
     public int getBrokerLeaderSkewedByTopic(String clusterAlias, String topic) {
         int leaderSkewed = 0;
         try {
-            List<MetadataInfo> topicMetas = topicMetadata(clusterAlias, topic);
+            TopicMetadata metadata = topicMetadataCache.getTopicWithStates(clusterAlias, topic);
+            if (metadata == null) {
+                return leaderSkewed;
+            }
             Map<Integer, Integer> brokerLeaders = new HashMap<>();
             Set<Integer> brokerSizes = new HashSet<>();
-            for (MetadataInfo meta : topicMetas) {
-                List<Integer> replicasIntegers = new ArrayList<>();
-                try {
-                    replicasIntegers = JSON.parseObject(meta.getReplicas(), new TypeReference<ArrayList<Integer>>() {
-                    });
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    LOG.error("Parse string to int list has error, msg is " + e.getCause().getMessage());
-                }
-                brokerSizes.addAll(replicasIntegers);
-                if (brokerLeaders.containsKey(meta.getLeader())) {
-                    int value = brokerLeaders.get(meta.getLeader());
-                    brokerLeaders.put(meta.getLeader(), value + 1);
-                } else {
-                    brokerLeaders.put(meta.getLeader(), 1);
+            for (int i = 0; i < metadata.size(); i++) {
+                for (int brokerId : metadata.replicas(i)) {
+                    brokerSizes.add(brokerId);
                 }
+                brokerLeaders.merge(metadata.leader(i), 1, Integer::sum);
             }
             int brokerSize = brokerSizes.size();
-            int brokerSkewLeaderNormal = MathUtils.ceil(brokerSize, topicMetas.size());
+            int brokerSkewLeaderNormal = MathUtils.ceil(brokerSize, metadata.size());
             int brokerSkewLeaderSize = 0;
             for (Entry<Integer, Integer> entry : brokerLeaders.entrySet()) {
                 if (entry.getValue() > brokerSkewLeaderNormal) {
@@ -326,7 +273,6 @@ public class BrokerServiceImpl implements BrokerService {
             }
             leaderSkewed = brokerSkewLeaderSize * 100 / brokerSize;
         } catch (Exception e) {
-            e.printStackTrace();
             LOG.error("Get topic skewed info has error, msg is ", e);
         }
         return leaderSkewed;
@@ -336,7 +282,7 @@ public class BrokerServiceImpl implements BrokerService {
      * Check topic from zookeeper metadata.
      */
     public boolean findKafkaTopic(String clusterAlias, String topic) {
-        return topicList(clusterAlias).contains(topic);
+        return topicIndex(clusterAlias).position(topic) >= 0;
     }
 
     /**
@@ -361,8 +307,7 @@ public class BrokerServiceImpl implements BrokerService {
         } else if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.ssl.cgroup.enable")) {
             topics = SystemConfigUtils.getPropertyArrayList(clusterAlias + ".efak.ssl.cgroup.topics", ",");
         } else {
-            KafkaSchemaFactory ksf = new KafkaSchemaFactory(new KafkaStoragePlugin());
-            topics.addAll(ksf.getTableNames(clusterAlias));
+            topics.addAll(topicMetadataCache.getTopicNames(clusterAlias));
             excludeTopic(clusterAlias, topics);
         }
         return topics;
@@ -375,36 +320,17 @@ public class BrokerServiceImpl implements BrokerService {
         JSONArray targets = new JSONArray();
         int limit = 15;
 
-        List<String> topics = topicList(clusterAlias);
         try {
-            if (Strings.isNullOrEmpty(search)) {
-                int id = 1;
-                for (String topic : topics) {
-                    if (id <= limit) {
-                        JSONObject object = new JSONObject();
-                        object.put("id", id);
-                        object.put("name", topic);
-                        targets.add(object);
-                        id++;
-                    }
-                }
-            } else {
-                int id = 1;
-                for (String topic : topics) {
-                    if (topic.contains(search)) {
-                        if (id <= limit) {
-                            JSONObject object = new JSONObject();
-                            object.put("id", id);
-                            object.put("name", topic);
-                            targets.add(object);
-                            id++;
-                        }
-                    }
-                }
+            TopicIndex index = topicIndex(clusterAlias);
+            int[] positions = index.search(Strings.isNullOrEmpty(search) ? null : search);
+            for (int i = 0; i < Math.min(limit, positions.length); i++) {
+                JSONObject object = new JSONObject();
+                object.put("id", i + 1);
+                object.put("name", index.name(positions[i]));
+                targets.add(object);
             }
         } catch (Exception e) {
-            LOG.error("Get topic list has error, msg is " + e.getCause().getMessage());
-            e.printStackTrace();
+            LOG.error("Get topic list has error, msg is ", e);
         }
         return targets.toJSONString();
     }
@@ -414,123 +340,48 @@ public class BrokerServiceImpl implements BrokerService {
      */
     public List<MetadataInfo> topicMetadataRecords(String clusterAlias, String topic, Map<String, Object> params) {
         List<MetadataInfo> targets = new ArrayList<>();
-        KafkaZkClient zkc = kafkaZKPool.getZkClient(clusterAlias);
         try {
-            if (zkc.pathExists(BROKER_TOPICS_PATH)) {
-                List<String> topics = topicList(clusterAlias);
-                if (topics.contains(topic)) {
-                    int start = Integer.parseInt(params.get("start").toString());
-                    int length = Integer.parseInt(params.get("length").toString());
-                    int offset = 0;
-                    Tuple2<Option<byte[]>, Stat> tuple = zkc.getDataAndStat(BROKER_TOPICS_PATH + "/" + topic);
-                    String tupleString = new String(tuple._1.get());
-                    JSONObject partitionObject = JSON.parseObject(tupleString).getJSONObject("partitions");
-                    Set<Integer> partitionSet = new TreeSet<>();
-                    for (String partitionId : partitionObject.keySet()) {
-                        partitionSet.add(Integer.valueOf(partitionId));
+            if (topicIndex(clusterAlias).position(topic) >= 0) {
+                TopicMetadata metadata = topicMetadataCache.getTopicWithStates(clusterAlias, topic);
+                int start = Integer.parseInt(params.get("start").toString());
+                int length = Integer.parseInt(params.get("length").toString());
+                // partitions are sorted asc
+                for (int i = start; metadata != null && i < Math.min(start + length, metadata.size()); i++) {
+                    int partition = metadata.partition(i);
+                    MetadataInfo metadate = metadataInfo(metadata, i);
+                    long logSize = kafkaService.getKafkaRealLogSize(clusterAlias, topic, partition);
+                    int[] replicas = metadata.replicas(i);
+                    if (metadata.isr(i).length != replicas.length) {
+                        // replicas lost
+                        metadate.setUnderReplicated(true);
+                    } else {
+                        // replicas normal
+                        metadate.setUnderReplicated(false);
                     }
-                    Set<Integer> partitionSortSet = new TreeSet<>(new Comparator<Integer>() {
-                        @Override
-                        public int compare(Integer o1, Integer o2) {
-                            int diff = o1 - o2;// asc
-                            if (diff > 0) {
-                                return 1;
-                            } else if (diff < 0) {
-                                return -1;
-                            }
-                            return 0;
-                        }
-                    });
-                    partitionSortSet.addAll(partitionSet);
-                    for (int partition : partitionSortSet) {
-                        if (offset < (start + length) && offset >= start) {
-                            String path = String.format(TOPIC_ISR, topic, partition);
-                            Tuple2<Option<byte[]>, Stat> tuple2 = zkc.getDataAndStat(path);
-                            String tupleString2 = new String(tuple2._1.get());
-                            JSONObject topicMetadata = JSON.parseObject(tupleString2);
-                            MetadataInfo metadate = new MetadataInfo();
-                            metadate.setIsr(topicMetadata.getString("isr"));
-                            metadate.setLeader(topicMetadata.getInteger("leader"));
-                            metadate.setPartitionId(partition);
-                            metadate.setReplicas(kafkaService.getReplicasIsr(clusterAlias, topic, partition));
-                            long logSize = kafkaService.getKafkaRealLogSize(clusterAlias, topic, partition);
-                            List<Integer> isrIntegers = new ArrayList<>();
-                            List<Integer> replicasIntegers = new ArrayList<>();
-                            try {
-                                isrIntegers = JSON.parseObject(metadate.getIsr(), new TypeReference<ArrayList<Integer>>() {
-                                });
-                                replicasIntegers = JSON.parseObject(metadate.getReplicas(), new TypeReference<ArrayList<Integer>>() {
-                                });
-                            } catch (Exception e) {
-                                e.printStackTrace();
-                                LOG.error("Parse string to int list has error, msg is ", e);
-                            }
-                            if (isrIntegers.size() != replicasIntegers.size()) {
-                                // replicas lost
-                                metadate.setUnderReplicated(true);
-                            } else {
-                                // replicas normal
-                                metadate.setUnderReplicated(false);
-                            }
-                            if (replicasIntegers != null && replicasIntegers.size() > 0 && replicasIntegers.get(0) == metadate.getLeader()) {
-                                // partition preferred leader
-                                metadate.setPreferredLeader(true);
-                            } else {
-                                // partition occurs preferred leader exception
-                                metadate.setPreferredLeader(false);
-                            }
-                            metadate.setLogSize(logSize);
-                            targets.add(metadate);
-                        }
-                        offset++;
+                    if (replicas.length > 0 && replicas[0] == metadate.getLeader()) {
+                        // partition preferred leader
+                        metadate.setPreferredLeader(true);
+                    } else {
+                        // partition occurs preferred leader exception
+                        metadate.setPreferredLeader(false);
                     }
+                    metadate.setLogSize(logSize);
+                    targets.add(metadate);
                 }
             }
         } catch (Exception e) {
-            LOG.error("Get topic metadata records has error, msg is " + e.getCause().getMessage());
-            e.printStackTrace();
-        } finally {
-            if (zkc != null) {
-                kafkaZKPool.release(clusterAlias, zkc);
-                zkc = null;
-            }
+            LOG.error("Get topic metadata records has error, msg is ", e);
         }
         return targets;
     }
 
-    private List<MetadataInfo> topicMetadata(String clusterAlias, String topic) {
-        List<MetadataInfo> targets = new ArrayList<>();
-        KafkaZkClient zkc = kafkaZKPool.getZkClient(clusterAlias);
-        try {
-            if (zkc.pathExists(BROKER_TOPICS_PATH)) {
-                List<String> topics = topicList(clusterAlias);
-                if (topics.contains(topic)) {
-                    Tuple2<Option<byte[]>, Stat> tuple = zkc.getDataAndStat(BROKER_TOPICS_PATH + "/" + topic);
-                    String tupleString = new String(tuple._1.get());
-                    JSONObject partitionObject = JSON.parseObject(tupleString).getJSONObject("partitions");
-                    for (String partition : partitionObject.keySet()) {
-                        String path = String.format(TOPIC_ISR, topic, Integer.valueOf(partition));
-                        Tuple2<Option<byte[]>, Stat> tuple2 = zkc.getDataAndStat(path);
-                        String tupleString2 = new String(tuple2._1.get());
-                        JSONObject topicMetadata = JSON.parseObject(tupleString2);
-                        MetadataInfo metadate = new MetadataInfo();
-                        metadate.setIsr(topicMetadata.getString("isr"));
-                        metadate.setLeader(topicMetadata.getInteger("leader"));
-                        metadate.setPartitionId(Integer.valueOf(partition));
-                        metadate.setReplicas(kafkaService.getReplicasIsr(clusterAlias, topic, Integer.valueOf(partition)));
-                        targets.add(metadate);
-                    }
-                }
-            }
-        } catch (Exception e) {
-            LOG.error("Get topic metadata records has error, msg is ", e);
-        } finally {
-            if (zkc != null) {
-                kafkaZKPool.release(clusterAlias, zkc);
-                zkc = null;
-            }
-        }
-        return targets;
+    private MetadataInfo metadataInfo(TopicMetadata metadata, int index) {
+        MetadataInfo metadate = new MetadataInfo();
+        metadate.setIsr(JSON.toJSONString(metadata.isr(index)));
+        metadate.setLeader(metadata.leader(index));
+        metadate.setPartitionId(metadata.partition(index));
+        metadate.setReplicas(Arrays.toString(metadata.replicas(index)));
+        return metadate;
     }
 
     /**
@@ -541,30 +392,13 @@ public class BrokerServiceImpl implements BrokerService {
         if (Kafka.CONSUMER_OFFSET_TOPIC.equals(topic)) {
             return logSize;
         }
-        KafkaZkClient zkc = kafkaZKPool.getZkClient(clusterAlias);
         try {
-            if (zkc.pathExists(BROKER_TOPICS_PATH + "/" + topic)) {
-                Tuple2<Option<byte[]>, Stat> tuple = zkc.getDataAndStat(BROKER_TOPICS_PATH + "/" + topic);
-                String tupleString = new String(tuple._1.get());
-                JSONObject partitionObject = JSON.parseObject(tupleString).getJSONObject("partitions");
-                Set<Integer> partitions = new HashSet<>();
-                for (String partition : partitionObject.keySet()) {
-                    try {
-                        partitions.add(Integer.valueOf(partition));
-                    } catch (Exception e) {
-                        LOG.error("Convert partition string to integer has error, msg is " + e.getCause().getMessage());
-                        e.printStackTrace();
-                    }
-                }
-                logSize = kafkaService.getKafkaRealLogSize(clusterAlias, topic, partitions);
+            TopicMetadata metadata = topicMetadataCache.getTopic(clusterAlias, topic);
+            if (metadata != null) {
+                logSize = kafkaService.getKafkaRealLogSize(clusterAlias, topic, metadata.getPartitionIds());
             }
         } catch (Exception e) {
             LOG.error("Get topic logsize total has error, msg is ", e);
-        } finally {
-            if (zkc != null) {
-                kafkaZKPool.release(clusterAlias, zkc);
-                zkc = null;
-            }
         }
         return logSize;
     }
@@ -577,29 +411,13 @@ public class BrokerServiceImpl implements BrokerService {
         if (Kafka.CONSUMER_OFFSET_TOPIC.equals(topic)) {
             return logSize;
         }
-        KafkaZkClient zkc = kafkaZKPool.getZkClient(clusterAlias);
         try {
-            if (zkc.pathExists(BROKER_TOPICS_PATH + "/" + topic)) {
-                Tuple2<Option<byte[]>, Stat> tuple = zkc.getDataAndStat(BROKER_TOPICS_PATH + "/" + topic);
-                String tupleString = new String(tuple._1.get());
-                JSONObject partitionObject = JSON.parseObject(tupleString).getJSONObject("partitions");
-                Set<Integer> partitions = new HashSet<>();
-                for (String partition : partitionObject.keySet()) {
-                    try {
-                        partitions.add(Integer.valueOf(partition));
-                    } catch (Exception e) {
-                        LOG.error("Convert partition string to integer has error, msg is ", e);
-                    }
-                }
-                logSize = kafkaService.getKafkaRealLogSize(clusterAlias, topic, partitions);
+            TopicMetadata metadata = topicMetadataCache.getTopic(clusterAlias, topic);
+            if (metadata != null) {
+                logSize = kafkaService.getKafkaRealLogSize(clusterAlias, topic, metadata.getPartitionIds());
             }
         } catch (Exception e) {
             LoggerUtils.print(this.getClass()).error("Get topic real logsize has error, msg is ", e);
-        } finally {
-            if (zkc != null) {
-                kafkaZKPool.release(clusterAlias, zkc);
-                zkc = null;
-            }
         }
         return logSize;
     }
@@ -612,30 +430,13 @@ public class BrokerServiceImpl implements BrokerService {
         if (Kafka.CONSUMER_OFFSET_TOPIC.equals(topic)) {
             return logSize;
         }
-        KafkaZkClient zkc = kafkaZKPool.getZkClient(clusterAlias);
         try {
-            if (zkc.pathExists(BROKER_TOPICS_PATH + "/" + topic)) {
-                Tuple2<Option<byte[]>, Stat> tuple = zkc.getDataAndStat(BROKER_TOPICS_PATH + "/" + topic);
-                String tupleString = new String(tuple._1.get());
-                JSONObject partitionObject = JSON.parseObject(tupleString).getJSONObject("partitions");
-                Set<Integer> partitions = new HashSet<>();
-                for (String partition : partitionObject.keySet()) {
-                    try {
-                        partitions.add(Integer.valueOf(partition));
-                    } catch (Exception e) {
-                        LOG.error("Convert partition string to integer has error, msg is " + e.getCause().getMessage());
-                        e.printStackTrace();
-                    }
-                }
-                logSize = kafkaService.getKafkaProducerLogSize(clusterAlias, topic, partitions);
+            TopicMetadata metadata = topicMetadataCache.getTopic(clusterAlias, topic);
+            if (metadata != null) {
+                logSize = kafkaService.getKafkaProducerLogSize(clusterAlias, topic, metadata.getPartitionIds());
             }
         } catch (Exception e) {
             LOG.error("Get topic real logsize has error, msg is ", e);
-        } finally {
-            if (zkc != null) {
-                kafkaZKPool.release(clusterAlias, zkc);
-                zkc = null;
-            }
         }
         return logSize;
     }
@@ -646,19 +447,8 @@ public class BrokerServiceImpl implements BrokerService {
     public Map<String, Object> createTopicPartitions(String clusterAlias, String topic, int totalCount) {
         Map<String, Object> targets = new HashMap<String, Object>();
         int existPartitions = (int) partitionNumbers(clusterAlias, topic);
-        Properties prop = new Properties();
-        prop.put(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, kafkaService.getKafkaBrokerServer(clusterAlias));
-
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.sasl.enable")) {
-            kafkaService.sasl(prop, clusterAlias);
-        }
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.ssl.enable")) {
-            kafkaService.ssl(prop, clusterAlias);
-        }
-
-        AdminClient adminClient = null;
-        try {
-            adminClient = AdminClient.create(prop);
+        try (KafkaClientRegistry.AdminLease lease = KafkaClientRegistry.getInstance().borrowAdminClient(clusterAlias)) {
+            AdminClient adminClient = lease.client();
             Map<String, NewPartitions> newPartitions = new HashMap<String, NewPartitions>();
             newPartitions.put(topic, NewPartitions.increaseTo(existPartitions + totalCount));
             adminClient.createPartitions(newPartitions);
@@ -669,8 +459,6 @@ public class BrokerServiceImpl implements BrokerService {
             e.printStackTrace();
             targets.put("status", "failed");
             targets.put("info", "Add kafka topic partitions has error, msg is " + e.getMessage());
-        } finally {
-            adminClient.close();
         }
         return targets;
     }
@@ -680,8 +468,8 @@ public class BrokerServiceImpl implements BrokerService {
      */
     public List<Object> getBrokerIdList(String clusterAlias) {
         List<Object> brokerIds = new ArrayList<>();
-        KafkaZkClient zkc = kafkaZKPool.getZkClient(clusterAlias);
-        try {
+        try (ZkLease lease = kafkaZKPool.lease(clusterAlias)) {
+            KafkaZkClient zkc = lease.client();
             if (zkc.pathExists(BROKER_IDS_PATH)) {
                 Seq<String> subBrokerIdsPaths = zkc.getChildren(BROKER_IDS_PATH);
                 for (String id : JavaConversions.seqAsJavaList(subBrokerIdsPaths)) {
@@ -690,11 +478,6 @@ public class BrokerServiceImpl implements BrokerService {
             }
         } catch (Exception e) {
             LOG.error("Get kafka broker id has error, msg is ", e);
-        } finally {
-            if (zkc != null) {
-                kafkaZKPool.release(clusterAlias, zkc);
-                zkc = null;
-            }
         }
         return brokerIds;
     }
@@ -0,0 +1,192 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.core.factory.v2;
+
+import org.smartloli.kafka.eagle.common.util.MathUtils;
+import org.smartloli.kafka.eagle.core.factory.client.TopicMetadataCache.TopicMetadata;
+
+import java.util.*;
+
+/**
+ * Immutable index of the topics of a cluster for the topic list page.
+ * <p>
+ * Names are sorted once, every name is split into trigrams so a substring
+ * search only verifies the topics holding its rarest trigram, and the broker
+ * skew of each topic is computed when the index is built instead of per row.
+ * Searches shorter than a trigram scan the sorted names.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+final class TopicIndex {
+
+    private static final int GRAM = 3;
+    private static final int[] EMPTY = new int[0];
+
+    private final long version;
+    private final String[] names;
+    private final TopicMetadata[] metadatas;
+    private final int[] replicaBrokers;
+    private final int[] skewed;
+    private final Map<String, int[]> grams;
+
+    private TopicIndex(long version, String[] names, TopicMetadata[] metadatas, int[] replicaBrokers, int[] skewed, Map<String, int[]> grams) {
+        this.version = version;
+        this.names = names;
+        this.metadatas = metadatas;
+        this.replicaBrokers = replicaBrokers;
+        this.skewed = skewed;
+        this.grams = grams;
+    }
+
+    /**
+     * Index the topics, the metadata of a topic is null when it has none.
+     */
+    static TopicIndex build(long version, Collection<String> topics, Map<String, TopicMetadata> metadatas) {
+        String[] names = topics.toArray(new String[0]);
+        Arrays.sort(names);
+        TopicMetadata[] indexed = new TopicMetadata[names.length];
+        int[] replicaBrokers = new int[names.length];
+        int[] skewed = new int[names.length];
+        Map<String, List<Integer>> postings = new HashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            indexed[i] = metadatas.get(names[i]);
+            if (indexed[i] != null) {
+                Map<Integer, Integer> brokers = new HashMap<>();
+                int partitionAndReplicaTopics = 0;
+                for (int p = 0; p < indexed[i].size(); p++) {
+                    for (int brokerId : indexed[i].replicas(p)) {
+                        brokers.merge(brokerId, 1, Integer::sum);
+                        partitionAndReplicaTopics++;
+                    }
+                }
+                replicaBrokers[i] = brokers.size();
+                skewed[i] = skewed(brokers, partitionAndReplicaTopics);
+            }
+            String name = names[i];
+            for (int start = 0; start + GRAM <= name.length(); start++) {
+                List<Integer> posting = postings.computeIfAbsent(name.substring(start, start + GRAM), k -> new ArrayList<>());
+                // names are visited in order, a repeated trigram of one name is always last
+                if (posting.isEmpty() || posting.get(posting.size() - 1) != i) {
+                    posting.add(i);
+                }
+            }
+        }
+        Map<String, int[]> grams = new HashMap<>(postings.size() * 2);
+        for (Map.Entry<String, List<Integer>> entry : postings.entrySet()) {
+            int[] posting = new int[entry.getValue().size()];
+            for (int i = 0; i < posting.length; i++) {
+                posting[i] = entry.getValue().get(i);
+            }
+            grams.put(entry.getKey(), posting);
+        }
+        return new TopicIndex(version, names, indexed, replicaBrokers, skewed, grams);
+    }
+
+    /**
+     * Same broker skewed percent as {@link BrokerService#getBrokerSkewedByTopic}.
+     */
+    private static int skewed(Map<Integer, Integer> brokers, int partitionAndReplicaTopics) {
+        int brokerSize = brokers.size();
+        if (brokerSize == 0) {
+            return 0;
+        }
+        int normalSkewedValue = MathUtils.ceil(brokerSize, partitionAndReplicaTopics);
+        int brokerSkewSize = 0;
+        for (int count : brokers.values()) {
+            if (count > normalSkewedValue) {
+                brokerSkewSize++;
+            }
+        }
+        return brokerSkewSize * 100 / brokerSize;
+    }
+
+    long version() {
+        return version;
+    }
+
+    int size() {
+        return names.length;
+    }
+
+    String name(int position) {
+        return names[position];
+    }
+
+    /**
+     * Metadata of the topic at the position, null when it has none.
+     */
+    TopicMetadata metadata(int position) {
+        return metadatas[position];
+    }
+
+    /**
+     * Position of the topic, negative when it is not indexed.
+     */
+    int position(String topic) {
+        return Arrays.binarySearch(names, topic);
+    }
+
+    /**
+     * Distinct brokers holding a replica of the topic at the position.
+     */
+    int replicaBrokers(int position) {
+        return replicaBrokers[position];
+    }
+
+    int skewed(int position) {
+        return skewed[position];
+    }
+
+    /**
+     * Positions of the topics containing the search, in name order. Every
+     * position when the search is empty.
+     */
+    int[] search(String search) {
+        if (search == null || search.isEmpty()) {
+            int[] all = new int[names.length];
+            for (int i = 0; i < all.length; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+        int[] candidates = null;
+        if (search.length() >= GRAM) {
+            for (int start = 0; start + GRAM <= search.length(); start++) {
+                int[] posting = grams.get(search.substring(start, start + GRAM));
+                if (posting == null) {
+                    return EMPTY;
+                }
+                if (candidates == null || posting.length < candidates.length) {
+                    candidates = posting;
+                }
+            }
+        }
+        int[] hits = new int[candidates == null ? names.length : candidates.length];
+        int size = 0;
+        for (int i = 0; i < hits.length; i++) {
+            int position = candidates == null ? i : candidates[i];
+            if (names[position].contains(search)) {
+                hits[size++] = position;
+            }
+        }
+        return Arrays.copyOf(hits, size);
+    }
+
+}
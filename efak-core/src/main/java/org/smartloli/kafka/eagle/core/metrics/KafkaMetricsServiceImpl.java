@@ -20,7 +20,6 @@ package org.smartloli.kafka.eagle.core.metrics;
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 import kafka.zk.KafkaZkClient;
-import org.apache.kafka.clients.CommonClientConfigs;
 import org.apache.kafka.clients.admin.*;
 import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.config.ConfigResource;
@@ -38,16 +37,14 @@ import org.smartloli.kafka.eagle.common.util.KConstants.Topic;
 import org.smartloli.kafka.eagle.core.factory.KafkaFactory;
 import org.smartloli.kafka.eagle.core.factory.KafkaService;
 import org.smartloli.kafka.eagle.core.factory.Mx4jServiceImpl;
+import org.smartloli.kafka.eagle.core.factory.client.JMXConnectionPool;
+import org.smartloli.kafka.eagle.core.factory.client.KafkaClientRegistry;
 import scala.Option;
 import scala.Tuple2;
 
-import javax.management.MBeanServerConnection;
+import javax.management.InstanceNotFoundException;
 import javax.management.ObjectName;
-import javax.management.remote.JMXConnector;
-import javax.management.remote.JMXServiceURL;
-import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Implements KafkaMetricsService all methods.
@@ -69,6 +66,16 @@ public class KafkaMetricsServiceImpl implements KafkaMetricsService {
      */
     private KafkaService kafkaService = new KafkaFactory().create();
 
+    /**
+     * Pooled kafka admin clients.
+     */
+    private KafkaClientRegistry clientRegistry = KafkaClientRegistry.getInstance();
+
+    /**
+     * Pooled broker jmx connections.
+     */
+    private JMXConnectionPool jmxPool = JMXConnectionPool.getInstance();
+
     /**
      * Instance Kafka Zookeeper client pool.
      */
@@ -84,19 +91,9 @@ public class KafkaMetricsServiceImpl implements KafkaMetricsService {
         if (Kafka.CONSUMER_OFFSET_TOPIC.equals(topic)) {
             return new JSONObject();
         }
-        Properties prop = new Properties();
-        prop.put(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, parseBrokerServer(clusterAlias));
-
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.sasl.enable")) {
-            kafkaService.sasl(prop, clusterAlias);
-        }
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.ssl.enable")) {
-            kafkaService.ssl(prop, clusterAlias);
-        }
         long sum = 0L;
-        AdminClient adminClient = null;
-        try {
-            adminClient = AdminClient.create(prop);
+        try (KafkaClientRegistry.AdminLease lease = clientRegistry.borrowAdminClient(clusterAlias)) {
+            AdminClient adminClient = lease.client();
             List<MetadataInfo> leaders = kafkaService.findKafkaLeader(clusterAlias, topic);
             Set<Integer> ids = new HashSet<>();
             for (MetadataInfo metadata : leaders) {
@@ -124,8 +121,6 @@ public class KafkaMetricsServiceImpl implements KafkaMetricsService {
         } catch (Exception e) {
             LOG.error("Get topic capacity has error, msg is " + e.getCause().getMessage());
             e.printStackTrace();
-        } finally {
-            adminClient.close();
         }
         return StrUtils.stringifyByObject(sum);
     }
@@ -134,35 +129,7 @@ public class KafkaMetricsServiceImpl implements KafkaMetricsService {
      * Get topic size from kafka jmx.
      */
     public JSONObject topicSize(String clusterAlias, String topic) {
-        String jmx = "";
-        JMXConnector connector = null;
-        List<MetadataInfo> leaders = kafkaService.findKafkaLeader(clusterAlias, topic);
-        long tpSize = 0L;
-        for (MetadataInfo leader : leaders) {
-            String jni = kafkaService.getBrokerJMXFromIds(clusterAlias, leader.getLeader());
-            jmx = String.format(SystemConfigUtils.getProperty(clusterAlias + ".efak.jmx.uri"), jni);
-            try {
-                JMXServiceURL jmxSeriverUrl = new JMXServiceURL(jmx);
-                connector = JMXFactoryUtils.connectWithTimeout(clusterAlias, jmxSeriverUrl, 30, TimeUnit.SECONDS);
-                MBeanServerConnection mbeanConnection = connector.getMBeanServerConnection();
-                String objectName = String.format(KafkaLog.SIZE.getValue(), topic, leader.getPartitionId());
-                Object size = mbeanConnection.getAttribute(new ObjectName(objectName), KafkaLog.VALUE.getValue());
-                tpSize += Long.parseLong(size.toString());
-            } catch (Exception ex) {
-                LOG.error("Get topic size from jmx has error, msg is " + ex.getMessage());
-                ex.printStackTrace();
-            } finally {
-                if (connector != null) {
-                    try {
-                        connector.close();
-                    } catch (IOException e) {
-                        LOG.error("Close jmx connector has error, msg is " + e.getMessage());
-                    }
-                }
-            }
-        }
-
-        return StrUtils.stringifyByObject(tpSize);
+        return StrUtils.stringifyByObject(leaderLogSize(clusterAlias, topic));
     }
 
     /**
@@ -170,27 +137,15 @@ public class KafkaMetricsServiceImpl implements KafkaMetricsService {
      */
     public String changeTopicConfig(String clusterAlias, String topic, String type, ConfigEntry configEntry) {
         JSONObject object = new JSONObject();
-        Properties prop = new Properties();
-        prop.put(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, parseBrokerServer(clusterAlias));
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.sasl.enable")) {
-            kafkaService.sasl(prop, clusterAlias);
-        }
-        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.ssl.enable")) {
-            kafkaService.ssl(prop, clusterAlias);
-        }
         try {
             switch (type) {
                 case Topic.ADD:
-                    AdminClient adminClientAdd = AdminClient.create(prop);
                     object.put("type", type);
-                    object.put("value", addTopicConfig(clusterAlias, adminClientAdd, topic, configEntry));
-                    adminClientAdd.close();
+                    object.put("value", addTopicConfig(clusterAlias, topic, configEntry));
                     break;
                 case Topic.DELETE:
-                    AdminClient adminClientDelete = AdminClient.create(prop);
                     object.put("type", type);
-                    object.put("value", deleteTopicConfig(clusterAlias, adminClientDelete, topic, configEntry));
-                    adminClientDelete.close();
+                    object.put("value", deleteTopicConfig(clusterAlias, topic, configEntry));
                     break;
                 case Topic.DESCRIBE:
                     object.put("type", type);
@@ -207,8 +162,8 @@ public class KafkaMetricsServiceImpl implements KafkaMetricsService {
         return object.toJSONString();
     }
 
-    private String addTopicConfig(String clusterAlias, AdminClient adminClient, String topic, ConfigEntry configEntry) {
-        try {
+    private String addTopicConfig(String clusterAlias, String topic, ConfigEntry configEntry) {
+        try (KafkaClientRegistry.AdminLease lease = clientRegistry.borrowAdminClient(clusterAlias)) {
             String describeTopicConfigs = describeTopicConfig(clusterAlias, topic);
             JSONObject object = JSON.parseObject(describeTopicConfigs).getJSONObject("config");
             if (object.containsKey(configEntry.name())) {
@@ -225,7 +180,7 @@ public class KafkaMetricsServiceImpl implements KafkaMetricsService {
             ConfigResource configRes = new ConfigResource(Type.TOPIC, topic);
             Config config = new Config(configEntrys);
             configs.put(configRes, config);
-            AlterConfigsResult alterConfig = adminClient.alterConfigs(configs);
+            AlterConfigsResult alterConfig = lease.client().alterConfigs(configs);
             alterConfig.all().get();
             return KConstants.Topic.SUCCESS;
         } catch (Exception e) {
@@ -235,8 +190,8 @@ public class KafkaMetricsServiceImpl implements KafkaMetricsService {
         }
     }
 
-    private String deleteTopicConfig(String clusterAlias, AdminClient adminClient, String topic, ConfigEntry configEntry) {
-        try {
+    private String deleteTopicConfig(String clusterAlias, String topic, ConfigEntry configEntry) {
+        try (KafkaClientRegistry.AdminLease lease = clientRegistry.borrowAdminClient(clusterAlias)) {
             String describeTopicConfigs = describeTopicConfig(clusterAlias, topic);
             JSONObject object = JSON.parseObject(describeTopicConfigs).getJSONObject("config");
             object.remove(configEntry.name());
@@ -250,7 +205,7 @@ public class KafkaMetricsServiceImpl implements KafkaMetricsService {
             ConfigResource configRes = new ConfigResource(Type.TOPIC, topic);
             Config config = new Config(configEntrys);
             configs.put(configRes, config);
-            adminClient.alterConfigs(configs);
+            lease.client().alterConfigs(configs);
             return KConstants.Topic.SUCCESS;
         } catch (Exception e) {
             e.printStackTrace();
@@ -298,34 +253,38 @@ public class KafkaMetricsServiceImpl implements KafkaMetricsService {
      * Get kafka topic capacity size .
      */
     public long topicCapacity(String clusterAlias, String topic) throws Exception {
-        String jmx = "";
-        JMXConnector connector = null;
-        List<MetadataInfo> leaders = kafkaService.findKafkaLeader(clusterAlias, topic);
+        return leaderLogSize(clusterAlias, topic);
+    }
+
+    /**
+     * Sum the log size of every partition on its leader, reading all
+     * partitions led by one broker over its pooled jmx connection.
+     */
+    private long leaderLogSize(String clusterAlias, String topic) {
+        Map<Integer, List<Integer>> leaderPartitions = new HashMap<>();
+        for (MetadataInfo leader : kafkaService.findKafkaLeader(clusterAlias, topic)) {
+            leaderPartitions.computeIfAbsent(leader.getLeader(), k -> new ArrayList<>()).add(leader.getPartitionId());
+        }
         long tpSize = 0L;
-        for (MetadataInfo leader : leaders) {
-            String jni = kafkaService.getBrokerJMXFromIds(clusterAlias, leader.getLeader());
-            jmx = String.format(SystemConfigUtils.getProperty(clusterAlias + ".efak.jmx.uri"), jni);
+        for (Map.Entry<Integer, List<Integer>> entry : leaderPartitions.entrySet()) {
+            String jni = kafkaService.getBrokerJMXFromIds(clusterAlias, entry.getKey());
             try {
-                JMXServiceURL jmxSeriverUrl = new JMXServiceURL(jmx);
-                connector = JMXFactoryUtils.connectWithTimeout(clusterAlias, jmxSeriverUrl, 30, TimeUnit.SECONDS);
-                MBeanServerConnection mbeanConnection = connector.getMBeanServerConnection();
-                String objectName = String.format(KafkaLog.SIZE.getValue(), topic, leader.getPartitionId());
-                Object size = mbeanConnection.getAttribute(new ObjectName(objectName), KafkaLog.VALUE.getValue());
-                tpSize += Long.parseLong(size.toString());
+                tpSize += jmxPool.execute(clusterAlias, jni, mbeanConnection -> {
+                    long size = 0L;
+                    for (int partitionId : entry.getValue()) {
+                        String objectName = String.format(KafkaLog.SIZE.getValue(), topic, partitionId);
+                        try {
+                            size += Long.parseLong(mbeanConnection.getAttribute(new ObjectName(objectName), KafkaLog.VALUE.getValue()).toString());
+                        } catch (InstanceNotFoundException e) {
+                            LOG.warn("Topic log mbean[" + objectName + "] not found on broker[" + jni + "].");
+                        }
+                    }
+                    return size;
+                });
             } catch (Exception ex) {
                 LOG.error("Get topic size from jmx has error, msg is " + ex.getMessage());
-                ex.printStackTrace();
-            } finally {
-                if (connector != null) {
-                    try {
-                        connector.close();
-                    } catch (IOException e) {
-                        LOG.error("Close jmx connector has error, msg is " + e.getMessage());
-                    }
-                }
             }
         }
-
         return tpSize;
     }
 }
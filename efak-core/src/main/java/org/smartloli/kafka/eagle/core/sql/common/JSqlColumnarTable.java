@@ -0,0 +1,306 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.core.sql.common;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import org.apache.calcite.DataContext;
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.schema.ScannableTable;
+import org.apache.calcite.schema.impl.AbstractTable;
+import org.apache.calcite.sql.type.SqlTypeUtil;
+import org.smartloli.kafka.eagle.common.util.UnicodeUtils;
+
+import java.util.*;
+
+/**
+ * Memory table stored column by column with typed storage. Integer and
+ * bigint columns are primitive arrays, string columns holding only integral
+ * numbers (e.g. timespan) are long arrays, other columns are dictionary
+ * encoded with each distinct value converted once.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public class JSqlColumnarTable extends AbstractTable implements ScannableTable {
+
+    private final String[] names;
+    private final String[] types;
+    private final Column[] columns;
+    private final int rows;
+    private RelDataType dataType;
+
+    private JSqlColumnarTable(String[] names, String[] types, Column[] columns, int rows) {
+        this.names = names;
+        this.types = types;
+        this.columns = columns;
+        this.rows = rows;
+    }
+
+    /**
+     * Load the json rows of the datasets by column name.
+     *
+     * @param tabSchema : Table column,such as {"id":"integer","name":"varchar"}
+     */
+    public static JSqlColumnarTable of(JSONObject tabSchema, List<JSONArray> dataSets) {
+        int rows = 0;
+        for (JSONArray dataSet : dataSets) {
+            rows += dataSet.size();
+        }
+        String[] names = new String[tabSchema.size()];
+        String[] types = new String[tabSchema.size()];
+        Column[] columns = new Column[tabSchema.size()];
+        int index = 0;
+        for (String key : tabSchema.keySet()) {
+            names[index] = key;
+            types[index] = tabSchema.getString(key);
+            columns[index] = build(key, types[index], dataSets, rows);
+            index++;
+        }
+        return new JSqlColumnarTable(names, types, columns, rows);
+    }
+
+    public int size() {
+        return rows;
+    }
+
+    @Override
+    public RelDataType getRowType(RelDataTypeFactory typeFactory) {
+        if (dataType == null) {
+            RelDataTypeFactory.FieldInfoBuilder fieldInfo = typeFactory.builder();
+            for (int i = 0; i < names.length; i++) {
+                Class<?> javaType = JSqlMapData.JAVATYPE_MAPPING.get(types[i]);
+                RelDataType sqlType = typeFactory.createJavaType(javaType == null ? String.class : javaType);
+                sqlType = SqlTypeUtil.addCharsetAndCollation(sqlType, typeFactory);
+                fieldInfo.add(names[i], sqlType);
+            }
+            this.dataType = typeFactory.createStructType(fieldInfo);
+        }
+        return this.dataType;
+    }
+
+    @Override
+    public Enumerable<Object[]> scan(DataContext root) {
+        return new AbstractEnumerable<Object[]>() {
+            public Enumerator<Object[]> enumerator() {
+                return new Enumerator<Object[]>() {
+                    private int row = -1;
+
+                    @Override
+                    public Object[] current() {
+                        Object[] values = new Object[columns.length];
+                        for (int i = 0; i < columns.length; i++) {
+                            values[i] = columns[i].get(row);
+                        }
+                        return values;
+                    }
+
+                    @Override
+                    public boolean moveNext() {
+                        return ++row < rows;
+                    }
+
+                    @Override
+                    public void reset() {
+                        row = -1;
+                    }
+
+                    @Override
+                    public void close() {
+                    }
+                };
+            }
+        };
+    }
+
+    private static Column build(String name, String type, List<JSONArray> dataSets, int rows) {
+        if ("integer".equals(type)) {
+            return IntColumn.build(name, dataSets, rows);
+        } else if ("bigint".equals(type) || "long".equals(type)) {
+            return LongColumn.build(name, dataSets, rows, false);
+        } else if ("varchar".equals(type) || "char".equals(type)) {
+            Column column = LongColumn.build(name, dataSets, rows, true);
+            if (column != null) {
+                return column;
+            }
+        }
+        return DictionaryColumn.build(name, type, dataSets, rows);
+    }
+
+    /**
+     * Raw cell text, null for a missing or empty cell of a non string type.
+     */
+    private static String text(Object value) {
+        if (value == null) {
+            return null;
+        }
+        String text = value.toString();
+        return text.isEmpty() || "\\N".equals(text) ? null : text;
+    }
+
+    /**
+     * Whether the text is exactly what Long.toString would print.
+     */
+    private static boolean isCanonicalLong(String text) {
+        int start = text.charAt(0) == '-' ? 1 : 0;
+        int length = text.length() - start;
+        if (length < 1 || length > 18 || (text.charAt(start) == '0' && (length > 1 || start == 1))) {
+            return false;
+        }
+        for (int i = start; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private abstract static class Column {
+        abstract Object get(int row);
+    }
+
+    private static final class IntColumn extends Column {
+        private final int[] values;
+        private final BitSet nulls;
+
+        private IntColumn(int[] values, BitSet nulls) {
+            this.values = values;
+            this.nulls = nulls;
+        }
+
+        private static IntColumn build(String name, List<JSONArray> dataSets, int rows) {
+            int[] values = new int[rows];
+            BitSet nulls = new BitSet();
+            int row = 0;
+            for (JSONArray dataSet : dataSets) {
+                for (Object obj : dataSet) {
+                    Object value = ((JSONObject) obj).get(name);
+                    if (value instanceof Number) {
+                        values[row] = ((Number) value).intValue();
+                    } else if (text(value) == null) {
+                        nulls.set(row);
+                    } else {
+                        values[row] = Integer.parseInt(value.toString());
+                    }
+                    row++;
+                }
+            }
+            return new IntColumn(values, nulls);
+        }
+
+        @Override
+        Object get(int row) {
+            return nulls.get(row) ? null : values[row];
+        }
+    }
+
+    private static final class LongColumn extends Column {
+        private final long[] values;
+        private final BitSet nulls;
+        private final boolean asString;
+
+        private LongColumn(long[] values, BitSet nulls, boolean asString) {
+            this.values = values;
+            this.nulls = nulls;
+            this.asString = asString;
+        }
+
+        /**
+         * Build the column, or null when it is a string column with a
+         * value that is not an integral number.
+         */
+        private static LongColumn build(String name, List<JSONArray> dataSets, int rows, boolean asString) {
+            long[] values = new long[rows];
+            BitSet nulls = new BitSet();
+            int row = 0;
+            for (JSONArray dataSet : dataSets) {
+                for (Object obj : dataSet) {
+                    Object value = ((JSONObject) obj).get(name);
+                    if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                        values[row] = ((Number) value).longValue();
+                    } else if (text(value) == null) {
+                        nulls.set(row);
+                    } else if (!asString) {
+                        values[row] = Long.parseLong(value.toString());
+                    } else if (isCanonicalLong(value.toString())) {
+                        values[row] = Long.parseLong(value.toString());
+                    } else {
+                        return null;
+                    }
+                    row++;
+                }
+            }
+            return new LongColumn(values, nulls, asString);
+        }
+
+        @Override
+        Object get(int row) {
+            if (nulls.get(row)) {
+                return null;
+            }
+            return asString ? Long.toString(values[row]) : values[row];
+        }
+    }
+
+    private static final class DictionaryColumn extends Column {
+        private final int[] codes;
+        private final Object[] dictionary;
+
+        private DictionaryColumn(int[] codes, Object[] dictionary) {
+            this.codes = codes;
+            this.dictionary = dictionary;
+        }
+
+        private static DictionaryColumn build(String name, String type, List<JSONArray> dataSets, int rows) {
+            int[] codes = new int[rows];
+            Map<String, Integer> index = new HashMap<>();
+            List<Object> dictionary = new ArrayList<>();
+            int row = 0;
+            for (JSONArray dataSet : dataSets) {
+                for (Object obj : dataSet) {
+                    String value = ((JSONObject) obj).getString(name);
+                    if (value == null) {
+                        codes[row++] = -1;
+                        continue;
+                    }
+                    Integer code = index.get(value);
+                    if (code == null) {
+                        code = dictionary.size();
+                        index.put(value, code);
+                        dictionary.add(JSqlEnumerator.convertOptiqCellValue(UnicodeUtils.encodeForUnicode(value), type));
+                    }
+                    codes[row++] = code;
+                }
+            }
+            return new DictionaryColumn(codes, dictionary.toArray());
+        }
+
+        @Override
+        Object get(int row) {
+            int code = codes[row];
+            return code < 0 ? null : dictionary[code];
+        }
+    }
+
+}
@@ -0,0 +1,235 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.core.sql.common;
+
+import com.alibaba.fastjson.JSONObject;
+import org.apache.calcite.DataContext;
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.schema.ScannableTable;
+import org.apache.calcite.schema.impl.AbstractTable;
+import org.apache.calcite.sql.type.SqlTypeUtil;
+import org.smartloli.kafka.eagle.common.util.UnicodeUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Memory table filled while it is queried. Fetcher threads add rows to a
+ * bounded queue and the query drains it as they arrive, so planning and
+ * filtering overlap the fetch. Closing the table, for example once a limit
+ * is reached, makes {@link #add} return false so the fetchers stop early.
+ * Rows already read are kept for a scan repeated by the plan.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public class JSqlStreamTable extends AbstractTable implements ScannableTable, AutoCloseable {
+
+    private static final Object[] END = new Object[0];
+
+    private final String[] names;
+    private final String[] types;
+    private final BlockingQueue<Object[]> queue;
+    private final List<Object[]> seen = new ArrayList<>();
+    private final AtomicLong added = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private volatile boolean closed = false;
+    private volatile Throwable failure;
+    private boolean drained = false;
+    private RelDataType dataType;
+
+    /**
+     * @param tabSchema : Table column,such as {"id":"integer","name":"varchar"}
+     * @param capacity  : Rows buffered before the fetchers wait for the query
+     */
+    public JSqlStreamTable(JSONObject tabSchema, int capacity) {
+        this.names = tabSchema.keySet().toArray(new String[0]);
+        this.types = new String[names.length];
+        for (int i = 0; i < names.length; i++) {
+            types[i] = tabSchema.getString(names[i]);
+        }
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+    }
+
+    public String[] getNames() {
+        return names;
+    }
+
+    /**
+     * Cell of the column converted the way {@link JSqlColumnarTable} reads
+     * json rows, so both tables answer a query alike.
+     */
+    public Object cell(int column, Object value) {
+        if (value == null) {
+            return null;
+        }
+        String type = types[column];
+        if (value instanceof Number && "integer".equals(type)) {
+            return ((Number) value).intValue();
+        } else if (value instanceof Number && ("bigint".equals(type) || "long".equals(type))) {
+            return ((Number) value).longValue();
+        }
+        String text = value.toString();
+        if (text.isEmpty() || "\\N".equals(text)) {
+            return null;
+        }
+        return JSqlEnumerator.convertOptiqCellValue(UnicodeUtils.encodeForUnicode(text), type);
+    }
+
+    /**
+     * Add a row, waiting while the buffer is full. Returns false once the
+     * table is closed and the fetch should stop.
+     */
+    public boolean add(Object[] row) throws InterruptedException {
+        if (put(row)) {
+            added.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Count a record read but filtered out before it became a row. Returns
+     * false once the table is closed and the fetch should stop.
+     */
+    public boolean skip() {
+        skipped.incrementAndGet();
+        return !closed;
+    }
+
+    /**
+     * Mark the last row added, with the error of the fetch if it failed.
+     */
+    public void complete(Throwable error) throws InterruptedException {
+        failure = error;
+        put(END);
+    }
+
+    /**
+     * Records read by the fetchers so far, skipped ones included.
+     */
+    public long fetched() {
+        return added.get() + skipped.get();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        queue.clear();
+    }
+
+    @Override
+    public RelDataType getRowType(RelDataTypeFactory typeFactory) {
+        if (dataType == null) {
+            RelDataTypeFactory.FieldInfoBuilder fieldInfo = typeFactory.builder();
+            for (int i = 0; i < names.length; i++) {
+                Class<?> javaType = JSqlMapData.JAVATYPE_MAPPING.get(types[i]);
+                RelDataType sqlType = typeFactory.createJavaType(javaType == null ? String.class : javaType);
+                sqlType = SqlTypeUtil.addCharsetAndCollation(sqlType, typeFactory);
+                fieldInfo.add(names[i], sqlType);
+            }
+            this.dataType = typeFactory.createStructType(fieldInfo);
+        }
+        return this.dataType;
+    }
+
+    @Override
+    public Enumerable<Object[]> scan(DataContext root) {
+        return new AbstractEnumerable<Object[]>() {
+            public Enumerator<Object[]> enumerator() {
+                return new Enumerator<Object[]>() {
+                    private int row = -1;
+                    private Object[] current;
+
+                    @Override
+                    public Object[] current() {
+                        return current;
+                    }
+
+                    @Override
+                    public boolean moveNext() {
+                        if (row + 1 < seen.size()) {
+                            current = seen.get(++row);
+                            return true;
+                        }
+                        Object[] next = take();
+                        if (next == null) {
+                            return false;
+                        }
+                        seen.add(next);
+                        row++;
+                        current = next;
+                        return true;
+                    }
+
+                    @Override
+                    public void reset() {
+                        row = -1;
+                        current = null;
+                    }
+
+                    @Override
+                    public void close() {
+                    }
+                };
+            }
+        };
+    }
+
+    private boolean put(Object[] row) throws InterruptedException {
+        while (!closed) {
+            if (queue.offer(row, 100, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Next row of the fetch, null once it ended.
+     */
+    private Object[] take() {
+        if (drained || closed) {
+            return null;
+        }
+        try {
+            Object[] row = queue.take();
+            if (row != END) {
+                return row;
+            }
+            drained = true;
+            if (failure != null) {
+                throw new IllegalStateException("Fetch topic rows has error, msg is " + failure.getMessage(), failure);
+            }
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while fetching topic rows.", e);
+        }
+    }
+
+}
@@ -0,0 +1,331 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.core.sql.decoder;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Avro binary datum of a schema read from a local '.avsc' file, written
+ * straight to json text without building records.
+ * <p>
+ * Records are json objects in field order, a union is the value of its
+ * branch, an enum its symbol, and bytes and fixed are base64. A value that
+ * starts with the magic zero of a schema registry framed value is read past
+ * its 5 bytes header first, and as a plain datum when it does not decode to
+ * its end that way.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public final class AvroDecoder implements MessageDecoder {
+
+    private static final int FRAME = 5;
+
+    private enum Kind {
+        NULL, BOOLEAN, INT, LONG, FLOAT, DOUBLE, BYTES, STRING, RECORD, ENUM, ARRAY, MAP, UNION, FIXED
+    }
+
+    private final Schema schema;
+
+    public AvroDecoder(String schemaFile) {
+        if (schemaFile == null || schemaFile.isEmpty()) {
+            throw new IllegalArgumentException("Avro decoder has no schema file.");
+        }
+        String text;
+        try {
+            text = new String(Files.readAllBytes(Paths.get(schemaFile)), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Read avro schema[" + schemaFile + "] has error, msg is " + e.getMessage(), e);
+        }
+        this.schema = parse(JSON.parse(text), "", new HashMap<>());
+    }
+
+    @Override
+    public String decode(byte[] value) {
+        if (value.length > FRAME && value[0] == 0) {
+            try {
+                return decode(value, FRAME);
+            } catch (RuntimeException e) {
+                return decode(value, 0);// a plain datum starting with a zero
+            }
+        }
+        return decode(value, 0);
+    }
+
+    private String decode(byte[] value, int offset) {
+        Cursor in = new Cursor(value, offset);
+        StringBuilder out = new StringBuilder(value.length * 2);
+        write(schema, in, out);
+        if (in.position != value.length) {
+            throw new IllegalArgumentException("Avro datum has " + (value.length - in.position) + " bytes left.");
+        }
+        return out.toString();
+    }
+
+    private static void write(Schema schema, Cursor in, StringBuilder out) {
+        switch (schema.kind) {
+            case NULL:
+                out.append("null");
+                break;
+            case BOOLEAN:
+                out.append(in.take(1) != 0);
+                break;
+            case INT:
+            case LONG:
+                out.append(in.readLong());
+                break;
+            case FLOAT:
+                MessageDecoders.number(out, Float.intBitsToFloat((int) in.readFixed(4)), true);
+                break;
+            case DOUBLE:
+                MessageDecoders.number(out, Double.longBitsToDouble(in.readFixed(8)), false);
+                break;
+            case BYTES: {
+                int length = in.readLength();
+                MessageDecoders.base64(out, in.bytes, in.skip(length), length);
+                break;
+            }
+            case STRING: {
+                int length = in.readLength();
+                MessageDecoders.quote(out, MessageDecoders.utf8(in.bytes, in.skip(length), length));
+                break;
+            }
+            case RECORD:
+                out.append('{');
+                for (int i = 0; i < schema.names.length; i++) {
+                    if (i > 0) {
+                        out.append(',');
+                    }
+                    MessageDecoders.quote(out, schema.names[i]);
+                    out.append(':');
+                    write(schema.children[i], in, out);
+                }
+                out.append('}');
+                break;
+            case ENUM:
+                MessageDecoders.quote(out, schema.names[index(in.readLong(), schema.names.length)]);
+                break;
+            case ARRAY:
+            case MAP: {
+                boolean map = schema.kind == Kind.MAP;
+                out.append(map ? '{' : '[');
+                boolean first = true;
+                for (long count = in.readLong(); count != 0; count = in.readLong()) {
+                    if (count < 0) {
+                        // a negative count is followed by the byte size of the block
+                        count = -count;
+                        in.readLong();
+                    }
+                    for (long i = 0; i < count; i++) {
+                        if (!first) {
+                            out.append(',');
+                        }
+                        first = false;
+                        if (map) {
+                            int length = in.readLength();
+                            MessageDecoders.quote(out, MessageDecoders.utf8(in.bytes, in.skip(length), length));
+                            out.append(':');
+                        }
+                        write(schema.children[0], in, out);
+                    }
+                }
+                out.append(map ? '}' : ']');
+                break;
+            }
+            case UNION:
+                write(schema.children[index(in.readLong(), schema.children.length)], in, out);
+                break;
+            default:
+                MessageDecoders.base64(out, in.bytes, in.skip(schema.size), schema.size);
+        }
+    }
+
+    private static int index(long index, int size) {
+        if (index < 0 || index >= size) {
+            throw new IllegalArgumentException("Avro index[" + index + "] is out of [0," + size + ").");
+        }
+        return (int) index;
+    }
+
+    private static Schema parse(Object json, String namespace, Map<String, Schema> named) {
+        if (json instanceof JSONArray) {
+            JSONArray branches = (JSONArray) json;
+            Schema union = new Schema(Kind.UNION);
+            union.children = new Schema[branches.size()];
+            for (int i = 0; i < branches.size(); i++) {
+                union.children[i] = parse(branches.get(i), namespace, named);
+            }
+            return union;
+        } else if (json instanceof String) {
+            String name = (String) json;
+            for (Kind kind : Kind.values()) {
+                if (kind.ordinal() <= Kind.STRING.ordinal() && kind.name().equalsIgnoreCase(name)) {
+                    return new Schema(kind);
+                }
+            }
+            Schema schema = named.get(name.contains(".") || namespace.isEmpty() ? name : namespace + "." + name);
+            if (schema == null) {
+                schema = named.get(name);
+            }
+            if (schema == null) {
+                throw new IllegalArgumentException("Avro type[" + name + "] is not defined.");
+            }
+            return schema;
+        } else if (!(json instanceof JSONObject)) {
+            throw new IllegalArgumentException("Avro schema[" + json + "] is not a type.");
+        }
+        JSONObject object = (JSONObject) json;
+        Object type = object.get("type");
+        if (!(type instanceof String)) {
+            return parse(type, namespace, named);
+        }
+        switch ((String) type) {
+            case "record":
+            case "error": {
+                Schema record = new Schema(Kind.RECORD);
+                String name = define(object, namespace, named, record);
+                String inner = name.contains(".") ? name.substring(0, name.lastIndexOf('.')) : "";
+                JSONArray fields = object.getJSONArray("fields");
+                List<String> names = new ArrayList<>();
+                List<Schema> children = new ArrayList<>();
+                for (int i = 0; fields != null && i < fields.size(); i++) {
+                    JSONObject field = fields.getJSONObject(i);
+                    names.add(field.getString("name"));
+                    children.add(parse(field.get("type"), inner, named));
+                }
+                record.names = names.toArray(new String[0]);
+                record.children = children.toArray(new Schema[0]);
+                return record;
+            }
+            case "enum": {
+                Schema schema = new Schema(Kind.ENUM);
+                define(object, namespace, named, schema);
+                schema.names = object.getJSONArray("symbols").toArray(new String[0]);
+                return schema;
+            }
+            case "fixed": {
+                Schema schema = new Schema(Kind.FIXED);
+                define(object, namespace, named, schema);
+                schema.size = object.getIntValue("size");
+                return schema;
+            }
+            case "array":
+            case "map": {
+                Schema schema = new Schema("array".equals(type) ? Kind.ARRAY : Kind.MAP);
+                schema.children = new Schema[]{parse(object.get("array".equals(type) ? "items" : "values"), namespace, named)};
+                return schema;
+            }
+            default:
+                // a primitive or named type with attributes such as a logical type
+                return parse(type, namespace, named);
+        }
+    }
+
+    /**
+     * Register a named type before its fields, so they can refer to it.
+     */
+    private static String define(JSONObject object, String namespace, Map<String, Schema> named, Schema schema) {
+        String name = object.getString("name");
+        if (name == null) {
+            throw new IllegalArgumentException("Avro schema[" + object + "] has no name.");
+        }
+        String space = object.containsKey("namespace") ? object.getString("namespace") : namespace;
+        String full = name.contains(".") || space == null || space.isEmpty() ? name : space + "." + name;
+        named.put(full, schema);
+        return full;
+    }
+
+    private static final class Schema {
+        private final Kind kind;
+        private String[] names;
+        private Schema[] children;
+        private int size;
+
+        private Schema(Kind kind) {
+            this.kind = kind;
+        }
+    }
+
+    private static final class Cursor {
+        private final byte[] bytes;
+        private int position;
+
+        private Cursor(byte[] bytes, int position) {
+            this.bytes = bytes;
+            this.position = position;
+        }
+
+        private int take(int length) {
+            skip(length);
+            return bytes[position - 1];
+        }
+
+        /**
+         * Skip the bytes, returns where they start.
+         */
+        private int skip(int length) {
+            if (length < 0 || length > bytes.length - position) {
+                throw new IllegalArgumentException("Avro datum is truncated at " + position + ".");
+            }
+            position += length;
+            return position - length;
+        }
+
+        private long readLong() {
+            long raw = 0L;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = take(1);
+                raw |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return (raw >>> 1) ^ -(raw & 1);
+                }
+            }
+            throw new IllegalArgumentException("Avro varint is too long at " + position + ".");
+        }
+
+        private int readLength() {
+            long length = readLong();
+            if (length < 0 || length > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Avro length[" + length + "] is invalid.");
+            }
+            return (int) length;
+        }
+
+        private long readFixed(int length) {
+            int start = skip(length);
+            long value = 0L;
+            for (int i = length - 1; i >= 0; i--) {
+                value = (value << 8) | (bytes[start + i] & 0xFF);
+            }
+            return value;
+        }
+    }
+
+}
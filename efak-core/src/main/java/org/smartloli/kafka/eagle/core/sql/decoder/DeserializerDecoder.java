@@ -0,0 +1,67 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.core.sql.decoder;
+
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.util.Map;
+
+/**
+ * Value read by a kafka deserializer, such as the one of
+ * 'efak.consumer.value.deserializer', as the text of what it returns. Byte
+ * arrays read as hex.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public final class DeserializerDecoder implements MessageDecoder {
+
+    private final Deserializer<?> deserializer;
+    private final String topic;
+
+    public DeserializerDecoder(String className, String topic, Map<String, Object> configs) {
+        if (className == null || className.isEmpty()) {
+            throw new IllegalArgumentException("Deserializer decoder of topic[" + topic + "] has no class.");
+        }
+        try {
+            Object instance = Class.forName(className).getConstructor().newInstance();
+            if (!(instance instanceof Deserializer)) {
+                throw new IllegalArgumentException("Class[" + className + "] is not a kafka deserializer.");
+            }
+            this.deserializer = (Deserializer<?>) instance;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Create deserializer[" + className + "] has error, msg is " + e.getMessage(), e);
+        }
+        this.deserializer.configure(configs, false);
+        this.topic = topic;
+    }
+
+    @Override
+    public String decode(byte[] value) {
+        Object object = deserializer.deserialize(topic, value);
+        if (object instanceof byte[]) {
+            byte[] bytes = (byte[]) object;
+            StringBuilder out = new StringBuilder(bytes.length * 2);
+            MessageDecoders.hex(out, bytes, 0, bytes.length);
+            return out.toString();
+        }
+        return object == null ? null : object.toString();
+    }
+
+}
@@ -0,0 +1,87 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.core.sql.decoder;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Json text in the encoding it was written in.
+ * <p>
+ * The encoding is detected from a byte order mark or from the zero bytes
+ * around the first character, which json requires to be ascii, and the mark
+ * is dropped. The 5 bytes header of a schema registry framed value, a zero
+ * magic byte and the schema id, is skipped as well.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public final class JsonDecoder implements MessageDecoder {
+
+    private static final int FRAME = 5;
+
+    private static final Charset UTF_32BE = Charset.forName("UTF-32BE");
+    private static final Charset UTF_32LE = Charset.forName("UTF-32LE");
+
+    @Override
+    public String decode(byte[] value) {
+        int offset = 0;
+        if (value.length > FRAME && value[0] == 0 && (value[FRAME] == '{' || value[FRAME] == '[')) {
+            offset = FRAME;
+        }
+        int b0 = byteAt(value, offset);
+        int b1 = byteAt(value, offset + 1);
+        int b2 = byteAt(value, offset + 2);
+        int b3 = byteAt(value, offset + 3);
+        Charset charset = StandardCharsets.UTF_8;
+        int mark = 0;
+        if (b0 == 0xEF && b1 == 0xBB && b2 == 0xBF) {
+            mark = 3;
+        } else if (b0 == 0 && b1 == 0 && b2 == 0xFE && b3 == 0xFF) {
+            charset = UTF_32BE;
+            mark = 4;
+        } else if (b0 == 0xFF && b1 == 0xFE && b2 == 0 && b3 == 0) {
+            charset = UTF_32LE;
+            mark = 4;
+        } else if (b0 == 0xFE && b1 == 0xFF) {
+            charset = StandardCharsets.UTF_16BE;
+            mark = 2;
+        } else if (b0 == 0xFF && b1 == 0xFE) {
+            charset = StandardCharsets.UTF_16LE;
+            mark = 2;
+        } else if (b0 == 0 && b1 == 0 && b2 == 0 && b3 > 0) {
+            charset = UTF_32BE;
+        } else if (b0 > 0 && b1 == 0 && b2 == 0 && b3 == 0) {
+            charset = UTF_32LE;
+        } else if (b0 == 0 && b1 > 0) {
+            charset = StandardCharsets.UTF_16BE;
+        } else if (b0 > 0 && b1 == 0) {
+            charset = StandardCharsets.UTF_16LE;
+        }
+        return new String(value, offset + mark, value.length - offset - mark, charset);
+    }
+
+    /**
+     * Unsigned byte at the index, -1 past the end.
+     */
+    private static int byteAt(byte[] value, int index) {
+        return index < value.length ? value[index] & 0xFF : -1;
+    }
+
+}
@@ -0,0 +1,40 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.core.sql.decoder;
+
+/**
+ * Turns the raw value of a kafka record into the text of the msg column.
+ * <p>
+ * Scans read record values as bytes and decode them only when the query
+ * touches the message, once per record. An implementation is shared by every
+ * scan of its topic and must be thread-safe. A custom decoder is named by its
+ * class in 'efak.sql.decoder' and needs a public constructor taking the
+ * argument of the setting, or a public no-arg one when there is none.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public interface MessageDecoder {
+
+    /**
+     * Text of the value, the value is never null.
+     */
+    String decode(byte[] value);
+
+}
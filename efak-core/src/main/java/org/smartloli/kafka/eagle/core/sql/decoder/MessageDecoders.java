@@ -0,0 +1,226 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.core.sql.decoder;
+
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.smartloli.kafka.eagle.common.util.LoggerUtils;
+import org.smartloli.kafka.eagle.common.util.StrUtils;
+import org.smartloli.kafka.eagle.common.util.SystemConfigUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Resolves the {@link MessageDecoder} of a topic.
+ * <p>
+ * The decoder is read from '[cluster].efak.sql.decoder.topic.[topic]', then
+ * from '[cluster].efak.sql.decoder', as 'name' or 'name:argument':
+ * <ul>
+ * <li>string[:charset], the text in the charset, UTF-8 by default.</li>
+ * <li>bytes, the lower case hex of the value.</li>
+ * <li>json, json text in the encoding it was written in.</li>
+ * <li>avro:[schema file], an avro binary datum of the schema.</li>
+ * <li>protobuf:[descriptor set file][#message], a protobuf message.</li>
+ * <li>deserializer:[class], a kafka deserializer configured with the
+ * '[cluster].efak.sql.decoder.config.' settings.</li>
+ * <li>the class of a {@link MessageDecoder}.</li>
+ * </ul>
+ * Without a setting, a '[cluster].efak.consumer.value.deserializer' other
+ * than the string one is used as a deserializer, else values are UTF-8 text.
+ * Decoders are built once per topic, a record that can not be decoded reads
+ * as null and the first such record of a topic is logged.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public final class MessageDecoders {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final char[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+    private static final Map<String, MessageDecoder> DECODERS = new ConcurrentHashMap<>();
+
+    private MessageDecoders() {
+    }
+
+    /**
+     * Decoder of the topic, built on first use.
+     */
+    public static MessageDecoder of(String clusterAlias, String topic) {
+        return DECODERS.computeIfAbsent(clusterAlias + "\u0000" + topic, key -> guard(clusterAlias, topic, create(clusterAlias, topic)));
+    }
+
+    /**
+     * Text of the value, null when it is null.
+     */
+    public static String decode(MessageDecoder decoder, byte[] value) {
+        return value == null ? null : decoder.decode(value);
+    }
+
+    private static MessageDecoder create(String clusterAlias, String topic) {
+        String spec = SystemConfigUtils.getProperty(clusterAlias + ".efak.sql.decoder.topic." + topic);
+        if (StrUtils.isNull(spec)) {
+            spec = SystemConfigUtils.getProperty(clusterAlias + ".efak.sql.decoder");
+        }
+        if (StrUtils.isNull(spec)) {
+            String deserializer = SystemConfigUtils.getProperty(clusterAlias + ".efak.consumer.value.deserializer");
+            if (StrUtils.isNull(deserializer) || StringDeserializer.class.getName().equals(deserializer.trim())) {
+                return new StringDecoder(null);
+            }
+            spec = "deserializer:" + deserializer.trim();
+        }
+        spec = spec.trim();
+        int colon = spec.indexOf(':');
+        String name = colon < 0 ? spec : spec.substring(0, colon).trim();
+        String argument = colon < 0 ? null : spec.substring(colon + 1).trim();
+        switch (name) {
+            case "string":
+                return new StringDecoder(argument);
+            case "bytes":
+                return new BytesDecoder();
+            case "json":
+                return new JsonDecoder();
+            case "avro":
+                return new AvroDecoder(argument);
+            case "protobuf":
+                return new ProtobufDecoder(argument);
+            case "deserializer":
+                return new DeserializerDecoder(argument, topic, configs(clusterAlias));
+            default:
+                return custom(name, argument);
+        }
+    }
+
+    private static MessageDecoder custom(String className, String argument) {
+        try {
+            Class<?> clazz = Class.forName(className);
+            if (!MessageDecoder.class.isAssignableFrom(clazz)) {
+                throw new IllegalArgumentException("Class[" + className + "] is not a message decoder.");
+            }
+            if (argument == null) {
+                return (MessageDecoder) clazz.getConstructor().newInstance();
+            }
+            return (MessageDecoder) clazz.getConstructor(String.class).newInstance(argument);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Create message decoder[" + className + "] has error, msg is " + e.getMessage(), e);
+        }
+    }
+
+    private static Map<String, Object> configs(String clusterAlias) {
+        String prefix = clusterAlias + ".efak.sql.decoder.config.";
+        Map<String, Object> configs = new HashMap<>();
+        for (Enumeration<Object> keys = SystemConfigUtils.keys(); keys.hasMoreElements(); ) {
+            String key = String.valueOf(keys.nextElement());
+            if (key.startsWith(prefix)) {
+                configs.put(key.substring(prefix.length()), SystemConfigUtils.getProperty(key));
+            }
+        }
+        return configs;
+    }
+
+    private static MessageDecoder guard(String clusterAlias, String topic, MessageDecoder decoder) {
+        AtomicBoolean logged = new AtomicBoolean(false);
+        return value -> {
+            try {
+                return decoder.decode(value);
+            } catch (RuntimeException e) {
+                if (logged.compareAndSet(false, true)) {
+                    LoggerUtils.print(MessageDecoders.class).warn("Decode message of cluster[" + clusterAlias + "] topic[" + topic + "] has error, undecodable messages read as null, msg is " + e.getMessage());
+                }
+                return null;
+            }
+        };
+    }
+
+    static String utf8(byte[] bytes, int offset, int length) {
+        return new String(bytes, offset, length, StandardCharsets.UTF_8);
+    }
+
+    static void hex(StringBuilder out, byte[] bytes, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            out.append(HEX[(bytes[i] >> 4) & 0xF]).append(HEX[bytes[i] & 0xF]);
+        }
+    }
+
+    /**
+     * Quoted base64 of the bytes, as json carries binary fields.
+     */
+    static void base64(StringBuilder out, byte[] bytes, int offset, int length) {
+        out.append('"');
+        int end = offset + length;
+        int i = offset;
+        for (; i + 2 < end; i += 3) {
+            int chunk = (bytes[i] & 0xFF) << 16 | (bytes[i + 1] & 0xFF) << 8 | (bytes[i + 2] & 0xFF);
+            out.append(BASE64[chunk >>> 18]).append(BASE64[(chunk >>> 12) & 0x3F]).append(BASE64[(chunk >>> 6) & 0x3F]).append(BASE64[chunk & 0x3F]);
+        }
+        if (i < end) {
+            int chunk = (bytes[i] & 0xFF) << 16 | (i + 1 < end ? (bytes[i + 1] & 0xFF) << 8 : 0);
+            out.append(BASE64[chunk >>> 18]).append(BASE64[(chunk >>> 12) & 0x3F]);
+            out.append(i + 1 < end ? BASE64[(chunk >>> 6) & 0x3F] : '=').append('=');
+        }
+        out.append('"');
+    }
+
+    static void quote(StringBuilder out, String text) {
+        out.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+
+    /**
+     * A json number, or a quoted string for the values json has no number of.
+     */
+    static void number(StringBuilder out, double value, boolean single) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            quote(out, Double.toString(value));
+        } else if (single) {
+            out.append((float) value);
+        } else {
+            out.append(value);
+        }
+    }
+
+}
@@ -0,0 +1,603 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.core.sql.decoder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Protobuf message of a descriptor set, as written by 'protoc
+ * --include_imports --descriptor_set_out', written straight to json text
+ * without generated classes.
+ * <p>
+ * The argument is the descriptor set file, followed by '#' and the full name
+ * of the message, the first message of the last file by default. Fields are
+ * keyed by name in the order they first appear, repeated fields are arrays,
+ * enums their value name, bytes base64 and unknown fields are keyed by their
+ * number. A value that does not decode is retried past the header of a
+ * schema registry framed value, a zero magic byte, the schema id and the
+ * message indexes.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public final class ProtobufDecoder implements MessageDecoder {
+
+    private static final int FRAME = 5;
+
+    private static final int WIRE_VARINT = 0;
+    private static final int WIRE_FIXED64 = 1;
+    private static final int WIRE_LENGTH = 2;
+    private static final int WIRE_START_GROUP = 3;
+    private static final int WIRE_END_GROUP = 4;
+    private static final int WIRE_FIXED32 = 5;
+
+    // field types of descriptor.proto
+    private static final int TYPE_DOUBLE = 1;
+    private static final int TYPE_FLOAT = 2;
+    private static final int TYPE_INT64 = 3;
+    private static final int TYPE_UINT64 = 4;
+    private static final int TYPE_INT32 = 5;
+    private static final int TYPE_FIXED64 = 6;
+    private static final int TYPE_FIXED32 = 7;
+    private static final int TYPE_BOOL = 8;
+    private static final int TYPE_STRING = 9;
+    private static final int TYPE_GROUP = 10;
+    private static final int TYPE_MESSAGE = 11;
+    private static final int TYPE_BYTES = 12;
+    private static final int TYPE_UINT32 = 13;
+    private static final int TYPE_ENUM = 14;
+    private static final int TYPE_SFIXED32 = 15;
+    private static final int TYPE_SFIXED64 = 16;
+    private static final int TYPE_SINT32 = 17;
+    private static final int TYPE_SINT64 = 18;
+
+    private static final int LABEL_REPEATED = 3;
+
+    private final MessageType root;
+
+    public ProtobufDecoder(String argument) {
+        if (argument == null || argument.isEmpty()) {
+            throw new IllegalArgumentException("Protobuf decoder has no descriptor set file.");
+        }
+        int hash = argument.lastIndexOf('#');
+        String file = hash < 0 ? argument : argument.substring(0, hash);
+        String message = hash < 0 ? null : argument.substring(hash + 1);
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(Paths.get(file));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Read protobuf descriptor set[" + file + "] has error, msg is " + e.getMessage(), e);
+        }
+        Descriptors descriptors = new Descriptors();
+        descriptors.parse(bytes);
+        if (message == null) {
+            message = descriptors.first;
+        } else if (!message.startsWith(".")) {
+            message = "." + message;
+        }
+        this.root = message == null ? null : descriptors.messages.get(message);
+        if (this.root == null) {
+            throw new IllegalArgumentException("Protobuf message[" + message + "] is not in descriptor set[" + file + "].");
+        }
+    }
+
+    @Override
+    public String decode(byte[] value) {
+        try {
+            return decode(value, 0);
+        } catch (RuntimeException e) {
+            if (value.length > FRAME && value[0] == 0) {
+                return decode(value, framed(value));
+            }
+            throw e;
+        }
+    }
+
+    private String decode(byte[] value, int offset) {
+        Cursor in = new Cursor(value, offset);
+        StringBuilder out = new StringBuilder(value.length * 2);
+        write(root, in, value.length, out);
+        return out.toString();
+    }
+
+    /**
+     * Offset of the message past the schema id and the zigzag encoded
+     * message indexes, a single 0 standing for the first message.
+     */
+    private static int framed(byte[] value) {
+        Cursor in = new Cursor(value, FRAME);
+        long count = zigzag(in.readVarint());
+        for (long i = 0; i < count; i++) {
+            in.readVarint();
+        }
+        return in.position;
+    }
+
+    private static void write(MessageType type, Cursor in, int end, StringBuilder out) {
+        Map<Integer, Slot> slots = new LinkedHashMap<>();
+        while (in.position < end) {
+            long tag = in.readVarint();
+            int number = (int) (tag >>> 3);
+            int wire = (int) (tag & 7);
+            if (number <= 0) {
+                throw new IllegalArgumentException("Protobuf field number[" + number + "] is invalid.");
+            }
+            FieldType field = type.fields.get(number);
+            if (wire == WIRE_START_GROUP || wire == WIRE_END_GROUP) {
+                // groups are deprecated and left out
+                in.skipValue(wire, number);
+                continue;
+            }
+            if (field != null && field.repeated && wire == WIRE_LENGTH && field.wire() != WIRE_LENGTH) {
+                // packed scalars
+                Slot slot = slots.computeIfAbsent(number, k -> new Slot(field.name, true));
+                int length = in.readLength();
+                int packedEnd = in.position + length;
+                while (in.position < packedEnd) {
+                    scalar(field, in, slot.next());
+                }
+                continue;
+            }
+            if (field != null && field.wire() == wire) {
+                Slot slot = slots.computeIfAbsent(number, k -> new Slot(field.name, field.repeated));
+                value(field, in, slot.next());
+            } else {
+                Slot slot = slots.computeIfAbsent(number, k -> new Slot(String.valueOf(number), false));
+                unknown(wire, in, slot.next());
+            }
+        }
+        if (in.position != end) {
+            throw new IllegalArgumentException("Protobuf message overruns its length at " + in.position + ".");
+        }
+        out.append('{');
+        boolean first = true;
+        for (Slot slot : slots.values()) {
+            if (!first) {
+                out.append(',');
+            }
+            first = false;
+            MessageDecoders.quote(out, slot.name);
+            out.append(':');
+            if (slot.repeated) {
+                out.append('[').append(slot.text).append(']');
+            } else {
+                out.append(slot.text);
+            }
+        }
+        out.append('}');
+    }
+
+    private static void value(FieldType field, Cursor in, StringBuilder out) {
+        switch (field.type) {
+            case TYPE_STRING: {
+                int length = in.readLength();
+                MessageDecoders.quote(out, MessageDecoders.utf8(in.bytes, in.skip(length), length));
+                break;
+            }
+            case TYPE_BYTES: {
+                int length = in.readLength();
+                MessageDecoders.base64(out, in.bytes, in.skip(length), length);
+                break;
+            }
+            case TYPE_MESSAGE: {
+                int length = in.readLength();
+                if (field.message == null) {
+                    MessageDecoders.base64(out, in.bytes, in.skip(length), length);
+                } else {
+                    write(field.message, in, in.position + length, out);
+                }
+                break;
+            }
+            default:
+                scalar(field, in, out);
+        }
+    }
+
+    private static void scalar(FieldType field, Cursor in, StringBuilder out) {
+        switch (field.type) {
+            case TYPE_DOUBLE:
+                MessageDecoders.number(out, Double.longBitsToDouble(in.readFixed(8)), false);
+                break;
+            case TYPE_FLOAT:
+                MessageDecoders.number(out, Float.intBitsToFloat((int) in.readFixed(4)), true);
+                break;
+            case TYPE_INT64:
+                out.append(in.readVarint());
+                break;
+            case TYPE_UINT64:
+                out.append(Long.toUnsignedString(in.readVarint()));
+                break;
+            case TYPE_INT32:
+                out.append((int) in.readVarint());
+                break;
+            case TYPE_FIXED64:
+                out.append(Long.toUnsignedString(in.readFixed(8)));
+                break;
+            case TYPE_FIXED32:
+                out.append(in.readFixed(4));
+                break;
+            case TYPE_BOOL:
+                out.append(in.readVarint() != 0);
+                break;
+            case TYPE_UINT32:
+                out.append(in.readVarint() & 0xFFFFFFFFL);
+                break;
+            case TYPE_ENUM: {
+                int number = (int) in.readVarint();
+                String name = field.symbols == null ? null : field.symbols.get(number);
+                if (name == null) {
+                    out.append(number);
+                } else {
+                    MessageDecoders.quote(out, name);
+                }
+                break;
+            }
+            case TYPE_SFIXED32:
+                out.append((int) in.readFixed(4));
+                break;
+            case TYPE_SFIXED64:
+                out.append(in.readFixed(8));
+                break;
+            case TYPE_SINT32:
+                out.append((int) zigzag(in.readVarint()));
+                break;
+            default:
+                out.append(zigzag(in.readVarint()));
+        }
+    }
+
+    private static void unknown(int wire, Cursor in, StringBuilder out) {
+        switch (wire) {
+            case WIRE_VARINT:
+                out.append(in.readVarint());
+                break;
+            case WIRE_FIXED64:
+                out.append(in.readFixed(8));
+                break;
+            case WIRE_FIXED32:
+                out.append(in.readFixed(4));
+                break;
+            case WIRE_LENGTH: {
+                int length = in.readLength();
+                MessageDecoders.base64(out, in.bytes, in.skip(length), length);
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Protobuf wire type[" + wire + "] is invalid.");
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Messages and enums of a FileDescriptorSet, by full name with a leading
+     * dot as type names refer to them.
+     */
+    private static final class Descriptors {
+        private final Map<String, MessageType> messages = new HashMap<>();
+        private final Map<String, Map<Integer, String>> enums = new HashMap<>();
+        private final List<FieldType> fields = new ArrayList<>();
+        private String first;
+
+        private void parse(byte[] bytes) {
+            Cursor in = new Cursor(bytes, 0);
+            while (in.position < bytes.length) {
+                long tag = in.readVarint();
+                if (tag == (1 << 3 | WIRE_LENGTH)) {
+                    int length = in.readLength();
+                    file(bytes, in.skip(length), length);
+                } else {
+                    in.skipValue((int) (tag & 7), (int) (tag >>> 3));
+                }
+            }
+            for (FieldType field : fields) {
+                if (field.typeName == null) {
+                    continue;
+                }
+                String name = field.typeName.startsWith(".") ? field.typeName : "." + field.typeName;
+                if (field.type == TYPE_MESSAGE) {
+                    field.message = messages.get(name);
+                } else if (field.type == TYPE_ENUM) {
+                    field.symbols = enums.get(name);
+                }
+            }
+        }
+
+        private void file(byte[] bytes, int start, int length) {
+            String pkg = "";
+            List<int[]> messageTypes = new ArrayList<>();
+            List<int[]> enumTypes = new ArrayList<>();
+            Cursor in = new Cursor(bytes, start);
+            while (in.position < start + length) {
+                long tag = in.readVarint();
+                if (tag == (2 << 3 | WIRE_LENGTH)) {
+                    pkg = in.readString();
+                } else if (tag == (4 << 3 | WIRE_LENGTH)) {
+                    messageTypes.add(in.readRange());
+                } else if (tag == (5 << 3 | WIRE_LENGTH)) {
+                    enumTypes.add(in.readRange());
+                } else {
+                    in.skipValue((int) (tag & 7), (int) (tag >>> 3));
+                }
+            }
+            String scope = pkg.isEmpty() ? "" : "." + pkg;
+            for (int i = 0; i < messageTypes.size(); i++) {
+                String name = message(bytes, messageTypes.get(i), scope);
+                if (i == 0) {
+                    first = name;
+                }
+            }
+            for (int[] range : enumTypes) {
+                enumType(bytes, range, scope);
+            }
+        }
+
+        private String message(byte[] bytes, int[] range, String scope) {
+            String name = "";
+            List<int[]> fieldTypes = new ArrayList<>();
+            List<int[]> nestedTypes = new ArrayList<>();
+            List<int[]> enumTypes = new ArrayList<>();
+            Cursor in = new Cursor(bytes, range[0]);
+            while (in.position < range[1]) {
+                long tag = in.readVarint();
+                if (tag == (1 << 3 | WIRE_LENGTH)) {
+                    name = in.readString();
+                } else if (tag == (2 << 3 | WIRE_LENGTH)) {
+                    fieldTypes.add(in.readRange());
+                } else if (tag == (3 << 3 | WIRE_LENGTH)) {
+                    nestedTypes.add(in.readRange());
+                } else if (tag == (4 << 3 | WIRE_LENGTH)) {
+                    enumTypes.add(in.readRange());
+                } else {
+                    in.skipValue((int) (tag & 7), (int) (tag >>> 3));
+                }
+            }
+            String full = scope + "." + name;
+            MessageType type = new MessageType();
+            messages.put(full, type);
+            for (int[] fieldRange : fieldTypes) {
+                FieldType field = field(bytes, fieldRange);
+                type.fields.put(field.number, field);
+                fields.add(field);
+            }
+            for (int[] nested : nestedTypes) {
+                message(bytes, nested, full);
+            }
+            for (int[] enumRange : enumTypes) {
+                enumType(bytes, enumRange, full);
+            }
+            return full;
+        }
+
+        private FieldType field(byte[] bytes, int[] range) {
+            FieldType field = new FieldType();
+            Cursor in = new Cursor(bytes, range[0]);
+            while (in.position < range[1]) {
+                long tag = in.readVarint();
+                if (tag == (1 << 3 | WIRE_LENGTH)) {
+                    field.name = in.readString();
+                } else if (tag == (3 << 3 | WIRE_VARINT)) {
+                    field.number = (int) in.readVarint();
+                } else if (tag == (4 << 3 | WIRE_VARINT)) {
+                    field.repeated = in.readVarint() == LABEL_REPEATED;
+                } else if (tag == (5 << 3 | WIRE_VARINT)) {
+                    field.type = (int) in.readVarint();
+                } else if (tag == (6 << 3 | WIRE_LENGTH)) {
+                    field.typeName = in.readString();
+                } else {
+                    in.skipValue((int) (tag & 7), (int) (tag >>> 3));
+                }
+            }
+            return field;
+        }
+
+        private void enumType(byte[] bytes, int[] range, String scope) {
+            String name = "";
+            Map<Integer, String> symbols = new HashMap<>();
+            Cursor in = new Cursor(bytes, range[0]);
+            while (in.position < range[1]) {
+                long tag = in.readVarint();
+                if (tag == (1 << 3 | WIRE_LENGTH)) {
+                    name = in.readString();
+                } else if (tag == (2 << 3 | WIRE_LENGTH)) {
+                    int[] value = in.readRange();
+                    Cursor symbol = new Cursor(bytes, value[0]);
+                    String symbolName = null;
+                    int number = 0;
+                    while (symbol.position < value[1]) {
+                        long symbolTag = symbol.readVarint();
+                        if (symbolTag == (1 << 3 | WIRE_LENGTH)) {
+                            symbolName = symbol.readString();
+                        } else if (symbolTag == (2 << 3 | WIRE_VARINT)) {
+                            number = (int) symbol.readVarint();
+                        } else {
+                            symbol.skipValue((int) (symbolTag & 7), (int) (symbolTag >>> 3));
+                        }
+                    }
+                    // the first name of an aliased number wins
+                    symbols.putIfAbsent(number, symbolName);
+                } else {
+                    in.skipValue((int) (tag & 7), (int) (tag >>> 3));
+                }
+            }
+            enums.put(scope + "." + name, symbols);
+        }
+    }
+
+    private static final class MessageType {
+        private final Map<Integer, FieldType> fields = new HashMap<>();
+    }
+
+    private static final class FieldType {
+        private String name;
+        private int number;
+        private boolean repeated;
+        private int type;
+        private String typeName;
+        private MessageType message;
+        private Map<Integer, String> symbols;
+
+        /**
+         * Wire type the field is written with when not packed.
+         */
+        private int wire() {
+            switch (type) {
+                case TYPE_DOUBLE:
+                case TYPE_FIXED64:
+                case TYPE_SFIXED64:
+                    return WIRE_FIXED64;
+                case TYPE_FLOAT:
+                case TYPE_FIXED32:
+                case TYPE_SFIXED32:
+                    return WIRE_FIXED32;
+                case TYPE_STRING:
+                case TYPE_BYTES:
+                case TYPE_MESSAGE:
+                    return WIRE_LENGTH;
+                case TYPE_GROUP:
+                    return WIRE_START_GROUP;
+                default:
+                    return WIRE_VARINT;
+            }
+        }
+    }
+
+    /**
+     * Rendered values of one field, the last one wins unless it is repeated.
+     */
+    private static final class Slot {
+        private final String name;
+        private final boolean repeated;
+        private final StringBuilder text = new StringBuilder();
+
+        private Slot(String name, boolean repeated) {
+            this.name = name;
+            this.repeated = repeated;
+        }
+
+        private StringBuilder next() {
+            if (!repeated) {
+                text.setLength(0);
+            } else if (text.length() > 0) {
+                text.append(',');
+            }
+            return text;
+        }
+    }
+
+    private static final class Cursor {
+        private final byte[] bytes;
+        private int position;
+
+        private Cursor(byte[] bytes, int position) {
+            this.bytes = bytes;
+            this.position = position;
+        }
+
+        /**
+         * Skip the bytes, returns where they start.
+         */
+        private int skip(int length) {
+            if (length < 0 || length > bytes.length - position) {
+                throw new IllegalArgumentException("Protobuf message is truncated at " + position + ".");
+            }
+            position += length;
+            return position - length;
+        }
+
+        private long readVarint() {
+            long value = 0L;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = bytes[skip(1)];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Protobuf varint is too long at " + position + ".");
+        }
+
+        private int readLength() {
+            long length = readVarint();
+            if (length < 0 || length > bytes.length - position) {
+                throw new IllegalArgumentException("Protobuf length[" + length + "] is out of the message.");
+            }
+            return (int) length;
+        }
+
+        private long readFixed(int length) {
+            int start = skip(length);
+            long value = 0L;
+            for (int i = length - 1; i >= 0; i--) {
+                value = (value << 8) | (bytes[start + i] & 0xFF);
+            }
+            return value;
+        }
+
+        private String readString() {
+            int length = readLength();
+            return MessageDecoders.utf8(bytes, skip(length), length);
+        }
+
+        /**
+         * Start and end of a length delimited value.
+         */
+        private int[] readRange() {
+            int length = readLength();
+            int start = skip(length);
+            return new int[]{start, start + length};
+        }
+
+        private void skipValue(int wire, int number) {
+            switch (wire) {
+                case WIRE_VARINT:
+                    readVarint();
+                    break;
+                case WIRE_FIXED64:
+                    skip(8);
+                    break;
+                case WIRE_LENGTH:
+                    skip(readLength());
+                    break;
+                case WIRE_START_GROUP:
+                    while (true) {
+                        long tag = readVarint();
+                        if ((tag & 7) == WIRE_END_GROUP) {
+                            if ((int) (tag >>> 3) != number) {
+                                throw new IllegalArgumentException("Protobuf group[" + number + "] ends as [" + (tag >>> 3) + "].");
+                            }
+                            return;
+                        }
+                        skipValue((int) (tag & 7), (int) (tag >>> 3));
+                    }
+                case WIRE_FIXED32:
+                    skip(4);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Protobuf wire type[" + wire + "] is invalid.");
+            }
+        }
+    }
+
+}
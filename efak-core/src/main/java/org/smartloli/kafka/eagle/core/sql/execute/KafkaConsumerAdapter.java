@@ -22,26 +22,32 @@ import com.alibaba.fastjson.JSONObject;
 import org.apache.kafka.clients.CommonClientConfigs;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
-import org.apache.kafka.clients.consumer.ConsumerRecords;
-import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.apache.kafka.common.TopicPartition;
-import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
 import org.smartloli.kafka.eagle.common.protocol.KafkaSqlInfo;
 import org.smartloli.kafka.eagle.common.util.CalendarUtils;
 import org.smartloli.kafka.eagle.common.util.KConstants.Kafka;
+import org.smartloli.kafka.eagle.common.util.LoggerUtils;
 import org.smartloli.kafka.eagle.common.util.SystemConfigUtils;
 import org.smartloli.kafka.eagle.core.factory.KafkaFactory;
 import org.smartloli.kafka.eagle.core.factory.KafkaService;
 import org.smartloli.kafka.eagle.core.factory.v2.BrokerFactory;
 import org.smartloli.kafka.eagle.core.factory.v2.BrokerService;
+import org.smartloli.kafka.eagle.core.sql.common.JSqlStreamTable;
+import org.smartloli.kafka.eagle.core.sql.decoder.MessageDecoder;
+import org.smartloli.kafka.eagle.core.sql.decoder.MessageDecoders;
 import org.smartloli.kafka.eagle.core.sql.schema.TopicSchema;
+import org.smartloli.kafka.eagle.core.task.parser.KSqlParser;
+import org.smartloli.kafka.eagle.core.task.parser.KSqlPlan;
+import org.smartloli.kafka.eagle.core.task.shard.KSqlScanPlan;
 
-import java.time.Duration;
 import java.util.*;
 
 /**
  * Parse the sql statement, and execute the sql content, get the message record
- * of kafka in topic, and map to sql tree to query operation.
+ * of kafka in topic, and map to sql tree to query operation. Records are
+ * read by {@link TailScanner} as bytes and streamed into the query as they
+ * arrive, the message decoded by the {@link MessageDecoder} of the topic.
  *
  * @author smartloli.
  * <p>
@@ -52,28 +58,24 @@ public class KafkaConsumerAdapter {
     private static KafkaService kafkaService = new KafkaFactory().create();
     private static BrokerService brokerService = new BrokerFactory().create();
 
+    /**
+     * Rows fetched ahead of the query.
+     */
+    private static final int STREAM_BUFFER = 10000;
+
     private KafkaConsumerAdapter() {
 
     }
 
     /**
-     * Executor ksql query topic data.
+     * Start reading the topic of the ksql, the returned table is filled while
+     * it is queried and must be closed after the query. Records the where
+     * clause of the plan rejects are skipped before they become rows, and
+     * the message is only decoded when the plan reads it.
      */
-    public static List<JSONArray> executor(KafkaSqlInfo kafkaSql) {
-        List<JSONArray> messages = new ArrayList<>();
-        Properties props = new Properties();
-        props.put(ConsumerConfig.GROUP_ID_CONFIG, Kafka.EFAK_SYSTEM_GROUP);
-        props.put(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, kafkaService.getKafkaBrokerServer(kafkaSql.getClusterAlias()));
-        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getCanonicalName());
-        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getCanonicalName());
-        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, Kafka.EARLIEST);
-        if (SystemConfigUtils.getBooleanProperty(kafkaSql.getClusterAlias() + ".efak.sasl.enable")) {
-            kafkaService.sasl(props, kafkaSql.getClusterAlias());
-        }
-        if (SystemConfigUtils.getBooleanProperty(kafkaSql.getClusterAlias() + ".efak.ssl.enable")) {
-            kafkaService.ssl(props, kafkaSql.getClusterAlias());
-        }
-        KafkaConsumer<String, String> consumer = new KafkaConsumer<>(props);
+    public static JSqlStreamTable stream(KafkaSqlInfo kafkaSql) {
+        KSqlPlan plan = KSqlParser.plan(kafkaSql.getSql());
+        KSqlScanPlan scanPlan = plan == null ? null : KSqlScanPlan.compile(plan);
         List<TopicPartition> topics = new ArrayList<>();
         if (kafkaSql.getPartition().contains(Kafka.ALL_PARTITION)) {
             long partitions = brokerService.partitionNumbers(kafkaSql.getClusterAlias(), kafkaSql.getTableName());
@@ -91,37 +93,29 @@ public class KafkaConsumerAdapter {
                 topics.add(tp);
             }
         }
-        consumer.assign(topics);
-
-        for (TopicPartition tp : topics) {
-            Map<TopicPartition, Long> offsets = consumer.endOffsets(Collections.singleton(tp));
-            long position = Kafka.POSITION;
-            if (offsets.get(tp).longValue() > position) {
-                consumer.seek(tp, offsets.get(tp).longValue() - Kafka.POSITION);
-            } else {
-                consumer.seek(tp, 0);
+        MessageDecoder decoder = MessageDecoders.of(kafkaSql.getClusterAlias(), kafkaSql.getTableName());
+        JSqlStreamTable table = new JSqlStreamTable(kafkaSql.getSchema(), STREAM_BUFFER);
+        String[] names = table.getNames();
+        boolean message = scanPlan == null || scanPlan.readsMessage();
+        TailScanner.scanAsync(props(kafkaSql.getClusterAlias()), topics, Kafka.POSITION, record -> {
+            KSqlScanPlan.ScanRecord scanRecord = new KSqlScanPlan.ScanRecord().reset(record.partition(), record.offset(), record.value(), decoder, record.timestamp());
+            if (scanPlan != null && !scanPlan.matches(scanRecord)) {
+                return table.skip();
             }
-        }
-        JSONArray datasets = new JSONArray();
-        boolean flag = true;
-        while (flag) {
-            ConsumerRecords<String, String> records = consumer.poll(Duration.ofMillis(Kafka.TIME_OUT));
-            for (ConsumerRecord<String, String> record : records) {
-                JSONObject object = new JSONObject(new LinkedHashMap<>());
-                object.put(TopicSchema.PARTITION, record.partition());
-                object.put(TopicSchema.OFFSET, record.offset());
-                object.put(TopicSchema.MSG, record.value());
-                object.put(TopicSchema.TIMESPAN, record.timestamp());
-                object.put(TopicSchema.DATE, CalendarUtils.convertUnixTime(record.timestamp()));
-                datasets.add(object);
+            Object[] row = new Object[names.length];
+            for (int i = 0; i < names.length; i++) {
+                Object value = TopicSchema.MSG.equals(names[i]) ? (message ? scanRecord.value() : null) : field(record, names[i]);
+                row[i] = table.cell(i, value);
             }
-            if (records.isEmpty()) {
-                flag = false;
+            return table.add(row);
+        }, error -> {
+            try {
+                table.complete(error);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
-        }
-        consumer.close();
-        messages.add(datasets);
-        return messages;
+        });
+        return table;
     }
 
     /**
@@ -129,55 +123,65 @@ public class KafkaConsumerAdapter {
      */
     public static List<JSONArray> preview(KafkaSqlInfo kafkaSql) {
         List<JSONArray> messages = new ArrayList<>();
-        Properties props = new Properties();
-        props.put(ConsumerConfig.GROUP_ID_CONFIG, Kafka.EFAK_SYSTEM_GROUP);
-        props.put(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, kafkaService.getKafkaBrokerServer(kafkaSql.getClusterAlias()));
-        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getCanonicalName());
-        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getCanonicalName());
-        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, Kafka.EARLIEST);
-        if (SystemConfigUtils.getBooleanProperty(kafkaSql.getClusterAlias() + ".efak.sasl.enable")) {
-            kafkaService.sasl(props, kafkaSql.getClusterAlias());
-        }
-        if (SystemConfigUtils.getBooleanProperty(kafkaSql.getClusterAlias() + ".efak.ssl.enable")) {
-            kafkaService.ssl(props, kafkaSql.getClusterAlias());
-        }
-        KafkaConsumer<String, String> consumer = new KafkaConsumer<>(props);
         List<TopicPartition> topics = new ArrayList<>();
         for (Integer partition : kafkaSql.getPartition()) {
             TopicPartition tp = new TopicPartition(kafkaSql.getTableName(), partition);
             topics.add(tp);
         }
-        consumer.assign(topics);
-
-        for (TopicPartition tp : topics) {
-            Map<TopicPartition, Long> offsets = consumer.endOffsets(Collections.singleton(tp));
-            long position = Kafka.PREVIEW;
-            if (offsets.get(tp).longValue() > position) {
-                consumer.seek(tp, offsets.get(tp).longValue() - Kafka.PREVIEW);
-            } else {
-                consumer.seek(tp, 0);
-            }
-        }
         JSONArray datasets = new JSONArray();
-        boolean flag = true;
-        while (flag) {
-            ConsumerRecords<String, String> records = consumer.poll(Duration.ofMillis(Kafka.TIME_OUT));
-            for (ConsumerRecord<String, String> record : records) {
+        try {
+            MessageDecoder decoder = MessageDecoders.of(kafkaSql.getClusterAlias(), kafkaSql.getTableName());
+            TailScanner.scan(props(kafkaSql.getClusterAlias()), topics, Kafka.PREVIEW, record -> {
                 JSONObject object = new JSONObject(new LinkedHashMap<>());
-                object.put(TopicSchema.PARTITION, record.partition());
-                object.put(TopicSchema.OFFSET, record.offset());
-                object.put(TopicSchema.MSG, record.value());
-                object.put(TopicSchema.TIMESPAN, record.timestamp());
-                object.put(TopicSchema.DATE, CalendarUtils.convertUnixTime(record.timestamp()));
-                datasets.add(object);
-            }
-            if (records.isEmpty()) {
-                flag = false;
-            }
+                for (String name : new String[]{TopicSchema.PARTITION, TopicSchema.OFFSET, TopicSchema.MSG, TopicSchema.TIMESPAN, TopicSchema.DATE}) {
+                    object.put(name, TopicSchema.MSG.equals(name) ? MessageDecoders.decode(decoder, record.value()) : field(record, name));
+                }
+                synchronized (datasets) {
+                    datasets.add(object);
+                }
+                return true;
+            });
+        } catch (Exception e) {
+            LoggerUtils.print(KafkaConsumerAdapter.class).error("Preview topic[" + kafkaSql.getTableName() + "] has error, msg is ", e);
         }
-        consumer.close();
         messages.add(datasets);
         return messages;
     }
 
+    /**
+     * Column of the record other than the message.
+     */
+    private static Object field(ConsumerRecord<byte[], byte[]> record, String name) {
+        switch (name) {
+            case TopicSchema.PARTITION:
+                return record.partition();
+            case TopicSchema.OFFSET:
+                return record.offset();
+            case TopicSchema.TIMESPAN:
+                return record.timestamp();
+            case TopicSchema.DATE:
+                return CalendarUtils.convertUnixTime(record.timestamp());
+            default:
+                return null;
+        }
+    }
+
+    private static Properties props(String clusterAlias) {
+        Properties props = new Properties();
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, Kafka.EFAK_SYSTEM_GROUP);
+        props.put(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, kafkaService.getKafkaBrokerServer(clusterAlias));
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getCanonicalName());
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getCanonicalName());
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, Kafka.EARLIEST);
+        // partitions are assigned and seeked, nothing to commit
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.sasl.enable")) {
+            kafkaService.sasl(props, clusterAlias);
+        }
+        if (SystemConfigUtils.getBooleanProperty(clusterAlias + ".efak.ssl.enable")) {
+            kafkaService.ssl(props, clusterAlias);
+        }
+        return props;
+    }
+
 }
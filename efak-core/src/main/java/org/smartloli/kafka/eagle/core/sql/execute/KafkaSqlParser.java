@@ -17,7 +17,6 @@
  */
 package org.smartloli.kafka.eagle.core.sql.execute;
 
-import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import com.google.gson.Gson;
 import org.slf4j.Logger;
@@ -27,6 +26,7 @@ import org.smartloli.kafka.eagle.core.factory.KafkaFactory;
 import org.smartloli.kafka.eagle.core.factory.KafkaService;
 import org.smartloli.kafka.eagle.core.factory.v2.BrokerFactory;
 import org.smartloli.kafka.eagle.core.factory.v2.BrokerService;
+import org.smartloli.kafka.eagle.core.sql.common.JSqlStreamTable;
 import org.smartloli.kafka.eagle.core.sql.tool.KSqlUtils;
 
 import java.util.ArrayList;
@@ -59,11 +59,15 @@ public class KafkaSqlParser {
                 } else {
                     long start = System.currentTimeMillis();
                     kafkaSql.setClusterAlias(clusterAlias);
-                    List<JSONArray> dataSets = KafkaConsumerAdapter.executor(kafkaSql);
                     String results = "";
                     int rows = 0;
-                    if (dataSets.size() > 0 && !dataSets.get(dataSets.size() - 1).isEmpty()) {
-                        JSONObject object = KSqlUtils.query(kafkaSql.getSchema(), kafkaSql.getTableName(), dataSets, kafkaSql.getSql());
+                    JSONObject object;
+                    long fetched;
+                    try (JSqlStreamTable table = KafkaConsumerAdapter.stream(kafkaSql)) {
+                        object = KSqlUtils.query(kafkaSql.getTableName(), table, kafkaSql.getSql());
+                        fetched = table.fetched();
+                    }
+                    if (fetched > 0) {
                         results = object.getString("result");
                         rows = object.getInteger("size");
                     } else {
@@ -0,0 +1,181 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.core.sql.execute;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
+import org.smartloli.kafka.eagle.common.util.KConstants.Kafka;
+import org.smartloli.kafka.eagle.common.util.LoggerUtils;
+import org.smartloli.kafka.eagle.common.util.SystemConfigUtils;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Reads the last records of topic partitions in parallel.
+ * <p>
+ * The end and beginning offsets of all partitions are fetched in one call
+ * each, then the partitions are spread over at most 'efak.sql.fetch.threads'
+ * consumers. Each partition is read from its start offset up to the end offset
+ * it had when the scan began and is paused once reached, so a scan stops as
+ * soon as every partition is read instead of waiting for an empty poll, and
+ * empty partitions are never polled. 'efak.sql.fetch.timeout.ms' bounds a
+ * scan whose partitions never reach their end.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+final class TailScanner {
+
+    private static final int THREADS = Math.max(1, SystemConfigUtils.getIntProperty("efak.sql.fetch.threads", 4));
+    private static final long TIMEOUT_MS = SystemConfigUtils.getLongProperty("efak.sql.fetch.timeout.ms", 10 * 1000L);
+
+    private static final ExecutorService FETCHERS = Executors.newCachedThreadPool(daemonFactory("efak-ksql-fetcher"));
+
+    /**
+     * Receives the records of a scan, called from several threads at once.
+     */
+    interface RecordSink {
+        /**
+         * Returns false to stop the scan.
+         */
+        boolean accept(ConsumerRecord<byte[], byte[]> record) throws InterruptedException;
+    }
+
+    private TailScanner() {
+    }
+
+    /**
+     * Scan in the background, the callback gets the error of the scan or null.
+     */
+    static void scanAsync(Properties props, List<TopicPartition> partitions, long records, RecordSink sink, Consumer<Throwable> completion) {
+        FETCHERS.execute(() -> {
+            Throwable error = null;
+            try {
+                scan(props, partitions, records, sink);
+            } catch (Throwable e) {
+                error = e;
+            } finally {
+                completion.accept(error);
+            }
+        });
+    }
+
+    /**
+     * Read at most the last records of every partition, returns when all are
+     * read, the sink stops the scan or the timeout passed.
+     */
+    static void scan(Properties props, List<TopicPartition> partitions, long records, RecordSink sink) throws Exception {
+        List<Future<?>> futures = new ArrayList<>();
+        KafkaConsumer<byte[], byte[]> first = new KafkaConsumer<>(props);
+        try {
+            Map<TopicPartition, Long> ends = first.endOffsets(partitions);
+            Map<TopicPartition, Long> begins = first.beginningOffsets(partitions);
+            List<Map<TopicPartition, long[]>> groups = new ArrayList<>();
+            int index = 0;
+            for (TopicPartition tp : partitions) {
+                Long end = ends.get(tp);
+                if (end == null) {
+                    continue;
+                }
+                Long begin = begins.get(tp);
+                long start = Math.max(begin == null ? 0L : begin, end - records);
+                if (start >= end) {
+                    continue;
+                }
+                if (groups.size() < THREADS) {
+                    groups.add(new HashMap<>());
+                }
+                groups.get(index++ % THREADS).put(tp, new long[]{start, end});
+            }
+            if (groups.isEmpty()) {
+                return;
+            }
+            long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+            for (int i = 1; i < groups.size(); i++) {
+                Map<TopicPartition, long[]> group = groups.get(i);
+                futures.add(FETCHERS.submit(() -> {
+                    try (KafkaConsumer<byte[], byte[]> consumer = new KafkaConsumer<>(props)) {
+                        fetch(consumer, group, deadline, sink);
+                    }
+                    return null;
+                }));
+            }
+            fetch(first, groups.get(0), deadline, sink);
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+            first.close();
+        }
+    }
+
+    private static void fetch(KafkaConsumer<byte[], byte[]> consumer, Map<TopicPartition, long[]> ranges, long deadline, RecordSink sink) throws InterruptedException {
+        consumer.assign(ranges.keySet());
+        for (Map.Entry<TopicPartition, long[]> entry : ranges.entrySet()) {
+            consumer.seek(entry.getKey(), entry.getValue()[0]);
+        }
+        Set<TopicPartition> pending = new HashSet<>(ranges.keySet());
+        while (!pending.isEmpty() && System.currentTimeMillis() < deadline) {
+            ConsumerRecords<byte[], byte[]> records = consumer.poll(Duration.ofMillis(Kafka.TIME_OUT));
+            for (TopicPartition tp : records.partitions()) {
+                long end = ranges.get(tp)[1];
+                for (ConsumerRecord<byte[], byte[]> record : records.records(tp)) {
+                    if (record.offset() >= end) {
+                        break;
+                    }
+                    if (!sink.accept(record)) {
+                        return;
+                    }
+                }
+            }
+            for (Iterator<TopicPartition> it = pending.iterator(); it.hasNext(); ) {
+                TopicPartition tp = it.next();
+                if (consumer.position(tp) >= ranges.get(tp)[1]) {
+                    it.remove();
+                    consumer.pause(Collections.singleton(tp));
+                }
+            }
+        }
+        if (!pending.isEmpty()) {
+            LoggerUtils.print(TailScanner.class).warn("Fetch partitions " + pending + " stopped after " + TIMEOUT_MS + " ms.");
+        }
+    }
+
+    private static ThreadFactory daemonFactory(String prefix) {
+        AtomicLong counter = new AtomicLong();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+}
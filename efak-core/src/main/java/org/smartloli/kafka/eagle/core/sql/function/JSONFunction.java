@@ -17,12 +17,11 @@
  */
 package org.smartloli.kafka.eagle.core.sql.function;
 
-import com.alibaba.fastjson.JSONArray;
-import com.alibaba.fastjson.JSONObject;
-
 /**
  * Parse a JSONObject or a JSONArray in a kafka topic message using a custom
- * function.
+ * function. The key may be a path such as 'a.b[0].c', fields are read by a
+ * {@link JSONPathExtractor} of the query thread, so a record read by several
+ * calls is walked once per distinct key.
  *
  * @author smartloli.
  * <p>
@@ -30,27 +29,20 @@ import com.alibaba.fastjson.JSONObject;
  */
 public class JSONFunction {
 
+    private static final ThreadLocal<JSONPathExtractor> EXTRACTORS = ThreadLocal.withInitial(JSONPathExtractor::new);
+
     /**
      * Parse a JSONObject.
      */
     public String JSON(String jsonObject, String key) {
-        JSONObject object = com.alibaba.fastjson.JSON.parseObject(jsonObject);
-        return object.getString(key);
+        return EXTRACTORS.get().json(jsonObject, key);
     }
 
     /**
      * Parse a JSONArray.
      */
     public String JSONS(String jsonArray, String key) {
-        JSONArray object = com.alibaba.fastjson.JSON.parseArray(jsonArray);
-        JSONArray target = new JSONArray();
-        for (Object tmp : object) {
-            JSONObject result = (JSONObject) tmp;
-            JSONObject value = new JSONObject();
-            value.put(key, result.getString(key));
-            target.add(value);
-        }
-        return target.toJSONString();
+        return EXTRACTORS.get().jsons(jsonArray, key);
     }
 
 }
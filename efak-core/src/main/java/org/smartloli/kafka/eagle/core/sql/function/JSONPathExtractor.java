@@ -0,0 +1,513 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.core.sql.function;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reads fields of a json message for {@link JSONFunction} without parsing it.
+ * <p>
+ * A path such as 'a.b[0].c' is compiled once, then the message text is
+ * walked and every value off the path is skipped without being built, the
+ * walk stops at the value of the path. Only strings on the path are decoded,
+ * nested objects, arrays and JSONS fields are rendered by fastjson as before.
+ * The first of duplicated keys is read. Text before the field that the walk
+ * does not understand is handed to fastjson, so malformed messages fail as
+ * they did, text after the field is not read.
+ * <p>
+ * The fields read from the current message are kept until the next message,
+ * a query reading the same field in its select and its where clause reads
+ * it once per record. An extractor is not thread safe.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public final class JSONPathExtractor {
+
+    private static final int MAX_PATHS = 1024;
+    private static final Map<String, Path> PATHS = new ConcurrentHashMap<>();
+
+    private String text;
+    private final Map<String, String> objects = new HashMap<>();
+    private final Map<String, String> arrays = new HashMap<>();
+
+    /**
+     * Field of the path in a json object, as JSONObject.getString read it.
+     */
+    public String json(String jsonObject, String key) {
+        if (jsonObject == null || key == null) {
+            return null;
+        }
+        reset(jsonObject);
+        String value = objects.get(key);
+        if (value == null && !objects.containsKey(key)) {
+            value = object(jsonObject, key);
+            objects.put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Field of the path in every object of a json array, as a json array of
+     * {key: field} objects.
+     */
+    public String jsons(String jsonArray, String key) {
+        if (jsonArray == null || key == null) {
+            return null;
+        }
+        reset(jsonArray);
+        String value = arrays.get(key);
+        if (value == null) {
+            value = array(jsonArray, key);
+            arrays.put(key, value);
+        }
+        return value;
+    }
+
+    private void reset(String message) {
+        if (message != text) {// a new record
+            text = message;
+            objects.clear();
+            arrays.clear();
+        }
+    }
+
+    private static String object(String message, String key) {
+        Path path = path(key);
+        try {
+            Cursor cursor = new Cursor(message);
+            cursor.expect(cursor.skipWhitespace(0), '{');
+            int start = cursor.find(path.segments, 0, message.length());
+            if (start < 0 && path.segments.length > 1) {// a key holding dots or brackets
+                start = cursor.find(path(key, true).segments, 0, message.length());
+            }
+            return start < 0 ? null : cursor.string(start);
+        } catch (MalformedException e) {
+            return fallbackObject(message, key);
+        }
+    }
+
+    private static String array(String message, String key) {
+        Path path = path(key);
+        try {
+            Cursor cursor = new Cursor(message);
+            StringBuilder target = new StringBuilder("[");
+            String quoted = null;
+            int position = cursor.skipWhitespace(0);
+            cursor.expect(position, '[');
+            position = cursor.skipWhitespace(position + 1);
+            boolean first = true;
+            if (cursor.at(position) != ']') {
+                while (true) {
+                    if (cursor.at(position) != '{') {
+                        throw new MalformedException();// not an object, fastjson fails on it
+                    }
+                    int end = cursor.skip(position);
+                    int start = cursor.find(path.segments, position, end);
+                    if (start < 0 && path.segments.length > 1) {
+                        start = cursor.find(path(key, true).segments, position, end);
+                    }
+                    String value = start < 0 ? null : cursor.string(start);
+                    target.append(first ? "" : ",");
+                    first = false;
+                    if (value == null) {
+                        target.append("{}");// null fields are not serialized
+                    } else {
+                        if (quoted == null) {
+                            quoted = JSON.toJSONString(key);
+                        }
+                        target.append('{').append(quoted).append(':').append(JSON.toJSONString(value)).append('}');
+                    }
+                    position = cursor.skipWhitespace(end);
+                    if (cursor.at(position) == ',') {
+                        position = cursor.skipWhitespace(position + 1);
+                    } else {
+                        cursor.expect(position, ']');
+                        break;
+                    }
+                }
+            }
+            return target.append(']').toString();
+        } catch (MalformedException e) {
+            return fallbackArray(message, key);
+        }
+    }
+
+    /**
+     * The parse of every record used before, kept for text the walk does not
+     * understand.
+     */
+    private static String fallbackObject(String message, String key) {
+        JSONObject object = JSON.parseObject(message);
+        return object.getString(key);
+    }
+
+    private static String fallbackArray(String message, String key) {
+        JSONArray object = JSON.parseArray(message);
+        JSONArray target = new JSONArray();
+        for (Object tmp : object) {
+            JSONObject result = (JSONObject) tmp;
+            JSONObject value = new JSONObject();
+            value.put(key, result.getString(key));
+            target.add(value);
+        }
+        return target.toJSONString();
+    }
+
+    private static Path path(String key) {
+        return path(key, false);
+    }
+
+    private static Path path(String key, boolean literal) {
+        if (literal) {
+            return new Path(new Object[]{key});
+        }
+        Path path = PATHS.get(key);
+        if (path == null) {
+            path = Path.compile(key);
+            if (PATHS.size() >= MAX_PATHS) {
+                PATHS.clear();
+            }
+            PATHS.put(key, path);
+        }
+        return path;
+    }
+
+    /**
+     * Compiled path, each segment is the String key of an object or the
+     * Integer index of an array.
+     */
+    private static final class Path {
+        private final Object[] segments;
+
+        private Path(Object[] segments) {
+            this.segments = segments;
+        }
+
+        private static Path compile(String key) {
+            List<Object> segments = new ArrayList<>();
+            StringBuilder name = new StringBuilder();
+            int i = 0;
+            while (i < key.length()) {
+                char c = key.charAt(i);
+                if (c == '.') {
+                    if (name.length() == 0) {
+                        return new Path(new Object[]{key});
+                    }
+                    segments.add(name.toString());
+                    name.setLength(0);
+                    i++;
+                } else if (c == '[') {
+                    int close = key.indexOf(']', i);
+                    if (close < 0 || (name.length() == 0 && segments.isEmpty())) {
+                        return new Path(new Object[]{key});
+                    }
+                    int index;
+                    try {
+                        index = Integer.parseInt(key.substring(i + 1, close));
+                    } catch (NumberFormatException e) {
+                        return new Path(new Object[]{key});
+                    }
+                    if (name.length() > 0) {
+                        segments.add(name.toString());
+                        name.setLength(0);
+                    }
+                    segments.add(index);
+                    i = close + 1;
+                    if (i < key.length() && key.charAt(i) != '.' && key.charAt(i) != '[') {
+                        return new Path(new Object[]{key});
+                    }
+                    if (i < key.length() && key.charAt(i) == '.') {
+                        i++;
+                    }
+                } else {
+                    name.append(c);
+                    i++;
+                }
+            }
+            if (name.length() > 0) {
+                segments.add(name.toString());
+            } else if (segments.isEmpty() || key.endsWith(".")) {
+                return new Path(new Object[]{key});
+            }
+            return new Path(segments.toArray());
+        }
+    }
+
+    private static final class MalformedException extends Exception {
+        private MalformedException() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * Walk over the json text.
+     */
+    private static final class Cursor {
+        private final String text;
+
+        private Cursor(String text) {
+            this.text = text;
+        }
+
+        /**
+         * Start of the value of the path in the object at the position, -1
+         * when the path is missing.
+         */
+        private int find(Object[] segments, int position, int end) throws MalformedException {
+            position = skipWhitespace(position);
+            for (Object segment : segments) {
+                if (segment instanceof String) {
+                    position = member(position, end, (String) segment);
+                } else {
+                    position = element(position, end, (Integer) segment);
+                }
+                if (position < 0) {
+                    return -1;
+                }
+            }
+            return position;
+        }
+
+        private int member(int position, int end, String key) throws MalformedException {
+            if (at(position) != '{') {
+                return -1;// a path into a value that is not an object
+            }
+            position = skipWhitespace(position + 1);
+            if (at(position) == '}') {
+                return -1;
+            }
+            while (position < end) {
+                expect(position, '"');
+                int close = skipString(position);
+                boolean match = matches(position + 1, close - 1, key);
+                position = skipWhitespace(close);
+                expect(position, ':');
+                position = skipWhitespace(position + 1);
+                if (match) {
+                    return position;
+                }
+                position = skipWhitespace(skip(position));
+                if (at(position) == '}') {
+                    return -1;
+                }
+                expect(position, ',');
+                position = skipWhitespace(position + 1);
+            }
+            throw new MalformedException();
+        }
+
+        private int element(int position, int end, int index) throws MalformedException {
+            if (at(position) != '[') {
+                return -1;
+            }
+            position = skipWhitespace(position + 1);
+            if (at(position) == ']') {
+                return -1;
+            }
+            for (int i = 0; position < end; i++) {
+                if (i == index) {
+                    return position;
+                }
+                position = skipWhitespace(skip(position));
+                if (at(position) == ']') {
+                    return -1;
+                }
+                expect(position, ',');
+                position = skipWhitespace(position + 1);
+            }
+            throw new MalformedException();
+        }
+
+        /**
+         * The value at the position as JSONObject.getString renders it.
+         */
+        private String string(int position) throws MalformedException {
+            char c = at(position);
+            if (c == '"') {
+                return decode(position + 1, skipString(position) - 1);
+            }
+            int end = skip(position);
+            String raw = text.substring(position, end);
+            if (c == '{' || c == '[') {
+                return JSON.parse(raw).toString();
+            } else if ("null".equals(raw)) {
+                return null;
+            } else if ("true".equals(raw) || "false".equals(raw)) {
+                return raw;
+            } else if (raw.indexOf('e') >= 0 || raw.indexOf('E') >= 0 || raw.startsWith("-0")) {
+                return JSON.parse(raw).toString();// rendered as fastjson reads the number
+            } else if (raw.isEmpty() || !(c == '-' || (c >= '0' && c <= '9'))) {
+                throw new MalformedException();
+            }
+            return raw;
+        }
+
+        /**
+         * Position after the value at the position.
+         */
+        private int skip(int position) throws MalformedException {
+            char c = at(position);
+            if (c == '"') {
+                return skipString(position);
+            } else if (c == '{' || c == '[') {
+                int depth = 0;
+                for (int i = position; i < text.length(); i++) {
+                    char x = text.charAt(i);
+                    if (x == '"') {
+                        i = skipString(i) - 1;
+                    } else if (x == '{' || x == '[') {
+                        depth++;
+                    } else if (x == '}' || x == ']') {
+                        if (--depth == 0) {
+                            return i + 1;
+                        }
+                    }
+                }
+                throw new MalformedException();
+            }
+            int i = position;
+            while (i < text.length()) {
+                char x = text.charAt(i);
+                if (x == ',' || x == '}' || x == ']' || Character.isWhitespace(x)) {
+                    break;
+                }
+                i++;
+            }
+            if (i == position) {
+                throw new MalformedException();
+            }
+            return i;
+        }
+
+        /**
+         * Position after the closing quote of the string at the position.
+         */
+        private int skipString(int position) throws MalformedException {
+            for (int i = position + 1; i < text.length(); i++) {
+                char x = text.charAt(i);
+                if (x == '\\') {
+                    i++;
+                } else if (x == '"') {
+                    return i + 1;
+                }
+            }
+            throw new MalformedException();
+        }
+
+        private boolean matches(int from, int to, String key) throws MalformedException {
+            if (!hasEscape(from, to)) {
+                return to - from == key.length() && text.regionMatches(from, key, 0, key.length());
+            }
+            return decode(from, to).equals(key);
+        }
+
+        private boolean hasEscape(int from, int to) {
+            for (int i = from; i < to; i++) {
+                if (text.charAt(i) == '\\') {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private String decode(int from, int to) throws MalformedException {
+            if (!hasEscape(from, to)) {
+                return text.substring(from, to);
+            }
+            StringBuilder value = new StringBuilder(to - from);
+            for (int i = from; i < to; i++) {
+                char c = text.charAt(i);
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                if (++i >= to) {
+                    throw new MalformedException();
+                }
+                char x = text.charAt(i);
+                switch (x) {
+                    case 'b':
+                        value.append('\b');
+                        break;
+                    case 'f':
+                        value.append('\f');
+                        break;
+                    case 'n':
+                        value.append('\n');
+                        break;
+                    case 'r':
+                        value.append('\r');
+                        break;
+                    case 't':
+                        value.append('\t');
+                        break;
+                    case 'u':
+                        if (i + 4 >= to) {
+                            throw new MalformedException();
+                        }
+                        try {
+                            value.append((char) Integer.parseInt(text.substring(i + 1, i + 5), 16));
+                        } catch (NumberFormatException e) {
+                            throw new MalformedException();
+                        }
+                        i += 4;
+                        break;
+                    case '"':
+                    case '\\':
+                    case '/':
+                        value.append(x);
+                        break;
+                    default:
+                        throw new MalformedException();
+                }
+            }
+            return value.toString();
+        }
+
+        private char at(int position) throws MalformedException {
+            if (position >= text.length()) {
+                throw new MalformedException();
+            }
+            return text.charAt(position);
+        }
+
+        private void expect(int position, char c) throws MalformedException {
+            if (at(position) != c) {
+                throw new MalformedException();
+            }
+        }
+
+        private int skipWhitespace(int position) {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+            return position;
+        }
+    }
+
+}
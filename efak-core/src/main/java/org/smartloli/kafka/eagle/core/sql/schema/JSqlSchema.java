@@ -46,12 +46,23 @@ import com.google.common.collect.Multimap;
  */
 public class JSqlSchema extends AbstractSchema {
 
+	private static final Multimap<String, Function> FUNCTIONS = createFunctions();
+
 	private String dbName;
+	private Map<String, Table> tables;
 
 	public JSqlSchema(String name) {
 		this.dbName = name;
 	}
 
+	/**
+	 * Schema over the given tables instead of the shared memory database.
+	 */
+	public JSqlSchema(String name, Map<String, Table> tables) {
+		this.dbName = name;
+		this.tables = tables;
+	}
+
 	@Override
 	public boolean isMutable() {
 		return super.isMutable();
@@ -69,6 +80,10 @@ public class JSqlSchema extends AbstractSchema {
 
 	@Override
 	protected Multimap<String, Function> getFunctionMultimap() {
+		return FUNCTIONS;
+	}
+
+	private static Multimap<String, Function> createFunctions() {
 		ImmutableMultimap<String, ScalarFunction> funcs = ScalarFunctionImpl.createAll(JSONFunction.class);
 		Multimap<String, Function> functions = HashMultimap.create();
 		for (String key : funcs.keySet()) {
@@ -86,6 +101,9 @@ public class JSqlSchema extends AbstractSchema {
 
 	@Override
 	protected Map<String, Table> getTableMap() {
+		if (this.tables != null) {
+			return this.tables;
+		}
 		Map<String, Table> tables = new HashMap<String, Table>();
 		Database database = JSqlMapData.MAP.get(this.dbName);
 		if (database == null)
@@ -20,13 +20,22 @@ package org.smartloli.kafka.eagle.core.sql.tool;
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import com.google.gson.Gson;
+import org.apache.calcite.jdbc.CalciteConnection;
+import org.apache.calcite.schema.Table;
 import org.smartloli.kafka.eagle.common.constant.JConstants;
+import org.smartloli.kafka.eagle.common.util.LoggerUtils;
+import org.smartloli.kafka.eagle.common.util.SystemConfigUtils;
 import org.smartloli.kafka.eagle.common.util.UnicodeUtils;
-import org.smartloli.kafka.eagle.core.sql.common.JSqlMapData;
+import org.smartloli.kafka.eagle.core.sql.common.JSqlColumnarTable;
+import org.smartloli.kafka.eagle.core.sql.schema.JSqlSchema;
 
-import java.io.IOException;
-import java.sql.*;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Statement;
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * Define the data structure, query by condition.
@@ -37,6 +46,14 @@ import java.util.*;
  */
 public class KSqlUtils {
 
+    private static final String DEFAULT_SCHEMA = "db";
+
+    /**
+     * Idle calcite connections, the function registry and planner setup are
+     * reused across queries instead of built from a model per query.
+     */
+    private static final BlockingQueue<CalciteConnection> CONNECTIONS = new LinkedBlockingQueue<>(SystemConfigUtils.getIntProperty("efak.sql.calcite.connections", 4));
+
     /**
      * @param tabSchema : Table column,such as {"id":"integer","name":"varchar"}
      * @param tableName : Defining table names for query datasets, such as "user"
@@ -47,43 +64,78 @@ public class KSqlUtils {
      * @throws Exception : Throws an exception
      */
     public static JSONObject query(JSONObject tabSchema, String tableName, List<JSONArray> dataSets, String sql) throws Exception {
+        return query(tableName, JSqlColumnarTable.of(tabSchema, dataSets), sql);
+    }
+
+    /**
+     * Query a table already built, such as one still being filled.
+     */
+    public static JSONObject query(String tableName, Table table, String sql) throws Exception {
         JSONObject queryResults = new JSONObject();
-        String model = createTempJson();
-        List<List<String>> list = new LinkedList<>();
-        for (JSONArray dataSet : dataSets) {
-            for (Object obj : dataSet) {
-                JSONObject object = (JSONObject) obj;
-                List<String> tmp = new LinkedList<>();
-                for (String key : object.keySet()) {
-                    tmp.add(UnicodeUtils.encodeForUnicode(object.getString(key)));
+        Map<String, Table> tables = new HashMap<>();
+        tables.put(tableName, table);
+
+        CalciteConnection connection = borrowConnection();
+        boolean healthy = false;
+        List<Map<String, Object>> ret = new ArrayList<>();
+        try {
+            // each pooled connection owns its root schema, replacing 'db' only affects this query
+            connection.getRootSchema().add(DEFAULT_SCHEMA, new JSqlSchema(DEFAULT_SCHEMA, tables));
+            try (Statement st = connection.createStatement(); ResultSet result = st.executeQuery(UnicodeUtils.encodeForUnicode(sql))) {
+                ResultSetMetaData rsmd = result.getMetaData();
+                int columnCount = rsmd.getColumnCount();
+                String[] columnNames = new String[columnCount];
+                for (int i = 1; i <= columnCount; i++) {
+                    columnNames[i - 1] = rsmd.getColumnName(i);
+                }
+                while (result.next()) {
+                    Map<String, Object> map = new LinkedHashMap<>();
+                    for (int i = 1; i <= columnCount; i++) {
+                        String value = result.getString(i);
+                        map.put(columnNames[i - 1], value == null ? null : UnicodeUtils.decodeForUnicode(value));
+                    }
+                    ret.add(map);
                 }
-                list.add(tmp);
             }
+            healthy = true;
+        } finally {
+            releaseConnection(connection, healthy);
         }
-        JSqlMapData.loadSchema(tabSchema, tableName, list);
+        queryResults.put("result", new Gson().toJson(ret));
+        queryResults.put("size", ret.size());
+        return queryResults;
+    }
 
+    private static CalciteConnection borrowConnection() throws Exception {
+        CalciteConnection connection = CONNECTIONS.poll();
+        if (connection != null) {
+            return connection;
+        }
         Class.forName(JConstants.KAFKA_DRIVER);
         Properties info = new Properties();
         info.setProperty("lex", "JAVA");
+        connection = DriverManager.getConnection("jdbc:calcite:", info).unwrap(CalciteConnection.class);
+        connection.getRootSchema().add(DEFAULT_SCHEMA, new JSqlSchema(DEFAULT_SCHEMA, new HashMap<>()));
+        connection.setSchema(DEFAULT_SCHEMA);
+        return connection;
+    }
 
-        Connection connection = DriverManager.getConnection("jdbc:calcite:model=inline:" + model, info);
-        Statement st = connection.createStatement();
-        ResultSet result = st.executeQuery(UnicodeUtils.encodeForUnicode(sql));
-        ResultSetMetaData rsmd = result.getMetaData();
-        List<Map<String, Object>> ret = new ArrayList<>();
-        while (result.next()) {
-            Map<String, Object> map = new LinkedHashMap<>();
-            for (int i = 1; i <= rsmd.getColumnCount(); i++) {
-                map.put(rsmd.getColumnName(i), UnicodeUtils.decodeForUnicode(result.getString(rsmd.getColumnName(i))));
+    /**
+     * Keep a healthy connection for the next query, dropping the table so the
+     * rows of this query can be collected.
+     */
+    private static void releaseConnection(CalciteConnection connection, boolean healthy) {
+        try {
+            if (healthy) {
+                connection.getRootSchema().add(DEFAULT_SCHEMA, new JSqlSchema(DEFAULT_SCHEMA, new HashMap<>()));
+                if (CONNECTIONS.offer(connection)) {
+                    return;
+                }
             }
-            ret.add(map);
+            connection.close();
+        } catch (Exception e) {
+            LoggerUtils.print(KSqlUtils.class).error("Release calcite connection has error, msg is ", e);
         }
-        result.close();
-        st.close();
-        connection.close();
-        queryResults.put("result", new Gson().toJson(ret));
-        queryResults.put("size", ret.size());
-        return queryResults;
     }
 
     /**
@@ -104,20 +156,4 @@ public class KSqlUtils {
         return new Gson().toJson(results);
     }
 
-    private static String createTempJson() throws IOException {
-        JSONObject object = new JSONObject();
-        object.put("version", "1.21.0");
-        object.put("defaultSchema", "db");
-        JSONArray array = new JSONArray();
-        JSONObject tmp = new JSONObject();
-        tmp.put("name", "db");
-        tmp.put("type", "custom");
-        tmp.put("factory", "org.smartloli.kafka.eagle.core.sql.schema.JSqlSchemaFactory");
-        JSONObject tmp2 = new JSONObject();
-        tmp.put("operand", tmp2.put("database", "ke_memory_db"));
-        array.add(tmp);
-        object.put("schemas", array);
-        return object.toJSONString();
-    }
-
 }
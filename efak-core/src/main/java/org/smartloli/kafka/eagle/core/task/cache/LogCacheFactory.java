@@ -17,10 +17,15 @@
  */
 package org.smartloli.kafka.eagle.core.task.cache;
 
-import org.smartloli.kafka.eagle.common.util.LRUCacheUtils;
+import org.smartloli.kafka.eagle.common.util.RefreshAheadCache;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
- * It is used to store the log of shard sub scan task.
+ * It is used to store the log of shard sub scan task, the log of a job is
+ * kept for an hour after its last shard finished. The lines of a job are
+ * appended to a queue and only joined when the log is read.
  *
  * @author smartloli.
  * <p>
@@ -28,8 +33,28 @@ import org.smartloli.kafka.eagle.common.util.LRUCacheUtils;
  */
 public class LogCacheFactory {
 
-    public static LRUCacheUtils LOG_RECORDS = new LRUCacheUtils();
+    public static final RefreshAheadCache<String, Queue<String>> LOG_RECORDS = new RefreshAheadCache<>("ksql-log", 5000, 60 * 60 * 1000L);
 
     private LogCacheFactory() {
     }
+
+    /**
+     * Append a line to the log of the job.
+     */
+    public static void append(String jobId, String log) {
+        Queue<String> lines = new ConcurrentLinkedQueue<>();
+        lines.add(log);
+        LOG_RECORDS.merge(jobId, lines, (earliest, latest) -> {
+            earliest.addAll(latest);
+            return earliest;
+        });
+    }
+
+    /**
+     * Lines of the job joined by new lines, null when none is kept.
+     */
+    public static String getLog(String jobId) {
+        Queue<String> lines = LOG_RECORDS.getIfPresent(jobId);
+        return lines == null ? null : String.join("\n", lines);
+    }
 }
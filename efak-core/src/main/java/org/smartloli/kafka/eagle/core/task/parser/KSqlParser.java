@@ -17,22 +17,28 @@
  */
 package org.smartloli.kafka.eagle.core.task.parser;
 
-import com.alibaba.fastjson.JSONObject;
 import org.apache.calcite.config.Lex;
 import org.apache.calcite.sql.*;
+import org.apache.calcite.sql.fun.SqlLikeOperator;
 import org.apache.calcite.sql.parser.SqlParser;
+import org.apache.calcite.sql.type.SqlTypeName;
 import org.smartloli.kafka.eagle.common.util.KConstants;
-import org.smartloli.kafka.eagle.common.util.LoggerUtils;
-import org.smartloli.kafka.eagle.common.util.StrUtils;
+import org.smartloli.kafka.eagle.common.util.RefreshAheadCache;
+import org.smartloli.kafka.eagle.common.util.SystemConfigUtils;
 import org.smartloli.kafka.eagle.core.sql.schema.TopicSchema;
+import org.smartloli.kafka.eagle.core.task.parser.KSqlPlan.*;
 import org.smartloli.kafka.eagle.core.task.strategy.FieldSchemaStrategy;
 import org.smartloli.kafka.eagle.core.task.strategy.KSqlStrategy;
 
-import java.util.Arrays;
+import java.util.*;
 
 /**
  * The filter conditions of kafka sql are analyzed and distributed execution
  * strategy is generated.
+ * <p>
+ * The sql is planned once from the calcite syntax tree into a
+ * {@link KSqlPlan}, cached by its normalized text in 'efak.sql.plan.cache.size'
+ * entries, so the master, the worknodes and the single node query share it.
  *
  * @author smartloli.
  * <p>
@@ -40,221 +46,472 @@ import java.util.Arrays;
  */
 public class KSqlParser {
 
+    public static final RefreshAheadCache<String, KSqlPlan> PLAN_CACHE = new RefreshAheadCache<>("ksql-plan", SystemConfigUtils.getIntProperty("efak.sql.plan.cache.size", 1024), 0L, 0L, KSqlParser::compile);
+
+    private static final List<String> ALL_COLUMNS = Arrays.asList(TopicSchema.PARTITION, TopicSchema.OFFSET, TopicSchema.MSG, TopicSchema.TIMESPAN, TopicSchema.DATE);
+
+    /**
+     * Aggregate functions of calcite, the parser leaves the calls unresolved
+     * so they are known by their name.
+     */
+    private static final Set<String> AGGREGATES = new HashSet<>(Arrays.asList("COUNT", "SUM", "SUM0", "$SUM0", "AVG", "MIN", "MAX", "STDDEV", "STDDEV_POP", "STDDEV_SAMP", "VAR_POP", "VAR_SAMP", "VARIANCE", "COLLECT", "LISTAGG", "ANY_VALUE", "SINGLE_VALUE", "EVERY", "SOME", "BIT_AND", "BIT_OR", "FUSION", "REGR_COUNT", "COVAR_POP", "COVAR_SAMP"));
+
     private KSqlParser() {
     }
 
+    /**
+     * Plan of the sql, null when it can not be parsed.
+     */
+    public static KSqlPlan plan(String sql) {
+        if (sql == null || sql.trim().isEmpty()) {
+            return null;
+        }
+        return PLAN_CACHE.get(normalize(sql));
+    }
+
     /**
      * Parse SQL filter conditions, partition, topic name and other fields.
      */
     public static KSqlStrategy parseQueryKSql(String sql, String cluster) {
         KSqlStrategy ksql = new KSqlStrategy();
         ksql.setCluster(cluster);
-        try {
-            SqlParser.Config config = SqlParser.configBuilder().setLex(Lex.JAVA).build();
-            SqlParser sqlParser = SqlParser.create(sql, config);
-            SqlNode sqlNode = sqlParser.parseStmt();
-            parseStmt(sqlNode, ksql);
-        } catch (Exception e) {
-            LoggerUtils.print(KSqlParser.class).error("Parser kafka sql has error, msg is ", e);
+        KSqlPlan plan = plan(sql);
+        if (plan == null) {
+            return ksql;
+        }
+        ksql.setSql(plan.getSql());
+        ksql.setTopic(plan.getTopic());
+        ksql.setColumns(new ArrayList<>(plan.getColumns()));
+        ksql.setPartitions(new ArrayList<>(plan.getPartitions()));
+        ksql.setLimit(plan.getLimit());
+        for (Expr conjunct : plan.conjuncts()) {
+            FieldSchemaStrategy field = fieldSchema(conjunct);
+            if (field != null) {
+                ksql.getFieldSchema().add(field);
+            }
+        }
+        if (plan.getOrderBy() != null) {
+            FieldSchemaStrategy field = new FieldSchemaStrategy();
+            field.setKey(plan.getOrderBy());
+            field.setType(KConstants.KSQL.ORDER_BY);
+            field.setValue(plan.isDesc() ? KConstants.KSQL.ORDER_BY_DESC : KConstants.KSQL.ORDER_BY_ASC);
+            ksql.getFieldSchema().add(field);
         }
         return ksql;
     }
 
-    private static JSONObject isIncludeType(String condition) {
-        JSONObject result = new JSONObject();
-        for (String compare : KConstants.KSQL.COMPARE_CONDITIONS) {
-            if (condition.contains(compare)) {
-                result.put("status", true);
-                result.put("type", compare);
-                return result;
+    /**
+     * Collapse the whitespace outside of quoted literals and drop the
+     * trailing semicolons, so the same query typed twice shares its plan.
+     */
+    static String normalize(String sql) {
+        StringBuilder normalized = new StringBuilder(sql.length());
+        boolean quoted = false;
+        boolean space = false;
+        for (char c : sql.trim().toCharArray()) {
+            if (c == '\'') {
+                quoted = !quoted;
             }
+            if (!quoted && Character.isWhitespace(c)) {
+                space = true;
+                continue;
+            }
+            if (space && normalized.length() > 0) {
+                normalized.append(' ');
+            }
+            space = false;
+            normalized.append(c);
         }
-        result.put("status", false);
-        return result;
+        int end = normalized.length();
+        while (end > 0 && (normalized.charAt(end - 1) == ';' || normalized.charAt(end - 1) == ' ')) {
+            end--;
+        }
+        return normalized.substring(0, end);
     }
 
-    private static void parseStmt(SqlNode sqlNode, KSqlStrategy ksql) {
-        SqlKind sqlKind = sqlNode.getKind();
-        switch (sqlKind) {
-            case SELECT:
-                String topic = "";
-                SqlNode sqlColumns = ((SqlSelect) sqlNode).getSelectList();
-                SqlNode sqlFrom = ((SqlSelect) sqlNode).getFrom();
-                SqlNode sqlWhere = ((SqlSelect) sqlNode).getWhere();
-                // parser columns
-                if (sqlColumns.toString().contains("*")) {
-                    ksql.setColumns(Arrays.asList(TopicSchema.PARTITION, TopicSchema.OFFSET, TopicSchema.MSG, TopicSchema.TIMESPAN, TopicSchema.DATE));
-                } else {
-                    String[] columns = sqlColumns.toString().split(",");
-                    for (String column : columns) {
-                        if (column.contains("AS")) {
-                            ksql.getColumns().add(column.split("AS")[1].trim().replaceAll("`", ""));
-                        } else {
-                            ksql.getColumns().add(column.trim().replaceAll("`", ""));
-                        }
-                    }
-                }
+    private static KSqlPlan compile(String sql) throws Exception {
+        SqlParser.Config config = SqlParser.configBuilder().setLex(Lex.JAVA).build();
+        SqlNode sqlNode = SqlParser.create(sql, config).parseQuery();
+        SqlNodeList orderList = null;
+        SqlNode fetch = null;
+        if (sqlNode.getKind() == SqlKind.ORDER_BY) {
+            SqlOrderBy sqlOrderBy = (SqlOrderBy) sqlNode;
+            orderList = sqlOrderBy.orderList;
+            fetch = sqlOrderBy.fetch;
+            sqlNode = sqlOrderBy.query;
+        }
+        if (sqlNode.getKind() != SqlKind.SELECT) {
+            // join and union are reserved interfaces
+            throw new IllegalArgumentException("Kafka sql[" + sql + "] is not a select of one topic.");
+        }
+        SqlSelect sqlSelect = (SqlSelect) sqlNode;
+        if (orderList == null || orderList.size() == 0) {
+            orderList = sqlSelect.getOrderList();
+        }
+        if (fetch == null) {
+            fetch = sqlSelect.getFetch();
+        }
 
-                if (sqlFrom.getKind() == SqlKind.IDENTIFIER) {
-                    topic = sqlFrom.toString();
-                } else {
-                    SqlBasicCall sqlBasicCall = (SqlBasicCall) sqlFrom;
-                    if (sqlBasicCall.getKind() == SqlKind.AS && sqlBasicCall.operands.length > 0) {
-                        topic = sqlBasicCall.operands[0].toString();
-                    }
-                }
-                ksql.setTopic(topic);
-                SqlBasicCall sqlBasicCallWhere = (SqlBasicCall) sqlWhere;
-                String whereSql = sqlBasicCallWhere.toString();
-                String[] conditions = whereSql.split(KConstants.KSQL.AND);
-                for (String condition : conditions) {
-                    JSONObject compareObject = isIncludeType(condition);
-                    if (condition.contains(KConstants.KSQL.IN)) {// partition
-                        String[] partitionStrs = condition.split(KConstants.KSQL.IN)[1].split(KConstants.KSQL.REG_LB)[1].split(KConstants.KSQL.REG_RB)[0].split(",");
-                        ksql.getPartitions().addAll(StrUtils.stringsConvertIntegers(partitionStrs));
-                    } else if (compareObject.getBoolean("status") && !condition.contains(KConstants.KSQL.LB) && !condition.contains(KConstants.KSQL.JSON)) {
-                        String key = condition.split(compareObject.getString("type"))[0];
-                        String value = condition.split(compareObject.getString("type"))[1];
-                        FieldSchemaStrategy field = new FieldSchemaStrategy();
-                        field.setKey(key.trim());
-                        field.setType(compareObject.getString("type"));
-                        field.setValue(value.trim().replaceAll("'", ""));
-                        ksql.getFieldSchema().add(field);
-                    } else if (condition.contains(KConstants.KSQL.LIKE) && !condition.contains(KConstants.KSQL.JSON)) {
-                        if (condition.contains(KConstants.KSQL.OR)) {
-                            String[] conditionChilds = condition.split(KConstants.KSQL.OR);
-                            for (int i = 0; i < conditionChilds.length; i++) {
-                                String key = "";
-                                String value = "";
-                                if (i == 0) {// start
-                                    key = conditionChilds[i].split(KConstants.KSQL.REG_LB)[1].split(KConstants.KSQL.LIKE)[0];
-                                    value = conditionChilds[i].split(KConstants.KSQL.REG_LB)[1].split(KConstants.KSQL.LIKE)[1];
-                                } else if (i == (conditionChilds.length - 1)) {// end
-                                    key = conditionChilds[i].split(KConstants.KSQL.REG_RB)[0].split(KConstants.KSQL.LIKE)[0];
-                                    value = conditionChilds[i].split(KConstants.KSQL.REG_RB)[0].split(KConstants.KSQL.LIKE)[1];
-                                } else {// middle
-                                    key = conditionChilds[i].split(KConstants.KSQL.LIKE)[0];
-                                    value = conditionChilds[i].split(KConstants.KSQL.LIKE)[1];
-                                }
-                                FieldSchemaStrategy field = new FieldSchemaStrategy();
-                                field.setKey(key.trim());
-                                field.setType(KConstants.KSQL.LIKE);
-                                field.setValue(value.trim().replaceAll("%", "").replaceAll("'", ""));
-                                ksql.getFieldSchema().add(field);
-                            }
-                        } else {
-                            String key = condition.split(KConstants.KSQL.LIKE)[0];
-                            String value = condition.split(KConstants.KSQL.LIKE)[1];
-                            FieldSchemaStrategy field = new FieldSchemaStrategy();
-                            field.setKey(key.trim());
-                            field.setType(KConstants.KSQL.LIKE);
-                            field.setValue(value.trim().replaceAll("'", "").replaceAll("%", ""));
-                            ksql.getFieldSchema().add(field);
-                        }
-                    } else if (condition.contains(KConstants.KSQL.JSON)) {
-                        if (condition.contains(KConstants.KSQL.LIKE)) {
-                            String key = condition.split(KConstants.KSQL.LIKE)[0];
-                            String value = condition.split(KConstants.KSQL.LIKE)[1];
-                            FieldSchemaStrategy field = new FieldSchemaStrategy();
-                            field.setKey(key.split("'")[1].split("'")[0].trim());
-                            field.setType(KConstants.KSQL.LIKE);
-                            field.setValue(value.trim().replaceAll("'", "").replaceAll("%", ""));
-                            if (condition.contains(KConstants.KSQL.JSONS)) {
-                                field.setJsonsUdf(true);
-                            } else {
-                                field.setJsonUdf(true);
-                            }
-                            ksql.getFieldSchema().add(field);
-                        } else if (compareObject.getBoolean("status")) {
-                            String key = condition.split(compareObject.getString("type"))[0];
-                            String value = condition.split(compareObject.getString("type"))[1];
-                            FieldSchemaStrategy field = new FieldSchemaStrategy();
-                            field.setKey(key.split("'")[1].split("'")[0].trim());
-                            field.setType(compareObject.getString("type"));
-                            field.setValue(value.trim().replaceAll("'", ""));
-                            if (condition.contains(KConstants.KSQL.JSONS)) {
-                                field.setJsonsUdf(true);
-                            } else {
-                                field.setJsonUdf(true);
-                            }
-                            ksql.getFieldSchema().add(field);
-                        }
+        List<SqlNode> unplanned = new ArrayList<>();
+        Expr where = sqlSelect.getWhere() == null ? KSqlPlan.ANY : predicate(sqlSelect.getWhere(), unplanned);
+        Set<Integer> partitions = prune(where);
+        String orderBy = null;
+        boolean desc = false;
+        if (orderList != null && orderList.size() > 0) {
+            SqlNode item = orderList.get(0);
+            if (item.getKind() == SqlKind.DESCENDING) {
+                desc = true;
+                item = ((SqlCall) item).operand(0);
+            }
+            Field field = field(item);
+            orderBy = field == null ? item.toString() : field.getUdf() == Udf.NONE ? field.getColumn() : field.getKey();
+        }
+        long limit = 0L;
+        if (fetch instanceof SqlLiteral) {
+            limit = Long.parseLong(String.valueOf(((SqlLiteral) fetch).toValue()));
+        }
+        Set<String> references = new HashSet<>();
+        for (SqlNode column : sqlSelect.getSelectList()) {
+            if (column instanceof SqlIdentifier && ((SqlIdentifier) column).isStar()) {
+                references.addAll(ALL_COLUMNS);
+            } else {
+                references(column, references);
+            }
+        }
+        references(sqlSelect.getWhere(), references);
+        references(sqlSelect.getGroup(), references);
+        references(sqlSelect.getHaving(), references);
+        references(orderList, references);
+        return new KSqlPlan(sql, topic(sqlSelect.getFrom()), columns(sqlSelect.getSelectList()), references, where, partitions == null ? new ArrayList<>() : new ArrayList<>(partitions), unplanned.isEmpty(), orderBy, desc, limit, aggregates(sqlSelect));
+    }
+
+    /**
+     * Whether the select aggregates its records, by a group by, a having, a
+     * distinct or an aggregate or window function in the select list.
+     */
+    private static boolean aggregates(SqlSelect sqlSelect) {
+        if (sqlSelect.isDistinct() || sqlSelect.getHaving() != null || (sqlSelect.getGroup() != null && sqlSelect.getGroup().size() > 0)) {
+            return true;
+        }
+        for (SqlNode column : sqlSelect.getSelectList()) {
+            if (aggregates(column)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean aggregates(SqlNode sqlNode) {
+        if (!(sqlNode instanceof SqlCall) || sqlNode.getKind() == SqlKind.SELECT) {
+            return false;
+        }
+        SqlCall call = (SqlCall) sqlNode;
+        if (call.getKind() == SqlKind.OVER || call.getOperator().isAggregator() || AGGREGATES.contains(call.getOperator().getName().toUpperCase(Locale.ROOT))) {
+            return true;
+        }
+        for (SqlNode operand : call.getOperandList()) {
+            if (aggregates(operand)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String topic(SqlNode sqlFrom) {
+        if (sqlFrom.getKind() == SqlKind.IDENTIFIER) {
+            return sqlFrom.toString();
+        } else if (sqlFrom.getKind() == SqlKind.AS) {
+            return ((SqlCall) sqlFrom).operand(0).toString();
+        }
+        throw new IllegalArgumentException("Kafka sql from[" + sqlFrom + "] is not a topic.");
+    }
+
+    private static List<String> columns(SqlNodeList sqlColumns) {
+        List<String> columns = new ArrayList<>();
+        for (SqlNode column : sqlColumns) {
+            if (column instanceof SqlIdentifier && ((SqlIdentifier) column).isStar()) {
+                columns.addAll(ALL_COLUMNS);
+            } else if (column.getKind() == SqlKind.AS) {
+                columns.add(((SqlCall) column).operand(1).toString());
+            } else {
+                columns.add(column.toString().replaceAll("`", ""));
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Collect the columns the node reads, a star inside a call such as
+     * count(*) reads none and a sub query reads them all.
+     */
+    private static void references(SqlNode sqlNode, Set<String> references) {
+        if (sqlNode == null) {
+            return;
+        }
+        if (sqlNode instanceof SqlIdentifier) {
+            SqlIdentifier identifier = (SqlIdentifier) sqlNode;
+            if (!identifier.isStar()) {
+                references.add(identifier.names.get(identifier.names.size() - 1));
+            }
+        } else if (sqlNode instanceof SqlNodeList) {
+            for (SqlNode item : (SqlNodeList) sqlNode) {
+                references(item, references);
+            }
+        } else if (sqlNode.getKind() == SqlKind.SELECT) {
+            references.addAll(ALL_COLUMNS);
+        } else if (sqlNode.getKind() == SqlKind.AS) {
+            references(((SqlCall) sqlNode).operand(0), references);
+        } else if (sqlNode instanceof SqlCall) {
+            for (SqlNode operand : ((SqlCall) sqlNode).getOperandList()) {
+                references(operand, references);
+            }
+        }
+    }
+
+    /**
+     * Predicate tree of a where clause, the leaves planned as {@link KSqlPlan#ANY}
+     * are added to unplanned.
+     */
+    private static Expr predicate(SqlNode sqlNode, List<SqlNode> unplanned) {
+        Expr leaf = KSqlPlan.ANY;
+        if (sqlNode instanceof SqlCall) {
+            SqlCall call = (SqlCall) sqlNode;
+            switch (call.getKind()) {
+                case AND:
+                case OR:
+                    List<Expr> children = new ArrayList<>();
+                    for (SqlNode operand : call.getOperandList()) {
+                        children.add(predicate(operand, unplanned));
                     }
-                }
-                break;
-            case JOIN:
-                SqlNode leftNode = ((SqlJoin) sqlNode).getLeft();
-                SqlNode rightNode = ((SqlJoin) sqlNode).getRight();
-                if (leftNode.getKind() == SqlKind.IDENTIFIER) {
-                    // reserved interface
-                } else {
-                    // reserved interface
-                }
-                if (rightNode.getKind() == SqlKind.IDENTIFIER) {
-                    // reserved interface
-                } else {
-                    // reserved interface
-                }
-                break;
-            case UNION:
-                SqlNode unionLeft = ((SqlBasicCall) sqlNode).getOperands()[0];
-                SqlNode unionRight = ((SqlBasicCall) sqlNode).getOperands()[1];
-                if (unionLeft.getKind() == SqlKind.IDENTIFIER) {
-                    // reserved interface
-                } else {
-                    // reserved interface
-                }
-                if (unionRight.getKind() == SqlKind.IDENTIFIER) {
-                    // reserved interface
-                } else {
-                    // reserved interface
-                }
-                break;
-            case ORDER_BY:
-                SqlOrderBy sqlOrderBy = (SqlOrderBy) sqlNode;
-                boolean isJSON = false;
-                boolean isJSONs = false;
-                if (((SqlOrderBy) sqlNode).query.toString().contains(KConstants.KSQL.JSON)) {
-                    if (((SqlOrderBy) sqlNode).query.toString().contains(KConstants.KSQL.JSONS)) {
-                        isJSONs = true;
+                    return call.getKind() == SqlKind.AND ? KSqlPlan.and(children) : KSqlPlan.or(children);
+                case NOT:
+                    return KSqlPlan.not(predicate(call.operand(0), unplanned));
+                case EQUALS:
+                    leaf = compare(call, Op.EQ);
+                    break;
+                case NOT_EQUALS:
+                    leaf = compare(call, Op.NE);
+                    break;
+                case GREATER_THAN:
+                    leaf = compare(call, Op.GT);
+                    break;
+                case GREATER_THAN_OR_EQUAL:
+                    leaf = compare(call, Op.GE);
+                    break;
+                case LESS_THAN:
+                    leaf = compare(call, Op.LT);
+                    break;
+                case LESS_THAN_OR_EQUAL:
+                    leaf = compare(call, Op.LE);
+                    break;
+                case LIKE:
+                    leaf = like(call);
+                    break;
+                case IN:
+                    leaf = in(call);
+                    break;
+                case NOT_IN:
+                    leaf = KSqlPlan.not(in(call));
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (leaf == KSqlPlan.ANY) {
+            unplanned.add(sqlNode);
+        }
+        return leaf;
+    }
+
+    private static Expr compare(SqlCall call, Op op) {
+        Field field = field(call.operand(0));
+        SqlNode value = call.operand(1);
+        if (field == null) {// literal on the left, such as 100 < offset
+            field = field(call.operand(1));
+            value = call.operand(0);
+            op = flip(op);
+        }
+        String literal = field == null ? null : literal(field, value);
+        if (literal == null || (!field.isNumeric() && op != Op.EQ && op != Op.NE)) {
+            return KSqlPlan.ANY;
+        }
+        if (TopicSchema.PARTITION.equals(field.getColumn()) && Long.parseLong(literal) == KConstants.Kafka.ALL_PARTITION) {
+            return KSqlPlan.ANY;
+        }
+        return new Compare(field, op, literal);
+    }
+
+    private static Expr like(SqlCall call) {
+        Field field = field(call.operand(0));
+        String pattern = field == null || field.isNumeric() || call.operandCount() > 2 ? null : literal(field, call.operand(1));
+        if (pattern == null) {// escaped patterns are left to calcite
+            return KSqlPlan.ANY;
+        }
+        Expr like = new Like(field, pattern);
+        boolean negated = call.getOperator() instanceof SqlLikeOperator && ((SqlLikeOperator) call.getOperator()).isNegated();
+        return negated ? KSqlPlan.not(like) : like;
+    }
+
+    private static Expr in(SqlCall call) {
+        Field field = field(call.operand(0));
+        if (field == null || !(call.operand(1) instanceof SqlNodeList)) {
+            return KSqlPlan.ANY;
+        }
+        List<String> values = new ArrayList<>();
+        for (SqlNode value : (SqlNodeList) call.operand(1)) {
+            String literal = literal(field, value);
+            if (literal == null) {
+                return KSqlPlan.ANY;
+            }
+            values.add(literal);
+        }
+        if (TopicSchema.PARTITION.equals(field.getColumn()) && values.contains(String.valueOf(KConstants.Kafka.ALL_PARTITION))) {
+            return KSqlPlan.ANY;// all partitions
+        }
+        return new In(field, values);
+    }
+
+    /**
+     * A topic column but the date, or JSON/JSONS of the message and a key.
+     */
+    private static Field field(SqlNode sqlNode) {
+        if (sqlNode instanceof SqlIdentifier) {
+            SqlIdentifier identifier = (SqlIdentifier) sqlNode;
+            String column = identifier.names.get(identifier.names.size() - 1);
+            if (TopicSchema.DATE.equals(column) || !ALL_COLUMNS.contains(column)) {
+                return null;
+            }
+            return new Field(column, null, Udf.NONE);
+        }
+        if (sqlNode.getKind() != SqlKind.OTHER_FUNCTION) {
+            return null;
+        }
+        SqlCall call = (SqlCall) sqlNode;
+        String name = call.getOperator().getName();
+        if ((!KConstants.KSQL.JSON.equals(name) && !KConstants.KSQL.JSONS.equals(name)) || call.operandCount() != 2) {
+            return null;
+        }
+        Field message = field(call.operand(0));
+        if (message == null || !TopicSchema.MSG.equals(message.getColumn()) || !isText(call.operand(1))) {
+            return null;
+        }
+        String key = String.valueOf(((SqlLiteral) call.operand(1)).toValue());
+        return new Field(TopicSchema.MSG, key, KConstants.KSQL.JSON.equals(name) ? Udf.JSON : Udf.JSONS);
+    }
+
+    /**
+     * Value of a literal compared with the field, null when calcite would
+     * have to cast it.
+     */
+    private static String literal(Field field, SqlNode sqlNode) {
+        if (!(sqlNode instanceof SqlLiteral) || ((SqlLiteral) sqlNode).getTypeName() == SqlTypeName.NULL) {
+            return null;
+        }
+        String value = String.valueOf(((SqlLiteral) sqlNode).toValue());
+        if (!field.isNumeric()) {
+            return isText(sqlNode) ? value : null;
+        }
+        try {
+            Long.parseLong(value);
+            return value;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static boolean isText(SqlNode sqlNode) {
+        return sqlNode instanceof SqlLiteral && ((SqlLiteral) sqlNode).getTypeName() == SqlTypeName.CHAR;
+    }
+
+    private static Op flip(Op op) {
+        switch (op) {
+            case GT:
+                return Op.LT;
+            case GE:
+                return Op.LE;
+            case LT:
+                return Op.GT;
+            case LE:
+                return Op.GE;
+            default:
+                return op;
+        }
+    }
+
+    /**
+     * Partitions the predicate can match, null when it can match any.
+     */
+    private static Set<Integer> prune(Expr expr) {
+        if (expr instanceof In && TopicSchema.PARTITION.equals(((In) expr).getField().getColumn())) {
+            Set<Integer> partitions = new TreeSet<>();
+            for (String value : ((In) expr).getValues()) {
+                partitions.add(Integer.parseInt(value));
+            }
+            return partitions;
+        } else if (expr instanceof Compare && ((Compare) expr).getOp() == Op.EQ && TopicSchema.PARTITION.equals(((Compare) expr).getField().getColumn())) {
+            return new TreeSet<>(Collections.singleton(Integer.parseInt(((Compare) expr).getValue())));
+        } else if (expr instanceof And) {
+            Set<Integer> partitions = null;
+            for (Expr child : ((And) expr).getChildren()) {
+                Set<Integer> pruned = prune(child);
+                if (pruned != null) {
+                    if (partitions == null) {
+                        partitions = pruned;
                     } else {
-                        isJSON = true;
-                    }
-                }
-                if (!StrUtils.isNull(sqlOrderBy.fetch.toString())) {
-                    long limit = 0L;
-                    try {
-                        limit = Long.parseLong(sqlOrderBy.fetch.toString());
-                    } catch (Exception e) {
-                        LoggerUtils.print(KSqlParser.class).error("Parser limit string to long has error, msg is ", e);
+                        partitions.retainAll(pruned);
                     }
-                    ksql.setLimit(limit);
                 }
-                if (sqlOrderBy.orderList.size() > 0) {
-                    SqlNode sqlZNode = sqlOrderBy.orderList.get(0);
-                    if (sqlZNode instanceof SqlBasicCall) {
-                        SqlBasicCall sqlBZNode = (SqlBasicCall) sqlZNode;
-                        FieldSchemaStrategy field = new FieldSchemaStrategy();
-                        field.setKey(sqlBZNode.operands[0].toString());
-                        field.setType(KConstants.KSQL.ORDER_BY);
-                        field.setValue(sqlBZNode.getOperator().toString());
-                        field.setJsonUdf(isJSON);
-                        field.setJsonsUdf(isJSONs);
-                        ksql.getFieldSchema().add(field);
-                    } else {
-                        FieldSchemaStrategy field = new FieldSchemaStrategy();
-                        field.setKey(sqlZNode.toString());
-                        field.setType(KConstants.KSQL.ORDER_BY);
-                        field.setValue(KConstants.KSQL.ORDER_BY_DEFAULT);
-                        field.setJsonUdf(isJSON);
-                        field.setJsonsUdf(isJSONs);
-                        ksql.getFieldSchema().add(field);
-                    }
+            }
+            return partitions;
+        } else if (expr instanceof Or) {
+            Set<Integer> partitions = new TreeSet<>();
+            for (Expr child : ((Or) expr).getChildren()) {
+                Set<Integer> pruned = prune(child);
+                if (pruned == null) {
+                    return null;
                 }
-                parseStmt(sqlOrderBy.query, ksql);
-            default:
-                break;
+                partitions.addAll(pruned);
+            }
+            return partitions;
+        }
+        return null;
+    }
+
+    /**
+     * The flat filter of a conjunct still read by the master to narrow the
+     * scanned offsets, null when it has none.
+     */
+    private static FieldSchemaStrategy fieldSchema(Expr conjunct) {
+        Field field;
+        String type;
+        String value;
+        if (conjunct instanceof Compare && ((Compare) conjunct).getOp() != Op.NE) {
+            field = ((Compare) conjunct).getField();
+            type = ((Compare) conjunct).getOp().getSymbol();
+            value = ((Compare) conjunct).getValue();
+            if (TopicSchema.PARTITION.equals(field.getColumn()) || TopicSchema.OFFSET.equals(field.getColumn())) {
+                return null;
+            }
+        } else if (conjunct instanceof Like) {
+            field = ((Like) conjunct).getField();
+            type = KConstants.KSQL.LIKE;
+            value = ((Like) conjunct).getPattern();
+            int from = value.startsWith("%") ? 1 : 0;
+            int to = value.endsWith("%") && value.length() > from ? value.length() - 1 : value.length();
+            value = value.substring(from, to);
+            if (value.contains("%") || value.contains("_")) {
+                return null;
+            }
+        } else {
+            return null;
         }
+        FieldSchemaStrategy fieldSchema = new FieldSchemaStrategy();
+        fieldSchema.setKey(field.getUdf() == Udf.NONE ? field.getColumn() : field.getKey());
+        fieldSchema.setType(type);
+        fieldSchema.setValue(value);
+        fieldSchema.setJsonUdf(field.getUdf() == Udf.JSON);
+        fieldSchema.setJsonsUdf(field.getUdf() == Udf.JSONS);
+        return fieldSchema;
     }
 
 }
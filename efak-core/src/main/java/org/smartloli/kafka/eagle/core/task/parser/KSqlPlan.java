@@ -0,0 +1,396 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.core.task.parser;
+
+import org.smartloli.kafka.eagle.core.sql.schema.TopicSchema;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Logical plan of a kafka sql, built once by {@link KSqlParser#plan} from the
+ * calcite syntax tree and shared by the single node and the distributed
+ * query.
+ * <p>
+ * The where clause is kept as a predicate tree of AND, OR and NOT over
+ * comparisons, LIKE and IN of the topic columns or of a JSON/JSONS field of
+ * the message. Every leaf evaluates like calcite does, except that a leaf
+ * the scan cannot evaluate is {@link #ANY} and may hold, so the tree never
+ * drops a record the query would keep. Calcite still runs the whole sql on
+ * the records kept.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public final class KSqlPlan {
+
+    /**
+     * A leaf the scan can not evaluate, any record may match it.
+     */
+    public static final Expr ANY = new Expr() {
+        @Override
+        public String toString() {
+            return "ANY";
+        }
+    };
+
+    private final String sql;
+    private final String topic;
+    private final List<String> columns;
+    private final Set<String> references;
+    private final Expr where;
+    private final List<Integer> partitions;
+    private final boolean exact;
+    private final String orderBy;
+    private final boolean desc;
+    private final long limit;
+    private final boolean aggregate;
+
+    KSqlPlan(String sql, String topic, List<String> columns, Set<String> references, Expr where, List<Integer> partitions, boolean exact, String orderBy, boolean desc, long limit, boolean aggregate) {
+        this.sql = sql;
+        this.topic = topic;
+        this.columns = Collections.unmodifiableList(columns);
+        this.references = Collections.unmodifiableSet(references);
+        this.where = where;
+        this.partitions = Collections.unmodifiableList(partitions);
+        this.exact = exact;
+        this.orderBy = orderBy;
+        this.desc = desc;
+        this.limit = limit;
+        this.aggregate = aggregate;
+    }
+
+    /**
+     * The normalized sql the plan was built from.
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    /**
+     * Names of the selected columns, the alias when there is one.
+     */
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    /**
+     * Whether the sql reads the topic column anywhere, so a scan can leave
+     * out the columns it never reads.
+     */
+    public boolean reads(String column) {
+        return references.contains(column);
+    }
+
+    public Expr getWhere() {
+        return where;
+    }
+
+    /**
+     * Partitions the where clause can match, empty when every partition may.
+     */
+    public List<Integer> getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * Whether the predicate tree evaluates the whole where clause, no leaf of
+     * it was left {@link #ANY}, so every record the scan keeps is a row of a
+     * plain filter query.
+     */
+    public boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * Key of the first order by item, null without order by.
+     */
+    public String getOrderBy() {
+        return orderBy;
+    }
+
+    public boolean isDesc() {
+        return desc;
+    }
+
+    /**
+     * Rows fetched, 0 without limit.
+     */
+    public long getLimit() {
+        return limit;
+    }
+
+    /**
+     * Whether the sql aggregates, groups or is distinct, so its limit is
+     * applied to rows built from every record and not to the records read.
+     */
+    public boolean isAggregate() {
+        return aggregate;
+    }
+
+    /**
+     * Predicates of the where clause joined by its top level AND.
+     */
+    public List<Expr> conjuncts() {
+        if (where instanceof And) {
+            return ((And) where).children;
+        }
+        return where == ANY ? Collections.<Expr>emptyList() : Collections.singletonList(where);
+    }
+
+    static Expr and(List<Expr> children) {
+        List<Expr> kept = new ArrayList<>();
+        for (Expr child : children) {
+            if (child instanceof And) {
+                kept.addAll(((And) child).children);
+            } else if (child != ANY) {
+                kept.add(child);
+            }
+        }
+        if (kept.isEmpty()) {
+            return ANY;
+        }
+        return kept.size() == 1 ? kept.get(0) : new And(kept);
+    }
+
+    static Expr or(List<Expr> children) {
+        List<Expr> kept = new ArrayList<>();
+        for (Expr child : children) {
+            if (child == ANY) {
+                return ANY;
+            } else if (child instanceof Or) {
+                kept.addAll(((Or) child).children);
+            } else {
+                kept.add(child);
+            }
+        }
+        return kept.size() == 1 ? kept.get(0) : new Or(kept);
+    }
+
+    static Expr not(Expr child) {
+        if (child == ANY) {
+            return ANY;
+        }
+        return child instanceof Not ? ((Not) child).child : new Not(child);
+    }
+
+    private static String join(List<Expr> children, String separator) {
+        StringBuilder text = new StringBuilder("(");
+        for (int i = 0; i < children.size(); i++) {
+            text.append(i == 0 ? "" : separator).append(children.get(i));
+        }
+        return text.append(")").toString();
+    }
+
+    public enum Udf {
+        NONE, JSON, JSONS
+    }
+
+    public enum Op {
+        EQ("="), NE("<>"), GT(">"), GE(">="), LT("<"), LE("<=");
+
+        private final String symbol;
+
+        Op(String symbol) {
+            this.symbol = symbol;
+        }
+
+        public String getSymbol() {
+            return symbol;
+        }
+    }
+
+    /**
+     * A column of the topic, or a key read from the message by a udf.
+     */
+    public static final class Field {
+        private final String column;
+        private final String key;
+        private final Udf udf;
+
+        Field(String column, String key, Udf udf) {
+            this.column = column;
+            this.key = key;
+            this.udf = udf;
+        }
+
+        public String getColumn() {
+            return column;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public Udf getUdf() {
+            return udf;
+        }
+
+        /**
+         * Whether the field is one of the numeric columns of the topic.
+         */
+        public boolean isNumeric() {
+            return udf == Udf.NONE && (TopicSchema.PARTITION.equals(column) || TopicSchema.OFFSET.equals(column) || TopicSchema.TIMESPAN.equals(column));
+        }
+
+        @Override
+        public String toString() {
+            return udf == Udf.NONE ? column : udf + "(" + column + ",'" + key + "')";
+        }
+    }
+
+    public abstract static class Expr {
+    }
+
+    public static final class And extends Expr {
+        private final List<Expr> children;
+
+        private And(List<Expr> children) {
+            this.children = Collections.unmodifiableList(children);
+        }
+
+        public List<Expr> getChildren() {
+            return children;
+        }
+
+        @Override
+        public String toString() {
+            return join(children, " AND ");
+        }
+    }
+
+    public static final class Or extends Expr {
+        private final List<Expr> children;
+
+        private Or(List<Expr> children) {
+            this.children = Collections.unmodifiableList(children);
+        }
+
+        public List<Expr> getChildren() {
+            return children;
+        }
+
+        @Override
+        public String toString() {
+            return join(children, " OR ");
+        }
+    }
+
+    public static final class Not extends Expr {
+        private final Expr child;
+
+        private Not(Expr child) {
+            this.child = child;
+        }
+
+        public Expr getChild() {
+            return child;
+        }
+
+        @Override
+        public String toString() {
+            return "NOT " + child;
+        }
+    }
+
+    public static final class Compare extends Expr {
+        private final Field field;
+        private final Op op;
+        private final String value;
+
+        Compare(Field field, Op op, String value) {
+            this.field = field;
+            this.op = op;
+            this.value = value;
+        }
+
+        public Field getField() {
+            return field;
+        }
+
+        public Op getOp() {
+            return op;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return field + " " + op.symbol + " '" + value + "'";
+        }
+    }
+
+    public static final class Like extends Expr {
+        private final Field field;
+        private final String pattern;
+
+        Like(Field field, String pattern) {
+            this.field = field;
+            this.pattern = pattern;
+        }
+
+        public Field getField() {
+            return field;
+        }
+
+        /**
+         * Pattern with '%' and '_' wildcards and no escape.
+         */
+        public String getPattern() {
+            return pattern;
+        }
+
+        @Override
+        public String toString() {
+            return field + " LIKE '" + pattern + "'";
+        }
+    }
+
+    public static final class In extends Expr {
+        private final Field field;
+        private final List<String> values;
+
+        In(Field field, List<String> values) {
+            this.field = field;
+            this.values = Collections.unmodifiableList(values);
+        }
+
+        public Field getField() {
+            return field;
+        }
+
+        public List<String> getValues() {
+            return values;
+        }
+
+        @Override
+        public String toString() {
+            return field + " IN " + values;
+        }
+    }
+
+}
@@ -28,6 +28,11 @@ import org.apache.thrift.transport.layered.TFramedTransport;
 import org.smartloli.kafka.eagle.common.util.LoggerUtils;
 import org.smartloli.kafka.eagle.common.util.SystemConfigUtils;
 
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+
 /**
  * It is used to receive the tasks sent by the client,
  * assign the tasks to the specified workers,
@@ -41,34 +46,90 @@ import org.smartloli.kafka.eagle.common.util.SystemConfigUtils;
 public class MasterNodeClient {
 
     private static final int DEFAULT_TIME_OUT = 30 * 1000;
+    private static final int POOL_SIZE = Math.max(1, SystemConfigUtils.getIntProperty("efak.worknode.rpc.pool.size", 8));
+    private static final long IDLE_TIMEOUT_MS = SystemConfigUtils.getLongProperty("efak.worknode.rpc.idle.ms", 60 * 1000L);
+
+    /**
+     * Idle thrift connections of each worknode, keyed by host:port.
+     */
+    private static final Map<String, BlockingDeque<PooledClient>> IDLE_CLIENTS = new ConcurrentHashMap<>();
 
     private MasterNodeClient() {
 
     }
 
     /**
-     * Get worknode server metrics result.
+     * Get worknode server metrics result over a pooled connection. A failed
+     * call on a reused connection is retried once on a new one, since the
+     * worknode may have dropped it while idle.
      */
     public static String getResult(String host, int port, JSONObject object) {
+        String key = host + ":" + port;
+        String request = object.toJSONString();
+        for (int attempt = 0; attempt < 2; attempt++) {
+            PooledClient pooled = null;
+            try {
+                pooled = borrow(key, host, port);
+                String result = pooled.client.getResult(request);
+                release(key, pooled);
+                return result;
+            } catch (Exception e) {
+                if (pooled != null) {
+                    pooled.close();
+                }
+                if (pooled == null || !pooled.reused || attempt > 0) {
+                    LoggerUtils.print(MasterNodeClient.class).error("Get result from worknode[" + key + "] has error, msg is ", e);
+                    break;
+                }
+            }
+        }
+        return "";
+    }
+
+    private static PooledClient borrow(String key, String host, int port) throws TTransportException {
+        BlockingDeque<PooledClient> idles = IDLE_CLIENTS.get(key);
+        if (idles != null) {
+            PooledClient pooled;
+            while ((pooled = idles.pollFirst()) != null) {
+                if (pooled.transport.isOpen() && System.currentTimeMillis() - pooled.lastUsed < IDLE_TIMEOUT_MS) {
+                    pooled.reused = true;
+                    return pooled;
+                }
+                pooled.close();
+            }
+        }
         int timeout = SystemConfigUtils.getIntProperty("efak.worknode.rpc.timeout", DEFAULT_TIME_OUT);
-        TTransport transport = null;
-        try {
-            transport = new TFramedTransport(new TSocket(new TConfiguration(), host, port, timeout));
-        } catch (TTransportException e) {
-            e.printStackTrace();
-            LoggerUtils.print(MasterNodeClient.class).error("TSocket connect from worknode[" + host + ":" + port + "] has error, msg is ", e);
+        TTransport transport = new TFramedTransport(new TSocket(new TConfiguration(), host, port, timeout));
+        transport.open();
+        return new PooledClient(transport);
+    }
+
+    private static void release(String key, PooledClient pooled) {
+        pooled.lastUsed = System.currentTimeMillis();
+        BlockingDeque<PooledClient> idles = IDLE_CLIENTS.computeIfAbsent(key, k -> new LinkedBlockingDeque<>(POOL_SIZE));
+        if (!idles.offerFirst(pooled)) {
+            pooled.close();
         }
-        TProtocol protocol = new TCompactProtocol(transport);
-        WorkNodeService.Client client = new WorkNodeService.Client(protocol);
-        String result = "";
-        try {
-            transport.open();
-            result = client.getResult(object.toJSONString());
-        } catch (Exception e) {
-            LoggerUtils.print(MasterNodeClient.class).error("Get result from worknode[" + host + ":" + port + "] has error, msg is ", e);
-        } finally {
-            transport.close();
+    }
+
+    private static final class PooledClient {
+        private final TTransport transport;
+        private final WorkNodeService.Client client;
+        private volatile long lastUsed = System.currentTimeMillis();
+        private boolean reused = false;
+
+        private PooledClient(TTransport transport) {
+            TProtocol protocol = new TCompactProtocol(transport);
+            this.transport = transport;
+            this.client = new WorkNodeService.Client(protocol);
+        }
+
+        private void close() {
+            try {
+                transport.close();
+            } catch (Exception e) {
+                LoggerUtils.print(MasterNodeClient.class).debug("Close worknode transport has error, msg is " + e.getMessage());
+            }
         }
-        return result;
     }
 }
@@ -31,6 +31,7 @@ import org.smartloli.kafka.eagle.core.task.strategy.KSqlStrategy;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Receive and execute the assigned tasks of master.
@@ -41,37 +42,47 @@ import java.util.Map;
  */
 public class WorkNodeServiceHandler implements WorkNodeService.Iface {
 
-    private KSqlStrategy ksql;
-    private String type;
-    private String jobId;
-    private String key; // used by quartz ip key
-    private String cluster;
+    private static final AtomicInteger RUNNING_SCANS = new AtomicInteger();
+
+    /**
+     * The handler instance is shared by all concurrent requests of the thrift
+     * server, so a request is parsed into its own instance and never into
+     * fields of the handler.
+     */
+    private static final class Request {
+        private KSqlStrategy ksql;
+        private String type;
+        private String jobId;
+        private String key; // used by quartz ip key
+        private String cluster;
+    }
 
     @Override
     public String getResult(String jsonObject) throws TException {
         if (JSONUtils.isJsonObject(jsonObject)) {
             JSONObject object = JSON.parseObject(jsonObject);
+            Request request = new Request();
             if (object.getString(KConstants.Protocol.KEY).equals(KConstants.Protocol.HEART_BEAT)) {
-                this.type = KConstants.Protocol.HEART_BEAT;
-                this.cluster = object.getString(KConstants.Protocol.CLUSTER_NAME);
+                request.type = KConstants.Protocol.HEART_BEAT;
+                request.cluster = object.getString(KConstants.Protocol.CLUSTER_NAME);
             } else if (object.getString(KConstants.Protocol.KEY).equals(KConstants.Protocol.KSQL_QUERY)) {
-                this.type = KConstants.Protocol.KSQL_QUERY;
-                this.ksql = object.getObject(KConstants.Protocol.VALUE, KSqlStrategy.class);
+                request.type = KConstants.Protocol.KSQL_QUERY;
+                request.ksql = object.getObject(KConstants.Protocol.VALUE, KSqlStrategy.class);
             } else if (object.getString(KConstants.Protocol.KEY).equals(KConstants.Protocol.KSQL_QUERY_LOG)) {
-                this.type = KConstants.Protocol.KSQL_QUERY_LOG;
-                this.jobId = object.getString(KConstants.Protocol.JOB_ID);
+                request.type = KConstants.Protocol.KSQL_QUERY_LOG;
+                request.jobId = object.getString(KConstants.Protocol.JOB_ID);
             } else if (object.getString(KConstants.Protocol.KEY).equals(KConstants.Protocol.SHARD_TASK)) {
-                this.type = KConstants.Protocol.SHARD_TASK;
-                this.key = object.getString(KConstants.Protocol.KEY_BY_IP);
+                request.type = KConstants.Protocol.SHARD_TASK;
+                request.key = object.getString(KConstants.Protocol.KEY_BY_IP);
             }
-            return handler();
+            return handler(request);
         }
         return "";
     }
 
-    public String handler() {
+    private String handler(Request request) {
         String result = "";
-        if (KConstants.Protocol.HEART_BEAT.equals(this.type)) {//
+        if (KConstants.Protocol.HEART_BEAT.equals(request.type)) {//
             JSONObject object = new JSONObject();
             String memory = "<span class='badge badge-danger'>NULL</span>";
             long used = AppUtils.getInstance().getProcessMemUsed();
@@ -88,7 +99,7 @@ public class WorkNodeServiceHandler implements WorkNodeService.Iface {
 
             // get zkclient pool size
             int zkLimitSize = SystemConfigUtils.getIntProperty("kafka.zk.limit.size");
-            int zkCliPoolSize = KafkaZKSingletonUtils.getZkCliPoolSize(this.cluster);
+            int zkCliPoolSize = KafkaZKSingletonUtils.getZkCliPoolSize(request.cluster);
             int zkCliIdle = zkLimitSize - zkCliPoolSize;
             String zkCliSize = "";
             String zkCliStr = zkLimitSize + " | " + zkCliPoolSize;
@@ -108,19 +119,30 @@ public class WorkNodeServiceHandler implements WorkNodeService.Iface {
 
             object.put("cpu", "<span class='badge badge-secondary'>" + AppUtils.getInstance().getProcessCpu() + "%</span>");
             object.put("created", AppUtils.getInstance().getStartTime());
+            // raw capacity figures used by the master to size the scans sent here
+            object.put("cpu_value", AppUtils.getInstance().getProcessCpu());
+            object.put("memory_used", used);
+            object.put("memory_max", max);
+            object.put("processors", Runtime.getRuntime().availableProcessors());
+            object.put("scans", RUNNING_SCANS.get());
             JSONArray array = new JSONArray();
             array.add(object);
             List<JSONArray> results = new ArrayList<>();
             results.add(array);
             result = results.toString();
-        } else if (KConstants.Protocol.KSQL_QUERY.equals(this.type)) {
-            if (this.ksql != null) {
-                result = ShardSubScan.query(ksql).toString();
+        } else if (KConstants.Protocol.KSQL_QUERY.equals(request.type)) {
+            if (request.ksql != null) {
+                RUNNING_SCANS.incrementAndGet();
+                try {
+                    result = ShardSubScan.query(request.ksql).toString();
+                } finally {
+                    RUNNING_SCANS.decrementAndGet();
+                }
             }
-        } else if (KConstants.Protocol.KSQL_QUERY_LOG.equals(this.type)) {
-            if (!StrUtils.isNull(this.jobId)) {
-                if (LogCacheFactory.LOG_RECORDS.containsKey(this.jobId)) {
-                    String log = LogCacheFactory.LOG_RECORDS.get(this.jobId).toString();
+        } else if (KConstants.Protocol.KSQL_QUERY_LOG.equals(request.type)) {
+            if (!StrUtils.isNull(request.jobId)) {
+                String log = LogCacheFactory.getLog(request.jobId);
+                if (log != null) {
                     JSONObject object = new JSONObject();
                     object.put("log", log);
                     JSONArray array = new JSONArray();
@@ -130,14 +152,14 @@ public class WorkNodeServiceHandler implements WorkNodeService.Iface {
                     result = results.toString();
                 }
             }
-        } else if (KConstants.Protocol.SHARD_TASK.equals(this.type)) {
+        } else if (KConstants.Protocol.SHARD_TASK.equals(request.type)) {
             long stime = System.currentTimeMillis();
             Map<String, List<String>> shardTasks = ScheduleShardStrategy.getScheduleShardTask();
             LoggerUtils.print(this.getClass()).info("All shard task strategy, result: " + JSON.toJSONString(shardTasks));
-            if (shardTasks.containsKey(this.key)) {
-                result = JSON.toJSONString(ScheduleShardStrategy.getScheduleShardTask().get(this.key));
+            if (shardTasks.containsKey(request.key)) {
+                result = JSON.toJSONString(ScheduleShardStrategy.getScheduleShardTask().get(request.key));
             }
-            LoggerUtils.print(this.getClass()).info("Spent time [" + (System.currentTimeMillis() - stime) + "]ms, worknode[" + this.key + "] get task: " + result);
+            LoggerUtils.print(this.getClass()).info("Spent time [" + (System.currentTimeMillis() - stime) + "]ms, worknode[" + request.key + "] get task: " + result);
         }
         return result;
     }
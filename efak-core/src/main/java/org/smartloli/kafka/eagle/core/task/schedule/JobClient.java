@@ -22,15 +22,21 @@ import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import com.alibaba.fastjson.TypeReference;
 import com.google.gson.Gson;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.common.TopicPartition;
 import org.smartloli.kafka.eagle.common.util.*;
 import org.smartloli.kafka.eagle.core.factory.KafkaFactory;
 import org.smartloli.kafka.eagle.core.factory.KafkaService;
+import org.smartloli.kafka.eagle.core.factory.client.KafkaClientRegistry;
 import org.smartloli.kafka.eagle.core.factory.v2.BrokerFactory;
 import org.smartloli.kafka.eagle.core.factory.v2.BrokerService;
+import org.smartloli.kafka.eagle.core.sql.schema.TopicSchema;
 import org.smartloli.kafka.eagle.core.sql.tool.KSqlUtils;
 import org.smartloli.kafka.eagle.core.task.metrics.WorkNodeMetrics;
 import org.smartloli.kafka.eagle.core.task.parser.KSqlParser;
+import org.smartloli.kafka.eagle.core.task.parser.KSqlPlan;
 import org.smartloli.kafka.eagle.core.task.rpc.MasterNodeClient;
+import org.smartloli.kafka.eagle.core.task.strategy.FieldSchemaStrategy;
 import org.smartloli.kafka.eagle.core.task.strategy.KSqlStrategy;
 import org.smartloli.kafka.eagle.core.task.strategy.WorkNodeStrategy;
 
@@ -55,6 +61,12 @@ public class JobClient {
     private static BrokerService brokerService = new BrokerFactory().create();
     private static LRUCacheUtils cache = new LRUCacheUtils(1024);
 
+    /**
+     * Records per shard task, small enough that busy worknodes do not hold
+     * back the whole query.
+     */
+    private static final long SHARD_RECORDS = Math.max(1L, SystemConfigUtils.getLongProperty("efak.sql.shard.records", 50000L));
+
     public JobClient(ConcurrentHashMap<String, Object> taskLogs) {
         this.taskLogs = taskLogs;
     }
@@ -63,7 +75,15 @@ public class JobClient {
         JSONObject status = new JSONObject();
         LoggerUtils.print(JobClient.class).info("JobClient - Physics KSQL[" + sql + "]");
         long start = System.currentTimeMillis();
-        JSONObject resultObject = query(jobId, sql, cluster);
+        JSONObject resultObject;
+        try {
+            resultObject = query(jobId, sql, cluster);
+        } catch (IllegalStateException e) {
+            status.put("error", true);
+            status.put("msg", "ERROR - " + e.getMessage());
+            cache.put(jobId, e.getMessage());
+            return status.toString();
+        }
         String results = resultObject.getString("result");
         int rows = resultObject.getInteger("size");
         long end = System.currentTimeMillis();
@@ -135,7 +155,7 @@ public class JobClient {
             workNodeMetrics.setId(id);
             workNodeMetrics.setHost(workNode.getHost());
             workNodeMetrics.setPort(workNode.getPort());
-            if (NetUtils.telnet(workNode.getHost(), workNode.getPort())) {
+            if (isAlive(workNode)) {
                 JSONObject object = new JSONObject();
                 object.put(KConstants.Protocol.KEY, KConstants.Protocol.HEART_BEAT);
                 object.put(KConstants.Protocol.CLUSTER_NAME, clusterAlias);
@@ -170,24 +190,22 @@ public class JobClient {
     public static String getWorkNodeTaskLogs(String jobId) {
         String logs = "";
         for (WorkNodeStrategy workNode : getWorkNodesAlive()) {
-            if (NetUtils.telnet(workNode.getHost(), workNode.getPort())) {
-                JSONObject object = new JSONObject();
-                object.put(KConstants.Protocol.KEY, KConstants.Protocol.KSQL_QUERY_LOG);
-                object.put(KConstants.Protocol.JOB_ID, jobId);
-                List<JSONArray> results = new ArrayList<>();
-                String resultStr = MasterNodeClient.getResult(workNode.getHost(), workNode.getPort(), object);
-                try {
-                    if (!StrUtils.isNull(resultStr)) {
-                        results = JSON.parseArray(resultStr, JSONArray.class);
-                    }
-                } catch (Exception e) {
-                    LoggerUtils.print(JobClient.class).error("Deserialize result by [" + workNode.getHost() + ":" + workNode.getPort() + "] has error, msg is ", e);
+            JSONObject object = new JSONObject();
+            object.put(KConstants.Protocol.KEY, KConstants.Protocol.KSQL_QUERY_LOG);
+            object.put(KConstants.Protocol.JOB_ID, jobId);
+            List<JSONArray> results = new ArrayList<>();
+            String resultStr = MasterNodeClient.getResult(workNode.getHost(), workNode.getPort(), object);
+            try {
+                if (!StrUtils.isNull(resultStr)) {
+                    results = JSON.parseArray(resultStr, JSONArray.class);
                 }
-                if (results.size() > 0) {
-                    if (results.get(0).size() > 0) {
-                        JSONObject result = (JSONObject) results.get(0).get(0);
-                        logs = result.getString("log") + "\n" + cache.get(jobId) + "\n";
-                    }
+            } catch (Exception e) {
+                LoggerUtils.print(JobClient.class).error("Deserialize result by [" + workNode.getHost() + ":" + workNode.getPort() + "] has error, msg is ", e);
+            }
+            if (results.size() > 0) {
+                if (results.get(0).size() > 0) {
+                    JSONObject result = (JSONObject) results.get(0).get(0);
+                    logs = result.getString("log") + "\n" + cache.get(jobId) + "\n";
                 }
             }
         }
@@ -207,7 +225,7 @@ public class JobClient {
     }
 
     private static JSONObject getTableSchema() {
-        JSONObject schema = new JSONObject();
+        JSONObject schema = new JSONObject(new LinkedHashMap<>());
         schema.put("partition", "integer");
         schema.put("offset", "bigint");
         schema.put("msg", "varchar");
@@ -216,65 +234,252 @@ public class JobClient {
         return schema;
     }
 
+    /**
+     * Cut the query into small shard tasks pulled by the worknodes as they
+     * have capacity, and merge the shard results as they arrive. When the
+     * rows already merged satisfy the limit of a plain filter query, the
+     * shards not started yet are dropped.
+     *
+     * @throws IllegalStateException when a shard could not be scanned, the
+     *                               rows would be partial.
+     */
     public static List<JSONArray> submit(String jobId, String sql, String cluster) {
-        Map<WorkNodeStrategy, List<KSqlStrategy>> tasks = getTaskStrategy(sql, cluster);
+        KSqlStrategy ksql = KSqlParser.parseQueryKSql(sql, cluster);
+        List<KSqlStrategy> tasks = getTaskStrategy(ksql, cluster);
+        for (KSqlStrategy task : tasks) {
+            task.setJobId(jobId);
+        }
         LoggerUtils.print(JobClient.class).info("KSqlStrategy: " + new Gson().toJson(tasks));
+        WorkNodeScheduler.Execution execution = WorkNodeScheduler.getInstance().execute(jobId, tasks);
+        long stopRows = earlyStopRows(sql);
+        long rows = 0L;
+        int shards = 0;
         List<JSONArray> parentResult = new ArrayList<>();
-        for (Map.Entry<WorkNodeStrategy, List<KSqlStrategy>> task : tasks.entrySet()) {
-            for (KSqlStrategy ksql : task.getValue()) {
-                ksql.setJobId(jobId);
-                List<JSONArray> daughterResult = WorkerScheduleTask.evaluate(ksql, task.getKey());
-                if (daughterResult != null && daughterResult.size() > 0) {
-                    parentResult.addAll(daughterResult);
+        try {
+            List<JSONArray> daughterResult;
+            while ((daughterResult = execution.take()) != null) {
+                shards++;
+                parentResult.addAll(daughterResult);
+                for (JSONArray rowset : daughterResult) {
+                    rows += rowset.size();
+                }
+                if (stopRows > 0 && rows >= stopRows) {
+                    LoggerUtils.print(JobClient.class).info("Job[" + jobId + "] fetched " + rows + " row(s) from " + shards + "/" + execution.size() + " shard(s), limit reached.");
+                    break;
                 }
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Job[" + jobId + "] was interrupted.");
+        } finally {
+            execution.cancel();
+        }
+        if (execution.getError() != null) {
+            throw new IllegalStateException(execution.getError());
         }
         return parentResult;
     }
 
-    private static Map<WorkNodeStrategy, List<KSqlStrategy>> getTaskStrategy(String sql, String cluster) {
-        // List<KSqlStrategy> tasks = new ArrayList<>();
-        Map<WorkNodeStrategy, List<KSqlStrategy>> workNodeTasks = new HashMap<>();
-        KSqlStrategy ksql = KSqlParser.parseQueryKSql(sql, cluster);
-        List<WorkNodeStrategy> workNodes = getWorkNodesAlive();
-        if (workNodes.size() == 0) {
-            return workNodeTasks;
+    /**
+     * Rows after which merging can stop, or 0 when every shard is needed
+     * because the plan orders, groups or aggregates its rows, or because the
+     * scan leaves part of the where clause to calcite and keeps records the
+     * query may drop. Shards already running on a worknode are not
+     * interrupted, the worknode protocol has no cancel, only the shards not
+     * yet handed out are dropped.
+     */
+    private static long earlyStopRows(String sql) {
+        KSqlPlan plan = KSqlParser.plan(sql);
+        if (plan == null || !plan.isExact() || plan.getLimit() <= 0 || plan.isAggregate() || plan.getOrderBy() != null) {
+            return 0L;
         }
-        for (int partitionId : ksql.getPartitions()) {
-            long endLogSize = kafkaService.getKafkaLogSize(cluster, ksql.getTopic(), partitionId);
-            long endRealLogSize = kafkaService.getKafkaRealLogSize(cluster, ksql.getTopic(), partitionId);
+        return plan.getLimit();
+    }
 
-            long startLogSize = endLogSize - endRealLogSize;
-            long numberPer = endRealLogSize / workNodes.size();
-            for (int workNodeIndex = 0; workNodeIndex < workNodes.size(); workNodeIndex++) {
+    /**
+     * Shard tasks of the query. Each partition range is cut into tasks of at
+     * most 'efak.sql.shard.records' offsets, a tail read keeps one task per
+     * partition.
+     */
+    private static List<KSqlStrategy> getTaskStrategy(KSqlStrategy ksql, String cluster) {
+        List<KSqlStrategy> tasks = new ArrayList<>();
+        if (WorkNodeScheduler.getInstance().getAliveWorkNodes().size() == 0) {
+            return tasks;
+        }
+        if (ksql.getPartitions().isEmpty()) {// not pruned by the where clause
+            long partitions = brokerService.partitionNumbers(cluster, ksql.getTopic());
+            for (int partitionId = 0; partitionId < partitions; partitionId++) {
+                ksql.getPartitions().add(partitionId);
+            }
+        }
+        boolean tail = isTailRead(ksql);
+        Map<Integer, long[]> ranges = getScanRanges(ksql, cluster, tail);
+        for (int partitionId : ksql.getPartitions()) {
+            long startLogSize = ranges.get(partitionId)[0];
+            long endLogSize = ranges.get(partitionId)[1];
+            long endRealLogSize = endLogSize - startLogSize;
+            if (endRealLogSize <= 0) {
+                continue;// no record of the partition can match
+            }
+            // a tail read is one small window already
+            long numberPer = tail ? endRealLogSize : SHARD_RECORDS;
+            for (long start = startLogSize; start < endLogSize; start += numberPer) {
                 KSqlStrategy kSqlStrategy = new KSqlStrategy();
-                if (workNodeIndex == (workNodes.size() - 1)) {
-                    kSqlStrategy.setStart(workNodeIndex * numberPer + startLogSize + 1);
-                    kSqlStrategy.setEnd(endLogSize);
-                } else {
-                    if (workNodeIndex == 0) {
-                        kSqlStrategy.setStart(numberPer * workNodeIndex + startLogSize);
-                    } else {
-                        kSqlStrategy.setStart(numberPer * workNodeIndex + startLogSize + 1);
-                    }
-                    kSqlStrategy.setEnd(numberPer * (workNodeIndex + 1) + startLogSize);
-                }
+                kSqlStrategy.setStart(start);
+                kSqlStrategy.setEnd(Math.min(start + numberPer, endLogSize) - 1);// end offset is scanned inclusive
                 kSqlStrategy.setPartition(partitionId);
                 kSqlStrategy.setCluster(cluster);
                 kSqlStrategy.setTopic(ksql.getTopic());
+                kSqlStrategy.setSql(ksql.getSql());// worknodes plan the predicate tree from it
                 kSqlStrategy.setLimit(ksql.getLimit());
                 kSqlStrategy.setFieldSchema(ksql.getFieldSchema());
-                WorkNodeStrategy worknode = new WorkNodeStrategy();
-                worknode.setHost(workNodes.get(workNodeIndex).getHost());
-                worknode.setPort(workNodes.get(workNodeIndex).getPort());
-                if (workNodeTasks.containsKey(worknode)) {
-                    workNodeTasks.get(worknode).add(kSqlStrategy);
-                } else {
-                    workNodeTasks.put(worknode, Arrays.asList(kSqlStrategy));
+                tasks.add(kSqlStrategy);
+            }
+        }
+        return tasks;
+    }
+
+    /**
+     * Whether the query reads the latest records only, i.e. order by desc with
+     * a limit, so only the last limit offsets of a partition are scanned.
+     */
+    private static boolean isTailRead(KSqlStrategy ksql) {
+        if (ksql.getLimit() <= 0) {
+            return false;
+        }
+        for (FieldSchemaStrategy field : ksql.getFieldSchema()) {
+            if (KConstants.KSQL.ORDER_BY.equals(field.getType()) && KConstants.KSQL.ORDER_BY_DESC.equals(field.getValue())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Offset range [start, end) to scan of each queried partition. The
+     * retained range is narrowed by the timespan predicates through
+     * offsetsForTimes, and to its last limit offsets for a tail read.
+     */
+    private static Map<Integer, long[]> getScanRanges(KSqlStrategy ksql, String cluster, boolean tail) {
+        Map<Integer, long[]> ranges = getLogRanges(ksql, cluster);
+
+        // timestamps wanted are [fromTime, toTime)
+        long fromTime = -1L;
+        long toTime = Long.MAX_VALUE;
+        for (FieldSchemaStrategy field : ksql.getFieldSchema()) {
+            if (!TopicSchema.TIMESPAN.equals(field.getKey()) || KConstants.KSQL.ORDER_BY.equals(field.getType())) {
+                continue;
+            }
+            long value;
+            try {
+                value = Long.parseLong(field.getValue());
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            switch (field.getType()) {
+                case KConstants.KSQL.GT:
+                    fromTime = Math.max(fromTime, value + 1);
+                    break;
+                case KConstants.KSQL.GE:
+                    fromTime = Math.max(fromTime, value);
+                    break;
+                case KConstants.KSQL.EQ:
+                    fromTime = Math.max(fromTime, value);
+                    toTime = Math.min(toTime, value + 1);
+                    break;
+                case KConstants.KSQL.LT:
+                    toTime = Math.min(toTime, value);
+                    break;
+                case KConstants.KSQL.LE:
+                    toTime = Math.min(toTime, value + 1);
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (fromTime >= 0 || toTime < Long.MAX_VALUE) {
+            narrowByTime(ksql, cluster, ranges, fromTime, toTime);
+        }
+        if (tail) {
+            for (long[] range : ranges.values()) {
+                range[0] = Math.max(range[0], range[1] - ksql.getLimit());
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * Retained offset range [beginning, end) of each queried partition, read
+     * from the brokers when the query starts so a tail read ends at the
+     * latest record. The log size snapshots, up to 'efak.kafka.offset.snapshot.ms'
+     * old, are only used when the brokers can not be read.
+     */
+    private static Map<Integer, long[]> getLogRanges(KSqlStrategy ksql, String cluster) {
+        Map<Integer, long[]> ranges = new HashMap<>();
+        List<TopicPartition> tps = new ArrayList<>();
+        for (int partitionId : ksql.getPartitions()) {
+            tps.add(new TopicPartition(ksql.getTopic(), partitionId));
+        }
+        try (KafkaClientRegistry.ConsumerLease lease = KafkaClientRegistry.getInstance().borrowConsumer(cluster)) {
+            try {
+                Map<TopicPartition, Long> beginningOffsets = lease.consumer().beginningOffsets(tps);
+                Map<TopicPartition, Long> endOffsets = lease.consumer().endOffsets(tps);
+                for (TopicPartition tp : tps) {
+                    Long beginning = beginningOffsets.get(tp);
+                    Long end = endOffsets.get(tp);
+                    if (beginning != null && end != null) {
+                        ranges.put(tp.partition(), new long[]{beginning, end});
+                    }
                 }
+            } catch (Exception e) {
+                lease.invalidate();
+                LoggerUtils.print(JobClient.class).error("Get topic[" + ksql.getTopic() + "] end offsets has error, use the log size snapshot, msg is ", e);
+            }
+        }
+        for (int partitionId : ksql.getPartitions()) {
+            if (!ranges.containsKey(partitionId)) {
+                long endLogSize = kafkaService.getKafkaLogSize(cluster, ksql.getTopic(), partitionId);
+                long endRealLogSize = kafkaService.getKafkaRealLogSize(cluster, ksql.getTopic(), partitionId);
+                ranges.put(partitionId, new long[]{endLogSize - endRealLogSize, endLogSize});
             }
         }
-        return workNodeTasks;
+        return ranges;
+    }
+
+    private static void narrowByTime(KSqlStrategy ksql, String cluster, Map<Integer, long[]> ranges, long fromTime, long toTime) {
+        try (KafkaClientRegistry.ConsumerLease lease = KafkaClientRegistry.getInstance().borrowConsumer(cluster)) {
+            try {
+                if (fromTime >= 0) {
+                    Map<TopicPartition, OffsetAndTimestamp> offsets = lease.consumer().offsetsForTimes(timestamps(ksql, ranges, fromTime));
+                    for (Map.Entry<Integer, long[]> range : ranges.entrySet()) {
+                        OffsetAndTimestamp offset = offsets.get(new TopicPartition(ksql.getTopic(), range.getKey()));
+                        // no record at or after fromTime
+                        range.getValue()[0] = offset == null ? range.getValue()[1] : Math.max(range.getValue()[0], offset.offset());
+                    }
+                }
+                if (toTime < Long.MAX_VALUE) {
+                    Map<TopicPartition, OffsetAndTimestamp> offsets = lease.consumer().offsetsForTimes(timestamps(ksql, ranges, toTime));
+                    for (Map.Entry<Integer, long[]> range : ranges.entrySet()) {
+                        OffsetAndTimestamp offset = offsets.get(new TopicPartition(ksql.getTopic(), range.getKey()));
+                        if (offset != null) {
+                            range.getValue()[1] = Math.min(range.getValue()[1], offset.offset());
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                // the timespan filters still run on every record, scan the retained range
+                lease.invalidate();
+                LoggerUtils.print(JobClient.class).error("Get topic[" + ksql.getTopic() + "] offsets for times has error, msg is ", e);
+            }
+        }
+    }
+
+    private static Map<TopicPartition, Long> timestamps(KSqlStrategy ksql, Map<Integer, long[]> ranges, long timestamp) {
+        Map<TopicPartition, Long> timestamps = new HashMap<>();
+        for (int partitionId : ranges.keySet()) {
+            timestamps.put(new TopicPartition(ksql.getTopic(), partitionId), timestamp);
+        }
+        return timestamps;
     }
 
     private static List<WorkNodeStrategy> getWorkNodes() {
@@ -296,19 +501,20 @@ public class JobClient {
         return nodes;
     }
 
-    private static List<WorkNodeStrategy> getWorkNodesAlive() {
-        List<WorkNodeStrategy> nodes = new ArrayList<>();
-        List<String> hosts = WorkUtils.getWorkNodes();
-        int port = SystemConfigUtils.getIntProperty("efak.worknode.port");
-        for (String host : hosts) {
-            WorkNodeStrategy wns = new WorkNodeStrategy();
-            wns.setHost(host);
-            wns.setPort(port);
-            if (NetUtils.telnet(host, port)) {
-                nodes.add(wns); // alive node
-            }
+    /**
+     * Worknodes are known alive from the heartbeat, the master is never sent
+     * shards and not heartbeated, so it is probed directly.
+     */
+    private static boolean isAlive(WorkNodeStrategy workNode) {
+        WorkNodeScheduler scheduler = WorkNodeScheduler.getInstance();
+        if (scheduler.isProbed(workNode.getHost(), workNode.getPort())) {
+            return scheduler.isAlive(workNode.getHost(), workNode.getPort());
         }
-        return nodes;
+        return NetUtils.telnet(workNode.getHost(), workNode.getPort());
+    }
+
+    private static List<WorkNodeStrategy> getWorkNodesAlive() {
+        return WorkNodeScheduler.getInstance().getAliveWorkNodes();
     }
 
 }
@@ -0,0 +1,423 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.core.task.schedule;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import org.smartloli.kafka.eagle.common.util.*;
+import org.smartloli.kafka.eagle.core.task.rpc.MasterNodeClient;
+import org.smartloli.kafka.eagle.core.task.strategy.KSqlStrategy;
+import org.smartloli.kafka.eagle.core.task.strategy.WorkNodeStrategy;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Schedules the shard tasks of a kafka sql job over the worknodes.
+ * <p>
+ * The tasks of a job sit in one shared queue. Every alive worknode gets as
+ * many pullers as its reported capacity allows, and each puller takes the
+ * next task once its previous one returned, so faster or idler worknodes
+ * end up scanning more shards. A shard failing on one worknode is retried
+ * on another one, or on the same one when no other is alive, and the job
+ * fails once its attempts are used up, a shard is never merged as empty.
+ * <p>
+ * Worknode liveness and load come from a background heartbeat every
+ * 'efak.worknode.heartbeat.ms' instead of a telnet per query. A worknode is
+ * only taken out between two heartbeats after 'efak.worknode.max.failures'
+ * shard calls in a row failed on it.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public final class WorkNodeScheduler {
+
+    private static final long HEARTBEAT_MS = SystemConfigUtils.getLongProperty("efak.worknode.heartbeat.ms", 10 * 1000L);
+    private static final long HEARTBEAT_TIMEOUT_MS = SystemConfigUtils.getLongProperty("efak.worknode.heartbeat.timeout.ms", 5 * 1000L);
+    private static final int MAX_SLOTS = Math.max(1, SystemConfigUtils.getIntProperty("efak.worknode.scan.slots", 4));
+    private static final int MAX_ATTEMPTS = Math.max(1, SystemConfigUtils.getIntProperty("efak.sql.shard.retries", 2) + 1);
+    private static final int MAX_FAILURES = Math.max(1, SystemConfigUtils.getIntProperty("efak.worknode.max.failures", 3));
+    private static final long SHARD_TIMEOUT_MS = SystemConfigUtils.getLongProperty("efak.sql.shard.timeout.ms", 5 * 60 * 1000L);
+    private static final int PROBE_THREADS = 4;
+
+    private final Map<String, WorkNodeState> nodes = new ConcurrentHashMap<>();
+    private final ExecutorService dispatcher;
+    private final ExecutorService prober;
+    private final ScheduledExecutorService heartbeat;
+    private volatile boolean probed = false;
+
+    private static class SchedulerHolder {
+        private static final WorkNodeScheduler INSTANCE = new WorkNodeScheduler();
+    }
+
+    public static WorkNodeScheduler getInstance() {
+        return SchedulerHolder.INSTANCE;
+    }
+
+    private WorkNodeScheduler() {
+        int threads = Math.max(1, SystemConfigUtils.getIntProperty("efak.sql.dispatch.threads", 16));
+        this.dispatcher = Executors.newFixedThreadPool(threads, daemonFactory("efak-ksql-dispatcher"));
+        // probes have their own threads, a query filling the dispatcher must not delay the heartbeat
+        this.prober = Executors.newFixedThreadPool(PROBE_THREADS, daemonFactory("efak-worknode-probe"));
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(daemonFactory("efak-worknode-heartbeat"));
+        this.heartbeat.scheduleWithFixedDelay(this::heartbeat, HEARTBEAT_MS, HEARTBEAT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Worknodes that answered the last heartbeat.
+     */
+    public List<WorkNodeStrategy> getAliveWorkNodes() {
+        ensureProbed();
+        List<WorkNodeStrategy> alives = new ArrayList<>();
+        for (WorkNodeState state : nodes.values()) {
+            if (state.alive) {
+                alives.add(state.node);
+            }
+        }
+        return alives;
+    }
+
+    public boolean isAlive(String host, int port) {
+        ensureProbed();
+        WorkNodeState state = nodes.get(host + ":" + port);
+        return state != null && state.alive;
+    }
+
+    /**
+     * Whether the heartbeat probes the worknode, the master is not one.
+     */
+    public boolean isProbed(String host, int port) {
+        ensureProbed();
+        return nodes.containsKey(host + ":" + port);
+    }
+
+    /**
+     * Start scanning the shard tasks, the results are taken from the returned
+     * execution as they arrive.
+     */
+    public Execution execute(String jobId, List<KSqlStrategy> tasks) {
+        ensureProbed();
+        Execution execution = new Execution(jobId, tasks);
+        List<WorkNodeState> alives = new ArrayList<>();
+        for (WorkNodeState state : nodes.values()) {
+            if (state.alive) {
+                alives.add(state);
+            }
+        }
+        for (WorkNodeState state : alives) {
+            for (int slot = 0; slot < state.slots(); slot++) {
+                execution.pullers.incrementAndGet();
+                try {
+                    dispatcher.submit(() -> pull(execution, state));
+                } catch (RejectedExecutionException e) {
+                    execution.pullers.decrementAndGet();
+                }
+            }
+        }
+        if (execution.pullers.get() == 0) {
+            execution.drain("no worknode is alive");
+        }
+        return execution;
+    }
+
+    /**
+     * Take tasks from the shared queue for one slot of the worknode until the
+     * queue is empty, the job is cancelled or failed, or the worknode is
+     * taken out.
+     */
+    private void pull(Execution execution, WorkNodeState state) {
+        try {
+            KSqlStrategy task;
+            while (!execution.cancelled && state.alive && (task = execution.tasks.poll()) != null) {
+                List<JSONArray> result = evaluate(task, state);
+                if (result == null) {
+                    result = retry(execution, task, state);
+                }
+                if (result == null) {
+                    execution.fail("shard[" + task.getStart() + "~" + task.getEnd() + "] of partition[" + task.getPartition() + "] failed after " + MAX_ATTEMPTS + " attempt(s)");
+                    break;
+                }
+                execution.complete(result);
+            }
+        } finally {
+            // the last puller leaving must not strand the queued tasks
+            if (execution.pullers.decrementAndGet() == 0) {
+                execution.drain("no worknode is left to scan the remaining shards");
+            }
+        }
+    }
+
+    /**
+     * Run the failed shard again, on the alive worknodes not tried yet first
+     * and then on any alive one, at most 'efak.sql.shard.retries' times.
+     */
+    private List<JSONArray> retry(Execution execution, KSqlStrategy task, WorkNodeState failed) {
+        Set<WorkNodeState> tried = new HashSet<>();
+        tried.add(failed);
+        for (int attempt = 1; attempt < MAX_ATTEMPTS && !execution.cancelled; attempt++) {
+            WorkNodeState next = null;
+            for (WorkNodeState state : nodes.values()) {
+                if (state.alive && (next == null || better(state, next, tried))) {
+                    next = state;
+                }
+            }
+            if (next == null) {
+                break;
+            }
+            tried.add(next);
+            LoggerUtils.print(this.getClass()).warn("Job[" + execution.jobId + "] retry shard of partition[" + task.getPartition() + "] on worknode[" + next.key + "], attempt " + (attempt + 1) + "/" + MAX_ATTEMPTS + ".");
+            List<JSONArray> result = evaluate(task, next);
+            if (result != null) {
+                return result;
+            }
+        }
+        LoggerUtils.print(this.getClass()).error("Job[" + execution.jobId + "] shard of partition[" + task.getPartition() + "] failed on every worknode tried.");
+        return null;
+    }
+
+    private static boolean better(WorkNodeState state, WorkNodeState than, Set<WorkNodeState> tried) {
+        boolean untried = !tried.contains(state);
+        if (untried != !tried.contains(than)) {
+            return untried;
+        }
+        return state.slots() > than.slots();
+    }
+
+    private List<JSONArray> evaluate(KSqlStrategy task, WorkNodeState state) {
+        List<JSONArray> result = WorkerScheduleTask.evaluate(task, state.node);
+        if (result == null) {
+            // an empty answer means the rpc failed, a worknode failing again and again waits for the heartbeat
+            if (state.failures.incrementAndGet() >= MAX_FAILURES) {
+                state.alive = false;
+            }
+        } else {
+            state.failures.set(0);
+        }
+        return result;
+    }
+
+    /**
+     * Probe the worknodes once before the first heartbeat is due.
+     */
+    private void ensureProbed() {
+        if (!probed) {
+            synchronized (this) {
+                if (!probed) {
+                    heartbeat();
+                }
+            }
+        }
+    }
+
+    private void heartbeat() {
+        int port = SystemConfigUtils.getIntProperty("efak.worknode.port");
+        String[] clusters = SystemConfigUtils.getPropertyArray("efak.zk.cluster.alias", ",");
+        Map<String, Future<?>> probes = new HashMap<>();
+        for (String host : WorkUtils.getWorkNodes()) {
+            if (StrUtils.isNull(host)) {
+                continue;
+            }
+            WorkNodeState state = nodes.computeIfAbsent(host.trim() + ":" + port, k -> new WorkNodeState(host.trim(), port));
+            try {
+                probes.put(state.key, prober.submit(() -> state.probe(clusters.length > 0 ? clusters[0] : "")));
+            } catch (RejectedExecutionException e) {
+                state.alive = false;
+            }
+        }
+        // every probe shares one deadline, so a hung worknode delays the heartbeat once
+        long deadline = System.currentTimeMillis() + HEARTBEAT_TIMEOUT_MS;
+        for (Map.Entry<String, Future<?>> probe : probes.entrySet()) {
+            try {
+                probe.getValue().get(Math.max(0L, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                LoggerUtils.print(this.getClass()).error("Heartbeat worknode[" + probe.getKey() + "] has error, msg is ", e.getCause());
+            } catch (TimeoutException e) {
+                probe.getValue().cancel(true);
+                WorkNodeState state = nodes.get(probe.getKey());
+                if (state != null) {
+                    state.alive = false;
+                }
+                LoggerUtils.print(this.getClass()).warn("Heartbeat worknode[" + probe.getKey() + "] timed out after " + HEARTBEAT_TIMEOUT_MS + " ms.");
+            }
+        }
+        nodes.keySet().retainAll(probes.keySet());
+        probed = true;
+    }
+
+    private static ThreadFactory daemonFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Shard tasks of one job and the results returned so far.
+     */
+    public static final class Execution {
+        // wakes the taker up once the job failed
+        private static final List<JSONArray> FAILED = new ArrayList<>();
+
+        private final String jobId;
+        private final Queue<KSqlStrategy> tasks;
+        private final BlockingQueue<List<JSONArray>> results = new LinkedBlockingQueue<>();
+        private final int size;
+        private final AtomicInteger pullers = new AtomicInteger();
+        private volatile boolean cancelled = false;
+        private volatile String error;
+        private int taken = 0;
+
+        private Execution(String jobId, List<KSqlStrategy> tasks) {
+            this.jobId = jobId;
+            this.tasks = new ConcurrentLinkedQueue<>(tasks);
+            this.size = tasks.size();
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Wait at most 'efak.sql.shard.timeout.ms' for the next finished
+         * shard. Returns null once every shard has been taken, or once the
+         * job failed or timed out, see {@link #getError()}.
+         */
+        public List<JSONArray> take() throws InterruptedException {
+            if (error != null || taken >= size) {
+                return null;
+            }
+            List<JSONArray> result = results.poll(SHARD_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            if (result == null) {
+                fail("no shard finished within " + SHARD_TIMEOUT_MS + " ms");
+                return null;
+            }
+            if (result == FAILED) {
+                return null;
+            }
+            taken++;
+            return result;
+        }
+
+        /**
+         * Why the job failed, null while it has not.
+         */
+        public String getError() {
+            return error;
+        }
+
+        /**
+         * Stop handing out the tasks not started yet.
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        private void complete(List<JSONArray> result) {
+            results.offer(result);
+        }
+
+        /**
+         * Fail the job, the shards not started yet are dropped. A job
+         * cancelled after its rows were merged does not fail any more.
+         */
+        private synchronized void fail(String reason) {
+            if (error == null && !cancelled) {
+                error = "Job[" + jobId + "] failed, " + reason + ".";
+                cancelled = true;
+                LoggerUtils.print(WorkNodeScheduler.class).error(error);
+                results.offer(FAILED);
+            }
+        }
+
+        /**
+         * Called once no puller is left, the queued tasks can not be scanned
+         * any more and fail the job unless it was cancelled.
+         */
+        private void drain(String reason) {
+            if (!tasks.isEmpty() && !cancelled) {
+                fail(reason);
+            }
+            tasks.clear();
+        }
+    }
+
+    private static final class WorkNodeState {
+        private final String key;
+        private final WorkNodeStrategy node;
+        private volatile boolean alive = false;
+        private final AtomicInteger failures = new AtomicInteger();
+        private volatile double cpu = 0.0;
+        private volatile double memory = 0.0;
+
+        private WorkNodeState(String host, int port) {
+            this.key = host + ":" + port;
+            this.node = new WorkNodeStrategy();
+            this.node.setHost(host);
+            this.node.setPort(port);
+        }
+
+        /**
+         * Scans to keep in flight on this worknode, fewer when it is busy.
+         */
+        private int slots() {
+            if (memory >= KConstants.BrokerSever.MEM_DANGER) {
+                return 1;
+            }
+            long slots = Math.round(MAX_SLOTS * (1.0 - Math.min(cpu, 100.0) / 100.0));
+            return (int) Math.max(1L, Math.min(MAX_SLOTS, slots));
+        }
+
+        private void probe(String cluster) {
+            JSONObject object = new JSONObject();
+            object.put(KConstants.Protocol.KEY, KConstants.Protocol.HEART_BEAT);
+            object.put(KConstants.Protocol.CLUSTER_NAME, cluster);
+            String result = MasterNodeClient.getResult(node.getHost(), node.getPort(), object);
+            boolean answered = false;
+            try {
+                if (!StrUtils.isNull(result)) {
+                    List<JSONArray> metrics = JSON.parseArray(result, JSONArray.class);
+                    answered = true;
+                    if (metrics.size() > 0 && metrics.get(0).size() > 0) {
+                        JSONObject metric = metrics.get(0).getJSONObject(0);
+                        if (metric.containsKey("cpu_value")) {
+                            cpu = metric.getDoubleValue("cpu_value");
+                        }
+                        if (metric.getLongValue("memory_max") > 0) {
+                            memory = metric.getLongValue("memory_used") * 100.0 / metric.getLongValue("memory_max");
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                LoggerUtils.print(WorkNodeScheduler.class).error("Deserialize heartbeat by [" + key + "] has error, msg is ", e);
+            }
+            if (answered) {
+                failures.set(0);
+            }
+            alive = answered;
+        }
+    }
+
+}
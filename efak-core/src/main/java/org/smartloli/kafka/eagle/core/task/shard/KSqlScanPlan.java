@@ -0,0 +1,541 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.core.task.shard;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import org.smartloli.kafka.eagle.common.util.KConstants;
+import org.smartloli.kafka.eagle.common.util.LoggerUtils;
+import org.smartloli.kafka.eagle.core.sql.decoder.MessageDecoder;
+import org.smartloli.kafka.eagle.core.sql.decoder.MessageDecoders;
+import org.smartloli.kafka.eagle.core.sql.function.JSONPathExtractor;
+import org.smartloli.kafka.eagle.core.sql.schema.TopicSchema;
+import org.smartloli.kafka.eagle.core.task.parser.KSqlParser;
+import org.smartloli.kafka.eagle.core.task.parser.KSqlPlan;
+import org.smartloli.kafka.eagle.core.task.parser.KSqlPlan.*;
+import org.smartloli.kafka.eagle.core.task.strategy.FieldSchemaStrategy;
+import org.smartloli.kafka.eagle.core.task.strategy.KSqlStrategy;
+
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+import java.util.regex.Pattern;
+
+/**
+ * The predicate tree of a kafka sql plan, or the field schema of a shard sent
+ * without sql, compiled once into a list of predicates, all of which must
+ * hold for a record to match.
+ * <p>
+ * Predicates run from cheap to expensive: partition, offset and timespan,
+ * then plain text, then json, the children of an AND or OR alike. The record
+ * value is decoded and read as json only when the cheaper predicates have
+ * already passed, parsed at most once for a field schema and walked once per
+ * key for a plan.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public final class KSqlScanPlan {
+
+    private static final int COST_NUMERIC = 0;
+    private static final int COST_TEXT = 1;
+    private static final int COST_JSON = 2;
+
+    private final List<Predicate<ScanRecord>> predicates;
+    private final boolean desc;
+    private final boolean empty;
+    private final boolean message;
+
+    private KSqlScanPlan(List<Predicate<ScanRecord>> predicates, boolean desc, boolean empty, boolean message) {
+        this.predicates = predicates;
+        this.desc = desc;
+        this.empty = empty;
+        this.message = message;
+    }
+
+    /**
+     * Compile the plan of the kafka sql, or its field schema when the shard
+     * carries no sql.
+     */
+    public static KSqlScanPlan compile(KSqlStrategy ksql) {
+        KSqlPlan plan = KSqlParser.plan(ksql.getSql());
+        if (plan != null) {
+            return compile(plan);
+        }
+        List<CostedPredicate> costed = new ArrayList<>();
+        boolean desc = false;
+        boolean empty = false;
+        for (FieldSchemaStrategy filter : ksql.getFieldSchema()) {
+            if (KConstants.KSQL.ORDER_BY.equals(filter.getType())) {
+                // order by default match one record
+                if (KConstants.KSQL.ORDER_BY_DESC.equals(filter.getValue())) {
+                    desc = true;
+                }
+                continue;
+            }
+            CostedPredicate predicate;
+            if (TopicSchema.TIMESPAN.equals(filter.getKey())) {
+                predicate = timespan(filter);
+            } else if (filter.isJsonUdf()) {// sql include json object
+                predicate = jsonObject(filter);
+            } else if (filter.isJsonsUdf()) {// sql include json array
+                predicate = jsonArray(filter);
+            } else {// sql include text
+                predicate = text(filter);
+            }
+            if (predicate == null) {
+                empty = true;
+            } else {
+                costed.add(predicate);
+            }
+        }
+        costed.sort(Comparator.comparingInt(predicate -> predicate.cost));
+        List<Predicate<ScanRecord>> predicates = new ArrayList<>(costed.size());
+        for (CostedPredicate predicate : costed) {
+            predicates.add(predicate.predicate);
+        }
+        return new KSqlScanPlan(Collections.unmodifiableList(predicates), desc, empty, true);
+    }
+
+    /**
+     * Compile the predicate tree of the plan.
+     */
+    public static KSqlScanPlan compile(KSqlPlan plan) {
+        CostedPredicate where = expr(plan.getWhere());
+        List<Predicate<ScanRecord>> predicates = where == null ? Collections.<Predicate<ScanRecord>>emptyList() : Collections.singletonList(where.predicate);
+        return new KSqlScanPlan(predicates, plan.isDesc(), false, plan.reads(TopicSchema.MSG));
+    }
+
+    /**
+     * Whether the records are read backwards from the end offset.
+     */
+    public boolean isDesc() {
+        return desc;
+    }
+
+    /**
+     * Whether some predicate can never hold, no record has to be read then.
+     */
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * Whether the query reads the message, rows carry a null msg otherwise
+     * and the records are decoded only as far as the predicates need.
+     */
+    public boolean readsMessage() {
+        return message;
+    }
+
+    public boolean matches(ScanRecord record) {
+        if (empty) {
+            return false;
+        }
+        for (Predicate<ScanRecord> predicate : predicates) {
+            if (!predicate.test(record)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Predicate of the expression, null when every record may match it.
+     */
+    private static CostedPredicate expr(Expr expr) {
+        return expr(expr, false);
+    }
+
+    /**
+     * Predicate of the expression or of its negation. A NOT is pushed down to
+     * the leaves, so a field that is missing holds neither for a condition
+     * nor for its negation, as a null is unknown to the sql.
+     */
+    private static CostedPredicate expr(Expr expr, boolean negated) {
+        if (expr instanceof And || expr instanceof Or) {
+            List<Expr> operands = expr instanceof And ? ((And) expr).getChildren() : ((Or) expr).getChildren();
+            boolean and = (expr instanceof And) != negated;
+            List<CostedPredicate> children = new ArrayList<>();
+            for (Expr child : operands) {
+                CostedPredicate predicate = expr(child, negated);
+                if (predicate != null) {
+                    children.add(predicate);
+                } else if (!and) {
+                    return null;
+                }
+            }
+            if (children.isEmpty()) {
+                return null;
+            }
+            children.sort(Comparator.comparingInt(predicate -> predicate.cost));
+            int cost = children.get(children.size() - 1).cost;
+            if (children.size() == 1) {
+                return children.get(0);
+            }
+            final List<Predicate<ScanRecord>> predicates = new ArrayList<>(children.size());
+            for (CostedPredicate predicate : children) {
+                predicates.add(predicate.predicate);
+            }
+            if (and) {
+                return new CostedPredicate(cost, record -> {
+                    for (Predicate<ScanRecord> predicate : predicates) {
+                        if (!predicate.test(record)) {
+                            return false;
+                        }
+                    }
+                    return true;
+                });
+            }
+            return new CostedPredicate(cost, record -> {
+                for (Predicate<ScanRecord> predicate : predicates) {
+                    if (predicate.test(record)) {
+                        return true;
+                    }
+                }
+                return false;
+            });
+        } else if (expr instanceof Not) {
+            return expr(((Not) expr).getChild(), !negated);
+        } else if (expr instanceof Compare) {
+            Compare compare = (Compare) expr;
+            if (compare.getField().isNumeric()) {
+                return numeric(compare.getField(), negated ? negate(compare.getOp()) : compare.getOp(), Long.parseLong(compare.getValue()));
+            }
+            final String value = compare.getValue();
+            return field(compare.getField(), value::equals, (compare.getOp() == Op.NE) != negated);
+        } else if (expr instanceof Like) {
+            return field(((Like) expr).getField(), like(((Like) expr).getPattern()), negated);
+        } else if (expr instanceof In) {
+            In in = (In) expr;
+            if (in.getField().isNumeric()) {
+                final Set<Long> values = new HashSet<>();
+                for (String value : in.getValues()) {
+                    values.add(Long.parseLong(value));
+                }
+                final ToLongFunction<ScanRecord> column = column(in.getField());
+                final boolean contains = !negated;
+                return new CostedPredicate(COST_NUMERIC, record -> values.contains(column.applyAsLong(record)) == contains);
+            }
+            final Set<String> values = new HashSet<>(in.getValues());
+            return field(in.getField(), values::contains, negated);
+        }
+        return null;
+    }
+
+    private static Op negate(Op op) {
+        switch (op) {
+            case EQ:
+                return Op.NE;
+            case NE:
+                return Op.EQ;
+            case GT:
+                return Op.LE;
+            case GE:
+                return Op.LT;
+            case LT:
+                return Op.GE;
+            default:
+                return Op.GT;
+        }
+    }
+
+    private static CostedPredicate numeric(Field field, Op op, final long value) {
+        final ToLongFunction<ScanRecord> column = column(field);
+        switch (op) {
+            case EQ:
+                return new CostedPredicate(COST_NUMERIC, record -> column.applyAsLong(record) == value);
+            case NE:
+                return new CostedPredicate(COST_NUMERIC, record -> column.applyAsLong(record) != value);
+            case GT:
+                return new CostedPredicate(COST_NUMERIC, record -> column.applyAsLong(record) > value);
+            case GE:
+                return new CostedPredicate(COST_NUMERIC, record -> column.applyAsLong(record) >= value);
+            case LT:
+                return new CostedPredicate(COST_NUMERIC, record -> column.applyAsLong(record) < value);
+            default:
+                return new CostedPredicate(COST_NUMERIC, record -> column.applyAsLong(record) <= value);
+        }
+    }
+
+    private static ToLongFunction<ScanRecord> column(Field field) {
+        if (TopicSchema.PARTITION.equals(field.getColumn())) {
+            return record -> record.partition;
+        } else if (TopicSchema.OFFSET.equals(field.getColumn())) {
+            return record -> record.offset;
+        }
+        return record -> record.timestamp;
+    }
+
+    /**
+     * Predicate of the message, or of a key of it read as JSON and JSONS do,
+     * or of its negation. A null message or key matches neither.
+     */
+    private static CostedPredicate field(Field field, Predicate<String> predicate, boolean negated) {
+        final String key = field.getKey();
+        final Predicate<String> test = negated ? predicate.negate() : predicate;
+        switch (field.getUdf()) {
+            case JSON:
+                return new CostedPredicate(COST_JSON, record -> {
+                    String value = record.json(key);
+                    return value != null && test.test(value);
+                });
+            case JSONS:
+                return new CostedPredicate(COST_JSON, record -> {
+                    String value = record.jsons(key);
+                    return value != null && test.test(value);
+                });
+            default:
+                return new CostedPredicate(COST_TEXT, record -> {
+                    String value = record.value();
+                    return value != null && test.test(value);
+                });
+        }
+    }
+
+    /**
+     * Matcher of a sql LIKE pattern, '%' is any run of characters and '_' any
+     * one character.
+     */
+    static Predicate<String> like(String pattern) {
+        if (!pattern.contains("_")) {
+            boolean leading = pattern.startsWith("%");
+            boolean trailing = pattern.endsWith("%") && pattern.length() > (leading ? 1 : 0);
+            final String inner = pattern.substring(leading ? 1 : 0, trailing ? pattern.length() - 1 : pattern.length());
+            if (!inner.contains("%")) {
+                if (leading && trailing) {
+                    return text -> text.contains(inner);
+                } else if (leading) {
+                    return text -> text.endsWith(inner);
+                } else if (trailing) {
+                    return text -> text.startsWith(inner);
+                }
+                return inner::equals;
+            }
+        }
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        for (char c : pattern.toCharArray()) {
+            if (c == '%' || c == '_') {
+                if (literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                regex.append(c == '%' ? ".*" : ".");
+            } else {
+                literal.append(c);
+            }
+        }
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        final Pattern compiled = Pattern.compile(regex.toString(), Pattern.DOTALL);
+        return text -> compiled.matcher(text).matches();
+    }
+
+    private static CostedPredicate timespan(FieldSchemaStrategy filter) {
+        final long value;
+        try {
+            value = Long.parseLong(filter.getValue());
+        } catch (NumberFormatException e) {
+            LoggerUtils.print(KSqlScanPlan.class).error("Parse timespan filter value[" + filter.getValue() + "] has error, msg is " + e.getMessage());
+            return null;
+        }
+        switch (filter.getType()) {
+            case KConstants.KSQL.GT:
+                return new CostedPredicate(COST_NUMERIC, record -> record.timestamp > value);
+            case KConstants.KSQL.GE:
+                return new CostedPredicate(COST_NUMERIC, record -> record.timestamp >= value);
+            case KConstants.KSQL.EQ:
+                return new CostedPredicate(COST_NUMERIC, record -> record.timestamp == value);
+            case KConstants.KSQL.LT:
+                return new CostedPredicate(COST_NUMERIC, record -> record.timestamp < value);
+            case KConstants.KSQL.LE:
+                return new CostedPredicate(COST_NUMERIC, record -> record.timestamp <= value);
+            default:
+                return null;
+        }
+    }
+
+    private static CostedPredicate text(FieldSchemaStrategy filter) {
+        final String value = filter.getValue();
+        if (KConstants.KSQL.LIKE.equals(filter.getType())) {
+            return new CostedPredicate(COST_TEXT, record -> {
+                String text = record.value();
+                return text != null && text.contains(value);
+            });
+        } else if (KConstants.KSQL.EQ.equals(filter.getType())) {
+            return new CostedPredicate(COST_TEXT, record -> value.equals(record.value()));
+        }
+        return null;
+    }
+
+    private static CostedPredicate jsonObject(FieldSchemaStrategy filter) {
+        final Predicate<String> field = field(filter);
+        if (field == null) {
+            return null;
+        }
+        final String key = filter.getKey();
+        return new CostedPredicate(COST_JSON, record -> {
+            JSONObject object = record.object();
+            return object != null && field.test(object.getString(key));
+        });
+    }
+
+    private static CostedPredicate jsonArray(FieldSchemaStrategy filter) {
+        final Predicate<String> field = field(filter);
+        if (field == null) {
+            return null;
+        }
+        final String key = filter.getKey();
+        return new CostedPredicate(COST_JSON, record -> {
+            JSONArray array = record.array();
+            if (array == null) {
+                return false;
+            }
+            for (Object object : array) {
+                if (object instanceof JSONObject && field.test(((JSONObject) object).getString(key))) {
+                    return true;
+                }
+            }
+            return false;
+        });
+    }
+
+    private static Predicate<String> field(FieldSchemaStrategy filter) {
+        final String value = filter.getValue();
+        if (KConstants.KSQL.LIKE.equals(filter.getType())) {
+            return field -> field != null && field.contains(value);
+        } else if (KConstants.KSQL.EQ.equals(filter.getType())) {
+            return value::equals;
+        }
+        return null;
+    }
+
+    private static final class CostedPredicate {
+        private final int cost;
+        private final Predicate<ScanRecord> predicate;
+
+        private CostedPredicate(int cost, Predicate<ScanRecord> predicate) {
+            this.cost = cost;
+            this.predicate = predicate;
+        }
+    }
+
+    /**
+     * The record under test, reused across records of one scan. The raw value
+     * is decoded lazily and at most once per record, and parsed as json
+     * lazily and at most once as well.
+     */
+    public static final class ScanRecord {
+        private int partition;
+        private long offset;
+        private byte[] bytes;
+        private MessageDecoder decoder;
+        private String value;
+        private boolean isDecoded;
+        private long timestamp;
+        private Object parsed;
+        private boolean isParsed;
+        private JSONPathExtractor extractor;
+
+        public ScanRecord reset(int partition, long offset, String value, long timestamp) {
+            reset(partition, offset, null, null, timestamp);
+            this.value = value;
+            this.isDecoded = true;
+            return this;
+        }
+
+        public ScanRecord reset(int partition, long offset, byte[] bytes, MessageDecoder decoder, long timestamp) {
+            this.partition = partition;
+            this.offset = offset;
+            this.bytes = bytes;
+            this.decoder = decoder;
+            this.value = null;
+            this.isDecoded = false;
+            this.timestamp = timestamp;
+            this.parsed = null;
+            this.isParsed = false;
+            return this;
+        }
+
+        /**
+         * Text of the message, decoded on first use.
+         */
+        public String value() {
+            if (!isDecoded) {
+                isDecoded = true;
+                value = MessageDecoders.decode(decoder, bytes);
+            }
+            return value;
+        }
+
+        /**
+         * Field of the path as the JSON function reads it, null when it is
+         * missing or the value is not a json object.
+         */
+        private String json(String key) {
+            try {
+                return extractor().json(value(), key);
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+
+        private String jsons(String key) {
+            try {
+                return extractor().jsons(value(), key);
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+
+        private JSONPathExtractor extractor() {
+            if (extractor == null) {
+                extractor = new JSONPathExtractor();
+            }
+            return extractor;
+        }
+
+        private JSONObject object() {
+            Object json = parse();
+            return json instanceof JSONObject ? (JSONObject) json : null;
+        }
+
+        private JSONArray array() {
+            Object json = parse();
+            return json instanceof JSONArray ? (JSONArray) json : null;
+        }
+
+        private Object parse() {
+            if (!isParsed) {
+                isParsed = true;
+                try {
+                    String text = value();
+                    parsed = text == null ? null : JSON.parse(text);
+                } catch (Exception e) {
+                    parsed = null;
+                }
+            }
+            return parsed;
+        }
+    }
+
+}
@@ -17,33 +17,29 @@
  */
 package org.smartloli.kafka.eagle.core.task.shard;
 
-import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
-import org.apache.kafka.clients.CommonClientConfigs;
-import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.apache.kafka.common.TopicPartition;
-import org.apache.kafka.common.serialization.StringDeserializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.smartloli.kafka.eagle.common.util.*;
-import org.smartloli.kafka.eagle.core.factory.KafkaFactory;
-import org.smartloli.kafka.eagle.core.factory.KafkaService;
+import org.smartloli.kafka.eagle.core.factory.client.KafkaClientRegistry;
 import org.smartloli.kafka.eagle.core.factory.v2.BrokerFactory;
 import org.smartloli.kafka.eagle.core.factory.v2.BrokerService;
+import org.smartloli.kafka.eagle.core.sql.decoder.MessageDecoder;
+import org.smartloli.kafka.eagle.core.sql.decoder.MessageDecoders;
 import org.smartloli.kafka.eagle.core.sql.schema.TopicSchema;
 import org.smartloli.kafka.eagle.core.task.cache.LogCacheFactory;
-import org.smartloli.kafka.eagle.core.task.strategy.FieldSchemaStrategy;
 import org.smartloli.kafka.eagle.core.task.strategy.KSqlStrategy;
 
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Properties;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.RecursiveTask;
@@ -60,7 +56,6 @@ import java.util.concurrent.RecursiveTask;
  */
 public class ShardSubScan {
 
-    private static KafkaService kafkaService = new KafkaFactory().create();
     private static BrokerService brokerService = new BrokerFactory().create();
 
     private class SubScanTask extends RecursiveTask<List<JSONArray>> {
@@ -70,13 +65,15 @@ public class ShardSubScan {
         private final long TIMEOUT = SystemConfigUtils.getIntProperty("efak.sql.worknode.fetch.timeout");
 
         private KSqlStrategy ksql;
+        private KSqlScanPlan plan;
         private String topic;
         private int partition;
         private long start;
         private long end;
 
-        public SubScanTask(KSqlStrategy ksql, long start, long end) {
+        public SubScanTask(KSqlStrategy ksql, KSqlScanPlan plan, long start, long end) {
             this.ksql = ksql;
+            this.plan = plan;
             this.start = start;
             this.end = end;
             this.topic = ksql.getTopic();
@@ -96,8 +93,8 @@ public class ShardSubScan {
             } else {
                 long middle = (start + end) / 2;
                 LoggerUtils.print(this.getClass()).info("Split: [" + start + "," + end + "]");
-                SubScanTask left = new SubScanTask(ksql, start, middle);
-                SubScanTask right = new SubScanTask(ksql, middle, end);
+                SubScanTask left = new SubScanTask(ksql, plan, start, middle);
+                SubScanTask right = new SubScanTask(ksql, plan, middle + 1, end);
                 invokeAll(left, right);
                 msg.addAll(left.join());
                 msg.addAll(right.join());
@@ -107,179 +104,93 @@ public class ShardSubScan {
 
         private List<JSONArray> executor(KSqlStrategy ksql, long start, long end) {
             List<JSONArray> messages = new ArrayList<>();
-            Properties props = new Properties();
-            props.put(ConsumerConfig.GROUP_ID_CONFIG, KConstants.Kafka.EFAK_SYSTEM_GROUP);
-            props.put(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, kafkaService.getKafkaBrokerServer(ksql.getCluster()));
-            props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getCanonicalName());
-            props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getCanonicalName());
-            props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, KConstants.Kafka.EARLIEST);
-            if (SystemConfigUtils.getBooleanProperty(ksql.getCluster() + ".efak.sasl.enable")) {
-                kafkaService.sasl(props, ksql.getCluster());
-            }
-            if (SystemConfigUtils.getBooleanProperty(ksql.getCluster() + ".efak.ssl.enable")) {
-                kafkaService.ssl(props, ksql.getCluster());
-            }
-            KafkaConsumer<String, String> consumer = new KafkaConsumer<>(props);
-            List<TopicPartition> topics = new ArrayList<>();
-            TopicPartition tp = new TopicPartition(ksql.getTopic(), ksql.getPartition());
-            topics.add(tp);
-            consumer.assign(topics);
-            long limit = ksql.getLimit() == 0 ? KConstants.KSQL.LIMIT : ksql.getLimit();
-            boolean desc = false;
-            for (FieldSchemaStrategy filter : ksql.getFieldSchema()) {
-                if (KConstants.KSQL.ORDER_BY.equals(filter.getType())) {
-                    if (KConstants.KSQL.ORDER_BY_DESC.equals(filter.getValue())) {
-                        desc = true;
-                        break;
-                    }
-                }
-            }
-            if (desc) {
-                consumer.seek(tp, end - limit);
-            } else {
-                consumer.seek(tp, start);
-            }
-
             JSONArray datasets = new JSONArray();
-            boolean flag = true;
-            long counter = 0;
             long batchOffset = 0L;
-            while (flag) {
-                ConsumerRecords<String, String> records = consumer.poll(Duration.ofMillis(TIMEOUT));
-                for (ConsumerRecord<String, String> record : records) {
-                    counter++;
-                    String msg = record.value();
-                    JSONObject object = new JSONObject(new LinkedHashMap<>());
-                    object.put(org.smartloli.kafka.eagle.core.sql.schema.TopicSchema.PARTITION, record.partition());
-                    object.put(org.smartloli.kafka.eagle.core.sql.schema.TopicSchema.OFFSET, record.offset());
-                    object.put(org.smartloli.kafka.eagle.core.sql.schema.TopicSchema.MSG, record.value());
-                    object.put(org.smartloli.kafka.eagle.core.sql.schema.TopicSchema.TIMESPAN, record.timestamp());
-                    object.put(org.smartloli.kafka.eagle.core.sql.schema.TopicSchema.DATE, CalendarUtils.convertUnixTime(record.timestamp()));
-                    // record offset
-                    batchOffset = record.offset();
-                    // filter
-                    List<FieldSchemaStrategy> filters = ksql.getFieldSchema();
-                    List<Boolean> matchs = new ArrayList<>();
-                    for (FieldSchemaStrategy filter : filters) {
-                        String key = filter.getKey();
-                        String value = filter.getValue();
-                        if (filter.isJsonUdf()) {// sql include json object
-                            filterJSONObject(msg, filter, matchs);
-                        } else if (filter.isJsonsUdf()) {// sql include json array
-                            filterJSONArray(msg, filter, matchs);
-                        } else {// sql include text
-                            filterText(msg, filter, matchs);
-                        }
-                        filterTimeSpan(msg, filter, matchs, record.timestamp());
-                    }
-                    if (matchs.size() == filters.size()) {
-                        datasets.add(object);
-                    }
-                    if (counter == limit) {
-                        flag = false;
-                        break;
-                    }
-                }
-                if (records.isEmpty()) {
-                    flag = false;
-                }
+            if (!plan.isEmpty()) {
+                batchOffset = scan(ksql, start, end, datasets);
             }
-            consumer.close();
             messages.add(datasets);
-            LOG.info("ShardSubScan: " + messages.toString());
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("ShardSubScan: " + messages.toString());
+            }
             LOG.info(this.ksql.getJobId() + ", [BatchOffset: " + batchOffset + "], [Progress:" + MathUtils.percent(batchOffset, this.ksql.getEnd()) + "%]");
             try {
                 String lastestLog = CalendarUtils.getDate() + " INFO [WorkNodeServer-" + NetUtils.hostname() + "], Cluster[" + ksql.getCluster() + "], Topic[" + ksql.getTopic() + "], Partition[" + ksql.getPartition() + "], Sharding = ∑(" + start + "~" + end + ") finished.";
-                if (LogCacheFactory.LOG_RECORDS.containsKey(ksql.getJobId())) {
-                    String earliestLog = LogCacheFactory.LOG_RECORDS.get(ksql.getJobId()).toString();
-                    LogCacheFactory.LOG_RECORDS.put(ksql.getJobId(), earliestLog + "\n" + lastestLog);
-                } else {
-                    LogCacheFactory.LOG_RECORDS.put(ksql.getJobId(), lastestLog);
-                }
+                LogCacheFactory.append(ksql.getJobId(), lastestLog);
             } catch (Exception e) {
                 LoggerUtils.print(this.getClass()).error("Store shard sub scan task log has error, msg is ", e);
             }
             return messages;
         }
 
-        private void filterTimeSpan(String msg, FieldSchemaStrategy filter, List<Boolean> matchs, long timestamp) {
-            if (KConstants.KSQL.ORDER_BY.equals(filter.getType())) {
-                matchs.add(true);// order by default match one record
-            }
-            if (TopicSchema.TIMESPAN.equals(filter.getKey()) && !KConstants.KSQL.ORDER_BY.equals(filter.getType())) {
-                if (KConstants.KSQL.GT.equals(filter.getType())) {
-                    if (timestamp > Long.parseLong(filter.getValue())) {
-                        matchs.add(true);
-                    }
-                } else if (KConstants.KSQL.GE.equals(filter.getType())) {
-                    if (timestamp >= Long.parseLong(filter.getValue())) {
-                        matchs.add(true);
-                    }
-                } else if (KConstants.KSQL.EQ.equals(filter.getType())) {
-                    if (timestamp == Long.parseLong(filter.getValue())) {
-                        matchs.add(true);
-                    }
-                } else if (KConstants.KSQL.LT.equals(filter.getType())) {
-                    if (timestamp < Long.parseLong(filter.getValue())) {
-                        matchs.add(true);
-                    }
-                } else if (KConstants.KSQL.LE.equals(filter.getType())) {
-                    if (timestamp <= Long.parseLong(filter.getValue())) {
-                        matchs.add(true);
+        /**
+         * Read the shard, offsets start to end inclusive, with a consumer
+         * leased from the {@link KafkaClientRegistry} and keep the records
+         * matching the plan, only matched records are materialized into rows.
+         *
+         * @return the last offset read.
+         */
+        private long scan(KSqlStrategy ksql, long start, long end, JSONArray datasets) {
+            long limit = ksql.getLimit() == 0 ? KConstants.KSQL.LIMIT : ksql.getLimit();
+            long batchOffset = 0L;
+            MessageDecoder decoder = MessageDecoders.of(ksql.getCluster(), ksql.getTopic());
+            try (KafkaClientRegistry.ConsumerLease lease = KafkaClientRegistry.getInstance().borrowConsumer(ksql.getCluster())) {
+                try {
+                    KafkaConsumer<byte[], byte[]> consumer = lease.consumer();
+                    TopicPartition tp = new TopicPartition(ksql.getTopic(), ksql.getPartition());
+                    consumer.assign(Collections.singletonList(tp));
+                    if (plan.isDesc()) {
+                        consumer.seek(tp, Math.max(start, end - limit + 1));
+                    } else {
+                        consumer.seek(tp, start);
                     }
-                }
-            }
-        }
-
-        private void filterJSONObject(String msg, FieldSchemaStrategy filter, List<Boolean> matchs) {
-            if (KConstants.KSQL.LIKE.equals(filter.getType())) {
-                if (JSON.parseObject(msg).getString(filter.getKey()).contains(filter.getValue())) {
-                    matchs.add(true);
-                }
-            } else if (KConstants.KSQL.EQ.equals(filter.getType())) {
-                if (JSON.parseObject(msg).getString(filter.getKey()).equals(filter.getValue())) {
-                    matchs.add(true);
-                }
-            }
-        }
-
-        private void filterText(String msg, FieldSchemaStrategy filter, List<Boolean> matchs) {
-            if (KConstants.KSQL.LIKE.equals(filter.getType())) {
-                if (msg.contains(filter.getValue())) {
-                    matchs.add(true);
-                }
-            } else if (KConstants.KSQL.EQ.equals(filter.getType())) {
-                if (msg.equals(filter.getValue())) {
-                    matchs.add(true);
-                }
-            }
-        }
 
-        private void filterJSONArray(String msg, FieldSchemaStrategy filter, List<Boolean> matchs) {
-            if (KConstants.KSQL.LIKE.equals(filter.getType())) {
-                for (Object obj : JSON.parseArray(msg)) {
-                    JSONObject json = (JSONObject) obj;
-                    if (json.getString(filter.getKey()).contains(filter.getValue())) {
-                        matchs.add(true);
-                        break;
-                    }
-                }
-            } else if (KConstants.KSQL.EQ.equals(filter.getType())) {
-                for (Object obj : JSON.parseArray(msg)) {
-                    JSONObject json = (JSONObject) obj;
-                    if (json.getString(filter.getKey()).equals(filter.getValue())) {
-                        matchs.add(true);
-                        break;
+                    KSqlScanPlan.ScanRecord scanRecord = new KSqlScanPlan.ScanRecord();
+                    boolean flag = true;
+                    long counter = 0;
+                    while (flag) {
+                        ConsumerRecords<byte[], byte[]> records = consumer.poll(Duration.ofMillis(TIMEOUT));
+                        for (ConsumerRecord<byte[], byte[]> record : records) {
+                            if (record.offset() > end) {// the next shard starts here
+                                flag = false;
+                                break;
+                            }
+                            // record offset
+                            batchOffset = record.offset();
+                            if (plan.matches(scanRecord.reset(record.partition(), record.offset(), record.value(), decoder, record.timestamp()))) {
+                                // the limit is on rows, records the plan drops do not count
+                                counter++;
+                                JSONObject object = new JSONObject(new LinkedHashMap<>());
+                                object.put(TopicSchema.PARTITION, record.partition());
+                                object.put(TopicSchema.OFFSET, record.offset());
+                                object.put(TopicSchema.MSG, plan.readsMessage() ? scanRecord.value() : null);
+                                object.put(TopicSchema.TIMESPAN, record.timestamp());
+                                object.put(TopicSchema.DATE, CalendarUtils.convertUnixTime(record.timestamp()));
+                                datasets.add(object);
+                            }
+                            if (counter >= limit) {
+                                flag = false;
+                                break;
+                            }
+                        }
+                        if (records.isEmpty()) {
+                            flag = false;
+                        }
                     }
+                } catch (RuntimeException e) {
+                    lease.invalidate();
+                    throw e;
                 }
             }
+            return batchOffset;
         }
 
     }
 
     public static List<JSONArray> query(KSqlStrategy ksql) {
         ForkJoinPool pool = new ForkJoinPool();
-        ForkJoinTask<List<JSONArray>> result = pool.submit(new ShardSubScan().new SubScanTask(ksql, ksql.getStart(), ksql.getEnd()));
+        KSqlScanPlan plan = KSqlScanPlan.compile(ksql);
+        ForkJoinTask<List<JSONArray>> result = pool.submit(new ShardSubScan().new SubScanTask(ksql, plan, ksql.getStart(), ksql.getEnd()));
         pool.shutdown();
         return result.invoke();
     }
@@ -0,0 +1,148 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.core.factory.v2;
+
+import org.smartloli.kafka.eagle.core.factory.client.TopicMetadataCache.TopicMetadata;
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sort, search and skew the topics of the topic list index, and rebuild it
+ * when a topic is deleted as the broker service does on a new metadata
+ * version, failing on the first position that differs.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public class TestTopicIndex {
+
+    private static final List<String> TOPICS = Arrays.asList("logs", "app-metrics", "billing", "aaaa", "app-logs", "__consumer_offsets");
+
+    public static void main(String[] args) throws Exception {
+        Map<String, TopicMetadata> metadatas = new HashMap<>();
+        // brokers 1, 2 and 3 hold 3, 1 and 2 of the 6 replicas, above 2 is skewed
+        metadatas.put("app-logs", metadata("app-logs", new int[][]{{1, 2}, {1, 3}, {1, 3}}));
+        metadatas.put("billing", metadata("billing", new int[][]{{1, 2}, {2, 1}}));
+        TopicIndex index = TopicIndex.build(1L, TOPICS, metadatas);
+
+        search(index);
+        skew(index);
+        delete(index, metadatas);
+        System.out.println("Topic index checks passed.");
+    }
+
+    /**
+     * Trigram, short and missing searches find the names holding them, in name
+     * order.
+     */
+    private static void search(TopicIndex index) {
+        expect("Sorted names", "[__consumer_offsets, aaaa, app-logs, app-metrics, billing, logs]", names(index, index.search("")));
+        expect("Trigram search", "[app-logs, logs]", names(index, index.search("logs")));
+        expect("Search over two trigrams", "[app-logs, app-metrics]", names(index, index.search("app-")));
+        expect("Short search", "[app-logs, logs]", names(index, index.search("lo")));
+        expect("Repeated trigram", "[aaaa]", names(index, index.search("aaa")));
+        expect("Longer than the name", "[]", names(index, index.search("aaaaa")));
+        expect("Missing trigram", "[]", names(index, index.search("ogs-")));
+        expect("Null search", 6, index.search(null).length);
+        expect("Position", 4, index.position("billing"));
+        if (index.position("orders") >= 0) {
+            throw new IllegalStateException("Missing topic has a position.");
+        }
+    }
+
+    /**
+     * Broker counts and skew are those of the broker service, zero for a
+     * topic without metadata.
+     */
+    private static void skew(TopicIndex index) {
+        int appLogs = index.position("app-logs");
+        expect("Replica brokers", 3, index.replicaBrokers(appLogs));
+        expect("Skewed", 33, index.skewed(appLogs));
+        int billing = index.position("billing");
+        expect("Balanced replica brokers", 2, index.replicaBrokers(billing));
+        expect("Balanced skewed", 0, index.skewed(billing));
+        int logs = index.position("logs");
+        if (index.metadata(logs) != null || index.replicaBrokers(logs) != 0 || index.skewed(logs) != 0) {
+            throw new IllegalStateException("Topic without metadata must have no brokers.");
+        }
+    }
+
+    /**
+     * A deleted topic bumps the metadata version, the index built for it no
+     * longer finds the topic even when its metadata is read before the delete
+     * reaches it, while readers of the previous index keep a consistent view.
+     */
+    private static void delete(TopicIndex previous, Map<String, TopicMetadata> metadatas) {
+        List<String> topics = new ArrayList<>(TOPICS);
+        topics.remove("app-logs");
+        TopicIndex index = TopicIndex.build(2L, topics, metadatas);
+        if (index.version() == previous.version()) {
+            throw new IllegalStateException("Rebuilt index keeps the previous version.");
+        }
+        expect("Size after the delete", 5, index.size());
+        if (index.position("app-logs") >= 0) {
+            throw new IllegalStateException("Deleted topic is still indexed.");
+        }
+        expect("Search after the delete", "[logs]", names(index, index.search("logs")));
+        expect("Short search after the delete", "[logs]", names(index, index.search("lo")));
+        expect("Position after the delete", 3, index.position("billing"));
+        expect("Skew after the delete", 0, index.skewed(index.position("billing")));
+
+        expect("Previous index size", 6, previous.size());
+        expect("Previous index search", "[app-logs, logs]", names(previous, previous.search("logs")));
+
+        // the metadata of a topic deleted and listed again is gone until its watch reads it
+        metadatas.remove("billing");
+        TopicIndex recreated = TopicIndex.build(3L, TOPICS, metadatas);
+        int billing = recreated.position("billing");
+        if (recreated.metadata(billing) != null || recreated.replicaBrokers(billing) != 0) {
+            throw new IllegalStateException("Recreated topic keeps the metadata of the deleted one.");
+        }
+    }
+
+    private static TopicMetadata metadata(String topic, int[][] replicas) throws Exception {
+        int[] partitions = new int[replicas.length];
+        for (int i = 0; i < partitions.length; i++) {
+            partitions[i] = i;
+        }
+        Constructor<TopicMetadata> constructor = TopicMetadata.class.getDeclaredConstructor(String.class, long.class, long.class, int[].class, int[][].class, int[].class, int[][].class);
+        constructor.setAccessible(true);
+        return constructor.newInstance(topic, TopicMetadata.UNKNOWN_TIME, TopicMetadata.UNKNOWN_TIME, partitions, replicas, null, null);
+    }
+
+    private static String names(TopicIndex index, int[] positions) {
+        List<String> names = new ArrayList<>();
+        for (int position : positions) {
+            names.add(index.name(position));
+        }
+        return names.toString();
+    }
+
+    private static void expect(String name, Object expected, Object actual) {
+        if (!expected.equals(actual)) {
+            throw new IllegalStateException(name + " is [" + actual + "], expected [" + expected + "].");
+        }
+    }
+
+}
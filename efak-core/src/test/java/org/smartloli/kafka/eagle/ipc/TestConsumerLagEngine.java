@@ -0,0 +1,240 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.ipc;
+
+import org.apache.kafka.common.TopicPartition;
+import org.smartloli.kafka.eagle.common.protocol.consumer.ConsumerGroupMetaInfo;
+import org.smartloli.kafka.eagle.common.protocol.consumer.ConsumerGroupSnapshotInfo;
+import org.smartloli.kafka.eagle.core.factory.offset.ConsumerLagEngine;
+import org.smartloli.kafka.eagle.core.factory.offset.ConsumerLagEngine.ConsumerLag;
+import org.smartloli.kafka.eagle.core.factory.offset.TopicOffsetSnapshot;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Fold successive offset snapshots into the lag of a group, forget a pair
+ * missing from a pass and update one cluster from many threads while it is
+ * read, failing on the first lag, rate or drain time that differs.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public class TestConsumerLagEngine {
+
+    private static final String TOPIC = "orders";
+    private static final String GROUP = "billing";
+
+    public static void main(String[] args) throws Exception {
+        ConsumerLagEngine engine = ConsumerLagEngine.getInstance();
+        passes(engine);
+        forget(engine);
+        approximate(engine);
+        concurrent(engine);
+        System.out.println("Consumer lag engine checks passed.");
+    }
+
+    /**
+     * The first pass has lag only, the next ones the records produced and
+     * consumed in between, their rates and the time to drain the lag.
+     */
+    private static void passes(ConsumerLagEngine engine) throws InterruptedException {
+        String cluster = "passes";
+        // partition 2 has no committed offset and lags by its whole log, partition 7 does not exist
+        ConsumerLag lag = single(engine.update(cluster, groups(cluster, 90L, 200L, null, 7, 5L), offsets(cluster, 100L, 200L, 300L)));
+        expect("First pass", true, lag.isFirst());
+        expect("First lag", 310L, lag.getLag());
+        expect("First logsize", 600L, lag.getLogsize());
+        expect("First offsets", 290L, lag.getOffsets());
+        expect("First produced", 0L, lag.getProduced());
+        expect("First time to drain", -1L, lag.getTimeToDrain());
+
+        Thread.sleep(200L);
+        lag = single(engine.update(cluster, groups(cluster, 150L, 200L, 250L), offsets(cluster, 150L, 200L, 300L)));
+        expect("Second pass", false, lag.isFirst());
+        expect("Second lag", 50L, lag.getLag());
+        expect("Second produced", 50L, lag.getProduced());
+        // the newly committed partition 2 has nothing to compare with
+        expect("Second consumed", 60L, lag.getConsumed());
+        if (lag.getConsumeRate() <= lag.getProduceRate() || Math.abs(lag.getConsumeRate() / lag.getProduceRate() - 60.0 / 50.0) > 1e-9) {
+            throw new IllegalStateException("Rates [" + lag.getProduceRate() + ", " + lag.getConsumeRate() + "] are not those of 50 and 60 records.");
+        }
+        expect("Second time to drain", (long) Math.ceil(50L / (lag.getConsumeRate() - lag.getProduceRate())), lag.getTimeToDrain());
+        if (engine.getLag(cluster, GROUP, TOPIC) != lag) {
+            throw new IllegalStateException("Last lag is not the one of the last pass.");
+        }
+
+        // a recreated topic restarts its offsets and a new partition appears
+        Thread.sleep(50L);
+        lag = single(engine.update(cluster, groups(cluster, 10L, 200L, 300L, 3, 0L), offsets(cluster, 20L, 200L, 300L, 5L)));
+        // ends going back produce nothing and the new partition has nothing to compare with
+        expect("Recreated produced", 0L, lag.getProduced());
+        expect("Recreated consumed", 50L, lag.getConsumed());
+        expect("Recreated lag", 15L, lag.getLag());
+        expect("Recreated time to drain", (long) Math.ceil(15L / lag.getConsumeRate()), lag.getTimeToDrain());
+
+        lag = single(engine.update(cluster, groups(cluster, 20L, 200L, 300L, 3, 5L), offsets(cluster, 20L, 200L, 300L, 5L)));
+        expect("Drained lag", 0L, lag.getLag());
+        expect("Drained time to drain", 0L, lag.getTimeToDrain());
+    }
+
+    /**
+     * A pair missing from a pass is forgotten and starts over when it comes
+     * back, other clusters keep their own pairs.
+     */
+    private static void forget(ConsumerLagEngine engine) {
+        String cluster = "forget";
+        engine.update(cluster, groups(cluster, 1L, 1L, 1L), offsets(cluster, 2L, 2L, 2L));
+        engine.update("other", groups("other", 0L, 0L, 0L), offsets("other", 9L, 9L, 9L));
+        engine.update(cluster, new ConsumerGroupSnapshotInfo(cluster), offsets(cluster, 2L, 2L, 2L));
+        if (engine.getLag(cluster, GROUP, TOPIC) != null) {
+            throw new IllegalStateException("Pair missing from the last pass still has a lag.");
+        }
+        expect("Lag of another cluster", 27L, engine.getLag("other", GROUP, TOPIC).getLag());
+        ConsumerLag lag = single(engine.update(cluster, groups(cluster, 1L, 1L, 1L), offsets(cluster, 3L, 3L, 3L)));
+        expect("Pair back", true, lag.isFirst());
+        expect("Pair back produced", 0L, lag.getProduced());
+        if (engine.getLag("missing", GROUP, TOPIC) != null) {
+            throw new IllegalStateException("Unknown cluster has a lag.");
+        }
+    }
+
+    /**
+     * End offsets read before the committed ones make the lag approximate.
+     */
+    private static void approximate(ConsumerLagEngine engine) {
+        String cluster = "approximate";
+        TopicOffsetSnapshot offsets = offsets(cluster, 5L, 5L, 5L);
+        ConsumerGroupSnapshotInfo groups = groups(cluster, 1L, 1L, 1L);
+        groups.setTimestamp(offsets.getTimestamp() + 1);
+        expect("Ends read first", true, single(engine.update(cluster, groups, offsets)).isApproximate());
+        groups.setTimestamp(offsets.getTimestamp());
+        expect("Ends read with the commits", false, single(engine.update(cluster, groups, offsets)).isApproximate());
+    }
+
+    /**
+     * Passes of one cluster racing each other and the readers always leave a
+     * complete lag of the pair, never a partial one.
+     */
+    private static void concurrent(ConsumerLagEngine engine) throws Exception {
+        String cluster = "concurrent";
+        ConsumerGroupSnapshotInfo groups = groups(cluster, 10L, 20L, 30L);
+        TopicOffsetSnapshot offsets = offsets(cluster, 100L, 100L, 100L);
+        engine.update(cluster, groups, offsets);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        AtomicBoolean running = new AtomicBoolean(true);
+        try {
+            List<Future<Integer>> tasks = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                tasks.add(pool.submit(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        expect("Lag of a racing pass", 240L, single(engine.update(cluster, groups, offsets)).getLag());
+                    }
+                    return 0;
+                }));
+            }
+            List<Future<Integer>> readers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                readers.add(pool.submit(() -> {
+                    int reads = 0;
+                    while (running.get()) {
+                        ConsumerLag lag = engine.getLag(cluster, GROUP, TOPIC);
+                        if (lag == null || lag.getLag() != 240L || lag.getLogsize() != 300L) {
+                            throw new IllegalStateException("Reader saw lag [" + (lag == null ? null : lag.getLag()) + "] while passes raced.");
+                        }
+                        reads++;
+                    }
+                    return reads;
+                }));
+            }
+            for (Future<Integer> task : tasks) {
+                task.get(30, TimeUnit.SECONDS);
+            }
+            running.set(false);
+            for (Future<Integer> reader : readers) {
+                reader.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            running.set(false);
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Group committing the offsets of the partitions in order, null for none,
+     * then pairs of an extra partition and its offset.
+     */
+    private static ConsumerGroupSnapshotInfo groups(String cluster, Long... commits) {
+        return groups(cluster, commits, new long[0]);
+    }
+
+    private static ConsumerGroupSnapshotInfo groups(String cluster, Long p0, Long p1, Long p2, int extra, long offset) {
+        return groups(cluster, new Long[]{p0, p1, p2}, new long[]{extra, offset});
+    }
+
+    private static ConsumerGroupSnapshotInfo groups(String cluster, Long[] commits, long[] extra) {
+        ConsumerGroupMetaInfo group = new ConsumerGroupMetaInfo();
+        group.setGroup(GROUP);
+        Map<TopicPartition, Long> offsets = new HashMap<>();
+        for (int p = 0; p < commits.length; p++) {
+            if (commits[p] != null) {
+                offsets.put(new TopicPartition(TOPIC, p), commits[p]);
+            }
+        }
+        if (extra.length == 2) {
+            offsets.put(new TopicPartition(TOPIC, (int) extra[0]), extra[1]);
+        }
+        group.setOffsets(offsets);
+        ConsumerGroupSnapshotInfo groups = new ConsumerGroupSnapshotInfo(cluster);
+        groups.addGroup(group);
+        groups.setTimestamp(0L);
+        return groups;
+    }
+
+    private static TopicOffsetSnapshot offsets(String cluster, long... ends) {
+        Map<String, Integer> partitions = new HashMap<>();
+        partitions.put(TOPIC, ends.length);
+        Map<TopicPartition, Long> endOffsets = new HashMap<>();
+        for (int p = 0; p < ends.length; p++) {
+            endOffsets.put(new TopicPartition(TOPIC, p), ends[p]);
+        }
+        return TopicOffsetSnapshot.of(cluster, partitions, new HashMap<>(), endOffsets);
+    }
+
+    private static ConsumerLag single(List<ConsumerLag> lags) {
+        if (lags.size() != 1) {
+            throw new IllegalStateException("Pass has [" + lags.size() + "] lags, expected [1].");
+        }
+        return lags.get(0);
+    }
+
+    private static void expect(String name, Object expected, Object actual) {
+        if (!expected.equals(actual)) {
+            throw new IllegalStateException(name + " is [" + actual + "], expected [" + expected + "].");
+        }
+    }
+
+}
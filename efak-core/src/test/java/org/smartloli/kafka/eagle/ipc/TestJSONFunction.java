@@ -0,0 +1,229 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.ipc;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import org.smartloli.kafka.eagle.core.sql.function.JSONFunction;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Check that the JSON and JSONS functions read what the full parse per call
+ * used before read, then compare their records/sec on synthetic order events
+ * read by a query naming three fields in its select and its where clause.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public class TestJSONFunction {
+
+    private static final int RECORDS = 100000;
+    private static final int ROUNDS = 5;
+    private static final String[] KEYS = {"id", "user.name", "items[0].sku"};
+
+    public static void main(String[] args) {
+        verify();
+
+        List<String> objects = new ArrayList<>(RECORDS);
+        List<String> arrays = new ArrayList<>(RECORDS);
+        for (int i = 0; i < RECORDS; i++) {
+            String order = "{\"id\":\"" + i + "\",\"ts\":" + (1599754181586L + i) + ",\"user\":{\"name\":\"efak_" + (i % 100) + "\",\"region\":\"cn-" + (i % 8) + "\"},"
+                    + "\"items\":[{\"sku\":\"sku-" + (i % 1000) + "\",\"qty\":" + (i % 5) + ",\"price\":12.50},{\"sku\":\"sku-" + (i % 77) + "\",\"qty\":1,\"price\":3.20}],"
+                    + "\"note\":\"kafka eagle order event " + i + " with some free text to skip over\",\"status\":\"PAID\"}";
+            objects.add(order);
+            arrays.add("[" + order + "," + order + "]");
+        }
+
+        JSONFunction function = new JSONFunction();
+        for (int round = 0; round < ROUNDS; round++) {
+            System.out.println("Round " + round);
+            report("JSON legacy", objects, () -> {
+                int chars = 0;
+                for (String msg : objects) {
+                    for (int call = 0; call < 2; call++) {// select and where
+                        chars += legacyJson(msg, "id").length();
+                        chars += JSON.parseObject(msg).getJSONObject("user").getString("name").length();
+                        chars += JSON.parseObject(msg).getJSONArray("items").getJSONObject(0).getString("sku").length();
+                    }
+                }
+                return chars;
+            });
+            report("JSON path", objects, () -> {
+                int chars = 0;
+                for (String msg : objects) {
+                    for (int call = 0; call < 2; call++) {
+                        for (String key : KEYS) {
+                            chars += function.JSON(msg, key).length();
+                        }
+                    }
+                }
+                return chars;
+            });
+            report("JSONS legacy", arrays, () -> {
+                int chars = 0;
+                for (String msg : arrays) {
+                    chars += legacyJsons(msg, "id").length() + legacyJsons(msg, "status").length();
+                }
+                return chars;
+            });
+            report("JSONS path", arrays, () -> {
+                int chars = 0;
+                for (String msg : arrays) {
+                    chars += function.JSONS(msg, "id").length() + function.JSONS(msg, "status").length();
+                }
+                return chars;
+            });
+        }
+    }
+
+    /**
+     * Fail on the first field read otherwise than by fastjson.
+     */
+    private static void verify() {
+        String[][] objects = {
+                // escapes and unicode, in values and in keys
+                {"{\"s\":\"a\\\"b\\\\c\\/d\\b\\f\\n\\r\\t\",\"u\":\"\\u00e9\\u4e2d\\ud83d\\ude00\",\"raw\":\"中文 é\",\"a\\u0062\":\"escaped key\"}",
+                        "s", "u", "raw", "ab", "a\u0062", "missing"},
+                // numbers and exponents
+                {"{\"i\":42,\"neg\":-7,\"long\":9223372036854775807,\"big\":12345678901234567890,\"d\":12.50,\"e\":1e3,\"E\":-2.5E-3,\"z\":-0,\"zd\":-0.0,\"t\":true,\"f\":false,\"n\":null}",
+                        "i", "neg", "long", "big", "d", "e", "E", "z", "zd", "t", "f", "n"},
+                // nested arrays and objects, paths and missing keys
+                {" { \"a\" : { \"b\" : [ 1 , { \"c\" : \"x\" , \"d\" : [ [ 2 ] ] } ] , \"s\" : \"[not, {json}]\" } , \"a.b\" : \"dot\" , \"k[0]\" : \"bracket\" } ",
+                        "a", "a.b", "a.b[0]", "a.b[1]", "a.b[1].c", "a.b[1].d", "a.b[1].d[0]", "a.b[1].d[0][0]", "a.b[2]", "a.b.c", "a.x", "a.s", "a.s.x", "k[0]", "k", "b", ""},
+                // text the walk hands to fastjson
+                {"{'a':'single','b':1}", "a", "b", "c"},
+                {"{a:1,b:\"unquoted\"}", "a", "b"},
+                {"{\"a\":1,,\"b\":2}", "a", "b"},
+                {"{\"a\":\"\\x41\"}", "a"},
+                {"{\"b\":[1,2", "a"},
+                {"[1,2]", "a"},
+                {"not json", "a"},
+        };
+        for (String[] object : objects) {
+            for (int i = 1; i < object.length; i++) {
+                String key = object[i];
+                JSONFunction function = new JSONFunction();
+                expect("JSON(" + object[0] + ", " + key + ")", outcome(() -> legacyPath(object[0], key)), outcome(() -> function.JSON(object[0], key)));
+            }
+        }
+
+        String[][] arrays = {
+                {"[{\"id\":\"1\",\"x\":{\"y\":[2,3]}},{\"x\":1},{\"id\":null},{\"id\":1e3},{}]", "id", "x", "missing"},
+                {"[{\"s\":\"q\\\"b\\\\n\\n\\u0001\\u001f\\u007f\\u2028中文\\ud83d\\ude00\"}]", "s"},
+                {" [ ] ", "id"},
+                {"[{'id':'single'}]", "id"},
+                {"[{\"id\":1},2]", "id"},
+                {"{\"id\":1}", "id"},
+        };
+        for (String[] array : arrays) {
+            for (int i = 1; i < array.length; i++) {
+                String key = array[i];
+                JSONFunction function = new JSONFunction();
+                expect("JSONS(" + array[0] + ", " + key + ")", outcome(() -> legacyJsons(array[0], key)), outcome(() -> function.JSONS(array[0], key)));
+            }
+        }
+        System.out.println("JSON and JSONS read as fastjson does");
+    }
+
+    private interface Read {
+        String read();
+    }
+
+    /**
+     * The field read, or the failure when the message is not read at all.
+     */
+    private static String outcome(Read read) {
+        try {
+            String value = read.read();
+            return value == null ? "null" : "'" + value + "'";
+        } catch (RuntimeException e) {
+            return "error";
+        }
+    }
+
+    private static void expect(String call, String expected, String actual) {
+        if (!expected.equals(actual)) {
+            throw new IllegalStateException(call + " read " + actual + ", fastjson read " + expected);
+        }
+    }
+
+    private interface Scan {
+        int run();
+    }
+
+    private static void report(String name, List<String> topic, Scan scan) {
+        long start = System.nanoTime();
+        int chars = scan.run();
+        long nanos = System.nanoTime() - start;
+        System.out.println(String.format("  %-12s chars=%-9d records/sec=%d", name, chars, (long) (topic.size() * 1e9 / nanos)));
+    }
+
+    /**
+     * The field of a path such as 'a.b[0].c' read from the parsed message,
+     * or of the key itself when the path is missing, as the JSON function
+     * reads a path.
+     */
+    private static String legacyPath(String jsonObject, String key) {
+        JSONObject object = JSON.parseObject(jsonObject);
+        Object value = object;
+        boolean found = !key.isEmpty();
+        for (String segment : key.split("\\.")) {
+            int bracket = segment.indexOf('[');
+            String name = bracket < 0 ? segment : segment.substring(0, bracket);
+            if (!name.isEmpty()) {
+                found &= value instanceof JSONObject && ((JSONObject) value).containsKey(name);
+                value = found ? ((JSONObject) value).get(name) : null;
+            }
+            while (found && bracket >= 0) {
+                int close = segment.indexOf(']', bracket);
+                int index = Integer.parseInt(segment.substring(bracket + 1, close));
+                found = value instanceof JSONArray && index < ((JSONArray) value).size();
+                value = found ? ((JSONArray) value).get(index) : null;
+                bracket = segment.indexOf('[', close);
+            }
+        }
+        if (found) {
+            return value == null ? null : value.toString();
+        }
+        return object.getString(key);
+    }
+
+    /**
+     * The functions before the path extractor.
+     */
+    private static String legacyJson(String jsonObject, String key) {
+        JSONObject object = JSON.parseObject(jsonObject);
+        return object.getString(key);
+    }
+
+    private static String legacyJsons(String jsonArray, String key) {
+        JSONArray object = JSON.parseArray(jsonArray);
+        JSONArray target = new JSONArray();
+        for (Object tmp : object) {
+            JSONObject result = (JSONObject) tmp;
+            JSONObject value = new JSONObject();
+            value.put(key, result.getString(key));
+            target.add(value);
+        }
+        return target.toJSONString();
+    }
+}
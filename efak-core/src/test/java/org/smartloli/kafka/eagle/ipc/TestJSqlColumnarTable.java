@@ -0,0 +1,139 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.ipc;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import org.apache.calcite.linq4j.Enumerator;
+import org.smartloli.kafka.eagle.common.util.UnicodeUtils;
+import org.smartloli.kafka.eagle.core.sql.common.JSqlColumnarTable;
+import org.smartloli.kafka.eagle.core.sql.common.JSqlEnumerator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Scan the columnar table of shard rows, failing on the first cell which
+ * differs from the per cell conversion of the rows it replaced: typed numbers
+ * and numeric strings, strings that only look numeric, empty and missing
+ * cells and dictionary values shared by many rows.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public class TestJSqlColumnarTable {
+
+    public static void main(String[] args) {
+        JSONObject schema = new JSONObject();
+        schema.put("partition", "integer");
+        schema.put("offset", "bigint");
+        schema.put("timespan", "varchar");
+        schema.put("key", "varchar");
+        schema.put("msg", "varchar");
+        schema.put("date", "varchar");
+
+        List<JSONArray> dataSets = Arrays.asList(
+                rows(row(0, 0L, "1700000000000", "7", "{\"a\":1}", "2026-10-18 10:00:00"),
+                        row(0, 1L, "1700000000001", "007", "{\"a\":1}", "2026-10-18 10:00:00"),
+                        row("1", "2", "-5", "", "订单已创建", "2026-10-18 10:00:01")),
+                rows(),
+                rows(row(2, 9007199254740993L, "", null, null, null),
+                        row("", "\\N", "1700000000002", "-0", "{\"a\":1}", "2026-10-18 10:00:00")));
+
+        JSqlColumnarTable table = JSqlColumnarTable.of(schema, dataSets);
+        if (table.size() != 5) {
+            throw new IllegalStateException("Table has [" + table.size() + "] rows, expected [5].");
+        }
+        List<Object[]> expected = expected(schema, dataSets);
+        Enumerator<Object[]> first = table.scan(null).enumerator();
+        check("Scan", expected, first);
+        // a second scan of the same table, as a self join or a retry does, reads the same rows
+        Enumerator<Object[]> second = table.scan(null).enumerator();
+        first.reset();
+        check("Reset scan", expected, first);
+        check("Second scan", expected, second);
+
+        JSqlColumnarTable empty = JSqlColumnarTable.of(schema, new ArrayList<>());
+        if (empty.size() != 0 || empty.scan(null).enumerator().moveNext()) {
+            throw new IllegalStateException("Table without datasets has rows.");
+        }
+        System.out.println("Columnar table checks passed.");
+    }
+
+    /**
+     * Cells as the row based enumerator converted them, every cell read as
+     * unicode encoded text and converted to its column type.
+     */
+    private static List<Object[]> expected(JSONObject schema, List<JSONArray> dataSets) {
+        List<Object[]> rows = new ArrayList<>();
+        for (JSONArray dataSet : dataSets) {
+            for (Object obj : dataSet) {
+                JSONObject object = (JSONObject) obj;
+                Object[] row = new Object[schema.size()];
+                int i = 0;
+                for (String key : schema.keySet()) {
+                    String value = object.getString(key);
+                    row[i++] = value == null ? null : JSqlEnumerator.convertOptiqCellValue(UnicodeUtils.encodeForUnicode(value), schema.getString(key));
+                }
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    private static void check(String name, List<Object[]> expected, Enumerator<Object[]> enumerator) {
+        for (int row = 0; row < expected.size(); row++) {
+            if (!enumerator.moveNext()) {
+                throw new IllegalStateException(name + " ended at row [" + row + "].");
+            }
+            Object[] actual = enumerator.current();
+            for (int column = 0; column < actual.length; column++) {
+                Object cell = expected.get(row)[column];
+                if (!Objects.equals(cell, actual[column]) || (cell != null && cell.getClass() != actual[column].getClass())) {
+                    throw new IllegalStateException(name + " row [" + row + "] column [" + column + "] is [" + actual[column] + "], expected [" + cell + "].");
+                }
+            }
+        }
+        if (enumerator.moveNext()) {
+            throw new IllegalStateException(name + " has more than [" + expected.size() + "] rows.");
+        }
+    }
+
+    private static JSONArray rows(JSONObject... rows) {
+        JSONArray array = new JSONArray();
+        array.addAll(Arrays.asList(rows));
+        return array;
+    }
+
+    private static JSONObject row(Object partition, Object offset, String timespan, String key, String msg, String date) {
+        JSONObject row = new JSONObject();
+        row.put("partition", partition);
+        row.put("offset", offset);
+        row.put("timespan", timespan);
+        if (key != null) {
+            row.put("key", key);
+        }
+        row.put("msg", msg);
+        row.put("date", date);
+        return row;
+    }
+
+}
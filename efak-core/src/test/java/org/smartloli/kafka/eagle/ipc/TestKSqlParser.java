@@ -18,6 +18,7 @@
 package org.smartloli.kafka.eagle.ipc;
 
 import org.smartloli.kafka.eagle.core.task.parser.KSqlParser;
+import org.smartloli.kafka.eagle.core.task.parser.KSqlPlan;
 
 /**
  * // NOTE
@@ -36,5 +37,36 @@ public class TestKSqlParser {
 //        System.out.println(KSqlParser.parseQueryKSql(sql2, "cluster1"));
 //        System.out.println(KSqlParser.parseQueryKSql(sql3, "cluster1"));
         System.out.println(KSqlParser.parseQueryKSql(sql4, "cluster1"));
+
+        String sql5 = "select * from kk where (`partition` = 0 or `partition` in (2, 3)) and not (msg like '%debug%' or JSON(msg,'level') <> 'ERROR') and timespan >= 1599754181586 order by timespan desc limit 10;";
+        KSqlPlan plan = KSqlParser.plan(sql5);
+        System.out.println("where: " + plan.getWhere() + ", partitions: " + plan.getPartitions() + ", desc: " + plan.isDesc() + ", limit: " + plan.getLimit());
+        System.out.println(KSqlParser.parseQueryKSql(sql5.replace(" and ", "  AND "), "cluster1"));
+        System.out.println(KSqlParser.PLAN_CACHE.getStats());
+
+        exact();
+    }
+
+    /**
+     * A query may stop merging shards at its limit only when the scan
+     * evaluates its whole where clause, fail on the first sql planned
+     * otherwise.
+     */
+    private static void exact() {
+        expectExact("select * from kk limit 10", true);
+        expectExact("select * from kk where `partition` in (0, 1) and `offset` >= 100 and msg like '%error%' limit 10", true);
+        expectExact("select * from kk where not (JSON(msg,'level') = 'ERROR' or timespan < 1599754181586) limit 10", true);
+        expectExact("select * from kk where JSON(msg,'id') > '2' limit 10", false);
+        expectExact("select * from kk where `offset` >= 100 and JSON(msg,'id') > '2' limit 10", false);
+        expectExact("select * from kk where `offset` >= 100 or CHAR_LENGTH(msg) > 10 limit 10", false);
+        expectExact("select * from kk where not (`offset` >= 100 and msg like '%!%%' escape '!') limit 10", false);
+        expectExact("select * from kk where msg is not null limit 10", false);
+    }
+
+    private static void expectExact(String sql, boolean exact) {
+        KSqlPlan plan = KSqlParser.plan(sql);
+        if (plan == null || plan.isExact() != exact) {
+            throw new IllegalStateException("Sql[" + sql + "] is planned " + (plan == null ? "null" : plan.isExact() ? "exact" : "inexact") + ", expected " + (exact ? "exact" : "inexact") + ".");
+        }
     }
 }
@@ -0,0 +1,209 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.ipc;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import org.smartloli.kafka.eagle.common.util.CalendarUtils;
+import org.smartloli.kafka.eagle.common.util.KConstants;
+import org.smartloli.kafka.eagle.core.sql.schema.TopicSchema;
+import org.smartloli.kafka.eagle.core.task.shard.KSqlScanPlan;
+import org.smartloli.kafka.eagle.core.task.strategy.FieldSchemaStrategy;
+import org.smartloli.kafka.eagle.core.task.strategy.KSqlStrategy;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Check the compiled scan plan on records it must match and records it must
+ * not, for a sql plan and for a field schema sent without sql, then compare
+ * its records/sec with the per record JSONObject materialization used before,
+ * on synthetic json and text topics.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public class TestKSqlScanPlan {
+
+    private static final int RECORDS = 200000;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        verify();
+
+        List<String> jsonTopic = new ArrayList<>(RECORDS);
+        List<String> textTopic = new ArrayList<>(RECORDS);
+        for (int i = 0; i < RECORDS; i++) {
+            jsonTopic.add("{\"id\":\"" + i + "\",\"name\":\"efak_" + (i % 100) + "\",\"ts\":" + i + "}");
+            textTopic.add("kafka eagle message " + i + " from node " + (i % 100));
+        }
+
+        KSqlStrategy json = new KSqlStrategy();
+        json.getFieldSchema().add(field("id", KConstants.KSQL.LIKE, "99", true));
+        json.getFieldSchema().add(field("name", KConstants.KSQL.EQ, "efak_99", true));
+        KSqlStrategy text = new KSqlStrategy();
+        text.getFieldSchema().add(field(TopicSchema.MSG, KConstants.KSQL.LIKE, "node 42", false));
+
+        for (int round = 0; round < ROUNDS; round++) {
+            System.out.println("Round " + round);
+            report("json legacy", jsonTopic, () -> legacy(json, jsonTopic));
+            report("json plan", jsonTopic, () -> plan(json, jsonTopic));
+            report("text legacy", textTopic, () -> legacy(text, textTopic));
+            report("text plan", textTopic, () -> plan(text, textTopic));
+        }
+    }
+
+    /**
+     * Fail on the first record the plan matches or rejects by mistake.
+     */
+    private static void verify() {
+        KSqlScanPlan where = plan("select * from kk where (`partition` = 0 or `partition` in (2, 3)) and not (msg like '%debug%' or JSON(msg,'level') <> 'ERROR') and timespan >= 100 limit 10");
+        expect("partition 0", where, true, 0, 1L, "{\"level\":\"ERROR\"}", 100L);
+        expect("partition in", where, true, 3, 1L, "{\"level\":\"ERROR\"}", 200L);
+        expect("partition out", where, false, 1, 1L, "{\"level\":\"ERROR\"}", 200L);
+        expect("timespan before", where, false, 0, 1L, "{\"level\":\"ERROR\"}", 99L);
+        expect("level other", where, false, 0, 1L, "{\"level\":\"INFO\"}", 100L);
+        expect("level missing", where, false, 0, 1L, "{\"code\":\"ERROR\"}", 100L);
+        expect("not like", where, false, 0, 1L, "{\"level\":\"ERROR\",\"note\":\"debug\"}", 100L);
+
+        KSqlScanPlan path = plan("select * from kk where JSON(msg,'user.name') = 'efak' and JSON(msg,'items[1].sku') like 'sku-%' and msg like '%order%' limit 10");
+        String order = "{\"type\":\"order\",\"user\":{\"name\":\"efak\"},\"items\":[{\"sku\":\"x\"},{\"sku\":\"sku-7\"}]}";
+        expect("json path", path, true, 0, 0L, order, 0L);
+        expect("json path other", path, false, 0, 0L, order.replace("\"efak\"", "\"kafka\""), 0L);
+        expect("json index missing", path, false, 0, 0L, order.replace(",{\"sku\":\"sku-7\"}", ""), 0L);
+        expect("json text mismatch", path, false, 0, 0L, order.replace("order", "refund"), 0L);
+        expect("not json", path, false, 0, 0L, "order of efak", 0L);
+
+        KSqlScanPlan array = plan("select * from kk where JSONS(msg,'id') like '%\"id\":\"2\"%' and `offset` >= 10 and `offset` < 20 limit 10");
+        expect("jsons", array, true, 0, 10L, "[{\"id\":\"1\"},{\"id\":\"2\"}]", 0L);
+        expect("jsons other", array, false, 0, 10L, "[{\"id\":\"1\"},{\"id\":\"3\"}]", 0L);
+        expect("offset after", array, false, 0, 20L, "[{\"id\":\"2\"}]", 0L);
+        expect("jsons object", array, false, 0, 10L, "{\"id\":\"2\"}", 0L);
+
+        KSqlScanPlan like = plan("select * from kk where msg like 'kafka_eagle%' limit 10");
+        expect("like one", like, true, 0, 0L, "kafka-eagle message", 0L);
+        expect("like two", like, false, 0, 0L, "kafka--eagle message", 0L);
+        expect("like prefix", like, false, 0, 0L, "a kafka-eagle message", 0L);
+
+        KSqlStrategy schema = new KSqlStrategy();
+        schema.getFieldSchema().add(field("name", KConstants.KSQL.EQ, "efak_99", true));
+        schema.getFieldSchema().add(field(TopicSchema.MSG, KConstants.KSQL.LIKE, "\"id\"", false));
+        schema.getFieldSchema().add(field(TopicSchema.TIMESPAN, KConstants.KSQL.GT, "100", false));
+        KSqlScanPlan fields = KSqlScanPlan.compile(schema);
+        expect("schema", fields, true, 0, 0L, "{\"id\":\"1\",\"name\":\"efak_99\"}", 101L);
+        expect("schema name", fields, false, 0, 0L, "{\"id\":\"1\",\"name\":\"efak_9\"}", 101L);
+        expect("schema text", fields, false, 0, 0L, "{\"key\":\"1\",\"name\":\"efak_99\"}", 101L);
+        expect("schema timespan", fields, false, 0, 0L, "{\"id\":\"1\",\"name\":\"efak_99\"}", 100L);
+        expect("schema not json", fields, false, 0, 0L, "\"id\" efak_99", 101L);
+
+        KSqlStrategy empty = new KSqlStrategy();
+        empty.getFieldSchema().add(field(TopicSchema.TIMESPAN, KConstants.KSQL.GT, "soon", false));
+        if (!KSqlScanPlan.compile(empty).isEmpty()) {
+            throw new IllegalStateException("A timespan filter that is not a number must match no record.");
+        }
+        System.out.println("Scan plan matches as expected");
+    }
+
+    private static KSqlScanPlan plan(String sql) {
+        KSqlStrategy ksql = new KSqlStrategy();
+        ksql.setSql(sql);
+        return KSqlScanPlan.compile(ksql);
+    }
+
+    private static void expect(String name, KSqlScanPlan plan, boolean expected, int partition, long offset, String msg, long timestamp) {
+        boolean matched = plan.matches(new KSqlScanPlan.ScanRecord().reset(partition, offset, msg, timestamp));
+        if (matched != expected) {
+            throw new IllegalStateException("Case[" + name + "] expected " + (expected ? "a match" : "no match") + " of record[" + msg + "]");
+        }
+    }
+
+    private interface Scan {
+        int run();
+    }
+
+    private static void report(String name, List<String> topic, Scan scan) {
+        long start = System.nanoTime();
+        int matched = scan.run();
+        long nanos = System.nanoTime() - start;
+        System.out.println(String.format("  %-12s matched=%-6d records/sec=%d", name, matched, (long) (topic.size() * 1e9 / nanos)));
+    }
+
+    private static int plan(KSqlStrategy ksql, List<String> topic) {
+        KSqlScanPlan plan = KSqlScanPlan.compile(ksql);
+        KSqlScanPlan.ScanRecord scanRecord = new KSqlScanPlan.ScanRecord();
+        JSONArray datasets = new JSONArray();
+        long offset = 0L;
+        for (String msg : topic) {
+            long timestamp = System.currentTimeMillis();
+            if (plan.matches(scanRecord.reset(0, offset, msg, timestamp))) {
+                datasets.add(row(offset, msg, timestamp));
+            }
+            offset++;
+        }
+        return datasets.size();
+    }
+
+    /**
+     * The per record path of the shard scan before the plan was compiled.
+     */
+    private static int legacy(KSqlStrategy ksql, List<String> topic) {
+        JSONArray datasets = new JSONArray();
+        long offset = 0L;
+        for (String msg : topic) {
+            long timestamp = System.currentTimeMillis();
+            JSONObject object = row(offset++, msg, timestamp);
+            List<Boolean> matchs = new ArrayList<>();
+            for (FieldSchemaStrategy filter : ksql.getFieldSchema()) {
+                if (filter.isJsonUdf()) {
+                    String value = JSON.parseObject(msg).getString(filter.getKey());
+                    if (KConstants.KSQL.LIKE.equals(filter.getType()) ? value.contains(filter.getValue()) : value.equals(filter.getValue())) {
+                        matchs.add(true);
+                    }
+                } else if (KConstants.KSQL.LIKE.equals(filter.getType()) ? msg.contains(filter.getValue()) : msg.equals(filter.getValue())) {
+                    matchs.add(true);
+                }
+            }
+            if (matchs.size() == ksql.getFieldSchema().size()) {
+                datasets.add(object);
+            }
+        }
+        return datasets.size();
+    }
+
+    private static JSONObject row(long offset, String msg, long timestamp) {
+        JSONObject object = new JSONObject(new LinkedHashMap<>());
+        object.put(TopicSchema.PARTITION, 0);
+        object.put(TopicSchema.OFFSET, offset);
+        object.put(TopicSchema.MSG, msg);
+        object.put(TopicSchema.TIMESPAN, timestamp);
+        object.put(TopicSchema.DATE, CalendarUtils.convertUnixTime(timestamp));
+        return object;
+    }
+
+    private static FieldSchemaStrategy field(String key, String type, String value, boolean isJson) {
+        FieldSchemaStrategy field = new FieldSchemaStrategy();
+        field.setKey(key);
+        field.setType(type);
+        field.setValue(value);
+        field.setJsonUdf(isJson);
+        return field;
+    }
+}
@@ -0,0 +1,314 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.ipc;
+
+import org.smartloli.kafka.eagle.core.sql.decoder.AvroDecoder;
+import org.smartloli.kafka.eagle.core.sql.decoder.BytesDecoder;
+import org.smartloli.kafka.eagle.core.sql.decoder.JsonDecoder;
+import org.smartloli.kafka.eagle.core.sql.decoder.ProtobufDecoder;
+import org.smartloli.kafka.eagle.core.sql.function.JSONFunction;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Decode protobuf and avro order events written by hand with a local
+ * descriptor set and schema file, and compare them with the json they must
+ * read as, plain and schema registry framed.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public class TestMessageDecoder {
+
+    public static void main(String[] args) throws Exception {
+        protobuf();
+        avro();
+        expect("Bytes", "00ff10", new BytesDecoder().decode(new byte[]{0, -1, 16}));
+        expect("Json utf-16", "{\"id\":1}", new JsonDecoder().decode("{\"id\":1}".getBytes(StandardCharsets.UTF_16LE)));
+        System.out.println("Decoders read as expected");
+    }
+
+    private static void protobuf() throws Exception {
+        byte[] item = message("Item", new byte[][]{
+                field("sku", 1, 1, 9, null),
+                field("count", 2, 1, 13, null)}, new byte[0][]);
+        byte[] order = message("Order", new byte[][]{
+                field("id", 1, 1, 3, null),
+                field("user", 2, 1, 9, null),
+                field("qty", 3, 3, 5, null),
+                field("delta", 4, 1, 17, null),
+                field("big", 5, 1, 18, null),
+                field("f32", 6, 1, 7, null),
+                field("f64", 7, 1, 6, null),
+                field("s32", 8, 1, 15, null),
+                field("s64", 9, 1, 16, null),
+                field("price", 10, 1, 1, null),
+                field("rate", 11, 1, 2, null),
+                field("paid", 12, 1, 8, null),
+                field("status", 13, 1, 14, ".efak.Status"),
+                field("level", 14, 1, 5, null),
+                field("u64", 15, 1, 4, null),
+                field("item", 16, 1, 11, ".efak.Order.Item"),
+                field("items", 17, 3, 11, ".efak.Order.Item"),
+                field("raw", 18, 1, 12, null)}, new byte[][]{item});
+        ByteArrayOutputStream status = new ByteArrayOutputStream();
+        text(status, 1, "Status");
+        length(status, 2, symbol("NEW", 0));
+        length(status, 2, symbol("PAID", 1));
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        text(file, 1, "order.proto");
+        text(file, 2, "efak");
+        length(file, 4, order);
+        length(file, 5, status.toByteArray());
+        ByteArrayOutputStream set = new ByteArrayOutputStream();
+        length(set, 1, file.toByteArray());
+        File descriptors = File.createTempFile("order", ".desc");
+        descriptors.deleteOnExit();
+        Files.write(descriptors.toPath(), set.toByteArray());
+
+        ByteArrayOutputStream msg = new ByteArrayOutputStream();
+        tag(msg, 1, 0);
+        varint(msg, 1024L);
+        text(msg, 2, "efak \"order\"\n");
+        ByteArrayOutputStream packed = new ByteArrayOutputStream();
+        varint(packed, 1L);
+        varint(packed, 2L);
+        varint(packed, 300L);
+        length(msg, 3, packed.toByteArray());
+        tag(msg, 3, 0);
+        varint(msg, 4L);// not packed, joins the packed ones
+        tag(msg, 4, 0);
+        zigzag(msg, -3L);
+        tag(msg, 5, 0);
+        zigzag(msg, -5000000000L);
+        tag(msg, 6, 5);
+        fixed(msg, 4000000000L, 4);
+        tag(msg, 7, 1);
+        fixed(msg, -1L, 8);
+        tag(msg, 8, 5);
+        fixed(msg, -2L, 4);
+        tag(msg, 9, 1);
+        fixed(msg, -3L, 8);
+        tag(msg, 10, 1);
+        fixed(msg, Double.doubleToLongBits(12.5), 8);
+        tag(msg, 11, 5);
+        fixed(msg, Float.floatToIntBits(0.25f), 4);
+        tag(msg, 12, 0);
+        varint(msg, 1L);
+        tag(msg, 13, 0);
+        varint(msg, 1L);
+        tag(msg, 14, 0);
+        varint(msg, -1L);// a negative int32 takes ten bytes
+        tag(msg, 15, 0);
+        varint(msg, -1L);
+        ByteArrayOutputStream sku = new ByteArrayOutputStream();
+        text(sku, 1, "sku-1");
+        tag(sku, 2, 0);
+        varint(sku, 2L);
+        length(msg, 16, sku.toByteArray());
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        text(first, 1, "a");
+        length(msg, 17, first.toByteArray());
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        tag(second, 2, 0);
+        varint(second, 3L);
+        length(msg, 17, second.toByteArray());
+        length(msg, 18, new byte[]{1, 2, 3, 4});
+        tag(msg, 99, 0);
+        varint(msg, 5L);
+        tag(msg, 13, 0);
+        varint(msg, 7L);// the last value wins, a number without a symbol
+
+        String expected = "{\"id\":1024,\"user\":\"efak \\\"order\\\"\\n\",\"qty\":[1,2,300,4],\"delta\":-3,\"big\":-5000000000,"
+                + "\"f32\":4000000000,\"f64\":18446744073709551615,\"s32\":-2,\"s64\":-3,\"price\":12.5,\"rate\":0.25,\"paid\":true,"
+                + "\"status\":7,\"level\":-1,\"u64\":18446744073709551615,\"item\":{\"sku\":\"sku-1\",\"count\":2},"
+                + "\"items\":[{\"sku\":\"a\"},{\"count\":3}],\"raw\":\"AQIDBA==\",\"99\":5}";
+        ProtobufDecoder decoder = new ProtobufDecoder(descriptors.getPath() + "#efak.Order");
+        expect("Protobuf", expected, decoder.decode(msg.toByteArray()));
+        expect("Protobuf framed", expected, decoder.decode(concat(new byte[]{0, 0, 0, 0, 1, 0}, msg.toByteArray())));
+        expect("Protobuf framed indexes", expected, decoder.decode(concat(new byte[]{0, 0, 0, 0, 1, 2, 0}, msg.toByteArray())));
+        expect("Protobuf first message", expected, new ProtobufDecoder(descriptors.getPath()).decode(msg.toByteArray()));
+    }
+
+    private static void avro() throws Exception {
+        String schema = "{\"type\":\"record\",\"name\":\"Order\",\"namespace\":\"org.smartloli.efak\",\"fields\":["
+                + "{\"name\":\"id\",\"type\":\"long\"},{\"name\":\"user\",\"type\":\"string\"},"
+                + "{\"name\":\"items\",\"type\":{\"type\":\"array\",\"items\":\"string\"}},"
+                + "{\"name\":\"tags\",\"type\":{\"type\":\"map\",\"values\":\"int\"}},"
+                + "{\"name\":\"status\",\"type\":{\"type\":\"enum\",\"name\":\"Status\",\"symbols\":[\"NEW\",\"PAID\"]}},"
+                + "{\"name\":\"note\",\"type\":[\"null\",\"string\"]},{\"name\":\"missing\",\"type\":[\"null\",\"string\"]},"
+                + "{\"name\":\"hash\",\"type\":{\"type\":\"fixed\",\"name\":\"Hash\",\"size\":4}},"
+                + "{\"name\":\"price\",\"type\":\"double\"},{\"name\":\"rate\",\"type\":\"float\"},{\"name\":\"paid\",\"type\":\"boolean\"},"
+                + "{\"name\":\"item\",\"type\":[\"null\",{\"type\":\"record\",\"name\":\"Item\",\"fields\":[{\"name\":\"sku\",\"type\":\"string\"}]}]},"
+                + "{\"name\":\"next\",\"type\":[\"null\",\"Status\"]}]}";
+        AvroDecoder decoder = new AvroDecoder(schema(schema));
+
+        ByteArrayOutputStream datum = new ByteArrayOutputStream();
+        zigzag(datum, 1024L);
+        string(datum, "efak");
+        ByteArrayOutputStream block = new ByteArrayOutputStream();
+        string(block, "sku-1");
+        string(block, "sku-2");
+        zigzag(datum, -2L);// a negative count, followed by the byte size of the block
+        zigzag(datum, block.size());
+        datum.write(block.toByteArray());
+        zigzag(datum, 1L);
+        string(datum, "sku-3");
+        zigzag(datum, 0L);
+        block.reset();
+        string(block, "k");
+        zigzag(block, 7L);
+        zigzag(datum, -1L);
+        zigzag(datum, block.size());
+        datum.write(block.toByteArray());
+        zigzag(datum, 1L);
+        string(datum, "j");
+        zigzag(datum, -8L);
+        zigzag(datum, 0L);
+        zigzag(datum, 1L);
+        zigzag(datum, 1L);
+        string(datum, "n");
+        zigzag(datum, 0L);
+        datum.write(new byte[]{1, 2, 3, 4});
+        fixed(datum, Double.doubleToLongBits(12.5), 8);
+        fixed(datum, Float.floatToIntBits(0.25f), 4);
+        datum.write(1);
+        zigzag(datum, 1L);
+        string(datum, "x");
+        zigzag(datum, 1L);
+        zigzag(datum, 0L);
+
+        String expected = "{\"id\":1024,\"user\":\"efak\",\"items\":[\"sku-1\",\"sku-2\",\"sku-3\"],\"tags\":{\"k\":7,\"j\":-8},"
+                + "\"status\":\"PAID\",\"note\":\"n\",\"missing\":null,\"hash\":\"AQIDBA==\",\"price\":12.5,\"rate\":0.25,\"paid\":true,"
+                + "\"item\":{\"sku\":\"x\"},\"next\":\"NEW\"}";
+        String msg = decoder.decode(datum.toByteArray());
+        expect("Avro", expected, msg);
+        expect("Avro framed", expected, decoder.decode(concat(new byte[]{0, 0, 0, 0, 7}, datum.toByteArray())));
+        expect("JSON(msg,'status')", "PAID", new JSONFunction().JSON(msg, "status"));
+
+        // a plain datum starting with a zero is read plain when the framed read fails
+        AvroDecoder pair = new AvroDecoder(schema("{\"type\":\"record\",\"name\":\"Pair\",\"fields\":[{\"name\":\"a\",\"type\":\"long\"},{\"name\":\"b\",\"type\":\"string\"}]}"));
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        zigzag(plain, 0L);
+        string(plain, "efak-kafka");
+        expect("Avro plain zero", "{\"a\":0,\"b\":\"efak-kafka\"}", pair.decode(plain.toByteArray()));
+
+        // a framed value that would also read as a plain datum, four zeros and a string of the five bytes after them
+        AvroDecoder longs = new AvroDecoder(schema("{\"type\":\"record\",\"name\":\"Longs\",\"fields\":[{\"name\":\"a\",\"type\":\"long\"},"
+                + "{\"name\":\"b\",\"type\":\"long\"},{\"name\":\"c\",\"type\":\"long\"},{\"name\":\"d\",\"type\":\"long\"},{\"name\":\"e\",\"type\":\"string\"}]}"));
+        expect("Avro framed first", "{\"a\":1,\"b\":2,\"c\":3,\"d\":4,\"e\":\"\"}", longs.decode(new byte[]{0, 0, 0, 0, 10, 2, 4, 6, 8, 0}));
+    }
+
+    private static void expect(String name, String expected, String actual) {
+        if (!expected.equals(actual)) {
+            throw new IllegalStateException(name + " decoded " + actual + ", expected " + expected);
+        }
+    }
+
+    private static String schema(String schema) throws Exception {
+        File file = File.createTempFile("order", ".avsc");
+        file.deleteOnExit();
+        Files.write(file.toPath(), schema.getBytes(StandardCharsets.UTF_8));
+        return file.getPath();
+    }
+
+    private static byte[] message(String name, byte[][] fields, byte[][] nested) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        text(out, 1, name);
+        for (byte[] field : fields) {
+            length(out, 2, field);
+        }
+        for (byte[] message : nested) {
+            length(out, 3, message);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] field(String name, int number, int label, int type, String typeName) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        text(out, 1, name);
+        tag(out, 3, 0);
+        varint(out, number);
+        tag(out, 4, 0);
+        varint(out, label);
+        tag(out, 5, 0);
+        varint(out, type);
+        if (typeName != null) {
+            text(out, 6, typeName);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] symbol(String name, int number) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        text(out, 1, name);
+        tag(out, 2, 0);
+        varint(out, number);
+        return out.toByteArray();
+    }
+
+    private static void tag(ByteArrayOutputStream out, int number, int wire) {
+        varint(out, (long) number << 3 | wire);
+    }
+
+    private static void text(ByteArrayOutputStream out, int number, String value) {
+        length(out, number, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void length(ByteArrayOutputStream out, int number, byte[] bytes) {
+        tag(out, number, 2);
+        varint(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static void varint(ByteArrayOutputStream out, long raw) {
+        while ((raw & ~0x7FL) != 0) {
+            out.write((int) ((raw & 0x7F) | 0x80));
+            raw >>>= 7;
+        }
+        out.write((int) raw);
+    }
+
+    private static void zigzag(ByteArrayOutputStream out, long value) {
+        varint(out, (value << 1) ^ (value >> 63));
+    }
+
+    private static void fixed(ByteArrayOutputStream out, long value, int length) {
+        for (int i = 0; i < length; i++) {
+            out.write((int) (value >>> (8 * i)));
+        }
+    }
+
+    private static void string(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        zigzag(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static byte[] concat(byte[] header, byte[] value) {
+        byte[] bytes = new byte[header.length + value.length];
+        System.arraycopy(header, 0, bytes, 0, header.length);
+        System.arraycopy(value, 0, bytes, header.length, value.length);
+        return bytes;
+    }
+
+}
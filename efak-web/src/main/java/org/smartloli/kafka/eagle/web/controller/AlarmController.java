@@ -21,6 +21,7 @@ import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import org.apache.shiro.authz.annotation.RequiresPermissions;
+import org.smartloli.kafka.eagle.api.im.dispatch.AlertDispatcher;
 import org.smartloli.kafka.eagle.api.util.AlertUtils;
 import org.smartloli.kafka.eagle.common.protocol.alarm.AlarmClusterInfo;
 import org.smartloli.kafka.eagle.common.protocol.alarm.AlarmConfigInfo;
@@ -720,6 +721,19 @@ public class AlarmController {
         }
     }
 
+    /**
+     * Get alarm dispatch queue depth and delivery latency of every channel.
+     */
+    @RequestMapping(value = "/alarm/dispatch/metrics/ajax", method = RequestMethod.GET)
+    public void alarmDispatchMetricsAjax(HttpServletResponse response, HttpServletRequest request) {
+        try {
+            byte[] output = AlertDispatcher.getInstance().getMetrics().toJSONString().getBytes();
+            BaseController.response(output, response);
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+    }
+
     /**
      * Get alarm cluster type list, such as kafka, zookeeper and so on.
      */
@@ -17,7 +17,6 @@
  */
 package org.smartloli.kafka.eagle.web.controller;
 
-import java.util.HashMap;
 import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
@@ -26,7 +25,9 @@ import javax.servlet.http.HttpSession;
 
 import org.smartloli.kafka.eagle.common.util.KConstants;
 import org.smartloli.kafka.eagle.common.util.KConstants.Topic;
+import org.smartloli.kafka.eagle.web.quartz.shard.task.sub.DashboardSnapshotSubTask;
 import org.smartloli.kafka.eagle.web.service.BScreenService;
+import org.smartloli.kafka.eagle.web.snapshot.DashboardSnapshots;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -48,6 +49,9 @@ public class BScreenController {
 	@Autowired
 	private BScreenService bscreen;
 
+	/** Precomputed big screen views. */
+	private DashboardSnapshots snapshots = DashboardSnapshots.getInstance();
+
 	/** Big screen viewer. */
 	@RequestMapping(value = "/bs", method = RequestMethod.GET)
 	public ModelAndView indexView(HttpSession session) {
@@ -62,8 +66,7 @@ public class BScreenController {
 		HttpSession session = request.getSession();
 		String clusterAlias = session.getAttribute(KConstants.SessionAlias.CLUSTER_ALIAS).toString();
 		try {
-			byte[] output = bscreen.getProducerAndConsumerRate(clusterAlias).getBytes();
-			BaseController.response(output, response);
+			BaseController.response(snapshots.view(clusterAlias, DashboardSnapshots.BS_RATE, () -> bscreen.getProducerAndConsumerRate(clusterAlias)), request, response);
 		} catch (Exception ex) {
 			ex.printStackTrace();
 		}
@@ -75,8 +78,7 @@ public class BScreenController {
 		HttpSession session = request.getSession();
 		String clusterAlias = session.getAttribute(KConstants.SessionAlias.CLUSTER_ALIAS).toString();
 		try {
-			byte[] output = bscreen.getTopicTotalLogSize(clusterAlias).getBytes();
-			BaseController.response(output, response);
+			BaseController.response(snapshots.view(clusterAlias, DashboardSnapshots.BS_LOGSIZE, () -> bscreen.getTopicTotalLogSize(clusterAlias)), request, response);
 		} catch (Exception ex) {
 			ex.printStackTrace();
 		}
@@ -88,8 +90,9 @@ public class BScreenController {
 		HttpSession session = request.getSession();
 		String clusterAlias = session.getAttribute(KConstants.SessionAlias.CLUSTER_ALIAS).toString();
 		try {
-			byte[] output = bscreen.getProducerOrConsumerHistory(clusterAlias, type).getBytes();
-			BaseController.response(output, response);
+			// every type but producer reads the consumer history
+			String history = "producer".equals(type) ? type : "consumer";
+			BaseController.response(snapshots.view(clusterAlias, DashboardSnapshots.BS_HISTORY + history, () -> bscreen.getProducerOrConsumerHistory(clusterAlias, history)), request, response);
 		} catch (Exception ex) {
 			ex.printStackTrace();
 		}
@@ -101,8 +104,12 @@ public class BScreenController {
 		HttpSession session = request.getSession();
 		String clusterAlias = session.getAttribute(KConstants.SessionAlias.CLUSTER_ALIAS).toString();
 		try {
-			byte[] output = bscreen.getTodayOrHistoryConsumerProducer(clusterAlias, dtype).getBytes();
-			BaseController.response(output, response);
+			if (Topic.PRODUCERS.equals(dtype) || Topic.CONSUMERS.equals(dtype) || Topic.LAG.equals(dtype)) {
+				BaseController.response(snapshots.view(clusterAlias, DashboardSnapshots.BS_DAY + dtype, () -> bscreen.getTodayOrHistoryConsumerProducer(clusterAlias, dtype)), request, response);
+			} else {
+				byte[] output = bscreen.getTodayOrHistoryConsumerProducer(clusterAlias, dtype).getBytes();
+				BaseController.response(output, response);
+			}
 		} catch (Exception ex) {
 			ex.printStackTrace();
 		}
@@ -114,11 +121,8 @@ public class BScreenController {
 		HttpSession session = request.getSession();
 		String clusterAlias = session.getAttribute(KConstants.SessionAlias.CLUSTER_ALIAS).toString();
 		try {
-			Map<String, Object> params = new HashMap<>();
-			params.put("cluster", clusterAlias);
-			params.put("tkey", Topic.CAPACITY);
-			byte[] output = bscreen.getTopicCapacity(params).getBytes();
-			BaseController.response(output, response);
+			Map<String, Object> params = DashboardSnapshotSubTask.capacityParams(clusterAlias);
+			BaseController.response(snapshots.view(clusterAlias, DashboardSnapshots.BS_CAPACITY, () -> bscreen.getTopicCapacity(params)), request, response);
 		} catch (Exception ex) {
 			ex.printStackTrace();
 		}
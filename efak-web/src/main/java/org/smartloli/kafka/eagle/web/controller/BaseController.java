@@ -23,8 +23,12 @@ package org.smartloli.kafka.eagle.web.controller;
 import java.io.IOException;
 import java.io.OutputStream;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.smartloli.kafka.eagle.web.snapshot.DashboardSnapshots;
+import org.smartloli.kafka.eagle.web.snapshot.DashboardSnapshots.View;
+
 /**
  * Extract returns to common method.
  * 
@@ -54,4 +58,37 @@ public class BaseController {
 		out.close();
 	}
 
+	/**
+	 * Response data with its etag, or 304 without body when the request
+	 * already holds it.
+	 */
+	public static boolean response(byte[] output, String etag, HttpServletRequest request, HttpServletResponse response) throws IOException {
+		response.setHeader("ETag", etag);
+		String match = request.getHeader("If-None-Match");
+		if (match != null) {
+			for (String tag : match.split(",")) {
+				tag = tag.trim();
+				if (tag.startsWith("W/")) {
+					tag = tag.substring(2);
+				}
+				if (tag.equals(etag) || "*".equals(tag)) {
+					response.setHeader("Cache-Control", "no-cache");
+					response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+					return false;
+				}
+			}
+		}
+		response(output, response);
+		return true;
+	}
+
+	/** Response a view of the dashboard snapshot, conditional on its etag. */
+	public static void response(View view, HttpServletRequest request, HttpServletResponse response) throws IOException {
+		if (view == null) {
+			response(null, response);
+		} else if (!response(view.getBody(), view.getEtag(), request, response)) {
+			DashboardSnapshots.getInstance().notModified();
+		}
+	}
+
 }
@@ -26,6 +26,7 @@ import javax.servlet.http.HttpSession;
 
 import org.smartloli.kafka.eagle.common.util.KConstants;
 import org.smartloli.kafka.eagle.web.service.DashboardService;
+import org.smartloli.kafka.eagle.web.snapshot.DashboardSnapshots;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -64,8 +65,7 @@ public class DashboardController {
 		String clusterAlias = session.getAttribute(KConstants.SessionAlias.CLUSTER_ALIAS).toString();
 
 		try {
-			byte[] output = dashboradService.getDashboard(clusterAlias).getBytes();
-			BaseController.response(output, response);
+			BaseController.response(DashboardSnapshots.getInstance().view(clusterAlias, DashboardSnapshots.DASHBOARD, () -> dashboradService.getDashboard(clusterAlias)), request, response);
 		} catch (Exception ex) {
 			ex.printStackTrace();
 		}
@@ -25,9 +25,18 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 
+import com.alibaba.fastjson.JSONArray;
 import org.apache.commons.lang.StringUtils;
+import org.smartloli.kafka.eagle.common.protocol.cache.BrokerCache;
+import org.smartloli.kafka.eagle.common.protocol.cache.ConnectCache;
 import org.smartloli.kafka.eagle.common.util.KConstants;
+import org.smartloli.kafka.eagle.common.util.KafkaZKSingletonUtils;
+import org.smartloli.kafka.eagle.core.factory.client.KafkaClientRegistry;
+import org.smartloli.kafka.eagle.core.task.cache.LogCacheFactory;
+import org.smartloli.kafka.eagle.core.task.parser.KSqlParser;
+import org.smartloli.kafka.eagle.web.quartz.shard.task.schedule.CollectorScheduler;
 import org.smartloli.kafka.eagle.web.service.MetricsService;
+import org.smartloli.kafka.eagle.web.snapshot.DashboardSnapshots;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -96,6 +105,7 @@ public class MetricsController {
 			param.put("stime", request.getParameter("stime"));
 			param.put("etime", request.getParameter("etime"));
 			param.put("type", request.getParameter("type"));
+			param.put("points", request.getParameter("points"));
 			String modules = request.getParameter("modules");
 			if (StringUtils.isNotBlank(modules)) {
 				param.put("modules", Arrays.asList(modules.split(",")));
@@ -110,4 +120,64 @@ public class MetricsController {
 			ex.printStackTrace();
 		}
 	}
+
+	/** Get version and age of the dashboard snapshot of every cluster by ajax. */
+	@RequestMapping(value = "/metrics/snapshot/ajax", method = RequestMethod.GET)
+	public void snapshotMetricsAjax(HttpServletResponse response, HttpServletRequest request) {
+		try {
+			byte[] output = DashboardSnapshots.getInstance().getMetrics().toJSONString().getBytes();
+			BaseController.response(output, response);
+		} catch (Exception ex) {
+			ex.printStackTrace();
+		}
+	}
+
+	/** Get hit, miss and load statistics of the in memory caches by ajax. */
+	@RequestMapping(value = "/metrics/cache/ajax", method = RequestMethod.GET)
+	public void cacheStatsAjax(HttpServletResponse response, HttpServletRequest request) {
+		try {
+			JSONArray stats = new JSONArray();
+			stats.add(BrokerCache.META_CACHE.getStats());
+			stats.add(LogCacheFactory.LOG_RECORDS.getStats());
+			stats.add(KSqlParser.PLAN_CACHE.getStats());
+			stats.add(ConnectCache.CONNECTORS.getStats());
+			byte[] output = stats.toJSONString().getBytes();
+			BaseController.response(output, response);
+		} catch (Exception ex) {
+			ex.printStackTrace();
+		}
+	}
+
+	/** Get runs, skips, overruns and durations of the collector tasks by ajax. */
+	@RequestMapping(value = "/metrics/collector/ajax", method = RequestMethod.GET)
+	public void collectorMetricsAjax(HttpServletResponse response, HttpServletRequest request) {
+		try {
+			byte[] output = CollectorScheduler.getInstance().getMetrics().toJSONString().getBytes();
+			BaseController.response(output, response);
+		} catch (Exception ex) {
+			ex.printStackTrace();
+		}
+	}
+
+	/** Get borrow, wait and leak counters of the zookeeper client pools by ajax. */
+	@RequestMapping(value = "/metrics/zkpool/ajax", method = RequestMethod.GET)
+	public void zkPoolMetricsAjax(HttpServletResponse response, HttpServletRequest request) {
+		try {
+			byte[] output = KafkaZKSingletonUtils.create().getMetrics().toJSONString().getBytes();
+			BaseController.response(output, response);
+		} catch (Exception ex) {
+			ex.printStackTrace();
+		}
+	}
+
+	/** Get hit, creation and eviction counters of the pooled kafka clients by ajax. */
+	@RequestMapping(value = "/metrics/kafka/client/ajax", method = RequestMethod.GET)
+	public void kafkaClientMetricsAjax(HttpServletResponse response, HttpServletRequest request) {
+		try {
+			byte[] output = KafkaClientRegistry.getInstance().getMetrics().toJSONString().getBytes();
+			BaseController.response(output, response);
+		} catch (Exception ex) {
+			ex.printStackTrace();
+		}
+	}
 }
@@ -221,6 +221,7 @@ public class OffsetController {
             param.put("topic", topic);
             param.put("stime", request.getParameter("stime"));
             param.put("etime", request.getParameter("etime"));
+            param.put("points", request.getParameter("points"));
 
             byte[] output = offsetService.getOffsetsGraph(param).getBytes();
             BaseController.response(output, response);
@@ -0,0 +1,248 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.web.quartz.shard.task.schedule;
+
+import com.alibaba.fastjson.JSONObject;
+import org.smartloli.kafka.eagle.common.util.LoggerUtils;
+import org.smartloli.kafka.eagle.common.util.SystemConfigUtils;
+
+import java.util.*;
+import java.util.Map.Entry;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Runs the collector sub tasks on a shared bounded executor.
+ * <p>
+ * A task is skipped when its previous run is still going, cancelled when it
+ * exceeds 'efak.collector.task.timeout.ms', and its durations are recorded.
+ * Sub tasks fan out per cluster work through {@link #mapOnCluster}, which keeps
+ * at most 'efak.collector.cluster.parallel' calls in flight for each cluster.
+ * Virtual threads are used when the jvm supports them.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public final class CollectorScheduler {
+
+    private static final int TASK_THREADS = Math.max(1, SystemConfigUtils.getIntProperty("efak.collector.threads", 8));
+    private static final int CLUSTER_PARALLEL = Math.max(1, SystemConfigUtils.getIntProperty("efak.collector.cluster.parallel", 4));
+    private static final long TASK_TIMEOUT_MS = SystemConfigUtils.getLongProperty("efak.collector.task.timeout.ms", 5 * 60 * 1000L);
+
+    private final ExecutorService taskExecutor;
+    private final ExecutorService workerExecutor;
+    private final Semaphore taskPermits = new Semaphore(TASK_THREADS);
+    private final ScheduledExecutorService watchdog;
+    private final Map<String, TaskState> tasks = new ConcurrentHashMap<>();
+    private final Map<String, Semaphore> clusterPermits = new ConcurrentHashMap<>();
+
+    private static class SchedulerHolder {
+        private static final CollectorScheduler INSTANCE = new CollectorScheduler();
+    }
+
+    public static CollectorScheduler getInstance() {
+        return SchedulerHolder.INSTANCE;
+    }
+
+    private CollectorScheduler() {
+        ExecutorService virtualExecutor = virtualThreadExecutor();
+        if (virtualExecutor != null) {
+            this.taskExecutor = virtualExecutor;
+            this.workerExecutor = virtualExecutor;
+        } else {
+            this.taskExecutor = Executors.newFixedThreadPool(TASK_THREADS, daemonFactory("efak-collector-task"));
+            this.workerExecutor = Executors.newCachedThreadPool(daemonFactory("efak-collector-worker"));
+        }
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(daemonFactory("efak-collector-watchdog"));
+    }
+
+    /**
+     * Run the sub task by class name, unless its previous run is still going.
+     */
+    public void submit(String taskClassName) {
+        TaskState state = tasks.computeIfAbsent(taskClassName, k -> new TaskState());
+        if (!state.running.compareAndSet(false, true)) {
+            state.skips.incrementAndGet();
+            LoggerUtils.print(this.getClass()).warn("Collector task [" + taskClassName + "] is still running, skip this cycle.");
+            return;
+        }
+        final Runnable task;
+        try {
+            task = (Runnable) Class.forName(taskClassName).newInstance();
+        } catch (Exception e) {
+            state.running.set(false);
+            state.failures.incrementAndGet();
+            LoggerUtils.print(this.getClass()).error("Create collector task [" + taskClassName + "] has error, msg is ", e);
+            return;
+        }
+        final AtomicBoolean started = new AtomicBoolean(false);
+        Future<?> future;
+        try {
+            future = taskExecutor.submit(() -> {
+                if (!started.compareAndSet(false, true)) {
+                    return;
+                }
+                long start = System.currentTimeMillis();
+                boolean acquired = false;
+                try {
+                    taskPermits.acquire();
+                    acquired = true;
+                    task.run();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Throwable e) {
+                    state.failures.incrementAndGet();
+                    LoggerUtils.print(this.getClass()).error("Collector task [" + taskClassName + "] has error, msg is ", e);
+                } finally {
+                    if (acquired) {
+                        taskPermits.release();
+                    }
+                    state.record(System.currentTimeMillis() - start);
+                    state.running.set(false);
+                    LoggerUtils.print(this.getClass()).debug("Collector task [{}] finished in {} ms.", taskClassName, state.lastMs);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            state.running.set(false);
+            state.failures.incrementAndGet();
+            LoggerUtils.print(this.getClass()).error("Submit collector task [" + taskClassName + "] has been rejected, msg is ", e);
+            return;
+        }
+        watchdog.schedule(() -> {
+            if (!future.isDone()) {
+                state.timeouts.incrementAndGet();
+                LoggerUtils.print(this.getClass()).warn("Collector task [" + taskClassName + "] exceeded " + TASK_TIMEOUT_MS + " ms, cancel it.");
+                future.cancel(true);
+                // a task cancelled before it started never reaches its finally block
+                if (started.compareAndSet(false, true)) {
+                    state.running.set(false);
+                }
+            }
+        }, TASK_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Apply the function to every item of one cluster concurrently, bounded per
+     * cluster. Results keep the item order, a failed item yields null.
+     */
+    public <T, R> List<R> mapOnCluster(String clusterAlias, List<T> items, Function<T, R> function) {
+        Semaphore permits = clusterPermits.computeIfAbsent(clusterAlias, k -> new Semaphore(CLUSTER_PARALLEL));
+        List<Future<R>> futures = new ArrayList<>(items.size());
+        try {
+            for (T item : items) {
+                permits.acquire();
+                try {
+                    futures.add(workerExecutor.submit(() -> {
+                        try {
+                            return function.apply(item);
+                        } finally {
+                            permits.release();
+                        }
+                    }));
+                } catch (RejectedExecutionException e) {
+                    permits.release();
+                    throw e;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for (Future<R> future : futures) {
+                future.cancel(true);
+            }
+        }
+        List<R> results = new ArrayList<>(items.size());
+        for (Future<R> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.cancel(true);
+                results.add(null);
+            } catch (Exception e) {
+                LoggerUtils.print(this.getClass()).error("Collector cluster[" + clusterAlias + "] work has error, msg is ", e);
+                results.add(null);
+            }
+        }
+        while (results.size() < items.size()) {
+            results.add(null);
+        }
+        return results;
+    }
+
+    /**
+     * Runs, skips, timeouts, failures and durations of each collector task.
+     */
+    public JSONObject getMetrics() {
+        JSONObject metrics = new JSONObject();
+        for (Entry<String, TaskState> entry : tasks.entrySet()) {
+            TaskState state = entry.getValue();
+            JSONObject object = new JSONObject();
+            object.put("running", state.running.get());
+            object.put("runs", state.runs.get());
+            object.put("skips", state.skips.get());
+            object.put("timeouts", state.timeouts.get());
+            object.put("failures", state.failures.get());
+            object.put("last_ms", state.lastMs);
+            object.put("max_ms", state.maxMs);
+            object.put("avg_ms", state.runs.get() == 0 ? 0 : state.totalMs.get() / state.runs.get());
+            metrics.put(entry.getKey(), object);
+        }
+        return metrics;
+    }
+
+    private static ExecutorService virtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory daemonFactory(String prefix) {
+        AtomicLong counter = new AtomicLong();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static final class TaskState {
+        private final AtomicBoolean running = new AtomicBoolean(false);
+        private final AtomicLong runs = new AtomicLong();
+        private final AtomicLong skips = new AtomicLong();
+        private final AtomicLong timeouts = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong totalMs = new AtomicLong();
+        private volatile long lastMs;
+        private volatile long maxMs;
+
+        private void record(long duration) {
+            runs.incrementAndGet();
+            totalMs.addAndGet(duration);
+            lastMs = duration;
+            if (duration > maxMs) {
+                maxMs = duration;
+            }
+        }
+    }
+
+}
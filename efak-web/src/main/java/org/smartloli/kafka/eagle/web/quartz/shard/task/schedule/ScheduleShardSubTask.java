@@ -23,6 +23,7 @@ import org.smartloli.kafka.eagle.common.util.LoggerUtils;
 import org.smartloli.kafka.eagle.common.util.SystemConfigUtils;
 import org.smartloli.kafka.eagle.core.task.schedule.JobClient;
 import org.smartloli.kafka.eagle.web.quartz.shard.task.sub.CleanChartSubTask;
+import org.smartloli.kafka.eagle.web.quartz.shard.task.sub.DashboardSnapshotSubTask;
 
 import java.util.List;
 import java.util.Map;
@@ -39,6 +40,11 @@ import java.util.Random;
  */
 public class ScheduleShardSubTask {
 
+    /**
+     * Bounded executor shared by all collector sub tasks.
+     */
+    private CollectorScheduler collectorScheduler = CollectorScheduler.getInstance();
+
     public void cleanCharts() {
         try {
             if (SystemConfigUtils.getBooleanProperty("efak.distributed.enable")) {
@@ -60,6 +66,8 @@ public class ScheduleShardSubTask {
         } else {
             jobForStandaloneAllTasks();
         }
+        // every node serving pages keeps its own dashboard snapshot
+        collectorScheduler.submit(DashboardSnapshotSubTask.class.getName());
     }
 
     // if efak is distributed mode
@@ -76,13 +84,7 @@ public class ScheduleShardSubTask {
             if (shardTasks != null) {
                 for (String shardTask : shardTasks) {
                     LoggerUtils.print(this.getClass()).info("Task thread [" + shardTask + "]");
-                    try {
-                        Class subThreadClass = Class.forName(shardTask);
-                        Thread thread = (Thread) subThreadClass.newInstance();
-                        thread.start();
-                    } catch (Exception e) {
-                        LoggerUtils.print(this.getClass()).info("Distributed node start thread sub task has error, msg is ", e);
-                    }
+                    collectorScheduler.submit(shardTask);
                 }
             }
         }
@@ -94,13 +96,7 @@ public class ScheduleShardSubTask {
     private void jobForStandaloneAllTasks() {
         LoggerUtils.print(this.getClass()).info("Standalone mode start thread on one node.");
         for (Map.Entry<String, Integer> entry : ThreadConstants.SUB_TASK_MAP.entrySet()) {
-            try {
-                Class subThreadClass = Class.forName(entry.getKey());
-                Thread thread = (Thread) subThreadClass.newInstance();
-                thread.start();
-            } catch (Exception e) {
-                LoggerUtils.print(this.getClass()).info("Standalone mode start thread sub task has error, msg is ", e);
-            }
+            collectorScheduler.submit(entry.getKey());
         }
     }
 
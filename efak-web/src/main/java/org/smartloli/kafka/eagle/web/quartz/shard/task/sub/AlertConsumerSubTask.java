@@ -28,17 +28,19 @@ import org.smartloli.kafka.eagle.common.util.CalendarUtils;
 import org.smartloli.kafka.eagle.common.util.JSONUtils;
 import org.smartloli.kafka.eagle.common.util.KConstants;
 import org.smartloli.kafka.eagle.common.util.LoggerUtils;
-import org.smartloli.kafka.eagle.core.metrics.KafkaMetricsFactory;
-import org.smartloli.kafka.eagle.core.metrics.KafkaMetricsService;
-import org.smartloli.kafka.eagle.web.controller.StartupListener;
 import org.smartloli.kafka.eagle.web.service.impl.AlertServiceImpl;
 
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 /**
  * Alert consumer metrics sub task.
+ * <p>
+ * The lag alarms are evaluated by {@link MetricsConsumerSubTask} in the pass
+ * computing the lag of the cluster, the only task doing so across the nodes,
+ * so every alarm is raised and counted once. This task is no longer
+ * scheduled and does nothing when a node is still given it, {@link Consumer}
+ * holds the evaluation the lag pass uses.
  *
  * @author smartloli.
  * <p>
@@ -46,76 +48,56 @@ import java.util.Map;
  */
 public class AlertConsumerSubTask extends Thread {
 
-    private KafkaMetricsService kafkaMetricsService = new KafkaMetricsFactory().create();
-
     @Override
     public synchronized void run() {
-        // run consumer metrics job
-        Consumer consumer = new Consumer();
-        consumer.consumer();
+        LoggerUtils.print(this.getClass()).debug("Consumer alarms are evaluated by the consumer lag pass.");
     }
 
-    class Consumer {
-        public void consumer() {
-            try {
-                AlertServiceImpl alertService = StartupListener.getBean("alertServiceImpl", AlertServiceImpl.class);
-                List<AlarmConsumerInfo> alarmConsumers = alertService.getAllAlarmConsumerTasks();
-                for (AlarmConsumerInfo alarmConsumer : alarmConsumers) {
-                    if (KConstants.AlarmType.DISABLE.equals(alarmConsumer.getIsEnable())) {
-                        break;
-                    }
-
-                    Map<String, Object> map = new HashMap<>();
-                    map.put("cluster", alarmConsumer.getCluster());
-                    map.put("alarmGroup", alarmConsumer.getAlarmGroup());
-                    AlarmConfigInfo alarmConfing = alertService.getAlarmConfigByGroupName(map);
+    static class Consumer {
 
-                    Map<String, Object> params = new HashMap<>();
-                    params.put("cluster", alarmConsumer.getCluster());
-                    params.put("tday", CalendarUtils.getCustomDate("yyyyMMdd"));
-                    params.put("group", alarmConsumer.getGroup());
-                    params.put("topic", alarmConsumer.getTopic());
-                    // real consumer lag
-                    long lag = alertService.queryLastestLag(params);
-                    // alert common info
-                    AlarmMessageInfo alarmMsg = new AlarmMessageInfo();
+        /**
+         * Raise or clear the alarm for the lag and notify its alarm group.
+         */
+        void evaluate(AlertServiceImpl alertService, AlarmConsumerInfo alarmConsumer, long lag) {
+            Map<String, Object> map = new HashMap<>();
+            map.put("cluster", alarmConsumer.getCluster());
+            map.put("alarmGroup", alarmConsumer.getAlarmGroup());
+            AlarmConfigInfo alarmConfing = alertService.getAlarmConfigByGroupName(map);
+            // alert common info
+            AlarmMessageInfo alarmMsg = new AlarmMessageInfo();
+            try {
+                alarmMsg.setAlarmId(alarmConsumer.getId());
+                alarmMsg.setAlarmCluster(alarmConfing.getCluster());
+                alarmMsg.setAlarmDate(CalendarUtils.getDate());
+                alarmMsg.setAlarmLevel(alarmConsumer.getAlarmLevel());
+                alarmMsg.setAlarmProject("Consumer");
+                alarmMsg.setAlarmTimes("current(" + alarmConsumer.getAlarmTimes() + "), max(" + alarmConsumer.getAlarmMaxTimes() + ")");
+            } catch (Exception e) {
+                LoggerUtils.print(this.getClass()).error("Alert message load common information has error, msg is ", e);
+            }
+            if (lag > alarmConsumer.getLag() && (alarmConsumer.getAlarmTimes() < alarmConsumer.getAlarmMaxTimes() || alarmConsumer.getAlarmMaxTimes() == -1)) {
+                // alarm consumer
+                alarmConsumer.setAlarmTimes(alarmConsumer.getAlarmTimes() + 1);
+                alarmConsumer.setIsNormal("N");
+                alertService.modifyConsumerStatusAlertById(alarmConsumer);
+                try {
+                    sendAlarmConsumerError(alarmConfing, alarmConsumer, lag, alarmMsg);
+                } catch (Exception e) {
+                    LoggerUtils.print(this.getClass()).error("Send alarm consumer exception has error, msg is ", e);
+                }
+            } else if (lag <= alarmConsumer.getLag()) {
+                if (alarmConsumer.getIsNormal().equals("N")) {
+                    alarmConsumer.setIsNormal("Y");
+                    // clear error alarm and reset
+                    alarmConsumer.setAlarmTimes(0);
+                    // notify the cancel of the alarm
+                    alertService.modifyConsumerStatusAlertById(alarmConsumer);
                     try {
-                        alarmMsg.setAlarmId(alarmConsumer.getId());
-                        alarmMsg.setAlarmCluster(alarmConfing.getCluster());
-                        alarmMsg.setAlarmDate(CalendarUtils.getDate());
-                        alarmMsg.setAlarmLevel(alarmConsumer.getAlarmLevel());
-                        alarmMsg.setAlarmProject("Consumer");
-                        alarmMsg.setAlarmTimes("current(" + alarmConsumer.getAlarmTimes() + "), max(" + alarmConsumer.getAlarmMaxTimes() + ")");
+                        sendAlarmConsumerNormal(alarmConfing, alarmConsumer, lag, alarmMsg);
                     } catch (Exception e) {
-                        LoggerUtils.print(this.getClass()).error("Alert message load common information has error, msg is ", e);
-                    }
-                    if (lag > alarmConsumer.getLag() && (alarmConsumer.getAlarmTimes() < alarmConsumer.getAlarmMaxTimes() || alarmConsumer.getAlarmMaxTimes() == -1)) {
-                        // alarm consumer
-                        alarmConsumer.setAlarmTimes(alarmConsumer.getAlarmTimes() + 1);
-                        alarmConsumer.setIsNormal("N");
-                        alertService.modifyConsumerStatusAlertById(alarmConsumer);
-                        try {
-                            sendAlarmConsumerError(alarmConfing, alarmConsumer, lag, alarmMsg);
-                        } catch (Exception e) {
-                            LoggerUtils.print(this.getClass()).error("Send alarm consumer exception has error, msg is ", e);
-                        }
-                    } else if (lag <= alarmConsumer.getLag()) {
-                        if (alarmConsumer.getIsNormal().equals("N")) {
-                            alarmConsumer.setIsNormal("Y");
-                            // clear error alarm and reset
-                            alarmConsumer.setAlarmTimes(0);
-                            // notify the cancel of the alarm
-                            alertService.modifyConsumerStatusAlertById(alarmConsumer);
-                            try {
-                                sendAlarmConsumerNormal(alarmConfing, alarmConsumer, lag, alarmMsg);
-                            } catch (Exception e) {
-                                LoggerUtils.print(this.getClass()).error("Send alarm consumer normal has error, msg is ", e);
-                            }
-                        }
+                        LoggerUtils.print(this.getClass()).error("Send alarm consumer normal has error, msg is ", e);
                     }
                 }
-            } catch (Exception e) {
-                LoggerUtils.print(this.getClass()).error("Alarm consumer lag has error, msg is ", e);
             }
         }
 
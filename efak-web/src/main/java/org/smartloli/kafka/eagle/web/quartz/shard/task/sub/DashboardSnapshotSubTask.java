@@ -0,0 +1,91 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.web.quartz.shard.task.sub;
+
+import org.smartloli.kafka.eagle.common.util.KConstants.Topic;
+import org.smartloli.kafka.eagle.common.util.LoggerUtils;
+import org.smartloli.kafka.eagle.common.util.SystemConfigUtils;
+import org.smartloli.kafka.eagle.web.controller.StartupListener;
+import org.smartloli.kafka.eagle.web.service.impl.BScreenServiceImpl;
+import org.smartloli.kafka.eagle.web.service.impl.DashboardServiceImpl;
+import org.smartloli.kafka.eagle.web.snapshot.DashboardSnapshots;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Materialize the dashboard and big screen views of every cluster.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public class DashboardSnapshotSubTask extends Thread {
+
+    @Override
+    public synchronized void run() {
+        try {
+            this.materialize();
+        } catch (Exception e) {
+            LoggerUtils.print(this.getClass()).error("Materialize dashboard snapshot has error, msg is ", e);
+        }
+    }
+
+    private void materialize() {
+        DashboardServiceImpl dashboardServiceImpl = StartupListener.getBean("dashboardServiceImpl", DashboardServiceImpl.class);
+        BScreenServiceImpl bscreenServiceImpl = StartupListener.getBean("BScreenServiceImpl", BScreenServiceImpl.class);
+        for (String clusterAlias : SystemConfigUtils.getPropertyArray("efak.zk.cluster.alias", ",")) {
+            Map<String, String> views = new HashMap<>();
+            put(views, DashboardSnapshots.DASHBOARD, () -> dashboardServiceImpl.getDashboard(clusterAlias));
+            put(views, DashboardSnapshots.BS_RATE, () -> bscreenServiceImpl.getProducerAndConsumerRate(clusterAlias));
+            put(views, DashboardSnapshots.BS_LOGSIZE, () -> bscreenServiceImpl.getTopicTotalLogSize(clusterAlias));
+            put(views, DashboardSnapshots.BS_CAPACITY, () -> bscreenServiceImpl.getTopicCapacity(capacityParams(clusterAlias)));
+            for (String type : new String[]{"producer", "consumer"}) {
+                put(views, DashboardSnapshots.BS_HISTORY + type, () -> bscreenServiceImpl.getProducerOrConsumerHistory(clusterAlias, type));
+            }
+            for (String type : new String[]{Topic.PRODUCERS, Topic.CONSUMERS, Topic.LAG}) {
+                put(views, DashboardSnapshots.BS_DAY + type, () -> bscreenServiceImpl.getTodayOrHistoryConsumerProducer(clusterAlias, type));
+            }
+            DashboardSnapshots.getInstance().publish(clusterAlias, views);
+        }
+    }
+
+    /**
+     * Params of the big screen topic capacity view.
+     */
+    public static Map<String, Object> capacityParams(String clusterAlias) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("cluster", clusterAlias);
+        params.put("tkey", Topic.CAPACITY);
+        return params;
+    }
+
+    private void put(Map<String, String> views, String name, Supplier<String> view) {
+        // a failed view keeps its previous content
+        try {
+            String content = view.get();
+            if (content != null) {
+                views.put(name, content);
+            }
+        } catch (Exception e) {
+            LoggerUtils.print(this.getClass()).error("Materialize dashboard view[" + name + "] has error, msg is ", e);
+        }
+    }
+
+}
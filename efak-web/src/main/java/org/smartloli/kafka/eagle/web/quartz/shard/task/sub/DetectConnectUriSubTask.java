@@ -17,14 +17,20 @@
  */
 package org.smartloli.kafka.eagle.web.quartz.shard.task.sub;
 
+import com.alibaba.fastjson.JSONObject;
+import org.smartloli.kafka.eagle.common.protocol.cache.ConnectCache;
 import org.smartloli.kafka.eagle.common.protocol.plugins.ConnectConfigInfo;
 import org.smartloli.kafka.eagle.common.util.*;
 import org.smartloli.kafka.eagle.web.controller.StartupListener;
 import org.smartloli.kafka.eagle.web.service.impl.MetricsServiceImpl;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Collect kafka connect rest service dataset.
@@ -50,23 +56,45 @@ public class DetectConnectUriSubTask extends Thread {
     }
 
     /**
-     * Whether kafka connect uri is alive by detected.
+     * Whether kafka connect uri is alive by detected. Every uri of the cluster
+     * is probed and reads its connectors at once and the connectors read are
+     * cached, a uri that answers but fails to list its connectors is still
+     * alive and a uri whose probe does not end in time is shutdown.
      */
     private void detectConnectUri(String clusterAlias) {
         MetricsServiceImpl metrics = StartupListener.getBean("metricsServiceImpl", MetricsServiceImpl.class);
         Map<String, Object> params = new HashMap<>();
         params.put("cluster", clusterAlias);
         List<ConnectConfigInfo> connectUris = metrics.detectConnectConfigList(params);
+        List<CompletableFuture<Boolean>> probes = new ArrayList<>();
+        List<CompletableFuture<JSONObject>> collects = new ArrayList<>();
         for (ConnectConfigInfo configInfo : connectUris) {
+            String connectUri = configInfo.getConnectUri();
+            probes.add(PooledHttpClient.getInstance().supplyAsync(() -> NetUtils.uri(connectUri)));
+            collects.add(ConnectCollector.collectAsync(connectUri));
+        }
+        // probes queued behind busy request threads get one more telnet timeout
+        long deadline = System.currentTimeMillis() + 2L * KConstants.ServerDevice.TIME_OUT;
+        for (int i = 0; i < connectUris.size(); i++) {
+            ConnectConfigInfo configInfo = connectUris.get(i);
             try {
-                if (NetUtils.uri(configInfo.getConnectUri())) {
+                long wait = Math.max(0L, deadline - System.currentTimeMillis());
+                if (probes.get(i).get(wait, TimeUnit.MILLISECONDS)) {
                     configInfo.setAlive(KConstants.BrokerSever.CONNECT_URI_ALIVE);
                 } else {
                     configInfo.setAlive(KConstants.BrokerSever.CONNECT_URI_SHUTDOWN);
                 }
+            } catch (TimeoutException e) {
+                configInfo.setAlive(KConstants.BrokerSever.CONNECT_URI_SHUTDOWN);
+                LoggerUtils.print(this.getClass()).warn("Probe kafka connect uri[" + configInfo.getConnectUri() + "] has timed out.");
             } catch (Exception e) {
                 LoggerUtils.print(this.getClass()).error("Get kafka connect uri alive or shutdown has error, msg is ", e);
             }
+            try {
+                ConnectCache.CONNECTORS.put(ConnectCollector.base(configInfo.getConnectUri()), collects.get(i).join());
+            } catch (Exception e) {
+                LoggerUtils.print(this.getClass()).warn("Collect kafka connect uri[" + configInfo.getConnectUri() + "] connectors has error, msg is " + e.getMessage());
+            }
             configInfo.setModify(CalendarUtils.getDate());
             try {
                 metrics.modifyConnectConfigStatusById(configInfo);
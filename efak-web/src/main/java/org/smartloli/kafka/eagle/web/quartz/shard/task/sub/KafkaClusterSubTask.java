@@ -18,6 +18,7 @@
 package org.smartloli.kafka.eagle.web.quartz.shard.task.sub;
 
 import org.smartloli.kafka.eagle.common.constant.JmxConstants;
+import org.smartloli.kafka.eagle.common.constant.JmxConstants.BrokerServer;
 import org.smartloli.kafka.eagle.common.protocol.BrokersInfo;
 import org.smartloli.kafka.eagle.common.protocol.KpiInfo;
 import org.smartloli.kafka.eagle.common.protocol.MBeanInfo;
@@ -31,7 +32,9 @@ import org.smartloli.kafka.eagle.web.controller.StartupListener;
 import org.smartloli.kafka.eagle.web.service.impl.MetricsServiceImpl;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Collect kafka cluster dataset.
@@ -46,6 +49,25 @@ public class KafkaClusterSubTask extends Thread {
     private static final String[] BROKER_KPIS = new String[]{MBean.MESSAGEIN, MBean.BYTEIN, MBean.BYTEOUT, MBean.BYTESREJECTED, MBean.FAILEDFETCHREQUEST, MBean.FAILEDPRODUCEREQUEST, MBean.TOTALFETCHREQUESTSPERSEC, MBean.TOTALPRODUCEREQUESTSPERSEC, MBean.REPLICATIONBYTESINPERSEC, MBean.REPLICATIONBYTESOUTPERSEC, MBean.PRODUCEMESSAGECONVERSIONS,
             KConstants.MBean.OSTOTALMEMORY, MBean.OSFREEMEMORY, MBean.CPUUSED};
 
+    /**
+     * Broker meter kpi and the mbean it is read from.
+     */
+    private static final Map<String, String> BROKER_METERS = new LinkedHashMap<String, String>() {
+        {
+            put(MBean.MESSAGEIN, BrokerServer.MESSAGES_IN_PER_SEC.getValue());
+            put(MBean.BYTEIN, BrokerServer.BYTES_IN_PER_SEC.getValue());
+            put(MBean.BYTEOUT, BrokerServer.BYTES_OUT_PER_SEC.getValue());
+            put(MBean.BYTESREJECTED, BrokerServer.BYTES_REJECTED_PER_SEC.getValue());
+            put(MBean.FAILEDFETCHREQUEST, BrokerServer.FAILED_FETCH_REQUESTS_PER_SEC.getValue());
+            put(MBean.FAILEDPRODUCEREQUEST, BrokerServer.FAILED_PRODUCE_REQUESTS_PER_SEC.getValue());
+            put(MBean.TOTALFETCHREQUESTSPERSEC, BrokerServer.TOTAL_FETCH_REQUESTS_PER_SEC.getValue());
+            put(MBean.TOTALPRODUCEREQUESTSPERSEC, BrokerServer.TOTAL_PRODUCE_REQUESTS_PER_SEC.getValue());
+            put(MBean.REPLICATIONBYTESINPERSEC, BrokerServer.REPLICATION_BYTES_IN_PER_SEC.getValue());
+            put(MBean.REPLICATIONBYTESOUTPERSEC, BrokerServer.REPLICATION_BYTES_OUT_PER_SEC.getValue());
+            put(MBean.PRODUCEMESSAGECONVERSIONS, BrokerServer.PRODUCE_MESSAGE_CONVERSIONS_PER_SEC.getValue());
+        }
+    };
+
     /**
      * Kafka service interface.
      */
@@ -81,14 +103,19 @@ public class KafkaClusterSubTask extends Thread {
             kpiInfo.setTm(CalendarUtils.getCustomDate("yyyyMMdd"));
             kpiInfo.setTimespan(CalendarUtils.getTimeSpan());
             kpiInfo.setKey(kpi);
-            for (BrokersInfo kafka : brokers) {
-                this.kafkaAssembly(clusterAlias, mx4jService, kpi, kpiInfo, kafka);
-            }
             kpiInfo.setBroker(clusterAlias);
             kpiInfo.setType(KConstants.CollectorType.KAFKA);
             list.add(kpiInfo);
         }
 
+        for (BrokersInfo kafka : brokers) {
+            // read all broker meters with one pooled jmx connection
+            Map<String, MBeanInfo> meters = mx4jService.meterRates(clusterAlias, kafka.getHost() + ":" + kafka.getJmxPort(), BROKER_METERS.values());
+            for (KpiInfo kpiInfo : list) {
+                this.kafkaAssembly(clusterAlias, meters, kpiInfo.getKey(), kpiInfo, kafka);
+            }
+        }
+
         MetricsServiceImpl metrics = StartupListener.getBean("metricsServiceImpl", MetricsServiceImpl.class);
         try {
             metrics.insert(list);
@@ -97,75 +124,15 @@ public class KafkaClusterSubTask extends Thread {
         }
     }
 
-    private void kafkaAssembly(String clusterAlias, Mx4jService mx4jService, String type, KpiInfo kpiInfo, BrokersInfo kafka) {
-        String uri = kafka.getHost() + ":" + kafka.getJmxPort();
+    private void kafkaAssembly(String clusterAlias, Map<String, MBeanInfo> meters, String type, KpiInfo kpiInfo, BrokersInfo kafka) {
+        if (BROKER_METERS.containsKey(type)) {
+            MBeanInfo meter = meters.get(BROKER_METERS.get(type));
+            if (meter != null) {
+                kpiInfo.setValue(StrUtils.numberic(kpiInfo.getValue() == null ? "0.0" : kpiInfo.getValue()) + StrUtils.numberic(meter.getOneMinute()) + "");
+            }
+            return;
+        }
         switch (type) {
-            case MBean.MESSAGEIN:
-                MBeanInfo msg = mx4jService.messagesInPerSec(clusterAlias, uri);
-                if (msg != null) {
-                    kpiInfo.setValue(StrUtils.numberic(kpiInfo.getValue() == null ? "0.0" : kpiInfo.getValue()) + StrUtils.numberic(msg.getOneMinute()) + "");
-                }
-                break;
-            case MBean.BYTEIN:
-                MBeanInfo bin = mx4jService.bytesInPerSec(clusterAlias, uri);
-                if (bin != null) {
-                    kpiInfo.setValue(StrUtils.numberic(kpiInfo.getValue() == null ? "0.0" : kpiInfo.getValue()) + StrUtils.numberic(bin.getOneMinute()) + "");
-                }
-                break;
-            case MBean.BYTEOUT:
-                MBeanInfo bout = mx4jService.bytesOutPerSec(clusterAlias, uri);
-                if (bout != null) {
-                    kpiInfo.setValue(StrUtils.numberic(kpiInfo.getValue() == null ? "0.0" : kpiInfo.getValue()) + StrUtils.numberic(bout.getOneMinute()) + "");
-                }
-                break;
-            case MBean.BYTESREJECTED:
-                MBeanInfo bytesRejectedPerSec = mx4jService.bytesRejectedPerSec(clusterAlias, uri);
-                if (bytesRejectedPerSec != null) {
-                    kpiInfo.setValue(StrUtils.numberic(kpiInfo.getValue() == null ? "0.0" : kpiInfo.getValue()) + StrUtils.numberic(bytesRejectedPerSec.getOneMinute()) + "");
-                }
-                break;
-            case MBean.FAILEDFETCHREQUEST:
-                MBeanInfo failedFetchRequestsPerSec = mx4jService.failedFetchRequestsPerSec(clusterAlias, uri);
-                if (failedFetchRequestsPerSec != null) {
-                    kpiInfo.setValue(StrUtils.numberic(kpiInfo.getValue() == null ? "0.0" : kpiInfo.getValue()) + StrUtils.numberic(failedFetchRequestsPerSec.getOneMinute()) + "");
-                }
-                break;
-            case MBean.FAILEDPRODUCEREQUEST:
-                MBeanInfo failedProduceRequestsPerSec = mx4jService.failedProduceRequestsPerSec(clusterAlias, uri);
-                if (failedProduceRequestsPerSec != null) {
-                    kpiInfo.setValue(StrUtils.numberic(kpiInfo.getValue() == null ? "0.0" : kpiInfo.getValue()) + StrUtils.numberic(failedProduceRequestsPerSec.getOneMinute()) + "");
-                }
-                break;
-            case MBean.TOTALFETCHREQUESTSPERSEC:
-                MBeanInfo totalFetchRequests = mx4jService.totalFetchRequestsPerSec(clusterAlias, uri);
-                if (totalFetchRequests != null) {
-                    kpiInfo.setValue(StrUtils.numberic(kpiInfo.getValue() == null ? "0.0" : kpiInfo.getValue()) + StrUtils.numberic(totalFetchRequests.getOneMinute()) + "");
-                }
-                break;
-            case MBean.TOTALPRODUCEREQUESTSPERSEC:
-                MBeanInfo totalProduceRequestsPerSec = mx4jService.totalProduceRequestsPerSec(clusterAlias, uri);
-                if (totalProduceRequestsPerSec != null) {
-                    kpiInfo.setValue(StrUtils.numberic(kpiInfo.getValue() == null ? "0.0" : kpiInfo.getValue()) + StrUtils.numberic(totalProduceRequestsPerSec.getOneMinute()) + "");
-                }
-                break;
-            case MBean.REPLICATIONBYTESINPERSEC:
-                MBeanInfo replicationBytesInPerSec = mx4jService.replicationBytesInPerSec(clusterAlias, uri);
-                if (replicationBytesInPerSec != null) {
-                    kpiInfo.setValue(StrUtils.numberic(kpiInfo.getValue() == null ? "0.0" : kpiInfo.getValue()) + StrUtils.numberic(replicationBytesInPerSec.getOneMinute()) + "");
-                }
-                break;
-            case MBean.REPLICATIONBYTESOUTPERSEC:
-                MBeanInfo replicationBytesOutPerSec = mx4jService.replicationBytesOutPerSec(clusterAlias, uri);
-                if (replicationBytesOutPerSec != null) {
-                    kpiInfo.setValue(StrUtils.numberic(kpiInfo.getValue() == null ? "0.0" : kpiInfo.getValue()) + StrUtils.numberic(replicationBytesOutPerSec.getOneMinute()) + "");
-                }
-                break;
-            case MBean.PRODUCEMESSAGECONVERSIONS:
-                MBeanInfo produceMessageConv = mx4jService.produceMessageConversionsPerSec(clusterAlias, uri);
-                if (produceMessageConv != null) {
-                    kpiInfo.setValue(StrUtils.numberic(kpiInfo.getValue() == null ? "0.0" : kpiInfo.getValue()) + StrUtils.numberic(produceMessageConv.getOneMinute()) + "");
-                }
-                break;
             case MBean.OSTOTALMEMORY:
                 long totalMemory = kafkaService.getOSMemory(clusterAlias, kafka.getHost(), kafka.getJmxPort(), JmxConstants.BrokerServer.TOTAL_PHYSICAL_MEMORY_SIZE.getValue());
                 kpiInfo.setValue(Long.parseLong(kpiInfo.getValue() == null ? "0" : kpiInfo.getValue()) + totalMemory + "");
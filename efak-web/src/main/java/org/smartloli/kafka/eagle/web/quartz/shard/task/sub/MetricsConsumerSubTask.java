@@ -17,23 +17,27 @@
  */
 package org.smartloli.kafka.eagle.web.quartz.shard.task.sub;
 
-import com.alibaba.fastjson.JSON;
-import com.alibaba.fastjson.JSONArray;
-import com.alibaba.fastjson.JSONObject;
-import org.apache.kafka.common.TopicPartition;
-import org.smartloli.kafka.eagle.common.protocol.OwnerInfo;
+import org.smartloli.kafka.eagle.common.protocol.alarm.AlarmConsumerInfo;
 import org.smartloli.kafka.eagle.common.protocol.bscreen.BScreenConsumerInfo;
+import org.smartloli.kafka.eagle.common.protocol.consumer.ConsumerGroupMetaInfo;
+import org.smartloli.kafka.eagle.common.protocol.consumer.ConsumerGroupSnapshotInfo;
 import org.smartloli.kafka.eagle.common.protocol.consumer.ConsumerGroupsInfo;
 import org.smartloli.kafka.eagle.common.protocol.consumer.ConsumerSummaryInfo;
 import org.smartloli.kafka.eagle.common.util.CalendarUtils;
+import org.smartloli.kafka.eagle.common.util.KConstants;
 import org.smartloli.kafka.eagle.common.util.KConstants.Topic;
 import org.smartloli.kafka.eagle.common.util.LoggerUtils;
 import org.smartloli.kafka.eagle.common.util.SystemConfigUtils;
 import org.smartloli.kafka.eagle.core.factory.KafkaFactory;
 import org.smartloli.kafka.eagle.core.factory.KafkaService;
+import org.smartloli.kafka.eagle.core.factory.offset.ConsumerLagEngine;
+import org.smartloli.kafka.eagle.core.factory.offset.ConsumerLagEngine.ConsumerLag;
+import org.smartloli.kafka.eagle.core.factory.offset.KafkaOffsetSnapshotService;
+import org.smartloli.kafka.eagle.core.factory.offset.TopicOffsetSnapshot;
 import org.smartloli.kafka.eagle.core.factory.v2.BrokerFactory;
 import org.smartloli.kafka.eagle.core.factory.v2.BrokerService;
 import org.smartloli.kafka.eagle.web.controller.StartupListener;
+import org.smartloli.kafka.eagle.web.service.impl.AlertServiceImpl;
 import org.smartloli.kafka.eagle.web.service.impl.ConsumerServiceImpl;
 import org.smartloli.kafka.eagle.web.service.impl.MetricsServiceImpl;
 
@@ -62,6 +66,11 @@ public class MetricsConsumerSubTask extends Thread {
      */
     private static BrokerService brokerService = new BrokerFactory().create();
 
+    /**
+     * Consumer lag kept between passes.
+     */
+    private ConsumerLagEngine lagEngine = ConsumerLagEngine.getInstance();
+
 
     @Override
     public synchronized void run() {
@@ -93,11 +102,26 @@ public class MetricsConsumerSubTask extends Thread {
             return;
         }
 
+        AlertServiceImpl alertService = null;
+        List<AlarmConsumerInfo> alarmConsumers = new ArrayList<>();
+        try {
+            alertService = StartupListener.getBean("alertServiceImpl", AlertServiceImpl.class);
+            alarmConsumers = alertService.getAllAlarmConsumerTasks();
+        } catch (Exception e) {
+            LoggerUtils.print(this.getClass()).error("Get alarm consumer tasks has error, msg is ", e);
+        }
+
         List<BScreenConsumerInfo> bscreenConsumers = new ArrayList<>();
         List<ConsumerSummaryInfo> consumerSummarys = new ArrayList<>();
         List<ConsumerGroupsInfo> consumerGroupTopics = new ArrayList<>();
         String[] clusterAliass = SystemConfigUtils.getPropertyArray("efak.zk.cluster.alias", ",");
         for (String clusterAlias : clusterAliass) {
+            ConsumerGroupSnapshotInfo consumerGroups = kafkaService.getKafkaConsumerSnapshot(clusterAlias);
+            if (!consumerGroups.isCollected()) {
+                // nothing is known about the groups, keep stored consumers and alarms as they are
+                LoggerUtils.print(this.getClass()).warn("Cluster[" + clusterAlias + "] has no consumer snapshot, skip consumer metrics.");
+                continue;
+            }
 
             // get all consumer summary from database
             Map<String, Object> paramsSummary = new HashMap<>();
@@ -109,7 +133,22 @@ public class MetricsConsumerSubTask extends Thread {
             paramsGroup.put("cluster", clusterAlias);
             List<ConsumerGroupsInfo> allConsumerGroups = metricsServiceImpl.getAllConsumerGroups(paramsGroup);
 
-            JSONArray consumerGroups = JSON.parseArray(kafkaService.getKafkaConsumer(clusterAlias));
+            // lag of every group and topic from the committed and log end offsets in one pass,
+            // the end offsets are read after the committed ones unless the brokers can not be reached
+            TopicOffsetSnapshot offsetSnapshot = KafkaOffsetSnapshotService.getInstance().getSnapshotAfter(clusterAlias, consumerGroups.getTimestamp());
+            if (offsetSnapshot == null) {
+                offsetSnapshot = KafkaOffsetSnapshotService.getInstance().getSnapshot(clusterAlias);
+                if (offsetSnapshot != null) {
+                    LoggerUtils.print(this.getClass()).warn("Cluster[" + clusterAlias + "] reads end offsets older than the committed offsets, consumer lag is approximate.");
+                }
+            }
+            if (offsetSnapshot != null) {
+                List<ConsumerLag> lags = lagEngine.update(clusterAlias, consumerGroups, offsetSnapshot);
+                alertConsumers(clusterAlias, alarmConsumers, alertService);
+                LoggerUtils.print(this.getClass()).debug("Cluster[" + clusterAlias + "] computes lag of [" + lags.size() + "] group topics.");
+            } else {
+                LoggerUtils.print(this.getClass()).warn("Cluster[" + clusterAlias + "] has no offset snapshot, skip consumer lag.");
+            }
 
             // clean offline consumer summary
             cleanUnExistKafkaConsumerSummary(clusterAlias, allConsumerSummary, consumerGroups, metricsServiceImpl);
@@ -117,19 +156,17 @@ public class MetricsConsumerSubTask extends Thread {
             // clean offline consumer group
             cleanUnExistKafkaConsumerGroup(clusterAlias, allConsumerGroups, consumerGroups, metricsServiceImpl);
 
-            for (Object object : consumerGroups) {
-                JSONObject consumerGroup = (JSONObject) object;
-                String group = consumerGroup.getString("group");
+            for (ConsumerGroupMetaInfo consumerGroup : consumerGroups.getGroups()) {
+                String group = consumerGroup.getGroup();
 
                 // storage offline consumer summary
-                OwnerInfo ownerInfo = kafkaService.getKafkaActiverNotOwners(clusterAlias, group);
                 ConsumerSummaryInfo csi = new ConsumerSummaryInfo();
                 csi.setCluster(clusterAlias);
                 csi.setGroup(group);
-                csi.setTopicNumbers(ownerInfo.getTopicSets().size());
-                csi.setCoordinator(consumerGroup.getString("node"));
-                csi.setActiveTopic(getKafkaActiveTopicNumbers(clusterAlias, group, consumerServiceImpl));
-                csi.setActiveThread(ownerInfo.getActiveSize());
+                csi.setTopicNumbers(consumerGroup.getTopics().size());
+                csi.setCoordinator(consumerGroup.getNode());
+                csi.setActiveTopic(getKafkaActiveTopicNumbers(clusterAlias, consumerGroup, consumerServiceImpl));
+                csi.setActiveThread(consumerGroup.getActiveSize());
                 consumerSummarys.add(csi);
                 if (consumerSummarys.size() > Topic.BATCH_SIZE) {
                     try {
@@ -140,13 +177,13 @@ public class MetricsConsumerSubTask extends Thread {
                     }
                 }
 
-                for (String topic : kafkaService.getKafkaConsumerTopics(clusterAlias, group)) {
+                for (String topic : consumerGroup.getTopics()) {
                     // storage offline consumer group
                     ConsumerGroupsInfo consumerGroupTopic = new ConsumerGroupsInfo();
                     consumerGroupTopic.setCluster(clusterAlias);
                     consumerGroupTopic.setGroup(group);
                     consumerGroupTopic.setTopic(topic);
-                    consumerGroupTopic.setStatus(getKafkaConsumerTopicStatus(clusterAlias, group, topic, consumerServiceImpl));
+                    consumerGroupTopic.setStatus(getKafkaConsumerTopicStatus(clusterAlias, consumerGroup, topic, consumerServiceImpl));
 
                     consumerGroupTopics.add(consumerGroupTopic);
                     if (consumerGroupTopics.size() > Topic.BATCH_SIZE) {
@@ -159,56 +196,34 @@ public class MetricsConsumerSubTask extends Thread {
                     }
 
                     // kafka eagle bscreen datasets
+                    ConsumerLag lag = lagEngine.getLag(clusterAlias, group, topic);
+                    if (lag == null) {
+                        continue;
+                    }
                     BScreenConsumerInfo bscreenConsumer = new BScreenConsumerInfo();
                     bscreenConsumer.setCluster(clusterAlias);
                     bscreenConsumer.setGroup(group);
                     bscreenConsumer.setTopic(topic);
-
-                    List<String> partitions = kafkaService.findTopicPartition(clusterAlias, topic);
-                    Set<Integer> partitionsInts = new HashSet<>();
-                    for (String partition : partitions) {
-                        try {
-                            partitionsInts.add(Integer.parseInt(partition));
-                        } catch (Exception e) {
-                            LoggerUtils.print(this.getClass()).error("Parse partitionid string to integer has error, msg is ", e);
+                    if (lag.isFirst()) {
+                        // continue the diffs of the samples written before a restart
+                        Map<String, Object> params = new HashMap<String, Object>();
+                        params.put("cluster", clusterAlias);
+                        params.put("group", group);
+                        params.put("topic", topic);
+                        BScreenConsumerInfo lastBScreenConsumerTopic = metricsServiceImpl.readBScreenLastTopic(params);
+                        if (lastBScreenConsumerTopic != null && lastBScreenConsumerTopic.getLogsize() != 0) {
+                            bscreenConsumer.setDifflogsize(Math.abs(lag.getLogsize() - lastBScreenConsumerTopic.getLogsize()));
                         }
-                    }
-
-                    Map<Integer, Long> partitionOffset = kafkaService.getKafkaOffset(bscreenConsumer.getCluster(), bscreenConsumer.getGroup(), bscreenConsumer.getTopic(), partitionsInts);
-                    Map<TopicPartition, Long> tps = kafkaService.getKafkaLogSize(bscreenConsumer.getCluster(), bscreenConsumer.getTopic(), partitionsInts);
-                    long logsize = 0L;
-                    long offsets = 0L;
-                    if (tps != null && partitionOffset != null) {
-                        for (Entry<TopicPartition, Long> entrySet : tps.entrySet()) {
-                            try {
-                                logsize += entrySet.getValue();
-                                offsets += partitionOffset.get(entrySet.getKey().partition());
-                            } catch (Exception e) {
-                                LoggerUtils.print(this.getClass()).error("Get logsize and offsets has error, msg is ", e);
-                            }
+                        if (lastBScreenConsumerTopic != null && lastBScreenConsumerTopic.getOffsets() != 0) {
+                            bscreenConsumer.setDiffoffsets(Math.abs(lag.getOffsets() - lastBScreenConsumerTopic.getOffsets()));
                         }
-                    }
-
-                    Map<String, Object> params = new HashMap<String, Object>();
-                    params.put("cluster", clusterAlias);
-                    params.put("group", group);
-                    params.put("topic", topic);
-                    BScreenConsumerInfo lastBScreenConsumerTopic = metricsServiceImpl.readBScreenLastTopic(params);
-                    if (lastBScreenConsumerTopic == null || lastBScreenConsumerTopic.getLogsize() == 0) {
-                        bscreenConsumer.setDifflogsize(0);
                     } else {
-                        // maybe server timespan is not synchronized.
-                        bscreenConsumer.setDifflogsize(Math.abs(logsize - lastBScreenConsumerTopic.getLogsize()));
+                        bscreenConsumer.setDifflogsize(lag.getProduced());
+                        bscreenConsumer.setDiffoffsets(lag.getConsumed());
                     }
-                    if (lastBScreenConsumerTopic == null || lastBScreenConsumerTopic.getOffsets() == 0) {
-                        bscreenConsumer.setDiffoffsets(0);
-                    } else {
-                        // maybe server timespan is not synchronized.
-                        bscreenConsumer.setDiffoffsets(Math.abs(offsets - lastBScreenConsumerTopic.getOffsets()));
-                    }
-                    bscreenConsumer.setLogsize(logsize);
-                    bscreenConsumer.setOffsets(offsets);
-                    bscreenConsumer.setLag(Math.abs(logsize - offsets));
+                    bscreenConsumer.setLogsize(lag.getLogsize());
+                    bscreenConsumer.setOffsets(lag.getOffsets());
+                    bscreenConsumer.setLag(lag.getLag());
                     bscreenConsumer.setTimespan(CalendarUtils.getTimeSpan());
                     bscreenConsumer.setTm(CalendarUtils.getCustomDate("yyyyMMdd"));
                     bscreenConsumers.add(bscreenConsumer);
@@ -253,19 +268,36 @@ public class MetricsConsumerSubTask extends Thread {
         }
     }
 
-    private int getKafkaConsumerTopicStatus(String clusterAlias, String group, String topicSearch, ConsumerServiceImpl consumerServiceImpl) {
-        Set<String> consumerTopics = kafkaService.getKafkaConsumerTopic(clusterAlias, group);
-        Set<String> activerTopics = kafkaService.getKafkaActiverTopics(clusterAlias, group);
-        for (String topic : consumerTopics) {
-            if (consumerServiceImpl.isConsumering(clusterAlias, group, topic) == Topic.RUNNING) {
-                activerTopics.add(topic);
+    /**
+     * Evaluate the consumer alarms of the cluster against the lag of this pass.
+     */
+    private void alertConsumers(String clusterAlias, List<AlarmConsumerInfo> alarmConsumers, AlertServiceImpl alertService) {
+        if (alertService == null) {
+            return;
+        }
+        AlertConsumerSubTask.Consumer alert = new AlertConsumerSubTask.Consumer();
+        for (AlarmConsumerInfo alarmConsumer : alarmConsumers) {
+            if (!clusterAlias.equals(alarmConsumer.getCluster()) || KConstants.AlarmType.DISABLE.equals(alarmConsumer.getIsEnable())) {
+                continue;
+            }
+            ConsumerLag lag = lagEngine.getLag(clusterAlias, alarmConsumer.getGroup(), alarmConsumer.getTopic());
+            if (lag == null) {
+                // the pair is not in this pass, an unknown lag is not a lag of 0
+                continue;
+            }
+            try {
+                alert.evaluate(alertService, alarmConsumer, lag.getLag());
+            } catch (Exception e) {
+                LoggerUtils.print(this.getClass()).error("Alarm consumer group[" + alarmConsumer.getGroup() + "] topic[" + alarmConsumer.getTopic() + "] has error, msg is ", e);
             }
         }
+    }
 
-        if (activerTopics.contains(topicSearch)) {
+    private int getKafkaConsumerTopicStatus(String clusterAlias, ConsumerGroupMetaInfo group, String topicSearch, ConsumerServiceImpl consumerServiceImpl) {
+        if (group.getActiveTopics().contains(topicSearch)) {
             return Topic.RUNNING;
         } else {
-            return consumerServiceImpl.isConsumering(clusterAlias, group, topicSearch);
+            return consumerServiceImpl.isConsumering(clusterAlias, group.getGroup(), topicSearch);
         }
 
     }
@@ -279,22 +311,12 @@ public class MetricsConsumerSubTask extends Thread {
         }
     }
 
-    private int getKafkaActiveTopicNumbers(String clusterAlias, String group, ConsumerServiceImpl consumerServiceImpl) {
-        Set<String> consumerTopics = kafkaService.getKafkaConsumerTopic(clusterAlias, group);
-        Set<String> activerTopics = kafkaService.getKafkaActiverTopics(clusterAlias, group);
-        for (String topic : consumerTopics) {
-            if (consumerServiceImpl.isConsumering(clusterAlias, group, topic) == Topic.RUNNING) {
-                activerTopics.add(topic);
-            }
-        }
+    private int getKafkaActiveTopicNumbers(String clusterAlias, ConsumerGroupMetaInfo group, ConsumerServiceImpl consumerServiceImpl) {
+        Set<String> activerTopics = group.getActiveTopics();
         int active = 0;
-        for (String topic : consumerTopics) {
-            if (activerTopics.contains(topic)) {
+        for (String topic : group.getTopics()) {
+            if (activerTopics.contains(topic) || consumerServiceImpl.isConsumering(clusterAlias, group.getGroup(), topic) == Topic.RUNNING) {
                 active++;
-            } else {
-                if (consumerServiceImpl.isConsumering(clusterAlias, group, topic) == Topic.RUNNING) {
-                    active++;
-                }
             }
         }
         return active;
@@ -311,7 +333,7 @@ public class MetricsConsumerSubTask extends Thread {
         return sum;
     }
 
-    private void cleanUnExistKafkaConsumerGroup(String cluster, List<ConsumerGroupsInfo> allConsumerGroups, JSONArray consumerGroups, MetricsServiceImpl metricsServiceImpl) {
+    private void cleanUnExistKafkaConsumerGroup(String cluster, List<ConsumerGroupsInfo> allConsumerGroups, ConsumerGroupSnapshotInfo consumerGroups, MetricsServiceImpl metricsServiceImpl) {
         if (allConsumerGroups != null && consumerGroups != null) {
             Map<String, Set<String>> allConsumerGroupMap = new HashMap<>();
             for (ConsumerGroupsInfo allConsumerGroup : allConsumerGroups) {
@@ -324,15 +346,11 @@ public class MetricsConsumerSubTask extends Thread {
                 }
             }
             try {
-                List<String> realGroups = new ArrayList<>();
-                for (Object object : consumerGroups) {
-                    JSONObject consumerGroup = (JSONObject) object;
-                    realGroups.add(consumerGroup.getString("group"));
-                }
                 for (Entry<String, Set<String>> group : allConsumerGroupMap.entrySet()) {
-                    if (realGroups.contains(group.getKey())) {
+                    if (consumerGroups.contains(group.getKey())) {
+                        Set<String> realTopics = consumerGroups.getGroup(group.getKey()).getTopics();
                         for (String topic : allConsumerGroupMap.get(group.getKey())) {
-                            if (!kafkaService.getKafkaConsumerTopics(cluster, group.getKey()).contains(topic)) {
+                            if (!realTopics.contains(topic)) {
                                 Map<String, Object> cleanParams = new HashMap<>();
                                 cleanParams.put("cluster", cluster);
                                 cleanParams.put("group", group.getKey());
@@ -361,17 +379,11 @@ public class MetricsConsumerSubTask extends Thread {
         }
     }
 
-    private void cleanUnExistKafkaConsumerSummary(String cluster, List<ConsumerSummaryInfo> allConsumerGroups, JSONArray consumerGroups, MetricsServiceImpl metricsServiceImpl) {
+    private void cleanUnExistKafkaConsumerSummary(String cluster, List<ConsumerSummaryInfo> allConsumerGroups, ConsumerGroupSnapshotInfo consumerGroups, MetricsServiceImpl metricsServiceImpl) {
         if (allConsumerGroups != null && consumerGroups != null) {
             try {
-                List<String> realGroups = new ArrayList<>();
-                for (Object object : consumerGroups) {
-                    JSONObject consumerGroup = (JSONObject) object;
-                    realGroups.add(consumerGroup.getString("group"));
-                }
-
                 for (ConsumerSummaryInfo cgi : allConsumerGroups) {
-                    if (!realGroups.contains(cgi.getGroup())) {
+                    if (!consumerGroups.contains(cgi.getGroup())) {
                         Map<String, Object> cleanParams = new HashMap<>();
                         cleanParams.put("cluster", cluster);
                         cleanParams.put("group", cgi.getGroup());
@@ -30,6 +30,7 @@ import org.smartloli.kafka.eagle.core.factory.Mx4jService;
 import org.smartloli.kafka.eagle.core.factory.v2.BrokerFactory;
 import org.smartloli.kafka.eagle.core.factory.v2.BrokerService;
 import org.smartloli.kafka.eagle.web.controller.StartupListener;
+import org.smartloli.kafka.eagle.web.quartz.shard.task.schedule.CollectorScheduler;
 import org.smartloli.kafka.eagle.web.service.impl.DashboardServiceImpl;
 
 import java.util.ArrayList;
@@ -104,7 +105,7 @@ public class TopicThroughputByteInTask extends Thread {
                 }
             }
 
-            for (String topic : topics) {
+            List<Long> byteIns = CollectorScheduler.getInstance().mapOnCluster(clusterAlias, topics, topic -> {
                 long byteIn = 0L;
                 for (BrokersInfo kafka : brokers) {
                     String meanRate = mx4jService.bytesInPerSec(clusterAlias, kafka.getHost() + ":" + kafka.getJmxPort(), topic).getMeanRate();
@@ -114,6 +115,12 @@ public class TopicThroughputByteInTask extends Thread {
                         LoggerUtils.print(this.getClass()).error("Byte in parse string to long has error, msg is ", e);
                     }
                 }
+                return byteIn;
+            });
+
+            for (int i = 0; i < topics.size(); i++) {
+                String topic = topics.get(i);
+                long byteIn = byteIns.get(i) == null ? 0L : byteIns.get(i);
                 TopicRank topicRank = new TopicRank();
                 topicRank.setCluster(clusterAlias);
                 topicRank.setTopic(topic);
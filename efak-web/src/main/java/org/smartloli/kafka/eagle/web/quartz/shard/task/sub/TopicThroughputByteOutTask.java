@@ -30,6 +30,7 @@ import org.smartloli.kafka.eagle.core.factory.Mx4jService;
 import org.smartloli.kafka.eagle.core.factory.v2.BrokerFactory;
 import org.smartloli.kafka.eagle.core.factory.v2.BrokerService;
 import org.smartloli.kafka.eagle.web.controller.StartupListener;
+import org.smartloli.kafka.eagle.web.quartz.shard.task.schedule.CollectorScheduler;
 import org.smartloli.kafka.eagle.web.service.impl.DashboardServiceImpl;
 
 import java.util.ArrayList;
@@ -104,7 +105,7 @@ public class TopicThroughputByteOutTask extends Thread {
                 }
             }
 
-            for (String topic : topics) {
+            List<Long> byteOuts = CollectorScheduler.getInstance().mapOnCluster(clusterAlias, topics, topic -> {
                 long byteOut = 0L;
                 for (BrokersInfo kafka : brokers) {
                     String meanRate = mx4jService.bytesOutPerSec(clusterAlias, kafka.getHost() + ":" + kafka.getJmxPort(), topic).getMeanRate();
@@ -114,6 +115,12 @@ public class TopicThroughputByteOutTask extends Thread {
                         LoggerUtils.print(this.getClass()).error("Byte out parse string to long has error, msg is ", e);
                     }
                 }
+                return byteOut;
+            });
+
+            for (int i = 0; i < topics.size(); i++) {
+                String topic = topics.get(i);
+                long byteOut = byteOuts.get(i) == null ? 0L : byteOuts.get(i);
                 TopicRank topicRank = new TopicRank();
                 topicRank.setCluster(clusterAlias);
                 topicRank.setTopic(topic);
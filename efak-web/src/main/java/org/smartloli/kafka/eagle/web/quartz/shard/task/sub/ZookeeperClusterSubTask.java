@@ -18,20 +18,19 @@
 package org.smartloli.kafka.eagle.web.quartz.shard.task.sub;
 
 import org.smartloli.kafka.eagle.common.protocol.KpiInfo;
-import org.smartloli.kafka.eagle.common.protocol.ZkClusterInfo;
+import org.smartloli.kafka.eagle.common.protocol.ZkMntrInfo;
 import org.smartloli.kafka.eagle.common.util.*;
-import org.smartloli.kafka.eagle.core.factory.KafkaFactory;
-import org.smartloli.kafka.eagle.core.factory.KafkaService;
-import org.smartloli.kafka.eagle.core.factory.Mx4jFactory;
-import org.smartloli.kafka.eagle.core.factory.Mx4jService;
 import org.smartloli.kafka.eagle.web.controller.StartupListener;
 import org.smartloli.kafka.eagle.web.service.impl.MetricsServiceImpl;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.function.ToDoubleFunction;
 
 /**
  * Collect zookeeper cluster dataset.
+ * <p>
+ * The servers of every cluster are polled with mntr in one concurrent pass,
+ * so a slow or dead server costs at most the mntr timeout for the whole pass.
  *
  * @author smartloli.
  * <p>
@@ -43,25 +42,51 @@ public class ZookeeperClusterSubTask extends Thread {
     private static final String ZK_PACKETS_SENT = "zk_packets_sent";
     private static final String ZK_NUM_ALIVE_CONNECTIONS = "zk_num_alive_connections";
     private static final String ZK_OUTSTANDING_REQUESTS = "zk_outstanding_requests";
-    private static final String[] ZK_KPIS = new String[]{ZK_PACKETS_RECEIVED, ZK_PACKETS_SENT, ZK_NUM_ALIVE_CONNECTIONS, ZK_OUTSTANDING_REQUESTS};
 
     /**
-     * Kafka service interface.
+     * Kpis of a cluster, traffic and connections are summed over the servers,
+     * latencies and replicated state take the largest server value.
      */
-    private KafkaService kafkaService = new KafkaFactory().create();
+    private static final Map<String, Kpi> ZK_KPIS = new LinkedHashMap<>();
 
-    /**
-     * Mx4j service interface.
-     */
-    private Mx4jService mx4jService = new Mx4jFactory().create();
+    static {
+        ZK_KPIS.put(ZK_PACKETS_RECEIVED, new Kpi(true, ZkMntrInfo::getPacketsReceived));
+        ZK_KPIS.put(ZK_PACKETS_SENT, new Kpi(true, ZkMntrInfo::getPacketsSent));
+        ZK_KPIS.put(ZK_NUM_ALIVE_CONNECTIONS, new Kpi(true, ZkMntrInfo::getNumAliveConnections));
+        ZK_KPIS.put(ZK_OUTSTANDING_REQUESTS, new Kpi(true, ZkMntrInfo::getOutstandingRequests));
+        ZK_KPIS.put("zk_watch_count", new Kpi(true, ZkMntrInfo::getWatchCount));
+        ZK_KPIS.put("zk_alive_servers", new Kpi(true, zk -> 1));
+        ZK_KPIS.put("zk_avg_latency", new Kpi(false, ZkMntrInfo::getAvgLatency));
+        ZK_KPIS.put("zk_max_latency", new Kpi(false, ZkMntrInfo::getMaxLatency));
+        ZK_KPIS.put("zk_p99_latency", new Kpi(false, ZkMntrInfo::getP99Latency));
+        ZK_KPIS.put("zk_znode_count", new Kpi(false, ZkMntrInfo::getZnodeCount));
+        ZK_KPIS.put("zk_ephemerals_count", new Kpi(false, ZkMntrInfo::getEphemeralsCount));
+        ZK_KPIS.put("zk_approximate_data_size", new Kpi(false, ZkMntrInfo::getApproximateDataSize));
+        ZK_KPIS.put("zk_followers", new Kpi(false, ZkMntrInfo::getFollowers));
+        ZK_KPIS.put("zk_synced_followers", new Kpi(false, ZkMntrInfo::getSyncedFollowers));
+    }
 
     @Override
     public synchronized void run() {
         try {
             if (SystemConfigUtils.getBooleanProperty("efak.metrics.charts")) {
                 String[] clusterAliass = SystemConfigUtils.getPropertyArray("efak.zk.cluster.alias", ",");
+                Map<String, List<String>> clusters = new LinkedHashMap<>();
+                Set<String> servers = new LinkedHashSet<>();
                 for (String clusterAlias : clusterAliass) {
-                    this.zkCluster(clusterAlias);
+                    List<String> zks = new ArrayList<>();
+                    for (String zk : SystemConfigUtils.getProperty(clusterAlias + ".zk.list").split(",")) {
+                        if (!zk.trim().isEmpty()) {
+                            zks.add(zk.trim());
+                        }
+                    }
+                    clusters.put(clusterAlias, zks);
+                    servers.addAll(zks);
+                }
+                long timeout = SystemConfigUtils.getLongProperty("efak.zk.mntr.timeout.ms", 5000L);
+                Map<String, ZkMntrInfo> mntrs = ZkMntrCollector.collect(servers, timeout);
+                for (Map.Entry<String, List<String>> cluster : clusters.entrySet()) {
+                    this.zkCluster(cluster.getKey(), cluster.getValue(), mntrs);
                 }
             }
         } catch (Exception e) {
@@ -69,31 +94,31 @@ public class ZookeeperClusterSubTask extends Thread {
         }
     }
 
-    private void zkCluster(String clusterAlias) {
+    private void zkCluster(String clusterAlias, List<String> zks, Map<String, ZkMntrInfo> mntrs) {
+        String broker = "";
+        List<ZkMntrInfo> alives = new ArrayList<>();
+        for (String zk : zks) {
+            broker += zk.split(":")[0] + ",";
+            ZkMntrInfo mntr = mntrs.get(zk);
+            if (mntr != null && mntr.isAlive()) {
+                alives.add(mntr);
+            }
+        }
+        String tm = CalendarUtils.getCustomDate("yyyyMMdd");
+        long timespan = CalendarUtils.getTimeSpan();
         List<KpiInfo> list = new ArrayList<>();
-        String zkList = SystemConfigUtils.getProperty(clusterAlias + ".zk.list");
-        String[] zks = zkList.split(",");
-        for (String kpi : ZK_KPIS) {
+        for (Map.Entry<String, Kpi> kpi : ZK_KPIS.entrySet()) {
+            double value = kpi.getValue().aggregate(alives);
+            if (value < 0) {
+                // not reported by this zookeeper version
+                continue;
+            }
             KpiInfo kpiInfo = new KpiInfo();
             kpiInfo.setCluster(clusterAlias);
-            kpiInfo.setTm(CalendarUtils.getCustomDate("yyyyMMdd"));
-            kpiInfo.setTimespan(CalendarUtils.getTimeSpan());
-            kpiInfo.setKey(kpi);
-            String broker = "";
-            for (String zk : zks) {
-                String ip = zk.split(":")[0];
-                String port = zk.split(":")[1];
-                if (port.contains("/")) {
-                    port = port.split("/")[0];
-                }
-                broker += ip + ",";
-                try {
-                    ZkClusterInfo zkInfo = ZKMetricsUtils.zkClusterMntrInfo(ip, Integer.parseInt(port));
-                    this.zkAssembly(zkInfo, kpi, kpiInfo);
-                } catch (Exception ex) {
-                    LoggerUtils.print(this.getClass()).error("Transcation string[" + port + "] to int has error, msg is ", ex);
-                }
-            }
+            kpiInfo.setTm(tm);
+            kpiInfo.setTimespan(timespan);
+            kpiInfo.setKey(kpi.getKey());
+            kpiInfo.setValue(value == Math.rint(value) ? String.valueOf((long) value) : String.valueOf(value));
             kpiInfo.setBroker(broker.length() == 0 ? "unkowns" : broker.substring(0, broker.length() - 1));
             kpiInfo.setType(KConstants.CollectorType.ZK);
             list.add(kpiInfo);
@@ -107,22 +132,25 @@ public class ZookeeperClusterSubTask extends Thread {
         }
     }
 
-    private void zkAssembly(ZkClusterInfo zkInfo, String type, KpiInfo kpiInfo) {
-        switch (type) {
-            case ZK_PACKETS_RECEIVED:
-                kpiInfo.setValue(Long.parseLong(StrUtils.isNull(kpiInfo.getValue()) == true ? "0" : kpiInfo.getValue()) + Long.parseLong(StrUtils.isNull(zkInfo.getZkPacketsReceived()) == true ? "0" : zkInfo.getZkPacketsReceived()) + "");
-                break;
-            case ZK_PACKETS_SENT:
-                kpiInfo.setValue(Long.parseLong(StrUtils.isNull(kpiInfo.getValue()) == true ? "0" : kpiInfo.getValue()) + Long.parseLong(StrUtils.isNull(zkInfo.getZkPacketsSent()) == true ? "0" : zkInfo.getZkPacketsSent()) + "");
-                break;
-            case ZK_NUM_ALIVE_CONNECTIONS:
-                kpiInfo.setValue(Long.parseLong(StrUtils.isNull(kpiInfo.getValue()) == true ? "0" : kpiInfo.getValue()) + Long.parseLong(StrUtils.isNull(zkInfo.getZkNumAliveConnections()) == true ? "0" : zkInfo.getZkNumAliveConnections()) + "");
-                break;
-            case ZK_OUTSTANDING_REQUESTS:
-                kpiInfo.setValue(Long.parseLong(StrUtils.isNull(kpiInfo.getValue()) == true ? "0" : kpiInfo.getValue()) + Long.parseLong(StrUtils.isNull(zkInfo.getZkOutstandingRequests()) == true ? "0" : zkInfo.getZkOutstandingRequests()) + "");
-                break;
-            default:
-                break;
+    /**
+     * How one kpi is read from the servers of a cluster.
+     */
+    private static final class Kpi {
+        private final boolean sum;
+        private final ToDoubleFunction<ZkMntrInfo> reader;
+
+        private Kpi(boolean sum, ToDoubleFunction<ZkMntrInfo> reader) {
+            this.sum = sum;
+            this.reader = reader;
+        }
+
+        private double aggregate(List<ZkMntrInfo> servers) {
+            double value = sum ? 0 : -1;
+            for (ZkMntrInfo server : servers) {
+                double read = reader.applyAsDouble(server);
+                value = sum ? value + read : Math.max(value, read);
+            }
+            return value;
         }
     }
 }
@@ -17,13 +17,13 @@
  */
 package org.smartloli.kafka.eagle.web.service.impl;
 
-import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import org.smartloli.kafka.eagle.common.protocol.alarm.AlarmClusterInfo;
 import org.smartloli.kafka.eagle.common.protocol.alarm.AlarmConfigInfo;
 import org.smartloli.kafka.eagle.common.protocol.alarm.AlarmConsumerInfo;
 import org.smartloli.kafka.eagle.common.protocol.alarm.AlarmCrontabInfo;
+import org.smartloli.kafka.eagle.common.protocol.consumer.ConsumerGroupMetaInfo;
 import org.smartloli.kafka.eagle.common.protocol.topic.TopicLogSize;
 import org.smartloli.kafka.eagle.common.util.KConstants.AlarmType;
 import org.smartloli.kafka.eagle.core.factory.KafkaFactory;
@@ -116,23 +116,21 @@ public class AlertServiceImpl implements AlertService {
     private String getAlarmConsumerGroupKafka(String clusterAlias, String search) {
         int offset = 0;
         JSONArray groups = new JSONArray();
-        JSONArray consumerGroups = JSON.parseArray(kafkaService.getKafkaConsumer(clusterAlias));
+        List<ConsumerGroupMetaInfo> consumerGroups = kafkaService.getKafkaConsumerSnapshot(clusterAlias).getGroups();
         if (search.length() > 0) {
-            for (Object object : consumerGroups) {
-                JSONObject consumerGroup = (JSONObject) object;
-                if (consumerGroup.getString("group").contains(search)) {
+            for (ConsumerGroupMetaInfo consumerGroup : consumerGroups) {
+                if (consumerGroup.getGroup().contains(search)) {
                     JSONObject group = new JSONObject();
-                    group.put("text", consumerGroup.getString("group"));
+                    group.put("text", consumerGroup.getGroup());
                     group.put("id", offset);
                     groups.add(group);
                     offset++;
                 }
             }
         } else {
-            for (Object object : consumerGroups) {
-                JSONObject consumerGroup = (JSONObject) object;
+            for (ConsumerGroupMetaInfo consumerGroup : consumerGroups) {
                 JSONObject group = new JSONObject();
-                group.put("text", consumerGroup.getString("group"));
+                group.put("text", consumerGroup.getGroup());
                 group.put("id", offset);
                 groups.add(group);
                 offset++;
@@ -32,9 +32,9 @@ import org.smartloli.kafka.eagle.common.util.KConstants.Topic;
 import org.smartloli.kafka.eagle.common.util.StrUtils;
 import org.smartloli.kafka.eagle.core.factory.v2.BrokerFactory;
 import org.smartloli.kafka.eagle.core.factory.v2.BrokerService;
-import org.smartloli.kafka.eagle.web.dao.MBeanDao;
 import org.smartloli.kafka.eagle.web.dao.TopicDao;
 import org.smartloli.kafka.eagle.web.service.BScreenService;
+import org.smartloli.kafka.eagle.web.storage.KpiStorage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -55,7 +55,7 @@ public class BScreenServiceImpl implements BScreenService {
 	private TopicDao topicDao;
 
 	@Autowired
-	private MBeanDao mbeanDao;
+	private KpiStorage kpiStorage;
 
 	/** Broker service interface. */
 	private static BrokerService brokerService = new BrokerFactory().create();
@@ -77,7 +77,7 @@ public class BScreenServiceImpl implements BScreenService {
 		param.put("tday", CalendarUtils.getCustomDate("yyyyMMdd"));
 		param.put("type", CollectorType.KAFKA);
 		param.put("key", key);
-		return mbeanDao.getBrokersKpi(param);
+		return kpiStorage.getBrokersKpi(param);
 	}
 
 	/** Get topic total logsize data . */
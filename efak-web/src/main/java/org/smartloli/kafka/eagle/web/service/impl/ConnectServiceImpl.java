@@ -18,10 +18,12 @@
 package org.smartloli.kafka.eagle.web.service.impl;
 
 import com.alibaba.fastjson.JSONObject;
+import org.smartloli.kafka.eagle.common.protocol.cache.ConnectCache;
 import org.smartloli.kafka.eagle.common.protocol.plugins.ConnectConfigInfo;
-import org.smartloli.kafka.eagle.common.util.HttpClientUtils;
+import org.smartloli.kafka.eagle.common.util.ConnectCollector;
 import org.smartloli.kafka.eagle.common.util.LoggerUtils;
 import org.smartloli.kafka.eagle.common.util.NetUtils;
+import org.smartloli.kafka.eagle.common.util.PooledHttpClient;
 import org.smartloli.kafka.eagle.common.util.StrUtils;
 import org.smartloli.kafka.eagle.web.dao.BrokerDao;
 import org.smartloli.kafka.eagle.web.service.ConnectService;
@@ -31,6 +33,8 @@ import org.springframework.stereotype.Service;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Handle the logic of the action kafka connect.
@@ -77,22 +81,15 @@ public class ConnectServiceImpl implements ConnectService {
 
     @Override
     public List<String> getConnectorsTableList(String uri, String search) {
-        String uriStr = "";
-        if (!uri.endsWith("/")) {
-            uriStr = uri + "/";
-        } else {
-            uriStr = uri;
-        }
-        List<String> connectors = StrUtils.stringListConvertListStrings(HttpClientUtils.doGet(uriStr + "connectors"));
+        JSONObject connectors = ConnectCache.CONNECTORS.get(ConnectCollector.base(uri));
         List<String> result = new ArrayList<>();
-        if (!StrUtils.isNull(search)) {
-            for (String connector : connectors) {
-                if (connector.contains(search)) {
-                    result.add(connector);
-                }
+        if (connectors == null) {
+            return result;
+        }
+        for (String connector : new TreeSet<>(connectors.keySet())) {
+            if (StrUtils.isNull(search) || connector.contains(search)) {
+                result.add(connector);
             }
-        } else {
-            result = connectors;
         }
         return result;
     }
@@ -104,28 +101,34 @@ public class ConnectServiceImpl implements ConnectService {
 
     @Override
     public String getConnectorPluginsSummary(String uri, String connector) {
-        String uriStr = "";
-        if (!uri.endsWith("/")) {
-            uriStr = uri + "/";
-        } else {
-            uriStr = uri;
-        }
+        String uriStr = ConnectCollector.base(uri);
+        String path = ConnectCollector.connector(uriStr, connector);
+        JSONObject connectors = ConnectCache.CONNECTORS.getIfPresent(uriStr);
+        JSONObject expanded = connectors == null ? null : connectors.getJSONObject(connector);
+        JSONObject info = expanded == null ? null : expanded.getJSONObject("info");
+        PooledHttpClient client = PooledHttpClient.getInstance();
+        // the status is always read live, the config comes with the cached connectors, the requests run in parallel
+        CompletableFuture<String> statusFuture = client.getAsync(path + "/status");
+        CompletableFuture<String> configFuture = info != null && info.get("config") != null
+                ? CompletableFuture.completedFuture(info.getString("config"))
+                : client.getAsync(path + "/config");
+        CompletableFuture<String> tasksFuture = client.getAsync(path + "/tasks");
         JSONObject object = new JSONObject();
         String status = "";
         String config = "";
         String tasks = "";
         try {
-            status = HttpClientUtils.doGet(uriStr + "connectors/" + connector + "/status");
+            status = statusFuture.join();
         } catch (Exception e) {
             LoggerUtils.print(this.getClass()).error("Get connector[" + uriStr + connector + "] status has error, msg is ", e);
         }
         try {
-            config = HttpClientUtils.doGet(uriStr + "connectors/" + connector + "/config");
+            config = configFuture.join();
         } catch (Exception e) {
             LoggerUtils.print(this.getClass()).error("Get connector[" + uriStr + connector + "] config has error, msg is ", e);
         }
         try {
-            tasks = HttpClientUtils.doGet(uriStr + "connectors/" + connector + "/tasks");
+            tasks = tasksFuture.join();
         } catch (Exception e) {
             LoggerUtils.print(this.getClass()).error("Get connector[" + uriStr + connector + "] tasks has error, msg is ", e);
         }
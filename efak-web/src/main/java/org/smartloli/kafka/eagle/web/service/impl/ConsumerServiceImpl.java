@@ -17,13 +17,12 @@
  */
 package org.smartloli.kafka.eagle.web.service.impl;
 
-import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import org.smartloli.kafka.eagle.common.protocol.ConsumerInfo;
 import org.smartloli.kafka.eagle.common.protocol.DisplayInfo;
-import org.smartloli.kafka.eagle.common.protocol.OwnerInfo;
 import org.smartloli.kafka.eagle.common.protocol.TopicConsumerInfo;
+import org.smartloli.kafka.eagle.common.protocol.consumer.ConsumerGroupMetaInfo;
 import org.smartloli.kafka.eagle.common.protocol.consumer.ConsumerGroupsInfo;
 import org.smartloli.kafka.eagle.common.protocol.consumer.ConsumerSummaryInfo;
 import org.smartloli.kafka.eagle.common.protocol.topic.TopicOffsetsInfo;
@@ -217,13 +216,12 @@ public class ConsumerServiceImpl implements ConsumerService {
      * Get active grahp data & storage offset in kafka topic.
      */
     private Object getKafkaActive(String clusterAlias) {
-        JSONArray consumerGroups = JSON.parseArray(kafkaService.getKafkaConsumer(clusterAlias));
+        List<ConsumerGroupMetaInfo> consumerGroups = kafkaService.getKafkaConsumerSnapshot(clusterAlias).getGroups();
         JSONObject target = new JSONObject();
         JSONArray targets = new JSONArray();
         target.put("name", "Active Topics");
         int count = 0;
-        for (Object object : consumerGroups) {
-            JSONObject consumerGroup = (JSONObject) object;
+        for (ConsumerGroupMetaInfo consumerGroup : consumerGroups) {
             JSONObject subTarget = new JSONObject();
             JSONArray subTargets = new JSONArray();
             if (count > KConstants.D3.SIZE) {
@@ -235,8 +233,8 @@ public class ConsumerServiceImpl implements ConsumerService {
                 targets.add(subTarget);
                 break;
             } else {
-                subTarget.put("name", consumerGroup.getString("group"));
-                for (String str : getKafkaTopicSets(clusterAlias, consumerGroup.getString("group"))) {
+                subTarget.put("name", consumerGroup.getGroup());
+                for (String str : getKafkaTopicSets(clusterAlias, consumerGroup.getGroup())) {
                     JSONObject subInSubTarget = new JSONObject();
                     if (subTargets.size() > D3.CHILD_SIZE) {
                         subInSubTarget.put("name", "...");
@@ -270,19 +268,23 @@ public class ConsumerServiceImpl implements ConsumerService {
      */
     private String getKafkaConsumer(DisplayInfo page, String clusterAlias) {
         List<ConsumerInfo> kafkaConsumerPages = new ArrayList<ConsumerInfo>();
-        JSONArray consumerGroups = JSON.parseArray(kafkaService.getKafkaConsumer(clusterAlias, page));
+        List<ConsumerGroupMetaInfo> groups = new ArrayList<>();
+        for (ConsumerGroupMetaInfo group : kafkaService.getKafkaConsumerSnapshot(clusterAlias).getGroups()) {
+            if (page.getSearch().length() == 0 || group.getGroup().contains(page.getSearch())) {
+                groups.add(group);
+            }
+        }
+        int start = Math.min(page.getiDisplayStart(), groups.size());
+        int end = Math.min(page.getiDisplayStart() + page.getiDisplayLength(), groups.size());
         int id = page.getiDisplayStart();
-        for (Object object : consumerGroups) {
-            JSONObject consumerGroup = (JSONObject) object;
-            String group = consumerGroup.getString("group");
+        for (ConsumerGroupMetaInfo group : groups.subList(start, end)) {
             ConsumerInfo consumer = new ConsumerInfo();
-            consumer.setGroup(group);
+            consumer.setGroup(group.getGroup());
             consumer.setId(++id);
-            consumer.setNode(consumerGroup.getString("node"));
-            OwnerInfo ownerInfo = kafkaService.getKafkaActiverNotOwners(clusterAlias, group);
-            consumer.setTopics(ownerInfo.getTopicSets().size());
+            consumer.setNode(group.getNode());
+            consumer.setTopics(group.getTopics().size());
             consumer.setActiveTopics(getKafkaActiveTopicNumbers(clusterAlias, group));
-            consumer.setActiveThreads(ownerInfo.getActiveSize());
+            consumer.setActiveThreads(group.getActiveSize());
             kafkaConsumerPages.add(consumer);
         }
         return kafkaConsumerPages.toString();
@@ -316,22 +318,12 @@ public class ConsumerServiceImpl implements ConsumerService {
     /**
      * Get kafka active topic total.
      */
-    private int getKafkaActiveTopicNumbers(String clusterAlias, String group) {
-        Set<String> consumerTopics = kafkaService.getKafkaConsumerTopic(clusterAlias, group);
-        Set<String> activerTopics = kafkaService.getKafkaActiverTopics(clusterAlias, group);
-        for (String topic : consumerTopics) {
-            if (isConsumering(clusterAlias, group, topic) == Topic.RUNNING) {
-                activerTopics.add(topic);
-            }
-        }
+    private int getKafkaActiveTopicNumbers(String clusterAlias, ConsumerGroupMetaInfo group) {
+        Set<String> activerTopics = group.getActiveTopics();
         int active = 0;
-        for (String topic : consumerTopics) {
-            if (activerTopics.contains(topic)) {
+        for (String topic : group.getTopics()) {
+            if (activerTopics.contains(topic) || isConsumering(clusterAlias, group.getGroup(), topic) == Topic.RUNNING) {
                 active++;
-            } else {
-                if (isConsumering(clusterAlias, group, topic) == Topic.RUNNING) {
-                    active++;
-                }
             }
         }
         return active;
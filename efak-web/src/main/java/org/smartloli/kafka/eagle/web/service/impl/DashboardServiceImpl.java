@@ -33,9 +33,9 @@ import org.smartloli.kafka.eagle.core.factory.KafkaFactory;
 import org.smartloli.kafka.eagle.core.factory.KafkaService;
 import org.smartloli.kafka.eagle.core.factory.v2.BrokerFactory;
 import org.smartloli.kafka.eagle.core.factory.v2.BrokerService;
-import org.smartloli.kafka.eagle.web.dao.MBeanDao;
 import org.smartloli.kafka.eagle.web.dao.TopicDao;
 import org.smartloli.kafka.eagle.web.service.DashboardService;
+import org.smartloli.kafka.eagle.web.storage.KpiStorage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -71,7 +71,7 @@ public class DashboardServiceImpl implements DashboardService {
     private TopicDao topicDao;
 
     @Autowired
-    private MBeanDao mbeanDao;
+    private KpiStorage kpiStorage;
 
     /**
      * Get kafka & dashboard dataset.
@@ -214,7 +214,7 @@ public class DashboardServiceImpl implements DashboardService {
      * Get os memory data.
      */
     public String getOSMem(Map<String, Object> params) {
-        List<KpiInfo> kpis = mbeanDao.getOsMem(params);
+        List<KpiInfo> kpis = kpiStorage.getOsMem(params);
         JSONObject object = new JSONObject();
         if (kpis.size() == 2) {
             long valueFirst = Long.parseLong(kpis.get(0).getValue());
@@ -234,7 +234,7 @@ public class DashboardServiceImpl implements DashboardService {
      * Get used cpu data.
      */
     public String getUsedCPU(Map<String, Object> params) {
-        List<KpiInfo> kpis = mbeanDao.getUsedCPU(params);
+        List<KpiInfo> kpis = kpiStorage.getUsedCPU(params);
         JSONObject object = new JSONObject();
         if (kpis.size() > 0) {
             object.put("cpu", StrUtils.numberic(kpis.get(0).getValue()) / brokerService.brokerNumbers(params.get("cluster").toString()));
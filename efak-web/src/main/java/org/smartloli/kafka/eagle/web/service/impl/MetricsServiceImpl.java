@@ -28,6 +28,7 @@ import org.smartloli.kafka.eagle.common.protocol.bscreen.BScreenConsumerInfo;
 import org.smartloli.kafka.eagle.common.protocol.consumer.ConsumerGroupsInfo;
 import org.smartloli.kafka.eagle.common.protocol.consumer.ConsumerSummaryInfo;
 import org.smartloli.kafka.eagle.common.protocol.plugins.ConnectConfigInfo;
+import org.smartloli.kafka.eagle.common.tsdb.Downsampler;
 import org.smartloli.kafka.eagle.common.util.CalendarUtils;
 import org.smartloli.kafka.eagle.common.util.KConstants.MBean;
 import org.smartloli.kafka.eagle.common.util.KConstants.ZK;
@@ -41,13 +42,12 @@ import org.smartloli.kafka.eagle.web.dao.BrokerDao;
 import org.smartloli.kafka.eagle.web.dao.MBeanDao;
 import org.smartloli.kafka.eagle.web.dao.TopicDao;
 import org.smartloli.kafka.eagle.web.service.MetricsService;
+import org.smartloli.kafka.eagle.web.storage.KpiStorage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.text.ParseException;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.Map.Entry;
 
 /**
@@ -66,6 +66,9 @@ public class MetricsServiceImpl implements MetricsService {
     @Autowired
     private MBeanDao mbeanDao;
 
+    @Autowired
+    private KpiStorage kpiStorage;
+
     @Autowired
     private TopicDao topicDao;
 
@@ -235,7 +238,7 @@ public class MetricsServiceImpl implements MetricsService {
      * Collection statistics data from kafka jmx & insert into table.
      */
     public int insert(List<KpiInfo> kpi) {
-        return mbeanDao.insert(kpi);
+        return kpiStorage.insert(kpi);
     }
 
     /**
@@ -243,7 +246,7 @@ public class MetricsServiceImpl implements MetricsService {
      */
     public String query(Map<String, Object> params) throws ParseException {
 
-        List<KpiInfo> kpis = mbeanDao.query(params);
+        List<KpiInfo> kpis = downsample(kpiStorage.query(params), KpiStorage.points(params));
 
         JSONArray messageIns = new JSONArray();
         JSONArray byteIns = new JSONArray();
@@ -338,6 +341,34 @@ public class MetricsServiceImpl implements MetricsService {
         return target.toJSONString();
     }
 
+    /**
+     * Keep at most points samples of every key.
+     */
+    private List<KpiInfo> downsample(List<KpiInfo> kpis, int points) {
+        Map<String, List<KpiInfo>> lines = new LinkedHashMap<>();
+        for (KpiInfo kpi : kpis) {
+            lines.computeIfAbsent(kpi.getKey(), k -> new ArrayList<>()).add(kpi);
+        }
+        List<KpiInfo> sampled = new ArrayList<>();
+        for (List<KpiInfo> line : lines.values()) {
+            line.sort(Comparator.comparingLong(KpiInfo::getTimespan));
+            long[] x = new long[line.size()];
+            double[] y = new double[line.size()];
+            for (int i = 0; i < x.length; i++) {
+                x[i] = line.get(i).getTimespan();
+                try {
+                    y[i] = Double.parseDouble(line.get(i).getValue());
+                } catch (NullPointerException | NumberFormatException e) {
+                    y[i] = 0.0;
+                }
+            }
+            for (int index : Downsampler.lttb(x, y, points)) {
+                sampled.add(line.get(index));
+            }
+        }
+        return sampled;
+    }
+
     private void assembly(JSONArray assemblys, KpiInfo kpi) throws ParseException {
         JSONObject object = new JSONObject();
         object.put("x", CalendarUtils.convertUnixTime(kpi.getTimespan(), "yyyy-MM-dd HH:mm"));
@@ -349,7 +380,7 @@ public class MetricsServiceImpl implements MetricsService {
      * Crontab clean data.
      */
     public void remove(int tm) {
-        mbeanDao.remove(tm);
+        kpiStorage.remove(tm);
     }
 
     @Override
@@ -369,7 +400,9 @@ public class MetricsServiceImpl implements MetricsService {
 
     @Override
     public int writeBSreenConsumerTopic(List<BScreenConsumerInfo> bscreenConsumers) {
-        return topicDao.writeBSreenConsumerTopic(bscreenConsumers);
+        int size = topicDao.writeBSreenConsumerTopic(bscreenConsumers);
+        kpiStorage.rollupConsumers(bscreenConsumers);
+        return size;
     }
 
     @Override
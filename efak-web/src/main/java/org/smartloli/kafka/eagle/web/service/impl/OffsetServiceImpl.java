@@ -26,14 +26,19 @@ import org.smartloli.kafka.eagle.common.protocol.OffsetZkInfo;
 import org.smartloli.kafka.eagle.common.protocol.bscreen.BScreenConsumerInfo;
 import org.smartloli.kafka.eagle.common.protocol.offsets.TopicOffsetInfo;
 import org.smartloli.kafka.eagle.common.protocol.topic.TopicOffsetsInfo;
+import org.smartloli.kafka.eagle.common.tsdb.Downsampler;
+import org.smartloli.kafka.eagle.common.tsdb.Rollups;
 import org.smartloli.kafka.eagle.common.util.CalendarUtils;
 import org.smartloli.kafka.eagle.core.factory.KafkaFactory;
 import org.smartloli.kafka.eagle.core.factory.KafkaService;
 import org.smartloli.kafka.eagle.web.dao.MBeanDao;
 import org.smartloli.kafka.eagle.web.service.OffsetService;
+import org.smartloli.kafka.eagle.web.storage.KpiStorage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.Map.Entry;
 
@@ -55,6 +60,9 @@ public class OffsetServiceImpl implements OffsetService {
     @Autowired
     private MBeanDao mbeanDao;
 
+    @Autowired
+    private KpiStorage kpiStorage;
+
     /**
      * Kafka service interface.
      */
@@ -88,14 +96,29 @@ public class OffsetServiceImpl implements OffsetService {
         List<Long> producerY = new ArrayList<>();
         List<String> consumerX = new ArrayList<>();
         List<Long> consumerY = new ArrayList<>();
-        List<BScreenConsumerInfo> topicOffsets = mbeanDao.getConsumerOffsetsTopic(params);
+        List<BScreenConsumerInfo> topicOffsets = kpiStorage.queryConsumerRollup(params);
+        if (topicOffsets == null) {
+            topicOffsets = mbeanDao.getConsumerOffsetsTopic(params);
+        } else {
+            topicOffsets = withSamplesBeforeRollup(params, topicOffsets);
+        }
         if (topicOffsets.size() > 0) {
-            for (BScreenConsumerInfo topicOffset : topicOffsets) {
-                lagX.add(CalendarUtils.convertUnixTime(topicOffset.getTimespan(), "yyyy-MM-dd HH:mm"));
+            // the three lines share the x axis, keep the points shaping the lag
+            topicOffsets.sort(Comparator.comparingLong(BScreenConsumerInfo::getTimespan));
+            long[] x = new long[topicOffsets.size()];
+            double[] y = new double[topicOffsets.size()];
+            for (int i = 0; i < x.length; i++) {
+                x[i] = topicOffsets.get(i).getTimespan();
+                y[i] = topicOffsets.get(i).getLag();
+            }
+            for (int index : Downsampler.lttb(x, y, KpiStorage.points(params))) {
+                BScreenConsumerInfo topicOffset = topicOffsets.get(index);
+                String time = CalendarUtils.convertUnixTime(topicOffset.getTimespan(), "yyyy-MM-dd HH:mm");
+                lagX.add(time);
                 lagY.add(topicOffset.getLag());
-                producerX.add(CalendarUtils.convertUnixTime(topicOffset.getTimespan(), "yyyy-MM-dd HH:mm"));
+                producerX.add(time);
                 producerY.add(topicOffset.getDifflogsize());
-                consumerX.add(CalendarUtils.convertUnixTime(topicOffset.getTimespan(), "yyyy-MM-dd HH:mm"));
+                consumerX.add(time);
                 consumerY.add(topicOffset.getDiffoffsets());
             }
         }
@@ -115,6 +138,38 @@ public class OffsetServiceImpl implements OffsetService {
         return value.toJSONString();
     }
 
+    /**
+     * Rollups only exist from the time they were first written, the part of
+     * the range before the first bucket is drawn from the raw samples of
+     * 'ke_consumer_bscreen'.
+     */
+    private List<BScreenConsumerInfo> withSamplesBeforeRollup(Map<String, Object> params, List<BScreenConsumerInfo> rollup) {
+        long first = Long.MAX_VALUE;
+        for (BScreenConsumerInfo bucket : rollup) {
+            first = Math.min(first, bucket.getTimespan());
+        }
+        Map<String, Object> head = new HashMap<>(params);
+        if (first != Long.MAX_VALUE) {
+            try {
+                long start = new SimpleDateFormat("yyyyMMdd").parse(params.get("stime").toString()).getTime();
+                if (first - start <= Rollups.TIERS[0].getWidth()) {
+                    return rollup;// the rollup covers the range
+                }
+            } catch (ParseException e) {
+                return rollup;
+            }
+            head.put("etime", CalendarUtils.convertUnixTime(first, "yyyyMMdd"));
+        }
+        List<BScreenConsumerInfo> topicOffsets = new ArrayList<>();
+        for (BScreenConsumerInfo sample : mbeanDao.getConsumerOffsetsTopic(head)) {
+            if (sample.getTimespan() < first) {
+                topicOffsets.add(sample);
+            }
+        }
+        topicOffsets.addAll(rollup);
+        return topicOffsets;
+    }
+
     /**
      * Judge group & topic from Zookeeper has exist.
      */
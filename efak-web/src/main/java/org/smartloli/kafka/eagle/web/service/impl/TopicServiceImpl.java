@@ -20,6 +20,7 @@ package org.smartloli.kafka.eagle.web.service.impl;
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import com.google.gson.Gson;
+import org.smartloli.kafka.eagle.common.constant.JmxConstants.BrokerServer;
 import org.smartloli.kafka.eagle.common.protocol.BrokersInfo;
 import org.smartloli.kafka.eagle.common.protocol.MBeanInfo;
 import org.smartloli.kafka.eagle.common.protocol.MetadataInfo;
@@ -57,6 +58,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -221,7 +223,8 @@ public class TopicServiceImpl implements TopicService {
     }
 
     /**
-     * Get topic list.
+     * Get topic list, broker spread and skewed come with the page records,
+     * leader skewed needs the partition leaders and is read from the stats.
      */
     public List<PartitionsInfo> list(String clusterAlias, Map<String, Object> params) {
         List<PartitionsInfo> topicRecords = brokerService.topicRecords(clusterAlias, params);
@@ -229,12 +232,9 @@ public class TopicServiceImpl implements TopicService {
             Map<String, Object> spread = new HashMap<>();
             spread.put("cluster", clusterAlias);
             spread.put("topic", partitionInfo.getTopic());
-            spread.put("tkey", Topic.BROKER_SPREAD);
-            partitionInfo.setBrokersSpread(topicDao.readBrokerPerformance(spread) == null ? 0 : topicDao.readBrokerPerformance(spread).getTvalue());
-            spread.put("tkey", Topic.BROKER_SKEWED);
-            partitionInfo.setBrokersSkewed(topicDao.readBrokerPerformance(spread) == null ? 0 : topicDao.readBrokerPerformance(spread).getTvalue());
             spread.put("tkey", Topic.BROKER_LEADER_SKEWED);
-            partitionInfo.setBrokersLeaderSkewed(topicDao.readBrokerPerformance(spread) == null ? 0 : topicDao.readBrokerPerformance(spread).getTvalue());
+            TopicRank leaderSkewed = topicDao.readBrokerPerformance(spread);
+            partitionInfo.setBrokersLeaderSkewed(leaderSkewed == null ? 0 : leaderSkewed.getTvalue());
         }
         return topicRecords;
     }
@@ -252,25 +252,22 @@ public class TopicServiceImpl implements TopicService {
         Map<String, MBeanInfo> mbeans = new HashMap<>();
         for (BrokersInfo broker : brokers) {
             String uri = broker.getHost() + ":" + broker.getJmxPort();
-            MBeanInfo bytesIn = mx4jService.bytesInPerSec(clusterAlias, uri, topic);
-            MBeanInfo bytesOut = mx4jService.bytesOutPerSec(clusterAlias, uri, topic);
-            MBeanInfo bytesRejected = mx4jService.bytesRejectedPerSec(clusterAlias, uri, topic);
-            MBeanInfo failedFetchRequest = mx4jService.failedFetchRequestsPerSec(clusterAlias, uri, topic);
-            MBeanInfo failedProduceRequest = mx4jService.failedProduceRequestsPerSec(clusterAlias, uri, topic);
-            MBeanInfo messageIn = mx4jService.messagesInPerSec(clusterAlias, uri, topic);
-            MBeanInfo produceMessageConversions = mx4jService.produceMessageConversionsPerSec(clusterAlias, uri, topic);
-            MBeanInfo totalFetchRequests = mx4jService.totalFetchRequestsPerSec(clusterAlias, uri, topic);
-            MBeanInfo totalProduceRequests = mx4jService.totalProduceRequestsPerSec(clusterAlias, uri, topic);
-
-            assembleMBeanInfo(mbeans, MBean.MESSAGES_IN, messageIn);
-            assembleMBeanInfo(mbeans, MBean.BYTES_IN, bytesIn);
-            assembleMBeanInfo(mbeans, MBean.BYTES_OUT, bytesOut);
-            assembleMBeanInfo(mbeans, MBean.BYTES_REJECTED, bytesRejected);
-            assembleMBeanInfo(mbeans, MBean.FAILED_FETCH_REQUEST, failedFetchRequest);
-            assembleMBeanInfo(mbeans, MBean.FAILED_PRODUCE_REQUEST, failedProduceRequest);
-            assembleMBeanInfo(mbeans, MBean.PRODUCEMESSAGECONVERSIONS, produceMessageConversions);
-            assembleMBeanInfo(mbeans, MBean.TOTALFETCHREQUESTSPERSEC, totalFetchRequests);
-            assembleMBeanInfo(mbeans, MBean.TOTALPRODUCEREQUESTSPERSEC, totalProduceRequests);
+            Map<String, String> topicMBeans = new LinkedHashMap<>();
+            topicMBeans.put(MBean.MESSAGES_IN, BrokerServer.MESSAGES_IN_PER_SEC.getValue() + ",topic=" + topic);
+            topicMBeans.put(MBean.BYTES_IN, BrokerServer.BYTES_IN_PER_SEC.getValue() + ",topic=" + topic);
+            topicMBeans.put(MBean.BYTES_OUT, BrokerServer.BYTES_OUT_PER_SEC.getValue() + ",topic=" + topic);
+            topicMBeans.put(MBean.BYTES_REJECTED, BrokerServer.BYTES_REJECTED_PER_SEC.getValue() + ",topic=" + topic);
+            topicMBeans.put(MBean.FAILED_FETCH_REQUEST, BrokerServer.FAILED_FETCH_REQUESTS_PER_SEC.getValue() + ",topic=" + topic);
+            topicMBeans.put(MBean.FAILED_PRODUCE_REQUEST, BrokerServer.FAILED_PRODUCE_REQUESTS_PER_SEC.getValue() + ",topic=" + topic);
+            topicMBeans.put(MBean.PRODUCEMESSAGECONVERSIONS, BrokerServer.PRODUCE_MESSAGE_CONVERSIONS_PER_SEC.getValue() + ",topic=" + topic);
+            topicMBeans.put(MBean.TOTALFETCHREQUESTSPERSEC, BrokerServer.TOTAL_FETCH_REQUESTS_PER_SEC.getValue() + ",topic=" + topic);
+            topicMBeans.put(MBean.TOTALPRODUCEREQUESTSPERSEC, BrokerServer.TOTAL_PRODUCE_REQUESTS_PER_SEC.getValue() + ",topic=" + topic);
+
+            // read all topic meters of the broker with one pooled jmx connection
+            Map<String, MBeanInfo> meters = mx4jService.meterRates(clusterAlias, uri, topicMBeans.values());
+            for (Entry<String, String> topicMBean : topicMBeans.entrySet()) {
+                assembleMBeanInfo(mbeans, topicMBean.getKey(), meters.get(topicMBean.getValue()));
+            }
         }
         for (Entry<String, MBeanInfo> entry : mbeans.entrySet()) {
             if (entry == null || entry.getValue() == null) {
@@ -0,0 +1,192 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.web.snapshot;
+
+import com.alibaba.fastjson.JSONObject;
+import org.smartloli.kafka.eagle.common.util.LoggerUtils;
+import org.smartloli.kafka.eagle.common.util.SystemConfigUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Precomputed views of the dashboard and big screen pages per cluster.
+ * <p>
+ * The views are rebuilt once per collection cycle and published as a whole,
+ * so a page load reads a ready response instead of querying kafka and the
+ * database. Every view carries an etag derived from its content, which stays
+ * the same while the data does, so an idle screen polling with If-None-Match
+ * is answered with 304. A view missing from the snapshot, or one not
+ * refreshed for 'efak.dashboard.snapshot.max.age.ms', is computed on demand.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public final class DashboardSnapshots {
+
+    public static final String DASHBOARD = "dash.kafka";
+    public static final String BS_RATE = "bs.rate";
+    public static final String BS_LOGSIZE = "bs.logsize";
+    public static final String BS_CAPACITY = "bs.capacity";
+    public static final String BS_HISTORY = "bs.history.";
+    public static final String BS_DAY = "bs.day.";
+
+    private static final long MAX_AGE = SystemConfigUtils.getLongProperty("efak.dashboard.snapshot.max.age.ms", 3 * 60 * 1000L);
+
+    private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+
+    private static class SnapshotsHolder {
+        private static final DashboardSnapshots INSTANCE = new DashboardSnapshots();
+    }
+
+    public static DashboardSnapshots getInstance() {
+        return SnapshotsHolder.INSTANCE;
+    }
+
+    private DashboardSnapshots() {
+    }
+
+    /**
+     * Replace the views of the cluster, views missing from the map are kept
+     * from the previous snapshot. The version moves only when a view changed.
+     */
+    public void publish(String clusterAlias, Map<String, String> contents) {
+        snapshots.compute(clusterAlias, (k, previous) -> {
+            Map<String, View> views = new HashMap<>();
+            long next = previous == null ? 1L : previous.version + 1;
+            boolean changed = previous == null;
+            if (previous != null) {
+                views.putAll(previous.views);
+            }
+            for (Map.Entry<String, String> entry : contents.entrySet()) {
+                byte[] body = entry.getValue().getBytes(StandardCharsets.UTF_8);
+                String etag = etag(body);
+                View old = views.get(entry.getKey());
+                boolean same = old != null && old.etag.equals(etag);
+                changed |= !same;
+                views.put(entry.getKey(), new View(body, etag, same ? old.version : next));
+            }
+            return new Snapshot(changed ? next : previous.version, views);
+        });
+    }
+
+    /**
+     * View of the cluster from the snapshot, computed with the loader and added
+     * to the snapshot when it is missing or the snapshot is stale.
+     */
+    public View view(String clusterAlias, String name, Supplier<String> loader) {
+        Snapshot snapshot = snapshots.get(clusterAlias);
+        View view = snapshot == null ? null : snapshot.views.get(name);
+        if (view != null && System.currentTimeMillis() - view.published <= MAX_AGE) {
+            hits.incrementAndGet();
+            return view;
+        }
+        misses.incrementAndGet();
+        String content = loader.get();
+        if (content == null) {
+            return view;
+        }
+        publish(clusterAlias, Collections.singletonMap(name, content));
+        return snapshots.get(clusterAlias).views.get(name);
+    }
+
+    /**
+     * Count a request answered with 304.
+     */
+    public void notModified() {
+        notModified.incrementAndGet();
+    }
+
+    /**
+     * Version, age and views of every cluster, with hit counters.
+     */
+    public JSONObject getMetrics() {
+        JSONObject metrics = new JSONObject();
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, Snapshot> entry : snapshots.entrySet()) {
+            JSONObject object = new JSONObject();
+            object.put("version", entry.getValue().version);
+            object.put("age_ms", now - entry.getValue().timestamp);
+            object.put("views", entry.getValue().views.size());
+            metrics.put(entry.getKey(), object);
+        }
+        metrics.put("hits", hits.get());
+        metrics.put("misses", misses.get());
+        metrics.put("not_modified", notModified.get());
+        return metrics;
+    }
+
+    private static String etag(byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return "\"" + Long.toHexString(crc.getValue()) + "-" + Integer.toHexString(body.length) + "\"";
+    }
+
+    private static final class Snapshot {
+        private final long version;
+        private final long timestamp = System.currentTimeMillis();
+        private final Map<String, View> views;
+
+        private Snapshot(long version, Map<String, View> views) {
+            this.version = version;
+            this.views = Collections.unmodifiableMap(views);
+        }
+    }
+
+    /**
+     * Response body of one view with its etag.
+     */
+    public static final class View {
+        private final byte[] body;
+        private final String etag;
+        private final long version;
+        private final long published = System.currentTimeMillis();
+
+        private View(byte[] body, String etag, long version) {
+            this.body = body;
+            this.etag = etag;
+            this.version = version;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        /**
+         * Snapshot version in which the view last changed.
+         */
+        public long getVersion() {
+            return version;
+        }
+    }
+
+}
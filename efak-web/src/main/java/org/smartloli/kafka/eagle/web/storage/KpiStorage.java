@@ -0,0 +1,83 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.web.storage;
+
+import org.smartloli.kafka.eagle.common.protocol.KpiInfo;
+import org.smartloli.kafka.eagle.common.protocol.bscreen.BScreenConsumerInfo;
+import org.smartloli.kafka.eagle.common.util.SystemConfigUtils;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Storage of the broker and zookeeper kpi samples, the parameters are the
+ * ones of the matching {@link org.smartloli.kafka.eagle.web.dao.MBeanDao}
+ * statements.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public interface KpiStorage {
+
+    /** Store collected kpi samples. */
+    public int insert(List<KpiInfo> kpis);
+
+    /**
+     * Query kpi samples of a cluster and type between stime and etime, a
+     * storage keeping rollups may answer with the averages of the tier fitting
+     * the points.
+     */
+    public List<KpiInfo> query(Map<String, Object> params);
+
+    /** Get the latest sample of a kpi in tday. */
+    public KpiInfo getBrokersKpi(Map<String, Object> params);
+
+    /** Get the latest os memory samples. */
+    public List<KpiInfo> getOsMem(Map<String, Object> params);
+
+    /** Get the latest used cpu sample. */
+    public List<KpiInfo> getUsedCPU(Map<String, Object> params);
+
+    /** Remove samples up to tm inclusive. */
+    public void remove(int tm);
+
+    /** Fold the consumer lag samples written to 'ke_consumer_bscreen' into rollups. */
+    public void rollupConsumers(List<BScreenConsumerInfo> consumers);
+
+    /**
+     * Query the consumer lag rollup of a group and topic between stime and
+     * etime, null when the range is drawn from the raw samples.
+     */
+    public List<BScreenConsumerInfo> queryConsumerRollup(Map<String, Object> params);
+
+    /** Points a chart is drawn with, 'points' of the params or 'efak.metrics.chart.points'. */
+    static int points(Map<String, Object> params) {
+        int points = SystemConfigUtils.getIntProperty("efak.metrics.chart.points", 1000);
+        Object value = params.get("points");
+        if (value != null && !"".equals(value.toString())) {
+            try {
+                points = Integer.parseInt(value.toString());
+            } catch (NumberFormatException e) {
+                // keep the configured points
+            }
+        }
+        return Math.max(3, points);
+    }
+
+}
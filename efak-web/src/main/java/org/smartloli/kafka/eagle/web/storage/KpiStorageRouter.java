@@ -0,0 +1,121 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.web.storage;
+
+import org.smartloli.kafka.eagle.common.protocol.KpiInfo;
+import org.smartloli.kafka.eagle.common.protocol.bscreen.BScreenConsumerInfo;
+import org.smartloli.kafka.eagle.common.tsdb.TimeSeriesStore;
+import org.smartloli.kafka.eagle.common.util.LoggerUtils;
+import org.smartloli.kafka.eagle.common.util.SystemConfigUtils;
+import org.smartloli.kafka.eagle.web.dao.MBeanDao;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Kpi storage selected by 'efak.metrics.storage'. The 'ke_metrics' table is
+ * used by default, the embedded time-series store when it is set to 'tsdb'.
+ * The store is local to the node writing it, so in distributed mode, where
+ * slaves collect the kpis and only the master cleans them, and when the store
+ * directory can not be written, the table is used anyway.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+@Component
+public class KpiStorageRouter implements KpiStorage {
+
+    private static final String TSDB = "tsdb";
+    private static final String SQL = "sql";
+
+    @Autowired
+    private MBeanDao mbeanDao;
+
+    private volatile KpiStorage storage;
+
+    private KpiStorage storage() {
+        if (storage == null) {
+            synchronized (this) {
+                if (storage == null) {
+                    storage = select();
+                }
+            }
+        }
+        return storage;
+    }
+
+    private KpiStorage select() {
+        if (TSDB.equals(SystemConfigUtils.getProperty("efak.metrics.storage", SQL))) {
+            if (SystemConfigUtils.getBooleanProperty("efak.distributed.enable")) {
+                LoggerUtils.print(this.getClass()).warn("Tsdb is local to every node, store kpi in sql in distributed mode.");
+                return new SqlKpiStorage(mbeanDao);
+            }
+            TimeSeriesStore store = TimeSeriesStore.getInstance();
+            if (store.open()) {
+                LoggerUtils.print(this.getClass()).info("Store kpi in tsdb[" + store.getRoot() + "].");
+                return new TsdbKpiStorage(store, mbeanDao);
+            }
+            LoggerUtils.print(this.getClass()).warn("Tsdb directory[" + store.getRoot() + "] is not writable, store kpi in sql.");
+        }
+        return new SqlKpiStorage(mbeanDao);
+    }
+
+    @Override
+    public int insert(List<KpiInfo> kpis) {
+        return storage().insert(kpis);
+    }
+
+    @Override
+    public List<KpiInfo> query(Map<String, Object> params) {
+        return storage().query(params);
+    }
+
+    @Override
+    public KpiInfo getBrokersKpi(Map<String, Object> params) {
+        return storage().getBrokersKpi(params);
+    }
+
+    @Override
+    public List<KpiInfo> getOsMem(Map<String, Object> params) {
+        return storage().getOsMem(params);
+    }
+
+    @Override
+    public List<KpiInfo> getUsedCPU(Map<String, Object> params) {
+        return storage().getUsedCPU(params);
+    }
+
+    @Override
+    public void remove(int tm) {
+        storage().remove(tm);
+    }
+
+    @Override
+    public void rollupConsumers(List<BScreenConsumerInfo> consumers) {
+        storage().rollupConsumers(consumers);
+    }
+
+    @Override
+    public List<BScreenConsumerInfo> queryConsumerRollup(Map<String, Object> params) {
+        return storage().queryConsumerRollup(params);
+    }
+
+}
@@ -0,0 +1,82 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.web.storage;
+
+import org.smartloli.kafka.eagle.common.protocol.KpiInfo;
+import org.smartloli.kafka.eagle.common.protocol.bscreen.BScreenConsumerInfo;
+import org.smartloli.kafka.eagle.web.dao.MBeanDao;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Kpi storage in the 'ke_metrics' table.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public class SqlKpiStorage implements KpiStorage {
+
+    private final MBeanDao mbeanDao;
+
+    public SqlKpiStorage(MBeanDao mbeanDao) {
+        this.mbeanDao = mbeanDao;
+    }
+
+    @Override
+    public int insert(List<KpiInfo> kpis) {
+        return mbeanDao.insert(kpis);
+    }
+
+    @Override
+    public List<KpiInfo> query(Map<String, Object> params) {
+        return mbeanDao.query(params);
+    }
+
+    @Override
+    public KpiInfo getBrokersKpi(Map<String, Object> params) {
+        return mbeanDao.getBrokersKpi(params);
+    }
+
+    @Override
+    public List<KpiInfo> getOsMem(Map<String, Object> params) {
+        return mbeanDao.getOsMem(params);
+    }
+
+    @Override
+    public List<KpiInfo> getUsedCPU(Map<String, Object> params) {
+        return mbeanDao.getUsedCPU(params);
+    }
+
+    @Override
+    public void remove(int tm) {
+        mbeanDao.remove(tm);
+    }
+
+    @Override
+    public void rollupConsumers(List<BScreenConsumerInfo> consumers) {
+        // no rollups, charts read the raw rows
+    }
+
+    @Override
+    public List<BScreenConsumerInfo> queryConsumerRollup(Map<String, Object> params) {
+        return null;
+    }
+
+}
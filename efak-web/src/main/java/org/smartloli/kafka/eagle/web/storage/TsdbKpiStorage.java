@@ -0,0 +1,379 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.smartloli.kafka.eagle.web.storage;
+
+import org.smartloli.kafka.eagle.common.protocol.KpiInfo;
+import org.smartloli.kafka.eagle.common.protocol.bscreen.BScreenConsumerInfo;
+import org.smartloli.kafka.eagle.common.tsdb.Rollups;
+import org.smartloli.kafka.eagle.common.tsdb.TimeSeriesStore;
+import org.smartloli.kafka.eagle.common.util.LoggerUtils;
+import org.smartloli.kafka.eagle.common.util.StrUtils;
+import org.smartloli.kafka.eagle.web.dao.MBeanDao;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Kpi storage in the embedded {@link TimeSeriesStore}.
+ * <p>
+ * Every cluster, type and key is one series named 'cluster/type/key' and the
+ * tm of a sample is its day block. The broker of a sample is not stored, it
+ * is the cluster alias for kafka and the zookeeper hosts for zookeeper and no
+ * chart reads it back.
+ * <p>
+ * Kpi series and the consumer lag of every group and topic also keep
+ * {@link Rollups}, long ranges are read from the averages of a tier (the
+ * maximum for lag) instead of every minute. The buckets left open by a
+ * restart are refilled from the samples of the day, in the store for kpis and
+ * in 'ke_consumer_bscreen' for the consumer lag.
+ * <p>
+ * Days before the first block of the store are read from 'ke_metrics', so
+ * the history written there before the upgrade keeps showing until the
+ * retention removes it, and latest samples fall back to it while the store
+ * has none.
+ *
+ * @author smartloli.
+ * <p>
+ * Created by Oct 18, 2026
+ */
+public class TsdbKpiStorage implements KpiStorage {
+
+    private static final String SEPARATOR = "/";
+    private static final String CONSUMER = "consumer";
+    private static final int CONSUMER_FIELDS = 3;
+
+    private final TimeSeriesStore store;
+    private final Rollups rollups;
+    private final MBeanDao mbeanDao;
+
+    public TsdbKpiStorage(TimeSeriesStore store, MBeanDao mbeanDao) {
+        this.store = store;
+        this.rollups = new Rollups(store);
+        this.mbeanDao = mbeanDao;
+    }
+
+    @Override
+    public int insert(List<KpiInfo> kpis) {
+        int size = 0;
+        for (KpiInfo kpi : kpis) {
+            if (StrUtils.isNull(kpi.getValue())) {
+                continue;
+            }
+            String series = series(kpi.getCluster(), kpi.getType(), kpi.getKey());
+            try {
+                double value = Double.parseDouble(kpi.getValue());
+                if (!rollups.isOpen(series)) {
+                    replay(series, kpi.getTm());
+                }
+                store.append(series, kpi.getTm(), kpi.getTimespan(), value);
+                rollups.add(series, kpi.getTm(), kpi.getTimespan(), value);
+                size++;
+            } catch (NumberFormatException e) {
+                LoggerUtils.print(this.getClass()).warn("Skip kpi[" + kpi.getKey() + "] with value[" + kpi.getValue() + "].");
+            } catch (IOException e) {
+                LoggerUtils.print(this.getClass()).error("Append kpi[" + kpi.getKey() + "] of cluster[" + kpi.getCluster() + "] has error, msg is ", e);
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public List<KpiInfo> query(Map<String, Object> params) {
+        String cluster = params.get("cluster").toString();
+        String type = params.get("type").toString();
+        String stime = params.get("stime").toString();
+        String etime = params.get("etime").toString();
+        List<String> keys = new ArrayList<>();
+        Object modules = params.get("modules");
+        if (modules instanceof Collection && !((Collection<?>) modules).isEmpty()) {
+            for (Object module : (Collection<?>) modules) {
+                keys.add(module.toString());
+            }
+        } else {
+            String prefix = series(cluster, type, "");
+            for (String series : store.series(prefix, stime, etime)) {
+                if (!Rollups.isRollup(series)) {
+                    keys.add(series.substring(prefix.length()));
+                }
+            }
+        }
+        String first = first();
+        List<KpiInfo> kpis = legacy(params, stime, etime, first);
+        if (first == null || etime.compareTo(first) < 0) {
+            return kpis;
+        }
+        Rollups.Tier tier = Rollups.tier(stime, etime, KpiStorage.points(params));
+        for (String key : keys) {
+            try {
+                if (tier == null) {
+                    store.scan(series(cluster, type, key), stime, etime, (timestamp, value) -> kpis.add(kpi(cluster, type, key, timestamp, value)));
+                } else {
+                    rollups.scan(series(cluster, type, key), tier, stime, etime, 1, (timestamp, aggregates) -> kpis.add(kpi(cluster, type, key, timestamp, aggregates[Rollups.AVG])));
+                }
+            } catch (IOException e) {
+                LoggerUtils.print(this.getClass()).error("Scan kpi[" + key + "] of cluster[" + cluster + "] has error, msg is ", e);
+            }
+        }
+        return kpis;
+    }
+
+    @Override
+    public KpiInfo getBrokersKpi(Map<String, Object> params) {
+        String cluster = params.get("cluster").toString();
+        String type = params.get("type").toString();
+        String key = params.get("key").toString();
+        String tday = params.get("tday").toString();
+        KpiInfo[] last = new KpiInfo[1];
+        try {
+            store.scan(series(cluster, type, key), tday, tday, (timestamp, value) -> {
+                if (last[0] == null || timestamp >= last[0].getTimespan()) {
+                    last[0] = kpi(cluster, type, key, timestamp, value);
+                }
+            });
+        } catch (IOException e) {
+            LoggerUtils.print(this.getClass()).error("Scan kpi[" + key + "] of cluster[" + cluster + "] has error, msg is ", e);
+        }
+        if (last[0] == null) {
+            try {
+                return mbeanDao.getBrokersKpi(params);
+            } catch (Exception e) {
+                LoggerUtils.print(this.getClass()).error("Read kpi[" + key + "] of cluster[" + cluster + "] from ke_metrics has error, msg is ", e);
+            }
+        }
+        return last[0];
+    }
+
+    @Override
+    public List<KpiInfo> getOsMem(Map<String, Object> params) {
+        List<KpiInfo> kpis = latest(params.get("cluster").toString(), params.get("key").toString(), 2);
+        if (kpis.isEmpty()) {
+            try {
+                return mbeanDao.getOsMem(params);
+            } catch (Exception e) {
+                LoggerUtils.print(this.getClass()).error("Read os memory from ke_metrics has error, msg is ", e);
+            }
+        }
+        return kpis;
+    }
+
+    @Override
+    public List<KpiInfo> getUsedCPU(Map<String, Object> params) {
+        List<KpiInfo> kpis = latest(params.get("cluster").toString(), params.get("key").toString(), 1);
+        if (kpis.isEmpty()) {
+            try {
+                return mbeanDao.getUsedCPU(params);
+            } catch (Exception e) {
+                LoggerUtils.print(this.getClass()).error("Read used cpu from ke_metrics has error, msg is ", e);
+            }
+        }
+        return kpis;
+    }
+
+    @Override
+    public void remove(int tm) {
+        int days = store.dropThrough(String.valueOf(tm));
+        LoggerUtils.print(this.getClass()).info("Drop [" + days + "] days of kpi blocks up to [" + tm + "].");
+        try {
+            mbeanDao.remove(tm);
+        } catch (Exception e) {
+            LoggerUtils.print(this.getClass()).error("Remove ke_metrics rows up to [" + tm + "] has error, msg is ", e);
+        }
+    }
+
+    @Override
+    public void rollupConsumers(List<BScreenConsumerInfo> consumers) {
+        for (BScreenConsumerInfo consumer : consumers) {
+            try {
+                String series = consumerSeries(consumer.getCluster(), consumer.getGroup(), consumer.getTopic());
+                if (!rollups.isOpen(series)) {
+                    replayConsumer(series, consumer);
+                }
+                rollups.add(series, consumer.getTm(), consumer.getTimespan(), consumer.getLag(), consumer.getDifflogsize(), consumer.getDiffoffsets());
+            } catch (IOException e) {
+                LoggerUtils.print(this.getClass()).error("Rollup consumer group[" + consumer.getGroup() + "] topic[" + consumer.getTopic() + "] has error, msg is ", e);
+            }
+        }
+    }
+
+    @Override
+    public List<BScreenConsumerInfo> queryConsumerRollup(Map<String, Object> params) {
+        String stime = params.get("stime").toString();
+        String etime = params.get("etime").toString();
+        Rollups.Tier tier = Rollups.tier(stime, etime, KpiStorage.points(params));
+        if (tier == null) {
+            return null;
+        }
+        String series = consumerSeries(params.get("cluster").toString(), params.get("group").toString(), params.get("topic").toString());
+        List<BScreenConsumerInfo> consumers = new ArrayList<>();
+        try {
+            rollups.scan(series, tier, stime, etime, CONSUMER_FIELDS, (timestamp, aggregates) -> {
+                BScreenConsumerInfo consumer = new BScreenConsumerInfo();
+                consumer.setTimespan(timestamp);
+                // a lag spike must not be averaged away
+                consumer.setLag(Math.round(aggregates[Rollups.MAX]));
+                consumer.setDifflogsize(Math.round(aggregates[Rollups.AGGREGATES + Rollups.AVG]));
+                consumer.setDiffoffsets(Math.round(aggregates[2 * Rollups.AGGREGATES + Rollups.AVG]));
+                consumers.add(consumer);
+            });
+        } catch (IOException e) {
+            LoggerUtils.print(this.getClass()).error("Scan consumer rollup[" + series + "] has error, msg is ", e);
+        }
+        return consumers;
+    }
+
+    /**
+     * Fill the rollup buckets of a series left open by a restart from the
+     * samples stored today.
+     */
+    private void replay(String series, String day) throws IOException {
+        rollups.resume(series);
+        List<long[]> samples = new ArrayList<>();
+        store.scan(series, day, day, (time, value) -> samples.add(new long[]{time, Double.doubleToRawLongBits(value)}));
+        for (long[] sample : samples) {
+            rollups.add(series, day, sample[0], Double.longBitsToDouble(sample[1]));
+        }
+    }
+
+    /**
+     * Fill the consumer rollup buckets left open by a restart from the
+     * samples of the day written to 'ke_consumer_bscreen' before this one.
+     */
+    private void replayConsumer(String series, BScreenConsumerInfo consumer) throws IOException {
+        rollups.resume(series);
+        Map<String, Object> params = new HashMap<>();
+        params.put("cluster", consumer.getCluster());
+        params.put("group", consumer.getGroup());
+        params.put("topic", consumer.getTopic());
+        params.put("stime", consumer.getTm());
+        params.put("etime", consumer.getTm());
+        List<BScreenConsumerInfo> samples;
+        try {
+            samples = mbeanDao.getConsumerOffsetsTopic(params);
+        } catch (Exception e) {
+            LoggerUtils.print(this.getClass()).error("Read consumer group[" + consumer.getGroup() + "] topic[" + consumer.getTopic() + "] samples has error, msg is ", e);
+            return;
+        }
+        samples.sort(Comparator.comparingLong(BScreenConsumerInfo::getTimespan));
+        for (BScreenConsumerInfo sample : samples) {
+            if (sample.getTimespan() < consumer.getTimespan()) {
+                rollups.add(series, consumer.getTm(), sample.getTimespan(), sample.getLag(), sample.getDifflogsize(), sample.getDiffoffsets());
+            }
+        }
+    }
+
+    /**
+     * First day of the store, null when it holds no block yet.
+     */
+    private String first() {
+        List<String> days = store.days();
+        return days.isEmpty() ? null : days.get(0);
+    }
+
+    /**
+     * Rows of 'ke_metrics' for the days of the range before the first day of
+     * the store.
+     */
+    private List<KpiInfo> legacy(Map<String, Object> params, String stime, String etime, String first) {
+        List<KpiInfo> kpis = new ArrayList<>();
+        if (first != null && stime.compareTo(first) >= 0) {
+            return kpis;
+        }
+        Map<String, Object> range = new HashMap<>(params);
+        if (first != null && etime.compareTo(first) >= 0) {
+            range.put("etime", LocalDate.parse(first, DateTimeFormatter.BASIC_ISO_DATE).minusDays(1).format(DateTimeFormatter.BASIC_ISO_DATE));
+        }
+        try {
+            kpis.addAll(mbeanDao.query(range));
+        } catch (Exception e) {
+            LoggerUtils.print(this.getClass()).error("Query kpi of cluster[" + params.get("cluster") + "] from ke_metrics has error, msg is ", e);
+        }
+        return kpis;
+    }
+
+    /**
+     * Latest samples of the keys of any type matching the sql like pattern in
+     * the last day holding one, newest first.
+     */
+    private List<KpiInfo> latest(String cluster, String like, int limit) {
+        Pattern pattern = like(like);
+        String prefix = cluster + SEPARATOR;
+        List<KpiInfo> kpis = new ArrayList<>();
+        List<String> days = store.days();
+        Set<String> matches = new TreeSet<>();
+        for (int i = days.size() - 1; i >= 0 && matches.isEmpty(); i--) {
+            for (String series : store.series(prefix, days.get(i), days.get(i))) {
+                String[] typeAndKey = series.substring(prefix.length()).split(SEPARATOR, 2);
+                if (!Rollups.isRollup(series) && typeAndKey.length == 2 && pattern.matcher(typeAndKey[1]).matches()) {
+                    matches.add(series);
+                }
+            }
+        }
+        for (String series : matches) {
+            String[] typeAndKey = series.substring(prefix.length()).split(SEPARATOR, 2);
+            try {
+                store.last(series, (timestamp, value) -> kpis.add(kpi(cluster, typeAndKey[0], typeAndKey[1], timestamp, value)));
+            } catch (IOException e) {
+                LoggerUtils.print(this.getClass()).error("Read latest kpi[" + series + "] has error, msg is ", e);
+            }
+        }
+        kpis.sort((a, b) -> Long.compare(b.getTimespan(), a.getTimespan()));
+        return kpis.size() > limit ? new ArrayList<>(kpis.subList(0, limit)) : kpis;
+    }
+
+    private static Pattern like(String like) {
+        StringBuilder regex = new StringBuilder();
+        for (String part : like.split("%", -1)) {
+            if (regex.length() > 0) {
+                regex.append(".*");
+            }
+            regex.append(Pattern.quote(part));
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    private static String series(String cluster, String type, String key) {
+        return cluster + SEPARATOR + type + SEPARATOR + key;
+    }
+
+    /**
+     * Consumer series do not start with the cluster, so listing the kpis of a
+     * cluster never walks them.
+     */
+    private static String consumerSeries(String cluster, String group, String topic) {
+        return CONSUMER + SEPARATOR + cluster + SEPARATOR + group + SEPARATOR + topic;
+    }
+
+    private static KpiInfo kpi(String cluster, String type, String key, long timestamp, double value) {
+        KpiInfo kpi = new KpiInfo();
+        kpi.setCluster(cluster);
+        kpi.setType(type);
+        kpi.setKey(key);
+        kpi.setTimespan(timestamp);
+        // memory kpis are parsed back as long
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            kpi.setValue(String.valueOf((long) value));
+        } else {
+            kpi.setValue(String.valueOf(value));
+        }
+        return kpi;
+    }
+
+}
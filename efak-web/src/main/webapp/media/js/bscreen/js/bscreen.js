@@ -17,6 +17,7 @@
 			$.ajax({
 				type : 'get',
 				dataType : 'json',
+				ifModified : true,
 				url : '/bs/brokers/ins/outs/realrate/ajax',
 				success : function(datas) {
 					if (datas != null) {
@@ -40,6 +41,7 @@
 			$.ajax({
 				type : 'get',
 				dataType : 'json',
+				ifModified : true,
 				url : '/bs/topic/total/capacity/ajax',
 				success : function(datas) {
 					if (datas != null) {
@@ -84,6 +86,7 @@
 			$.ajax({
 				type : 'get',
 				dataType : 'json',
+				ifModified : true,
 				url : '/bs/topic/total/logsize/ajax',
 				success : function(datas) {
 					if (datas != null) {
@@ -187,11 +190,8 @@
 		$.ajax({
 			type : 'get',
 			dataType : 'json',
+			ifModified : true,
 			url : '/bs/producer/history/ajax',
-			beforeSend : function(xmlHttp) {
-				xmlHttp.setRequestHeader("If-Modified-Since", "0");
-				xmlHttp.setRequestHeader("Cache-Control", "no-cache");
-			},
 			success : function(datas) {
 				if (datas != null) {
 					producerHistoryOption.xAxis.data = filter(datas).x;
@@ -306,11 +306,8 @@
 		$.ajax({
 			type : 'get',
 			dataType : 'json',
+			ifModified : true,
 			url : '/bs/consumer/history/ajax',
-			beforeSend : function(xmlHttp) {
-				xmlHttp.setRequestHeader("If-Modified-Since", "0");
-				xmlHttp.setRequestHeader("Cache-Control", "no-cache");
-			},
 			success : function(datas) {
 				if (datas != null) {
 					consumerHistoryOption.xAxis.data = filter(datas).x;
@@ -442,11 +439,8 @@
 		$.ajax({
 			type : 'get',
 			dataType : 'json',
+			ifModified : true,
 			url : '/bs/producers/day/ajax',
-			beforeSend : function(xmlHttp) {
-				xmlHttp.setRequestHeader("If-Modified-Since", "0");
-				xmlHttp.setRequestHeader("Cache-Control", "no-cache");
-			},
 			success : function(datas) {
 				if (datas != null) {
 					toDayProducerOption.xAxis[0].data = filter(datas).x;
@@ -579,11 +573,8 @@
 		$.ajax({
 			type : 'get',
 			dataType : 'json',
+			ifModified : true,
 			url : '/bs/consumers/day/ajax',
-			beforeSend : function(xmlHttp) {
-				xmlHttp.setRequestHeader("If-Modified-Since", "0");
-				xmlHttp.setRequestHeader("Cache-Control", "no-cache");
-			},
 			success : function(datas) {
 				if (datas != null) {
 					toDayConsumerOption.xAxis[0].data = filter(datas).x;
@@ -715,11 +706,8 @@
 		$.ajax({
 			type : 'get',
 			dataType : 'json',
+			ifModified : true,
 			url : '/bs/lag/day/ajax',
-			beforeSend : function(xmlHttp) {
-				xmlHttp.setRequestHeader("If-Modified-Since", "0");
-				xmlHttp.setRequestHeader("Cache-Control", "no-cache");
-			},
 			success : function(datas) {
 				if (datas != null) {
 					toDayLagOption.xAxis[0].data = filter(datas).x;